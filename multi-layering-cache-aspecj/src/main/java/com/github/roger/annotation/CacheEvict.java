@@ -32,6 +32,14 @@ public @interface CacheEvict {
      */
     String key() default "";
 
+    /**
+     * 批量删除的key集合，支持SpEL表达式，表达式的结果是集合或数组，如"#ids"
+     * <p>配置后集合中的每个元素都是一个缓存key，{@link #key} 参数将无效
+     *
+     * @return String
+     */
+    String batchKeys() default "";
+
 
     /**
      * 是否忽略在操作缓存中遇到的异常，如反序列化异常，默认true。
@@ -38,6 +38,15 @@ public @interface Cacheable {
      */
     String key() default "";
 
+    /**
+     * 批量缓存的key集合，支持SpEL表达式，只能直接引用一个集合类型的参数，如"#ids"
+     * <p>配置后集合中的每个元素都是一个缓存key，{@link #key} 参数将无效。被缓存的方法的返回值必须是以元素为key的Map，
+     * 先批量查询一级缓存和二级缓存，只用未命中的元素调用被缓存的方法，再将结果按元素放到缓存并合并返回</p>
+     *
+     * @return String
+     */
+    String batchKeys() default "";
+
 
     /**
      * 是否忽略在操作缓存中遇到的异常，如反序列化异常，默认true。
@@ -1,6 +1,7 @@
 package com.github.roger.annotation;
 
 import org.github.roger.enumeration.ExpireMode;
+import org.github.roger.enumeration.FirstCacheType;
 
 import java.lang.annotation.*;
 import java.util.concurrent.TimeUnit;
@@ -38,4 +39,14 @@ public @interface FirstCache {
      * 缓存失效模式{@link ExpireMode}
      */
     ExpireMode expireMode() default ExpireMode.WRITE;
+
+    /**
+     * 一级缓存的类型{@link FirstCacheType}
+     */
+    FirstCacheType type() default FirstCacheType.CAFFEINE;
+
+    /**
+     * 堆外缓存最多使用的内存，单位字节
+     */
+    long offHeapMaxBytes() default 64 * 1024 * 1024;
 }
@@ -1,5 +1,7 @@
 package com.github.roger.annotation;
 
+import org.github.roger.enumeration.RefreshPolicy;
+
 import java.lang.annotation.*;
 import java.util.concurrent.TimeUnit;
 
@@ -52,5 +54,64 @@ public @interface SecondaryCache {
      * 那么当缓存value为null时，缓存的有效时间将是20秒，非空时为200秒
      */
     int magnification() default 1;
+
+    /**
+     * 刷新策略，默认是固定刷新窗口，即剩余有效时间小于等于preloadTime时刷新
+     * PROBABILISTIC 根据加载缓存的耗时按概率提前刷新，把各个节点的刷新时间错开
+     */
+    RefreshPolicy refreshPolicy() default RefreshPolicy.FIXED_WINDOW;
+
+    /**
+     * 概率提前刷新的系数，大于1提前刷新得更早，小于1更晚。refreshPolicy = PROBABILISTIC才有效
+     */
+    double beta() default 1.0;
+
+    /**
+     * 超过缓存有效时间后仍然可以使用旧值的最长时间，时间单位同expireTime，默认是0不开启
+     * 开启后超过有效时间的旧值直接返回，同时异步重新加载；被缓存的方法或者redis异常时继续使用旧值
+     */
+    long maxStaleness() default 0;
+
+    /**
+     * 清空缓存时每批 SCAN 和 UNLINK 的key数量
+     */
+    int clearBatchSize() default 1000;
+
+    /**
+     * 清空缓存时每批之间暂停的毫秒数，默认0不暂停
+     */
+    long clearBatchPause() default 0;
+
+    /**
+     * 是否在后台线程清空redis缓存，清空完成后再通知各个节点清空一级缓存
+     */
+    boolean asyncClear() default false;
+
+    /**
+     * 是否给缓存key加上缓存名称的版本号，开启后清空缓存只把版本号加1，旧版本的key等待过期自动删除。usePrefix = true才有效，
+     * 并且必须设置有效时间（expireTime大于0）
+     */
+    boolean useGeneration() default false;
+
+    /**
+     * 是否压缩缓存值，开启后序列化结果超过compressThreshold字节的缓存值压缩后再放到redis
+     */
+    boolean compress() default false;
+
+    /**
+     * 压缩阈值，单位字节，compress = true才有效
+     */
+    int compressThreshold() default 1024;
+
+    /**
+     * 是否使用紧凑的redis key，开启后缓存名称换成根据名称计算的ID，过长的key换成摘要。usePrefix = true才有效，
+     * 要求redis的淘汰策略是noeviction（或者volatile-*）
+     */
+    boolean compactKey() default false;
+
+    /**
+     * key的摘要阈值，单位字节，compactKey = true才有效
+     */
+    int keyDigestThreshold() default 64;
 }
 
@@ -3,29 +3,42 @@ package com.github.roger.aspect;
 import com.github.roger.annotation.CacheEvict;
 import com.github.roger.annotation.CachePut;
 import com.github.roger.annotation.Cacheable;
-import com.github.roger.expression.CacheOperationExpressionEvaluator;
 import com.github.roger.key.KeyGenerator;
 import com.github.roger.key.impl.DefaultKeyGenerator;
+import com.github.roger.support.AsyncCacheSupport;
 import com.github.roger.support.CacheOperationInvoker;
+import com.github.roger.support.CacheOperationMetadata;
 import com.github.roger.utils.CacheAspectUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Pointcut;
+import org.aspectj.lang.reflect.MethodSignature;
 import org.github.roger.cache.ICache;
+import org.github.roger.concurrent.ThreadTaskUtils;
 import org.github.roger.exception.SerializationException;
 import org.github.roger.manager.ICacheManager;
 import org.github.roger.settings.FirstCacheSetting;
 import org.github.roger.settings.MultiLayeringCacheSetting;
 import org.github.roger.settings.SecondaryCacheSetting;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.expression.AnnotatedElementKey;
+import org.springframework.core.CollectionFactory;
 import org.springframework.core.annotation.AnnotationUtils;
 import org.springframework.util.Assert;
 import org.springframework.util.CollectionUtils;
+import org.springframework.util.ReflectionUtils;
 
 import java.lang.reflect.Method;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
 
 @Aspect
 @Slf4j
@@ -33,6 +46,8 @@ public class MultiLayeringCacheAspect {
 
     private static final String CACHE_KEY_ERROR_MESSAGE = "缓存Key %s 不能为NULL";
     private static final String CACHE_NAME_ERROR_MESSAGE = "缓存名称不能为NULL";
+    private static final String BATCH_KEYS_ERROR_MESSAGE = "批量缓存的batchKeys %s 只能直接引用一个集合类型的参数";
+    private static final String BATCH_RETURN_TYPE_ERROR_MESSAGE = "批量缓存方法的返回值必须是Map";
 
     @Autowired(required = false)//如果自定义了使用自定义的，否则使用默认的
     private KeyGenerator keyGenerator = new DefaultKeyGenerator();
@@ -40,6 +55,13 @@ public class MultiLayeringCacheAspect {
     @Autowired
     private ICacheManager iCacheManager;
 
+    /**
+     * 缓存方法的元数据，key是切点方法和目标类，每个方法只解析一次
+     */
+    private final ConcurrentMap<AnnotatedElementKey, CacheOperationMetadata> cacheableMetadataCache = new ConcurrentHashMap<>(64);
+    private final ConcurrentMap<AnnotatedElementKey, CacheOperationMetadata> cachePutMetadataCache = new ConcurrentHashMap<>(64);
+    private final ConcurrentMap<AnnotatedElementKey, CacheOperationMetadata> cacheEvictMetadataCache = new ConcurrentHashMap<>(64);
+
     @Pointcut("@annotation(com.github.roger.annotation.Cacheable)")
     public void cacheablePointCut(){
     }
@@ -57,29 +79,24 @@ public class MultiLayeringCacheAspect {
         //通过非缓存的方式获取数据的操作类接口
         CacheOperationInvoker aopInvoker = CacheAspectUtil.getCacheOpreationInvoker(pJoinPoint);
 
-        //获取正在执行的目标方法
-        Method method = CacheAspectUtil.getSpecificMethod(pJoinPoint);
-
-        //获取方法上的Cacheable注解
-        Cacheable cacheable = AnnotationUtils.findAnnotation(method,Cacheable.class);
+        //获取方法上Cacheable注解的元数据
+        CacheOperationMetadata metadata = getMetadata(cacheableMetadataCache, pJoinPoint, this::buildCacheableMetadata);
         try {
             //执行查询缓存的方法
-            return executeCachealbe(aopInvoker, method, cacheable, pJoinPoint);
+            return executeCachealbe(aopInvoker, metadata, pJoinPoint);
         }catch (SerializationException sex){
             // 如果是序列化异常需要先删除原有缓存
-            String[] cacheNames = cacheable.cacheNames();
-            // 删除缓存
-            delete(cacheNames, cacheable.key(), method, pJoinPoint);
+            delete(metadata, pJoinPoint);
 
             // 忽略操作缓存过程中遇到的异常
-            if (cacheable.ignoreException()) {
+            if (metadata.isIgnoreException()) {
                 log.warn(sex.getMessage(), sex);
                 return aopInvoker.invoke();
             }
             throw sex;
         }catch (Exception ex){
             // 忽略操作缓存过程中遇到的异常
-            if (cacheable.ignoreException()) {
+            if (metadata.isIgnoreException()) {
                 log.warn(ex.getMessage(), ex);
                 return aopInvoker.invoke();
             }
@@ -87,24 +104,155 @@ public class MultiLayeringCacheAspect {
         }
     }
 
-    private Object executeCachealbe(CacheOperationInvoker aopInvoker, Method method, Cacheable cacheable, ProceedingJoinPoint pJoinPoint) {
-        // 解析SpEL表达式获取cacheName和key
-        String[] cacheNames = cacheable.cacheNames();
-        Assert.notEmpty(cacheable.cacheNames(), CACHE_NAME_ERROR_MESSAGE);
-        String cacheName = cacheNames[0];
+    private Object executeCachealbe(CacheOperationInvoker aopInvoker, CacheOperationMetadata metadata, ProceedingJoinPoint pJoinPoint) {
+        if (metadata.isBatch()) {
+            return executeBatchCacheable(metadata, pJoinPoint);
+        }
+        if (metadata.isAsync()) {
+            return executeAsyncCacheable(aopInvoker, metadata, pJoinPoint);
+        }
+        // 解析SpEL表达式获取key
+        Object key = CacheAspectUtil.generateKey(keyGenerator, metadata, pJoinPoint);
+        Assert.notNull(key, () -> String.format(CACHE_KEY_ERROR_MESSAGE, metadata.getKey()));
 
-        Object key = CacheAspectUtil.generateKey(keyGenerator,cacheable.key(), method, pJoinPoint);
-        Assert.notNull(key, String.format(CACHE_KEY_ERROR_MESSAGE, cacheable.key()));
+        // 通Cache获取值
+        return metadata.getCaches()[0].get(key, () -> aopInvoker.invoke());
 
-        // 构造多级缓存配置信息
-        MultiLayeringCacheSetting layeringCacheSetting = CacheAspectUtil.generateMultiLayeringCacheSetting(cacheable.firstCache(),cacheable.secondaryCache());
+    }
 
-        // 通过cacheName和缓存配置获取Cache
-        ICache iCache = iCacheManager.getCache(cacheName, layeringCacheSetting);
+    /**
+     * 异步查询缓存，缓存异步结果完成后的值，返回方法声明的异步类型
+     * <p>
+     * 和同步查询一样，忽略缓存异常时操作缓存失败（如异步线程池已满拒绝查询）改为直接执行被缓存的方法，被缓存的方法自己的异常原样返回
+     * </p>
+     */
+    private Object executeAsyncCacheable(CacheOperationInvoker aopInvoker, CacheOperationMetadata metadata, ProceedingJoinPoint pJoinPoint) {
+        return AsyncCacheSupport.fromFuture(metadata.getMethod().getReturnType(), () -> {
+            if (!metadata.isIgnoreException()) {
+                return getAsync(aopInvoker, metadata, pJoinPoint);
+            }
+            CompletableFuture<Object> future;
+            try {
+                future = getAsync(aopInvoker, metadata, pJoinPoint);
+            } catch (RuntimeException e) {
+                future = new CompletableFuture<>();
+                future.completeExceptionally(e);
+            }
+            return invokeOnCacheException(future, aopInvoker);
+        });
+    }
 
-        // 通Cache获取值
-        return iCache.get(key, () -> aopInvoker.invoke());
+    private CompletableFuture<Object> getAsync(CacheOperationInvoker aopInvoker, CacheOperationMetadata metadata, ProceedingJoinPoint pJoinPoint) {
+        Object key = CacheAspectUtil.generateKey(keyGenerator, metadata, pJoinPoint);
+        Assert.notNull(key, () -> String.format(CACHE_KEY_ERROR_MESSAGE, metadata.getKey()));
 
+        return metadata.getCaches()[0].getAsync(key, () -> {
+            CompletableFuture<Object> loading;
+            try {
+                loading = AsyncCacheSupport.toFuture(aopInvoker.invoke());
+            } catch (CacheOperationInvoker.ThrowableWrapperException e) {
+                throw new CompletionException(metadata.isIgnoreException() ? e : e.getOriginal());
+            }
+            if (!metadata.isIgnoreException()) {
+                return loading;
+            }
+            // 用ThrowableWrapperException包装被缓存方法的异常，和操作缓存的异常区分开
+            return loading.handle((value, e) -> {
+                if (e != null) {
+                    throw new CompletionException(new CacheOperationInvoker.ThrowableWrapperException(unwrap(e)));
+                }
+                return value;
+            });
+        });
+    }
+
+    /**
+     * 异步查询缓存失败时直接执行被缓存的方法，被缓存的方法自己的异常拆掉包装后返回
+     */
+    private CompletableFuture<Object> invokeOnCacheException(CompletableFuture<Object> future, CacheOperationInvoker aopInvoker) {
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        future.whenComplete((value, e) -> {
+            if (e == null) {
+                result.complete(value);
+                return;
+            }
+            Throwable cause = unwrap(e);
+            if (cause instanceof CacheOperationInvoker.ThrowableWrapperException) {
+                result.completeExceptionally(((CacheOperationInvoker.ThrowableWrapperException) cause).getOriginal());
+                return;
+            }
+            log.warn(cause.getMessage(), cause);
+            try {
+                AsyncCacheSupport.toFuture(aopInvoker.invoke()).whenComplete((loaded, ex) -> {
+                    if (ex == null) {
+                        result.complete(loaded);
+                    } else {
+                        result.completeExceptionally(ex);
+                    }
+                });
+            } catch (CacheOperationInvoker.ThrowableWrapperException ex) {
+                result.completeExceptionally(ex.getOriginal());
+            } catch (RuntimeException ex) {
+                result.completeExceptionally(ex);
+            }
+        });
+        return result;
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+
+    /**
+     * 批量查询缓存，只用未命中的key调用被缓存的方法，结果按key的顺序返回
+     */
+    private Object executeBatchCacheable(CacheOperationMetadata metadata, ProceedingJoinPoint pJoinPoint) {
+        Collection<Object> keys = CacheAspectUtil.generateBatchKeys(metadata, pJoinPoint);
+        int parameterIndex = metadata.getBatchKeysExpression().getParameterIndex();
+        Class<?> parameterType = metadata.getMethod().getParameterTypes()[parameterIndex];
+
+        Map<Object, Object> result = metadata.getCaches()[0].getAll(keys, missKeys -> {
+            // 将集合参数替换成未命中的key后调用被缓存的方法
+            Object[] args = pJoinPoint.getArgs().clone();
+            Collection<Object> missArg = CollectionFactory.createCollection(parameterType, missKeys.size());
+            missArg.addAll(missKeys);
+            args[parameterIndex] = missArg;
+            try {
+                return proceedBatch(pJoinPoint, args);
+            } catch (Throwable ex) {
+                ReflectionUtils.rethrowRuntimeException(ex);
+                return null;
+            }
+        });
+
+        Map<Object, Object> orderedResult = new LinkedHashMap<>(result.size() * 4 / 3 + 1);
+        for (Object key : keys) {
+            Object value = result.get(key);
+            if (value != null) {
+                orderedResult.put(key, value);
+            }
+        }
+        return orderedResult;
+    }
+
+    private CacheOperationMetadata buildCacheableMetadata(Method method, Class<?> targetClass) {
+        //获取方法上的Cacheable注解
+        Cacheable cacheable = AnnotationUtils.findAnnotation(method,Cacheable.class);
+        Assert.notEmpty(cacheable.cacheNames(), CACHE_NAME_ERROR_MESSAGE);
+
+        // 通过第一个缓存名称和缓存配置获取Cache
+        MultiLayeringCacheSetting layeringCacheSetting = CacheAspectUtil.generateMultiLayeringCacheSetting(cacheable.firstCache(),cacheable.secondaryCache());
+        ICache[] caches = {iCacheManager.getCache(cacheable.cacheNames()[0], layeringCacheSetting)};
+        CacheOperationMetadata metadata = new CacheOperationMetadata(Cacheable.class, method, targetClass, cacheable.cacheNames(), cacheable.key(),
+                cacheable.batchKeys(), cacheable.ignoreException(), caches, null, false);
+        if (metadata.isBatch()) {
+            // 批量缓存需要替换集合参数，并按key拆分返回值
+            int parameterIndex = metadata.getBatchKeysExpression().getParameterIndex();
+            Assert.isTrue(parameterIndex >= 0 && Collection.class.isAssignableFrom(method.getParameterTypes()[parameterIndex]),
+                    () -> String.format(BATCH_KEYS_ERROR_MESSAGE, cacheable.batchKeys()));
+            Assert.isTrue(method.getReturnType().isAssignableFrom(LinkedHashMap.class), BATCH_RETURN_TYPE_ERROR_MESSAGE);
+        }
+        return metadata;
     }
 
     @Around("cacheEvictPointCut()")
@@ -112,16 +260,13 @@ public class MultiLayeringCacheAspect {
         //通过非缓存的方式获取数据的操作类接口
         CacheOperationInvoker aopInvoker = CacheAspectUtil.getCacheOpreationInvoker(pJoinPoint);
 
-        //获取正在执行的目标方法
-        Method method = CacheAspectUtil.getSpecificMethod(pJoinPoint);
-
-        //获取方法上的Cacheable注解
-        CacheEvict cacheEvict = AnnotationUtils.findAnnotation(method,CacheEvict.class);
+        //获取方法上CacheEvict注解的元数据
+        CacheOperationMetadata metadata = getMetadata(cacheEvictMetadataCache, pJoinPoint, this::buildCacheEvictMetadata);
         try{
-            return executeCacheEvict(aopInvoker,method,cacheEvict,pJoinPoint);
+            return executeCacheEvict(aopInvoker, metadata, pJoinPoint);
         }catch (Exception ex){
             // 忽略操作缓存过程中遇到的异常
-            if (cacheEvict.ignoreException()) {
+            if (metadata.isIgnoreException()) {
                 log.warn(ex.getMessage(), ex);
                 return aopInvoker.invoke();
             }
@@ -129,52 +274,86 @@ public class MultiLayeringCacheAspect {
         }
     }
 
-    private Object executeCacheEvict(CacheOperationInvoker aopInvoker, Method method, CacheEvict cacheEvict, ProceedingJoinPoint pJoinPoint) throws Throwable {
-        // 解析SpEL表达式获取cacheName和key
-        String[] cacheNames = cacheEvict.cacheNames();
-        Assert.notEmpty(cacheEvict.cacheNames(), CACHE_NAME_ERROR_MESSAGE);
+    private Object executeCacheEvict(CacheOperationInvoker aopInvoker, CacheOperationMetadata metadata, ProceedingJoinPoint pJoinPoint) throws Throwable {
         // 判断是否删除所有缓存数据
-        if(cacheEvict.allEntries()){
+        if(metadata.isAllEntries()){
             // 删除所有缓存数据（清空）
-            for (String cacheName : cacheNames) {
-                Collection<ICache> iCaches = iCacheManager.getCache(cacheName);
-                if (CollectionUtils.isEmpty(iCaches)) {
-                    // 如果没有找到Cache就新建一个默认的
-                    ICache iCache = iCacheManager.getCache(cacheName,
-                            new MultiLayeringCacheSetting(new FirstCacheSetting(), new SecondaryCacheSetting()));
+            for (Collection<ICache> iCaches : metadata.getAllCaches()) {
+                for (ICache iCache : iCaches) {
                     iCache.clear();
-                } else {
-                    for (ICache iCache : iCaches) {
-                        iCache.clear();
-                    }
                 }
             }
         }else{
-            delete(cacheNames,cacheEvict.key(),method,pJoinPoint);
+            delete(metadata, pJoinPoint);
         }
         return aopInvoker.invoke();
     }
 
+    private CacheOperationMetadata buildCacheEvictMetadata(Method method, Class<?> targetClass) {
+        //获取方法上的CacheEvict注解
+        CacheEvict cacheEvict = AnnotationUtils.findAnnotation(method,CacheEvict.class);
+        Assert.notEmpty(cacheEvict.cacheNames(), CACHE_NAME_ERROR_MESSAGE);
+        return new CacheOperationMetadata(CacheEvict.class, method, targetClass, cacheEvict.cacheNames(), cacheEvict.key(),
+                cacheEvict.batchKeys(), cacheEvict.ignoreException(), null, getAllCaches(cacheEvict.cacheNames()), cacheEvict.allEntries());
+    }
 
     /**
      * 删除执行缓存名称上的指定key
      * */
-    private void delete(String[] cacheNames, String keySpEL, Method method, ProceedingJoinPoint pJoinPoint) {
-        Object key = CacheAspectUtil.generateKey(keyGenerator,keySpEL, method, pJoinPoint);
-        Assert.notNull(key, String.format(CACHE_KEY_ERROR_MESSAGE, keySpEL));
-        for (String cacheName : cacheNames) {
-            Collection<ICache> iCaches = iCacheManager.getCache(cacheName);
-            if (CollectionUtils.isEmpty(iCaches)) {
+    private void delete(CacheOperationMetadata metadata, ProceedingJoinPoint pJoinPoint) {
+        if (metadata.isBatch()) {
+            deleteAll(metadata, pJoinPoint);
+            return;
+        }
+        Object key = CacheAspectUtil.generateKey(keyGenerator, metadata, pJoinPoint);
+        Assert.notNull(key, () -> String.format(CACHE_KEY_ERROR_MESSAGE, metadata.getKey()));
+        Collection<ICache>[] allCaches = metadata.getAllCaches() != null ? metadata.getAllCaches() : getAllCaches(metadata.getCacheNames());
+        for (Collection<ICache> iCaches : allCaches) {
+            for (ICache iCache : iCaches) {
+                iCache.evict(key);
+            }
+        }
+    }
+
+    /**
+     * 批量删除执行缓存名称上的指定key
+     * */
+    private void deleteAll(CacheOperationMetadata metadata, ProceedingJoinPoint pJoinPoint) {
+        Collection<Object> keys = CacheAspectUtil.generateBatchKeys(metadata, pJoinPoint);
+        if (keys.isEmpty()) {
+            return;
+        }
+        Collection<ICache>[] allCaches = metadata.getAllCaches() != null ? metadata.getAllCaches() : getAllCaches(metadata.getCacheNames());
+        for (Collection<ICache> iCaches : allCaches) {
+            for (ICache iCache : iCaches) {
+                iCache.evictAll(keys);
+            }
+        }
+    }
+
+    /**
+     * 使用替换后的参数调用批量缓存的方法，方法的返回值是key到缓存值的Map
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<Object, Object> proceedBatch(ProceedingJoinPoint pJoinPoint, Object[] args) throws Throwable {
+        return (Map<Object, Object>) pJoinPoint.proceed(args);
+    }
+
+    /**
+     * 获取缓存名称对应的所有缓存，返回的集合会随着新的缓存配置自动更新
+     * */
+    @SuppressWarnings("unchecked")
+    private Collection<ICache>[] getAllCaches(String[] cacheNames) {
+        Collection<ICache>[] allCaches = new Collection[cacheNames.length];
+        for (int i = 0; i < cacheNames.length; i++) {
+            if (CollectionUtils.isEmpty(iCacheManager.getCache(cacheNames[i]))) {
                 // 如果没有找到Cache就新建一个默认的
-                ICache iCache = iCacheManager.getCache(cacheName,
+                iCacheManager.getCache(cacheNames[i],
                         new MultiLayeringCacheSetting(new FirstCacheSetting(), new SecondaryCacheSetting()));
-                iCache.evict(key);
-            } else {
-                for (ICache iCache : iCaches) {
-                    iCache.evict(key);
-                }
             }
+            allCaches[i] = iCacheManager.getCache(cacheNames[i]);
         }
+        return allCaches;
     }
 
     @Around("cachePutPointCut()")
@@ -183,18 +362,15 @@ public class MultiLayeringCacheAspect {
         //通过非缓存的方式获取数据的操作类接口
         CacheOperationInvoker aopInvoker = CacheAspectUtil.getCacheOpreationInvoker(pJoinPoint);
 
-        //获取正在执行的目标方法
-        Method method = CacheAspectUtil.getSpecificMethod(pJoinPoint);
-
-        //获取方法上的CachePut注解
-        CachePut cachePut = AnnotationUtils.findAnnotation(method,CachePut.class);
+        //获取方法上CachePut注解的元数据
+        CacheOperationMetadata metadata = getMetadata(cachePutMetadataCache, pJoinPoint, this::buildCachePutMetadata);
 
         try {
             // 执行查询缓存方法
-            return executeCachePut(aopInvoker, method, cachePut, pJoinPoint);
+            return executeCachePut(aopInvoker, metadata, pJoinPoint);
         } catch (Exception e) {
             // 忽略操作缓存过程中遇到的异常
-            if (cachePut.ignoreException()) {
+            if (metadata.isIgnoreException()) {
                 log.warn(e.getMessage(), e);
                 return aopInvoker.invoke();
             }
@@ -203,25 +379,77 @@ public class MultiLayeringCacheAspect {
 
     }
 
-    private Object executeCachePut(CacheOperationInvoker aopInvoker, Method method, CachePut cachePut, ProceedingJoinPoint pJoinPoint) throws Throwable{
+    private Object executeCachePut(CacheOperationInvoker aopInvoker, CacheOperationMetadata metadata, ProceedingJoinPoint pJoinPoint) throws Throwable{
 
-        // 解析SpEL表达式获取cacheName和key
-        String[] cacheNames = cachePut.cacheNames();
-        Assert.notEmpty(cachePut.cacheNames(), CACHE_NAME_ERROR_MESSAGE);
-
-        Object key = CacheAspectUtil.generateKey(keyGenerator,cachePut.key(), method, pJoinPoint);
-        Assert.notNull(key, String.format(CACHE_KEY_ERROR_MESSAGE, cachePut.key()));
-
-        // 构造多级缓存配置信息
-        MultiLayeringCacheSetting layeringCacheSetting = CacheAspectUtil.generateMultiLayeringCacheSetting(cachePut.firstCache(),cachePut.secondaryCache());
+        // 解析SpEL表达式获取key
+        Object key = CacheAspectUtil.generateKey(keyGenerator, metadata, pJoinPoint);
+        Assert.notNull(key, () -> String.format(CACHE_KEY_ERROR_MESSAGE, metadata.getKey()));
 
         // 指定调用方法获取缓存值
         Object result = aopInvoker.invoke();
-        for (String cacheName : cacheNames) {
-            // 通过cacheName和缓存配置获取Cache
-            ICache iCache = iCacheManager.getCache(cacheName, layeringCacheSetting);
+        if (metadata.isAsync()) {
+            // 异步结果完成后在异步线程池中写缓存，不阻塞完成异步结果的线程；线程池已满时跳过写缓存
+            return AsyncCacheSupport.onSuccess(result, value -> {
+                try {
+                    ThreadTaskUtils.getAsyncExecutor().execute(() -> {
+                        try {
+                            for (ICache iCache : metadata.getCaches()) {
+                                iCache.put(key, value);
+                            }
+                        } catch (RuntimeException e) {
+                            log.warn("异步写入缓存异常。 key={}，异常：{}", key, e.getMessage());
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    log.warn("异步缓存操作的线程池已满，跳过写缓存。 key={}", key);
+                }
+            });
+        }
+        for (ICache iCache : metadata.getCaches()) {
             iCache.put(key, result);
         }
         return result;
     }
+
+    private CacheOperationMetadata buildCachePutMetadata(Method method, Class<?> targetClass) {
+        //获取方法上的CachePut注解
+        CachePut cachePut = AnnotationUtils.findAnnotation(method,CachePut.class);
+        Assert.notEmpty(cachePut.cacheNames(), CACHE_NAME_ERROR_MESSAGE);
+
+        // 通过cacheName和缓存配置获取Cache
+        MultiLayeringCacheSetting layeringCacheSetting = CacheAspectUtil.generateMultiLayeringCacheSetting(cachePut.firstCache(),cachePut.secondaryCache());
+        String[] cacheNames = cachePut.cacheNames();
+        ICache[] caches = new ICache[cacheNames.length];
+        for (int i = 0; i < cacheNames.length; i++) {
+            caches[i] = iCacheManager.getCache(cacheNames[i], layeringCacheSetting);
+        }
+        return new CacheOperationMetadata(CachePut.class, method, targetClass, cacheNames, cachePut.key(),
+                "", cachePut.ignoreException(), caches, null, false);
+    }
+
+    /**
+     * 获取缓存方法的元数据，第一次执行时解析并缓存起来
+     *
+     * @param metadataCache 元数据缓存
+     * @param pJoinPoint    切点
+     * @param builder       元数据解析方法，参数是目标类上的具体方法和目标类
+     * @return {@link CacheOperationMetadata}
+     */
+    private CacheOperationMetadata getMetadata(ConcurrentMap<AnnotatedElementKey, CacheOperationMetadata> metadataCache,
+                                               ProceedingJoinPoint pJoinPoint, MetadataBuilder builder) {
+        Object target = pJoinPoint.getTarget();
+        AnnotatedElementKey cacheKey = new AnnotatedElementKey(((MethodSignature) pJoinPoint.getSignature()).getMethod(),
+                target == null ? null : target.getClass());
+        CacheOperationMetadata metadata = metadataCache.get(cacheKey);
+        if (metadata != null) {
+            return metadata;
+        }
+        return metadataCache.computeIfAbsent(cacheKey, key -> builder.build(CacheAspectUtil.getSpecificMethod(pJoinPoint),
+                target == null ? null : CacheAspectUtil.getTargetClass(target)));
+    }
+
+    @FunctionalInterface
+    private interface MetadataBuilder {
+        CacheOperationMetadata build(Method method, Class<?> targetClass);
+    }
 }
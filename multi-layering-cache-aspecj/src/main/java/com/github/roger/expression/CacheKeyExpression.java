@@ -0,0 +1,288 @@
+package com.github.roger.expression;
+
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.expression.BeanResolver;
+import org.springframework.expression.ConstructorResolver;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.MethodResolver;
+import org.springframework.expression.OperatorOverloader;
+import org.springframework.expression.PropertyAccessor;
+import org.springframework.expression.TypeComparator;
+import org.springframework.expression.TypeConverter;
+import org.springframework.expression.TypeLocator;
+import org.springframework.expression.TypedValue;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelNode;
+import org.springframework.expression.spel.SpelParserConfiguration;
+import org.springframework.expression.spel.ast.BeanReference;
+import org.springframework.expression.spel.ast.CompoundExpression;
+import org.springframework.expression.spel.ast.FunctionReference;
+import org.springframework.expression.spel.ast.MethodReference;
+import org.springframework.expression.spel.ast.PropertyOrFieldReference;
+import org.springframework.expression.spel.ast.VariableReference;
+import org.springframework.expression.spel.standard.SpelExpression;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+import org.springframework.util.Assert;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 缓存方法上key的SpEL表达式，每个方法解析一次
+ * <p>
+ * 表达式使用SpEL编译器的 {@link SpelCompilerMode#MIXED} 模式，执行一定次数后编译成字节码，编译失败时继续解释执行。
+ * 计算时根据表达式选择最轻的方式：
+ * <ul>
+ * <li>只引用一个参数（如"#userId"、"#p0"）：直接返回参数，不经过SpEL</li>
+ * <li>只读取参数（如"#user.userId"、"#type + ':' + #id"）：使用只绑定参数的轻量上下文，不创建根对象和方法上下文</li>
+ * <li>其他表达式（引用#root、方法名、bean等）：和原来一样创建完整的 {@link CacheEvaluationContext}</li>
+ * </ul>
+ * </p>
+ */
+public class CacheKeyExpression {
+
+    private static final ParameterNameDiscoverer PARAMETER_NAME_DISCOVERER = new DefaultParameterNameDiscoverer();
+
+    private static final String ROOT_VARIABLE = "root";
+
+    private static final String THIS_VARIABLE = "this";
+
+    /**
+     * 轻量上下文共用的类型转换、属性访问等配置，创建后只读
+     */
+    private static final StandardEvaluationContext SHARED_CONTEXT = new StandardEvaluationContext();
+
+    static {
+        // 提前初始化延迟创建的属性，之后多线程只读
+        SHARED_CONTEXT.getPropertyAccessors();
+        SHARED_CONTEXT.getConstructorResolvers();
+        SHARED_CONTEXT.getMethodResolvers();
+        SHARED_CONTEXT.getTypeLocator();
+        SHARED_CONTEXT.getTypeConverter();
+    }
+
+    private final SpelExpression expression;
+
+    private final Method method;
+
+    private final Class<?> targetClass;
+
+    /**
+     * 参数名称，下标和参数一致，没有获取到参数名称时为null
+     */
+    private final String[] parameterNames;
+
+    /**
+     * 表达式只引用一个参数时的参数下标，否则是-1
+     */
+    private final int parameterIndex;
+
+    /**
+     * 表达式是否只读取参数
+     */
+    private final boolean parametersOnly;
+
+    /**
+     * @param expression  key的SpEL表达式
+     * @param method      目标类上的具体方法
+     * @param targetClass 目标类
+     */
+    public CacheKeyExpression(String expression, Method method, Class<?> targetClass) {
+        Assert.hasText(expression, "key的SpEL表达式不能为空");
+        SpelParserConfiguration configuration = new SpelParserConfiguration(SpelCompilerMode.MIXED, method.getDeclaringClass().getClassLoader());
+        this.expression = (SpelExpression) new SpelExpressionParser(configuration).parseRaw(expression);
+        this.method = method;
+        this.targetClass = targetClass;
+        this.parameterNames = PARAMETER_NAME_DISCOVERER.getParameterNames(method);
+        SpelNode ast = this.expression.getAST();
+        this.parameterIndex = ast instanceof VariableReference ? parameterIndex(variableName(ast)) : -1;
+        this.parametersOnly = readsParametersOnly(ast, true);
+    }
+
+    /**
+     * 计算缓存key
+     *
+     * @param args   方法参数
+     * @param target 目标对象
+     * @return 缓存key
+     */
+    public Object getValue(Object[] args, Object target) {
+        if (parameterIndex >= 0) {
+            return args[parameterIndex];
+        }
+        if (parametersOnly) {
+            return expression.getValue(new ParameterEvaluationContext(this, args));
+        }
+        CacheExpressionRootObject rootObject = new CacheExpressionRootObject(method, args, target, targetClass);
+        return expression.getValue(new CacheEvaluationContext(rootObject, method, args, PARAMETER_NAME_DISCOVERER));
+    }
+
+    /**
+     * 表达式是否只引用一个参数，直接返回参数
+     */
+    public boolean isDirectParameter() {
+        return parameterIndex >= 0;
+    }
+
+    /**
+     * 表达式只引用一个参数时的参数下标
+     *
+     * @return 参数下标，不是只引用一个参数时返回-1
+     */
+    public int getParameterIndex() {
+        return parameterIndex;
+    }
+
+    /**
+     * 表达式是否只读取参数，使用轻量上下文计算
+     */
+    public boolean isParametersOnly() {
+        return parametersOnly;
+    }
+
+    /**
+     * 根据变量名称获取参数下标，支持参数名称和"p0"、"a0"两种形式，和 {@link CacheEvaluationContext} 一致
+     *
+     * @return 参数下标，不是参数时返回-1
+     */
+    private int parameterIndex(String name) {
+        int count = method.getParameterCount();
+        if (parameterNames != null) {
+            for (int i = 0; i < parameterNames.length; i++) {
+                if (name.equals(parameterNames[i])) {
+                    return i;
+                }
+            }
+        }
+        if (name.length() > 1 && (name.charAt(0) == 'p' || name.charAt(0) == 'a')) {
+            try {
+                int index = Integer.parseInt(name.substring(1));
+                return index >= 0 && index < count ? index : -1;
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 表达式是否只读取方法参数，不访问根对象、bean、自定义函数。给参数赋值只在本次计算中生效，见 {@link ParameterEvaluationContext}
+     *
+     * @param node         语法树节点
+     * @param rootRelative 节点是否直接作用在根对象上（不在属性或方法调用链的后面）
+     */
+    private boolean readsParametersOnly(SpelNode node, boolean rootRelative) {
+        if (node instanceof VariableReference) {
+            String name = variableName(node);
+            return !ROOT_VARIABLE.equals(name) && !THIS_VARIABLE.equals(name) && parameterIndex(name) >= 0;
+        }
+        if (node instanceof BeanReference || node instanceof FunctionReference) {
+            return false;
+        }
+        if (rootRelative && (node instanceof PropertyOrFieldReference || node instanceof MethodReference)) {
+            return false;
+        }
+        for (int i = 0; i < node.getChildCount(); i++) {
+            // 调用链中第一个节点之后的属性和方法作用在前一个节点的结果上，其他子节点（如方法参数）仍然作用在根对象上
+            boolean childRootRelative = !(node instanceof CompoundExpression && i > 0);
+            if (!readsParametersOnly(node.getChild(i), childRootRelative)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String variableName(SpelNode node) {
+        // VariableReference 的字符串形式是"#变量名"
+        return node.toStringAST().substring(1);
+    }
+
+    /**
+     * 只绑定方法参数的轻量上下文，变量按参数名称查找，其他配置使用共用的只读上下文
+     * <p>
+     * 每次计算创建一个上下文，表达式中给变量赋值时保存在当前上下文的变量表中，优先于同名参数，不会修改方法参数
+     * </p>
+     */
+    private static class ParameterEvaluationContext implements EvaluationContext {
+
+        private final CacheKeyExpression keyExpression;
+
+        private final Object[] args;
+
+        /**
+         * 表达式中赋值的变量，大部分表达式不赋值，用到时才创建
+         */
+        private Map<String, Object> variables;
+
+        ParameterEvaluationContext(CacheKeyExpression keyExpression, Object[] args) {
+            this.keyExpression = keyExpression;
+            this.args = args;
+        }
+
+        @Override
+        public Object lookupVariable(String name) {
+            if (variables != null && variables.containsKey(name)) {
+                return variables.get(name);
+            }
+            int index = keyExpression.parameterIndex(name);
+            return index >= 0 && index < args.length ? args[index] : null;
+        }
+
+        @Override
+        public void setVariable(String name, Object value) {
+            if (variables == null) {
+                variables = new HashMap<>();
+            }
+            variables.put(name, value);
+        }
+
+        @Override
+        public TypedValue getRootObject() {
+            return TypedValue.NULL;
+        }
+
+        @Override
+        public List<PropertyAccessor> getPropertyAccessors() {
+            return SHARED_CONTEXT.getPropertyAccessors();
+        }
+
+        @Override
+        public List<ConstructorResolver> getConstructorResolvers() {
+            return SHARED_CONTEXT.getConstructorResolvers();
+        }
+
+        @Override
+        public List<MethodResolver> getMethodResolvers() {
+            return SHARED_CONTEXT.getMethodResolvers();
+        }
+
+        @Override
+        public BeanResolver getBeanResolver() {
+            return null;
+        }
+
+        @Override
+        public TypeLocator getTypeLocator() {
+            return SHARED_CONTEXT.getTypeLocator();
+        }
+
+        @Override
+        public TypeConverter getTypeConverter() {
+            return SHARED_CONTEXT.getTypeConverter();
+        }
+
+        @Override
+        public TypeComparator getTypeComparator() {
+            return SHARED_CONTEXT.getTypeComparator();
+        }
+
+        @Override
+        public OperatorOverloader getOperatorOverloader() {
+            return SHARED_CONTEXT.getOperatorOverloader();
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.github.roger.key;
+
+/**
+ * 编译时生成的缓存key生成器索引，一个类上所有缓存方法的 {@link KeyGenerator} 生成在同一个索引类中
+ * <p>
+ * 索引类由 multi-layering-cache-processor 模块的注解处理器生成，类名是"被注解的类名_CacheKeyGenerators"，
+ * 见 {@link GeneratedKeyGenerators}
+ * </p>
+ */
+public interface CacheKeyGeneratorIndex {
+
+    /**
+     * 获取缓存方法的key生成器
+     *
+     * @param methodKey 缓存方法的标识，格式是"注解名称:方法名(参数类型,...)"，见 {@link GeneratedKeyGenerators#methodKey}
+     * @return {@link KeyGenerator}，没有生成时返回null
+     */
+    KeyGenerator get(String methodKey);
+}
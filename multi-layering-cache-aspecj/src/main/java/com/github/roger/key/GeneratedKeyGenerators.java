@@ -0,0 +1,120 @@
+package com.github.roger.key;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.StringJoiner;
+
+/**
+ * 查找编译时生成的缓存key生成器
+ * <p>
+ * 引入 multi-layering-cache-processor 后，注解处理器会把简单形式的key表达式（如"#id"、"#user.id"、"#a + ':' + #b"）
+ * 生成为普通的Java代码，切面优先使用生成的 {@link KeyGenerator}，不需要在运行时解析和计算SpEL表达式
+ * </p>
+ */
+@Slf4j
+public final class GeneratedKeyGenerators {
+
+    /**
+     * 生成的索引类名后缀
+     */
+    public static final String CLASS_SUFFIX = "_CacheKeyGenerators";
+
+    private GeneratedKeyGenerators() {
+    }
+
+    /**
+     * 查找缓存方法编译时生成的key生成器
+     * <p>
+     * 索引类是按声明了缓存注解的类生成的，注解声明在接口或父类的方法上时，到接口或父类的索引类中查找
+     * </p>
+     *
+     * @param operation 缓存注解类型
+     * @param method    目标类上的具体方法
+     * @return {@link KeyGenerator}，没有生成时返回null
+     */
+    public static KeyGenerator find(Class<? extends Annotation> operation, Method method) {
+        Method annotatedMethod = findAnnotatedMethod(operation, method);
+        if (annotatedMethod == null) {
+            log.debug("缓存方法 {} 没有找到声明了 @{} 注解的方法，使用SpEL表达式计算key", method, operation.getSimpleName());
+            return null;
+        }
+        Class<?> declaringClass = annotatedMethod.getDeclaringClass();
+        String className = indexClassName(declaringClass.getName());
+        if (!ClassUtils.isPresent(className, declaringClass.getClassLoader())) {
+            log.debug("缓存方法 {} 没有编译时生成的索引类 {}，使用SpEL表达式计算key", method, className);
+            return null;
+        }
+        try {
+            Class<?> indexClass = ClassUtils.forName(className, declaringClass.getClassLoader());
+            if (!CacheKeyGeneratorIndex.class.isAssignableFrom(indexClass)) {
+                return null;
+            }
+            KeyGenerator keyGenerator = ((CacheKeyGeneratorIndex) indexClass.newInstance()).get(methodKey(operation, annotatedMethod));
+            if (keyGenerator != null) {
+                log.debug("缓存方法 {} 使用编译时生成的key生成器", method);
+            } else {
+                log.debug("缓存方法 {} 的key表达式没有生成key生成器，使用SpEL表达式计算key", method);
+            }
+            return keyGenerator;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            log.warn("加载编译时生成的key生成器 {} 失败，使用SpEL表达式计算key：{}", className, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 查找直接声明了缓存注解的方法，依次查找方法本身、父类和接口上方法名和参数类型相同的方法
+     *
+     * @return 声明了缓存注解的方法，没有找到时返回null
+     */
+    private static Method findAnnotatedMethod(Class<? extends Annotation> operation, Method method) {
+        if (AnnotationUtils.getAnnotation(method, operation) != null) {
+            return method;
+        }
+        Set<Class<?>> candidates = new LinkedHashSet<>();
+        for (Class<?> clazz = method.getDeclaringClass().getSuperclass(); clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+            candidates.add(clazz);
+        }
+        candidates.addAll(ClassUtils.getAllInterfacesForClassAsSet(method.getDeclaringClass()));
+        for (Class<?> candidate : candidates) {
+            Method candidateMethod = ReflectionUtils.findMethod(candidate, method.getName(), method.getParameterTypes());
+            if (candidateMethod != null && candidateMethod.getDeclaringClass() == candidate
+                    && AnnotationUtils.getAnnotation(candidateMethod, operation) != null) {
+                return candidateMethod;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 索引类名，嵌套类的"$"换成"_"
+     *
+     * @param className 声明了缓存注解的类名
+     * @return 索引类名
+     */
+    public static String indexClassName(String className) {
+        return className.replace('$', '_') + CLASS_SUFFIX;
+    }
+
+    /**
+     * 缓存方法的标识，格式是"注解名称:方法名(参数类型,...)"，参数类型使用 {@link Class#getTypeName()}
+     *
+     * @param operation 缓存注解类型
+     * @param method    方法
+     * @return 缓存方法的标识
+     */
+    public static String methodKey(Class<? extends Annotation> operation, Method method) {
+        StringJoiner parameterTypes = new StringJoiner(",", method.getName() + "(", ")");
+        for (Class<?> parameterType : method.getParameterTypes()) {
+            parameterTypes.add(parameterType.getTypeName());
+        }
+        return operation.getSimpleName() + ":" + parameterTypes;
+    }
+}
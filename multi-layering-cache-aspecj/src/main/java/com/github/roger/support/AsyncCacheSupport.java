@@ -0,0 +1,113 @@
+package com.github.roger.support;
+
+import org.springframework.util.ClassUtils;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 异步返回值的适配，支持 {@link CompletableFuture}、{@link CompletionStage} 和 Reactor 的 {@code Mono}
+ * <p>
+ * 缓存中保存的是异步结果完成后的值，而不是future对象本身；返回给调用方的始终是方法声明的异步类型。
+ * 没有引入Reactor时只支持 {@link CompletionStage}。
+ * </p>
+ */
+public final class AsyncCacheSupport {
+
+    private static final boolean REACTOR_PRESENT = ClassUtils.isPresent("reactor.core.publisher.Mono",
+            AsyncCacheSupport.class.getClassLoader());
+
+    private AsyncCacheSupport() {
+    }
+
+    /**
+     * 方法的返回值是否是支持的异步类型
+     *
+     * @param returnType 方法的返回值类型
+     * @return true 是异步类型
+     */
+    public static boolean isAsync(Class<?> returnType) {
+        if (CompletionStage.class.isAssignableFrom(returnType) && returnType.isAssignableFrom(CompletableFuture.class)) {
+            return true;
+        }
+        return REACTOR_PRESENT && ReactorAdapter.isMono(returnType);
+    }
+
+    /**
+     * 把被缓存方法返回的异步结果转换成 {@link CompletableFuture}
+     *
+     * @param result 被缓存方法的返回值
+     * @return {@link CompletableFuture}，返回值为null时是值为null的future
+     */
+    public static CompletableFuture<Object> toFuture(Object result) {
+        if (result == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        if (result instanceof CompletionStage) {
+            CompletionStage<Object> stage = ((CompletionStage<?>) result).thenApply(value -> value);
+            return stage.toCompletableFuture();
+        }
+        if (REACTOR_PRESENT && ReactorAdapter.isMono(result.getClass())) {
+            return ReactorAdapter.toFuture(result);
+        }
+        throw new IllegalArgumentException("不支持的异步返回值类型: " + result.getClass().getName());
+    }
+
+    /**
+     * 把缓存的异步结果转换成方法声明的异步类型
+     *
+     * @param returnType 方法的返回值类型
+     * @param future     获取缓存的异步结果，Mono在订阅时才执行
+     * @return 方法声明的异步类型的返回值
+     */
+    public static Object fromFuture(Class<?> returnType, Supplier<CompletableFuture<Object>> future) {
+        if (REACTOR_PRESENT && ReactorAdapter.isMono(returnType)) {
+            return ReactorAdapter.fromFuture(future);
+        }
+        return future.get();
+    }
+
+    /**
+     * 在异步结果成功完成时执行操作，返回方法声明的异步类型
+     *
+     * @param result 被缓存方法的返回值
+     * @param action 异步结果成功完成时执行的操作，参数是完成的值；没有值的Mono不执行
+     * @return 方法声明的异步类型的返回值
+     */
+    public static Object onSuccess(Object result, Consumer<Object> action) {
+        if (result instanceof CompletionStage) {
+            ((CompletionStage<?>) result).thenAccept(action);
+            return result;
+        }
+        if (REACTOR_PRESENT && result != null && ReactorAdapter.isMono(result.getClass())) {
+            return ReactorAdapter.onSuccess(result, action);
+        }
+        return result;
+    }
+
+    /**
+     * 隔离对Reactor的引用，没有引入Reactor时不会加载这个类
+     */
+    private static class ReactorAdapter {
+
+        static boolean isMono(Class<?> type) {
+            return Mono.class.isAssignableFrom(type);
+        }
+
+        static CompletableFuture<Object> toFuture(Object mono) {
+            return ((Mono<?>) mono).cast(Object.class).toFuture();
+        }
+
+        static Object fromFuture(Supplier<CompletableFuture<Object>> future) {
+            return Mono.defer(() -> Mono.fromFuture(future.get()));
+        }
+
+        static Object onSuccess(Object mono, Consumer<Object> action) {
+            // doOnSuccess在Mono没有值时也会以null回调，只在发出值时执行
+            return ((Mono<?>) mono).doOnNext(action);
+        }
+    }
+}
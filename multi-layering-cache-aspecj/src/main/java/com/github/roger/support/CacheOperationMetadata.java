@@ -0,0 +1,113 @@
+package com.github.roger.support;
+
+import com.github.roger.expression.CacheKeyExpression;
+import com.github.roger.key.GeneratedKeyGenerators;
+import com.github.roger.key.KeyGenerator;
+import lombok.Getter;
+import org.github.roger.cache.ICache;
+import org.springframework.util.StringUtils;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.Collection;
+
+/**
+ * 缓存方法的元数据，同一个方法只解析一次
+ * <p>
+ * 保存目标方法、缓存注解的属性以及解析好的缓存 {@link ICache}，切面每次执行时只需要按方法查找一次元数据，
+ * 不需要再查找注解、创建缓存配置和通过缓存名称查找缓存
+ * </p>
+ */
+@Getter
+public class CacheOperationMetadata {
+
+    /**
+     * 目标类上的具体方法
+     */
+    private final Method method;
+
+    /**
+     * 目标类
+     */
+    private final Class<?> targetClass;
+
+    /**
+     * 缓存名称
+     */
+    private final String[] cacheNames;
+
+    /**
+     * 缓存key的SpEL表达式
+     */
+    private final String key;
+
+    /**
+     * 编译时根据key表达式生成的key生成器，没有生成时为null
+     */
+    private final KeyGenerator generatedKeyGenerator;
+
+    /**
+     * 解析好的key表达式，没有配置key或者使用编译时生成的key生成器时为null
+     */
+    private final CacheKeyExpression keyExpression;
+
+    /**
+     * 批量缓存key集合的SpEL表达式
+     */
+    private final String batchKeys;
+
+    /**
+     * 解析好的批量缓存key集合表达式，没有配置batchKeys时为null
+     */
+    private final CacheKeyExpression batchKeysExpression;
+
+    /**
+     * 方法的返回值是否是异步类型，见 {@link AsyncCacheSupport}
+     */
+    private final boolean async;
+
+    /**
+     * 是否忽略操作缓存中遇到的异常
+     */
+    private final boolean ignoreException;
+
+    /**
+     * 按注解上的缓存配置获取的缓存，CachePut和cacheNames一一对应，Cacheable只有第一个缓存名称的缓存，
+     * 删除缓存的操作没有缓存配置，为null
+     */
+    private final ICache[] caches;
+
+    /**
+     * 缓存名称对应的所有缓存（不同缓存配置），和cacheNames一一对应，只有删除缓存的操作才有
+     */
+    private final Collection<ICache>[] allCaches;
+
+    /**
+     * 是否删除缓存名称下的所有缓存，只有删除缓存的操作才有
+     */
+    private final boolean allEntries;
+
+    public CacheOperationMetadata(Class<? extends Annotation> operation, Method method, Class<?> targetClass, String[] cacheNames, String key,
+                                  String batchKeys, boolean ignoreException, ICache[] caches, Collection<ICache>[] allCaches, boolean allEntries) {
+        this.method = method;
+        this.targetClass = targetClass;
+        this.cacheNames = cacheNames;
+        this.key = key;
+        this.generatedKeyGenerator = StringUtils.hasText(key) ? GeneratedKeyGenerators.find(operation, method) : null;
+        this.keyExpression = StringUtils.hasText(key) && generatedKeyGenerator == null ? new CacheKeyExpression(key, method, targetClass) : null;
+        this.batchKeys = batchKeys;
+        this.batchKeysExpression = StringUtils.hasText(batchKeys) ? new CacheKeyExpression(batchKeys, method, targetClass) : null;
+        this.async = AsyncCacheSupport.isAsync(method.getReturnType());
+        this.ignoreException = ignoreException;
+        this.caches = caches;
+        this.allCaches = allCaches;
+        this.allEntries = allEntries;
+    }
+
+    /**
+     * 是否是批量缓存操作
+     */
+    public boolean isBatch() {
+        return batchKeysExpression != null;
+    }
+}
@@ -2,31 +2,28 @@ package com.github.roger.utils;
 
 import com.github.roger.annotation.FirstCache;
 import com.github.roger.annotation.SecondaryCache;
-import com.github.roger.expression.CacheOperationExpressionEvaluator;
 import com.github.roger.key.KeyGenerator;
 import com.github.roger.support.CacheOperationInvoker;
+import com.github.roger.support.CacheOperationMetadata;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.reflect.MethodSignature;
 import org.github.roger.settings.FirstCacheSetting;
 import org.github.roger.settings.MultiLayeringCacheSetting;
 import org.github.roger.settings.SecondaryCacheSetting;
 import org.springframework.aop.framework.AopProxyUtils;
-import org.springframework.context.expression.AnnotatedElementKey;
 import org.springframework.core.BridgeMethodResolver;
-import org.springframework.expression.EvaluationContext;
+import org.springframework.util.Assert;
 import org.springframework.util.ClassUtils;
-import org.springframework.util.StringUtils;
+import org.springframework.util.ObjectUtils;
 
 import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Objects;
 
 public class CacheAspectUtil {
 
-    /**
-     * SpEL表达式计算器
-     */
-    private static final CacheOperationExpressionEvaluator evaluator = new CacheOperationExpressionEvaluator();
-
     public static CacheOperationInvoker getCacheOpreationInvoker(ProceedingJoinPoint pJoinPoint) {
         //就是返回一个CacheOperationInvoker接口实现类，也即实现invoker方法
         return () -> {
@@ -54,22 +51,38 @@ public class CacheAspectUtil {
         return specificMethod;
     }
 
-    public static Object generateKey(KeyGenerator keyGenerator, String keySpEl, Method method, ProceedingJoinPoint pJoinPoint) {
-
-        if(StringUtils.hasText(keySpEl)){
-            // 获取注解上的key属性值
-            Class<?> targetClass = getTargetClass(pJoinPoint.getTarget());
-            EvaluationContext evaluationContext = evaluator.createEvaluationContext(
-                    method,pJoinPoint.getArgs(),pJoinPoint.getTarget(),
-                    targetClass,CacheOperationExpressionEvaluator.NO_RESULT);
-            AnnotatedElementKey methodCacheKey = new AnnotatedElementKey(method, targetClass);
-
-            Object keyValue = evaluator.key(keySpEl,methodCacheKey,evaluationContext);
-
-            return Objects.isNull(keyValue) ? "null" : keyValue;
+    /**
+     * 使用缓存方法的元数据生成缓存key，优先使用编译时生成的key生成器，其次是解析好的key表达式
+     *
+     * @param metadata 缓存方法的元数据 {@link CacheOperationMetadata}
+     */
+    public static Object generateKey(KeyGenerator keyGenerator, CacheOperationMetadata metadata, ProceedingJoinPoint pJoinPoint) {
+
+        Object keyValue;
+        if (metadata.getGeneratedKeyGenerator() != null) {
+            keyValue = metadata.getGeneratedKeyGenerator().generate(pJoinPoint.getTarget(), metadata.getMethod(), pJoinPoint.getArgs());
+        } else if (metadata.getKeyExpression() != null) {
+            keyValue = metadata.getKeyExpression().getValue(pJoinPoint.getArgs(), pJoinPoint.getTarget());
+        } else {
+            return keyGenerator.generate(pJoinPoint.getTarget(), metadata.getMethod(), pJoinPoint.getArgs());
         }
+        return Objects.isNull(keyValue) ? "null" : keyValue;
+    }
 
-        return keyGenerator.generate(pJoinPoint.getTarget(), method, pJoinPoint.getArgs());
+    /**
+     * 计算批量缓存的key集合，表达式的结果可以是集合或者数组
+     *
+     * @param metadata 缓存方法的元数据 {@link CacheOperationMetadata}
+     * @return 缓存key集合
+     */
+    public static Collection<Object> generateBatchKeys(CacheOperationMetadata metadata, ProceedingJoinPoint pJoinPoint) {
+        Object keys = metadata.getBatchKeysExpression().getValue(pJoinPoint.getArgs(), pJoinPoint.getTarget());
+        Assert.notNull(keys, () -> String.format("批量缓存的key集合 %s 不能为NULL", metadata.getBatchKeys()));
+        if (keys instanceof Collection) {
+            return Collections.unmodifiableCollection((Collection<?>) keys);
+        }
+        Assert.isTrue(keys.getClass().isArray(), () -> String.format("批量缓存的key集合 %s 必须是集合或者数组", metadata.getBatchKeys()));
+        return Arrays.asList(ObjectUtils.toObjectArray(keys));
     }
 
     /**
@@ -90,10 +103,23 @@ public class CacheAspectUtil {
 
         FirstCacheSetting firstCacheSetting = new FirstCacheSetting(firstCache.initialCapacity(), firstCache.maximumSize(),
                 firstCache.expireTime(), firstCache.timeUnit(), firstCache.expireMode());
+        firstCacheSetting.setType(firstCache.type());
+        firstCacheSetting.setOffHeapMaxBytes(firstCache.offHeapMaxBytes());
 
         SecondaryCacheSetting secondaryCacheSetting = new SecondaryCacheSetting(secondaryCache.expireTime(),
                 secondaryCache.preloadTime(), secondaryCache.timeUnit(), secondaryCache.forceRefresh(),
                 secondaryCache.isUsePrefix(),secondaryCache.isAllowNullValue(), secondaryCache.magnification());
+        secondaryCacheSetting.setRefreshPolicy(secondaryCache.refreshPolicy());
+        secondaryCacheSetting.setBeta(secondaryCache.beta());
+        secondaryCacheSetting.setMaxStaleness(secondaryCache.maxStaleness());
+        secondaryCacheSetting.setClearBatchSize(secondaryCache.clearBatchSize());
+        secondaryCacheSetting.setClearBatchPause(secondaryCache.clearBatchPause());
+        secondaryCacheSetting.setAsyncClear(secondaryCache.asyncClear());
+        secondaryCacheSetting.setUseGeneration(secondaryCache.useGeneration());
+        secondaryCacheSetting.setCompress(secondaryCache.compress());
+        secondaryCacheSetting.setCompressThreshold(secondaryCache.compressThreshold());
+        secondaryCacheSetting.setCompactKey(secondaryCache.compactKey());
+        secondaryCacheSetting.setKeyDigestThreshold(secondaryCache.keyDigestThreshold());
 
         return new MultiLayeringCacheSetting(firstCacheSetting,secondaryCacheSetting);
     }
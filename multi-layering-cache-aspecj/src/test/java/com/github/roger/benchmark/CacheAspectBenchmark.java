@@ -0,0 +1,91 @@
+package com.github.roger.benchmark;
+
+import com.github.roger.annotation.Cacheable;
+import com.github.roger.annotation.FirstCache;
+import com.github.roger.annotation.SecondaryCache;
+import com.github.roger.cahce.config.ICacheManagerConfig;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.aop.framework.Advised;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对比缓存命中一级缓存时，经过切面的调用和直接调用目标方法的开销，两者的差就是切面本身的开销。
+ * <p>
+ * 切面按方法缓存了注解解析结果和缓存对象，稳定后每次调用只查找一次方法元数据。
+ * 需要本地启动redis(127.0.0.1:6379)，直接运行main方法即可
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CacheAspectBenchmark {
+
+    private static final long USER_ID = 10086L;
+
+    private AnnotationConfigApplicationContext context;
+
+    private BenchmarkService advised;
+
+    private BenchmarkService unadvised;
+
+    @Setup
+    public void setup() throws Exception {
+        context = new AnnotationConfigApplicationContext(BenchmarkConfig.class);
+        advised = context.getBean(BenchmarkService.class);
+        unadvised = (BenchmarkService) ((Advised) advised).getTargetSource().getTarget();
+        // 预先加载到缓存，之后的调用都命中一级缓存
+        advised.get(USER_ID);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Object advised() {
+        return advised.get(USER_ID);
+    }
+
+    @Benchmark
+    public Object unadvised() {
+        return unadvised.get(USER_ID);
+    }
+
+    public static class BenchmarkService {
+
+        @Cacheable(value = "benchmark:aspect", key = "#id",
+                firstCache = @FirstCache(expireTime = 1, timeUnit = TimeUnit.HOURS),
+                secondaryCache = @SecondaryCache(expireTime = 2, preloadTime = 1, timeUnit = TimeUnit.HOURS))
+        public String get(long id) {
+            return "value" + id;
+        }
+    }
+
+    @Configuration
+    @Import(ICacheManagerConfig.class)
+    public static class BenchmarkConfig {
+
+        @Bean
+        public BenchmarkService benchmarkService() {
+            return new BenchmarkService();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CacheAspectBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class).build()).run();
+    }
+}
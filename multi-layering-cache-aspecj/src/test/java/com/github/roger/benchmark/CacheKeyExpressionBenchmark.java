@@ -0,0 +1,70 @@
+package com.github.roger.benchmark;
+
+import com.github.roger.domain.User;
+import com.github.roger.expression.CacheKeyExpression;
+import com.github.roger.expression.CacheOperationExpressionEvaluator;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.context.expression.AnnotatedElementKey;
+import org.springframework.expression.EvaluationContext;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对比计算缓存key的开销：旧的方式每次创建完整的上下文并解释执行，
+ * 新的方式按表达式选择直接取参数、只绑定参数的轻量上下文，并且表达式会被编译。
+ * <p>
+ * 不需要redis，直接运行main方法即可
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CacheKeyExpressionBenchmark {
+
+    @Param({"#userId", "#user.userId + ':' + #userId"})
+    private String key;
+
+    private final CacheOperationExpressionEvaluator evaluator = new CacheOperationExpressionEvaluator();
+
+    private Method method;
+
+    private Object[] args;
+
+    private CacheKeyExpression keyExpression;
+
+    @Setup
+    public void setup() throws NoSuchMethodException {
+        method = CacheKeyExpressionBenchmark.class.getDeclaredMethod("getUser", long.class, User.class);
+        args = new Object[]{10086L, new User()};
+        keyExpression = new CacheKeyExpression(key, method, CacheKeyExpressionBenchmark.class);
+    }
+
+    @Benchmark
+    public Object legacy() {
+        EvaluationContext evaluationContext = evaluator.createEvaluationContext(method, args, this,
+                CacheKeyExpressionBenchmark.class, CacheOperationExpressionEvaluator.NO_RESULT);
+        return evaluator.key(key, new AnnotatedElementKey(method, CacheKeyExpressionBenchmark.class), evaluationContext);
+    }
+
+    @Benchmark
+    public Object compiled() {
+        return keyExpression.getValue(args, this);
+    }
+
+    public User getUser(long userId, User user) {
+        return user;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CacheKeyExpressionBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class).build()).run();
+    }
+}
@@ -5,6 +5,10 @@ import com.github.roger.domain.User;
 import com.github.roger.service.impl.UserServiceImpl;
 import lombok.extern.log4j.Log4j;
 import lombok.extern.slf4j.Slf4j;
+import org.github.roger.MultiLayeringCache;
+import org.github.roger.cache.ICache;
+import org.github.roger.concurrent.ThreadTaskUtils;
+import org.github.roger.manager.ICacheManager;
 import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -13,6 +17,18 @@ import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
 // SpringJUnit4ClassRunner再Junit环境下提供Spring TestContext Framework的功能。
 @RunWith(SpringJUnit4ClassRunner.class)
 // @ContextConfiguration用来加载配置ApplicationContext，其中classes用来加载配置类
@@ -24,6 +40,8 @@ public class CacheAspectTest {
     private UserServiceImpl userService;
     @Autowired
     private RedisTemplate<String, Object> redisTemplate;
+    @Autowired
+    private ICacheManager cacheManager;
 
 
     @Test
@@ -65,6 +83,101 @@ public class CacheAspectTest {
         userService.getUserNoKey(123,new String[]{"w","y","z"});
     }
 
+    @Test
+    public void testBatchGetUser() {
+        userService.evictUsers(Arrays.asList(201L, 202L, 203L));
+        sleep(1);
+        userService.getLoadedUserIds().clear();
+
+        Map<Long, User> users = userService.getUserByIds(Arrays.asList(201L, 202L));
+        Assert.assertEquals(Arrays.asList(201L, 202L), new ArrayList<>(users.keySet()));
+        Assert.assertEquals(Arrays.asList(201L, 202L), userService.getLoadedUserIds());
+
+        // 只用未命中的key调用被缓存的方法，结果按请求的顺序返回
+        users = userService.getUserByIds(Arrays.asList(203L, 201L, 202L));
+        Assert.assertEquals(Arrays.asList(203L, 201L, 202L), new ArrayList<>(users.keySet()));
+        Assert.assertEquals(203L, users.get(203L).getUserId());
+        Assert.assertEquals(Arrays.asList(201L, 202L, 203L), userService.getLoadedUserIds());
+
+        // 批量删除后重新加载
+        userService.evictUsers(Arrays.asList(201L, 202L));
+        // 一级缓存通过redis消息异步删除，等待消息处理完成
+        sleep(1);
+        userService.getLoadedUserIds().clear();
+        userService.getUserByIds(Arrays.asList(201L, 202L, 203L));
+        Assert.assertEquals(Arrays.asList(201L, 202L), userService.getLoadedUserIds());
+    }
+
+    @Test
+    public void testGetUserAsync() throws Exception {
+        redisTemplate.delete(Arrays.asList("user:async:301", "user:async:302"));
+        userService.getLoadedUserIds().clear();
+
+        // 缓存的是异步结果完成后的值，不是future本身
+        CompletableFuture<User> future = userService.getUserAsync(301);
+        Assert.assertEquals(301L, future.get(5, TimeUnit.SECONDS).getUserId());
+        Object cached = redisTemplate.opsForValue().get("user:async:301");
+        Assert.assertNotNull(cached);
+        Assert.assertFalse(cached instanceof CompletableFuture);
+        Assert.assertEquals(301L, userService.getUserAsync(301).get(5, TimeUnit.SECONDS).getUserId());
+        Assert.assertEquals(Collections.singletonList(301L), userService.getLoadedUserIds());
+
+        // Mono在订阅时才查询缓存
+        Mono<User> mono = userService.getUserMono(302);
+        Assert.assertEquals(1, userService.getLoadedUserIds().size());
+        Assert.assertEquals(302L, mono.block().getUserId());
+        Assert.assertEquals(302L, userService.getUserMono(302).block().getUserId());
+        Assert.assertEquals(Arrays.asList(301L, 302L), userService.getLoadedUserIds());
+    }
+
+    @Test
+    public void testPutUserMono() {
+        redisTemplate.delete(Arrays.asList("user:async:put:305", "user:async:put:306"));
+
+        Assert.assertEquals(305L, userService.updateUserMono(305, true).block().getUserId());
+        // 没有值的Mono不写缓存
+        Assert.assertNull(userService.updateUserMono(306, false).block());
+        // 异步线程池中写缓存
+        sleep(1);
+        Assert.assertNotNull(redisTemplate.opsForValue().get("user:async:put:305"));
+        Assert.assertFalse(redisTemplate.hasKey("user:async:put:306"));
+    }
+
+    @Test
+    public void testGetUserAsyncRejected() throws Exception {
+        redisTemplate.delete(Arrays.asList("user:async:303", "user:async:ignore:304"));
+        userService.getLoadedUserIds().clear();
+        // 先调用一次创建缓存
+        userService.getUserAsync(300).get(5, TimeUnit.SECONDS);
+        userService.getUserMonoIgnoreException(300).block();
+        List<ICache> caches = new ArrayList<>(cacheManager.getCache("user:async"));
+        caches.addAll(cacheManager.getCache("user:async:ignore"));
+        for (ICache cache : caches) {
+            ((MultiLayeringCache) cache).setAsyncExecutor(command -> {
+                throw new RejectedExecutionException("线程池已满");
+            });
+        }
+        try {
+            userService.getLoadedUserIds().clear();
+            // 不忽略缓存异常时返回失败的结果
+            try {
+                userService.getUserAsync(303).get(5, TimeUnit.SECONDS);
+                Assert.fail();
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof RejectedExecutionException);
+            }
+            Assert.assertTrue(userService.getLoadedUserIds().isEmpty());
+
+            // 忽略缓存异常时和同步方法一样直接执行被缓存的方法
+            Assert.assertEquals(304L, userService.getUserMonoIgnoreException(304).block().getUserId());
+            Assert.assertEquals(Collections.singletonList(304L), userService.getLoadedUserIds());
+        } finally {
+            for (ICache cache : caches) {
+                ((MultiLayeringCache) cache).setAsyncExecutor(ThreadTaskUtils.getAsyncExecutor());
+            }
+        }
+    }
+
     private void sleep(int time) {
         try {
             Thread.sleep(time * 1000);
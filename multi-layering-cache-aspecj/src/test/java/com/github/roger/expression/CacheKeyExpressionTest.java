@@ -0,0 +1,51 @@
+package com.github.roger.expression;
+
+import com.github.roger.domain.User;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+
+public class CacheKeyExpressionTest {
+
+    @Test
+    public void testEvaluationMode() throws Exception {
+        Method method = CacheKeyExpressionTest.class.getDeclaredMethod("getUser", long.class, User.class);
+        User user = new User();
+        user.setUserId(10086L);
+        Object[] args = {1L, user};
+
+        CacheKeyExpression direct = new CacheKeyExpression("#userId", method, CacheKeyExpressionTest.class);
+        Assert.assertTrue(direct.isDirectParameter());
+        Assert.assertEquals(1L, direct.getValue(args, this));
+        Assert.assertEquals(1L, new CacheKeyExpression("#p0", method, CacheKeyExpressionTest.class).getValue(args, this));
+
+        CacheKeyExpression parameters = new CacheKeyExpression("#user.userId + ':' + #a0", method, CacheKeyExpressionTest.class);
+        Assert.assertFalse(parameters.isDirectParameter());
+        Assert.assertTrue(parameters.isParametersOnly());
+        // 执行足够多次后表达式会被编译，编译前后的结果一致
+        for (int i = 0; i < 200; i++) {
+            Assert.assertEquals("10086:1", parameters.getValue(args, this));
+        }
+
+        CacheKeyExpression root = new CacheKeyExpression("#root.methodName + #userId", method, CacheKeyExpressionTest.class);
+        Assert.assertFalse(root.isParametersOnly());
+        Assert.assertEquals("getUser1", root.getValue(args, this));
+        Assert.assertFalse(new CacheKeyExpression("methodName", method, CacheKeyExpressionTest.class).isParametersOnly());
+        Assert.assertFalse(new CacheKeyExpression("#user.lastNameList.?[length() > 1]", method, CacheKeyExpressionTest.class).isParametersOnly());
+
+        // 给参数赋值只在本次计算中生效，和完整上下文的结果一致
+        CacheKeyExpression assign = new CacheKeyExpression("(#userId = #userId + 1) + ':' + #userId", method, CacheKeyExpressionTest.class);
+        Assert.assertTrue(assign.isParametersOnly());
+        for (int i = 0; i < 200; i++) {
+            Assert.assertEquals("2:2", assign.getValue(args, this));
+        }
+        Assert.assertEquals(1L, args[0]);
+        Assert.assertEquals("2:2getUser", new CacheKeyExpression("(#userId = #userId + 1) + ':' + #userId + #root.methodName",
+                method, CacheKeyExpressionTest.class).getValue(args, this));
+    }
+
+    private User getUser(long userId, User user) {
+        return user;
+    }
+}
@@ -1,16 +1,31 @@
 package com.github.roger.service.impl;
 
+import com.github.roger.annotation.CacheEvict;
+import com.github.roger.annotation.CachePut;
 import com.github.roger.annotation.Cacheable;
 import com.github.roger.annotation.FirstCache;
 import com.github.roger.annotation.SecondaryCache;
 import com.github.roger.domain.User;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 
 @Slf4j
 public class UserServiceImpl {
 
+    /**
+     * 批量缓存方法实际查询过的userId
+     */
+    @Getter
+    private final List<Long> loadedUserIds = new CopyOnWriteArrayList<>();
 
     @Cacheable(value = "user:info", key = "#userId", ignoreException = false,
             firstCache = @FirstCache(expireTime = 4, timeUnit = TimeUnit.SECONDS),
@@ -49,4 +64,78 @@ public class UserServiceImpl {
         return user;
     }
 
+    @Cacheable(value = "user:batch", batchKeys = "#userIds", ignoreException = false,
+            firstCache = @FirstCache(expireTime = 4, timeUnit = TimeUnit.SECONDS),
+            secondaryCache = @SecondaryCache(expireTime = 100, preloadTime = 30, timeUnit = TimeUnit.SECONDS))
+    public Map<Long, User> getUserByIds(List<Long> userIds) {
+        log.debug("测试批量缓存方法，只查询未命中的userId：{}", userIds);
+        loadedUserIds.addAll(userIds);
+        Map<Long, User> users = new LinkedHashMap<>();
+        for (Long userId : userIds) {
+            User user = new User();
+            user.setUserId(userId);
+            users.put(userId, user);
+        }
+        return users;
+    }
+
+    @CacheEvict(value = "user:batch", batchKeys = "#userIds")
+    public void evictUsers(Collection<Long> userIds) {
+        log.debug("测试批量删除缓存：{}", userIds);
+    }
+
+    @Cacheable(value = "user:async", key = "#userId", ignoreException = false,
+            firstCache = @FirstCache(expireTime = 4, timeUnit = TimeUnit.SECONDS),
+            secondaryCache = @SecondaryCache(expireTime = 100, preloadTime = 30, timeUnit = TimeUnit.SECONDS))
+    public CompletableFuture<User> getUserAsync(long userId) {
+        log.debug("测试返回CompletableFuture的缓存方法");
+        loadedUserIds.add(userId);
+        return CompletableFuture.supplyAsync(() -> {
+            User user = new User();
+            user.setUserId(userId);
+            return user;
+        });
+    }
+
+    @Cacheable(value = "user:async:ignore", key = "#userId",
+            firstCache = @FirstCache(expireTime = 4, timeUnit = TimeUnit.SECONDS),
+            secondaryCache = @SecondaryCache(expireTime = 100, preloadTime = 30, timeUnit = TimeUnit.SECONDS))
+    public Mono<User> getUserMonoIgnoreException(long userId) {
+        log.debug("测试忽略缓存异常的异步缓存方法");
+        loadedUserIds.add(userId);
+        return Mono.fromSupplier(() -> {
+            User user = new User();
+            user.setUserId(userId);
+            return user;
+        });
+    }
+
+    @Cacheable(value = "user:async", key = "#userId", ignoreException = false,
+            firstCache = @FirstCache(expireTime = 4, timeUnit = TimeUnit.SECONDS),
+            secondaryCache = @SecondaryCache(expireTime = 100, preloadTime = 30, timeUnit = TimeUnit.SECONDS))
+    public Mono<User> getUserMono(long userId) {
+        log.debug("测试返回Mono的缓存方法");
+        loadedUserIds.add(userId);
+        return Mono.fromSupplier(() -> {
+            User user = new User();
+            user.setUserId(userId);
+            return user;
+        });
+    }
+
+    @CachePut(value = "user:async:put", key = "#userId",
+            firstCache = @FirstCache(expireTime = 4, timeUnit = TimeUnit.SECONDS),
+            secondaryCache = @SecondaryCache(expireTime = 100, preloadTime = 30,
+                    timeUnit = TimeUnit.SECONDS, isAllowNullValue = true))
+    public Mono<User> updateUserMono(long userId, boolean exists) {
+        log.debug("测试返回Mono的更新缓存方法");
+        if (!exists) {
+            return Mono.empty();
+        }
+        return Mono.fromSupplier(() -> {
+            User user = new User();
+            user.setUserId(userId);
+            return user;
+        });
+    }
 }
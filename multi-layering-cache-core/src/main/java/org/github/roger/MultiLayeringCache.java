@@ -1,19 +1,38 @@
 package org.github.roger;
 
-import com.alibaba.fastjson.JSON;
 import lombok.extern.slf4j.Slf4j;
 import org.github.roger.cache.AbstractValueAdaptingCache;
 import org.github.roger.cache.ICache;
 import org.github.roger.cache.caffeine.CaffeineCache;
 import org.github.roger.cache.redis.RedisCache;
+import org.github.roger.concurrent.ThreadTaskUtils;
 import org.github.roger.enumeration.RedisPubSubMessageType;
+import org.github.roger.exception.RedisUnavailableException;
+import org.github.roger.jfr.CacheEvents;
 import org.github.roger.listener.RedisPublisher;
 import org.github.roger.message.RedisPubSubMessage;
+import org.github.roger.settings.FirstCacheSetting;
 import org.github.roger.settings.MultiLayeringCacheSetting;
+import org.github.roger.support.CacheStats;
+import org.github.roger.support.CachedValue;
+import org.github.roger.support.ClearProgress;
+import org.github.roger.support.DiagnosticLog;
+import org.github.roger.support.NullValue;
+import org.github.roger.support.RedisCircuitBreaker;
+import org.github.roger.trace.CacheTracing;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.listener.ChannelTopic;
 
+import java.util.*;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 @Slf4j
 public class MultiLayeringCache extends AbstractValueAdaptingCache {
@@ -30,6 +49,36 @@ public class MultiLayeringCache extends AbstractValueAdaptingCache {
     private boolean useFirstCache = true;
     private MultiLayeringCacheSetting multilayeringCacheSetting;
 
+    /**
+     * 正在执行的异步加载，合并同一个key并发的异步调用
+     */
+    private final ConcurrentMap<Object, CompletableFuture<Object>> asyncCalls = new ConcurrentHashMap<>();
+
+    /**
+     * 异步查询和写入二级缓存的线程池
+     */
+    private Executor asyncExecutor = ThreadTaskUtils.getAsyncExecutor();
+
+    /**
+     * 一级缓存的逻辑有效时间，单位毫秒，开启了过期后继续使用旧值才有效
+     */
+    private long firstCacheExpireTime;
+
+    /**
+     * 是否开启过期后继续使用旧值，开启后一级缓存保存带逻辑过期时间的包装值 {@link CachedValue}
+     */
+    private boolean serveStale;
+
+    /**
+     * redis熔断器，为null表示没有开启熔断
+     */
+    private RedisCircuitBreaker circuitBreaker;
+
+    /**
+     * 缓存名称的统计信息，记录二级缓存之外执行被缓存方法（异步加载、熔断中直接加载）的耗时
+     */
+    private final CacheStats stats;
+
     public MultiLayeringCache(RedisTemplate<String,Object> redisTemplate, AbstractValueAdaptingCache firstCache, AbstractValueAdaptingCache secondCache, MultiLayeringCacheSetting multilayeringCacheSetting) {
         this(secondCache.getName(),redisTemplate,firstCache,secondCache,true,multilayeringCacheSetting);
     }
@@ -41,6 +90,13 @@ public class MultiLayeringCache extends AbstractValueAdaptingCache {
         this.secondCache = secondCache;
         this.useFirstCache = useFirstCache;
         this.multilayeringCacheSetting = multilayeringCacheSetting;
+        this.stats = CacheStats.getStats(name);
+        if (multilayeringCacheSetting != null && multilayeringCacheSetting.getSecondaryCacheSetting() != null
+                && multilayeringCacheSetting.getFirstCacheSetting() != null) {
+            FirstCacheSetting firstCacheSetting = multilayeringCacheSetting.getFirstCacheSetting();
+            this.serveStale = multilayeringCacheSetting.getSecondaryCacheSetting().getMaxStaleness() > 0;
+            this.firstCacheExpireTime = firstCacheSetting.getTimeUnit().toMillis(firstCacheSetting.getExpireTime());
+        }
     }
 
     public Object getRealCache() {
@@ -48,73 +104,567 @@ public class MultiLayeringCache extends AbstractValueAdaptingCache {
     }
 
     public Object get(Object key) {
-        Object storeValue = null;
-        if(useFirstCache){
-            storeValue = firstCache.get(key);
-            log.debug("查询一级缓存。 key={},返回值是:{}", key, JSON.toJSONString(storeValue));
-        }
-        if(storeValue == null){
-            storeValue = secondCache.get(key);
-            firstCache.putIfAbsent(key, storeValue);
-            log.debug("查询二级缓存,并将数据放到一级缓存。 key={},返回值是:{}", key, JSON.toJSONString(storeValue));
+        Object event = CacheEvents.begin(CacheEvents.Type.GET, "get");
+        Object span = CacheTracing.startSpan("cache.get", getName());
+        try {
+            Object storeValue = null;
+            CachedValue stale = null;
+            if(useFirstCache){
+                storeValue = firstCache.get(key);
+                log.debug("查询一级缓存。 key={},返回值是:{}", key, DiagnosticLog.json(storeValue));
+                traceFirstCache(span, storeValue);
+                if (storeValue instanceof CachedValue) {
+                    stale = (CachedValue) storeValue;
+                    storeValue = stale.isStale() ? null : stale.getValue();
+                }
+            }
+            if(storeValue == null){
+                if (!isSecondCacheAvailable()) {
+                    // redis熔断中，只使用一级缓存
+                    commitGet(event, span, key, CacheEvents.LAYER_FIRST, stale == null ? CacheEvents.OUTCOME_MISS : CacheEvents.OUTCOME_STALE);
+                    return stale == null ? null : fromStoreValue(stale.getValue());
+                }
+                try {
+                    storeValue = getSecondCache(key);
+                } catch (RuntimeException e) {
+                    commitGetError(event, span, key, stale);
+                    if (stale == null && isRedisUnavailable(e)) {
+                        return null;
+                    }
+                    return fromStoreValue(staleOrThrow(key, stale, e));
+                }
+                putFirstCache(key, storeValue);
+                log.debug("查询二级缓存,并将数据放到一级缓存。 key={},返回值是:{}", key, DiagnosticLog.json(storeValue));
+                commitGet(event, span, key, CacheEvents.LAYER_SECOND, storeValue == null ? CacheEvents.OUTCOME_MISS : CacheEvents.OUTCOME_HIT);
+            } else {
+                commitGet(event, span, key, CacheEvents.LAYER_FIRST, CacheEvents.OUTCOME_HIT);
+            }
+            return fromStoreValue(unwrap(storeValue));
+        } catch (RuntimeException | Error e) {
+            // 查询过程中抛出异常时结束span并关闭scope，已经结束的span不会重复结束
+            CacheTracing.endWithError(span, e);
+            throw e;
         }
-        return fromStoreValue(storeValue);
     }
 
+    /**
+     * 和 {@link #get(Object)} 一样查询缓存（redis熔断中只使用一级缓存，二级缓存异常时使用旧值），然后检查缓存值的类型
+     */
     @Override
     public <T> T get(Object key, Class<T> type) {
-        if (useFirstCache) {
-            Object result = firstCache.get(key, type);
-            log.debug("查询一级缓存。 key={},返回值是:{}", key, JSON.toJSONString(result));
-            if (result != null) {
-                return (T) fromStoreValue(result);
+        return super.get(key, type);
+    }
+
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        Object event = CacheEvents.begin(CacheEvents.Type.GET, "get");
+        Object span = CacheTracing.startSpan("cache.get", getName());
+        try {
+            CachedValue stale = null;
+            if (useFirstCache) {
+                Object result = firstCache.get(key);
+                log.debug("查询一级缓存。 key={},返回值是:{}", key, DiagnosticLog.json(result));
+                traceFirstCache(span, result);
+                if (result instanceof CachedValue) {
+                    stale = (CachedValue) result;
+                    if (!stale.isStale()) {
+                        commitGet(event, span, key, CacheEvents.LAYER_FIRST, CacheEvents.OUTCOME_HIT);
+                        return (T) fromStoreValue(stale.getValue());
+                    }
+                } else if (result != null) {
+                    commitGet(event, span, key, CacheEvents.LAYER_FIRST, CacheEvents.OUTCOME_HIT);
+                    return (T) fromStoreValue(result);
+                }
+            }
+            try {
+                // 二级缓存按redis key合并同一个key的并发加载
+                Object result = getSecondCacheOrLoad(key, valueLoader);
+                putFirstCache(key, result);
+                log.debug("查询二级缓存,并将数据放到一级缓存。 key={},返回值是:{}", key, DiagnosticLog.json(result));
+                T value = (T) fromStoreValue(unwrap(result));
+                commitGet(event, span, key, CacheEvents.LAYER_SECOND, value == null ? CacheEvents.OUTCOME_MISS : CacheEvents.OUTCOME_HIT);
+                return value;
+            } catch (RuntimeException e) {
+                commitGetError(event, span, key, stale);
+                return (T) fromStoreValue(staleOrThrow(key, stale, e));
+            }
+        } catch (RuntimeException | Error e) {
+            // 查询过程中抛出异常时结束span并关闭scope，已经结束的span不会重复结束
+            CacheTracing.endWithError(span, e);
+            throw e;
+        }
+    }
+
+    /**
+     * 提交查询缓存的JFR事件，结束链路追踪的span，并采样输出诊断日志
+     */
+    private void commitGet(Object event, Object span, Object key, String layer, String outcome) {
+        CacheEvents.commit(event, getName(), layer, outcome, 0);
+        CacheTracing.end(span, layer, outcome);
+        DiagnosticLog.event(getName(), "get", key, layer, outcome);
+    }
+
+    /**
+     * 提交查询二级缓存异常的JFR事件，有旧值时是一级缓存返回的旧值
+     */
+    private void commitGetError(Object event, Object span, Object key, CachedValue stale) {
+        if (stale == null) {
+            commitGet(event, span, key, CacheEvents.LAYER_SECOND, CacheEvents.OUTCOME_ERROR);
+        } else {
+            commitGet(event, span, key, CacheEvents.LAYER_FIRST, CacheEvents.OUTCOME_STALE);
+        }
+    }
+
+    /**
+     * 在查询缓存的span上记录一级缓存的查询结果
+     */
+    private void traceFirstCache(Object span, Object storeValue) {
+        String outcome = storeValue == null ? CacheEvents.OUTCOME_MISS
+                : storeValue instanceof CachedValue && ((CachedValue) storeValue).isStale() ? CacheEvents.OUTCOME_STALE : CacheEvents.OUTCOME_HIT;
+        CacheTracing.addEvent(span, "cache.first.get", outcome);
+    }
+
+    /**
+     * 查询二级缓存，redis熔断中直接执行被缓存的方法
+     */
+    private <T> Object getSecondCacheOrLoad(Object key, Callable<T> valueLoader) {
+        if (isSecondCacheAvailable()) {
+            try {
+                if (serveStale && secondCache instanceof RedisCache) {
+                    return ((RedisCache) secondCache).getWrapped(key, valueLoader);
+                }
+                return secondCache.get(key, valueLoader);
+            } catch (RuntimeException e) {
+                if (!isRedisUnavailable(e)) {
+                    throw e;
+                }
             }
         }
+        log.debug("redis熔断中，直接执行被缓存的方法。 key={}", key);
+        long loadStart = System.nanoTime();
+        Object loadEvent = CacheEvents.begin(CacheEvents.Type.LOAD, "load");
+        Object loadSpan = CacheTracing.startSpan("cache.load", getName());
+        try {
+            T value = valueLoader.call();
+            stats.recordLoad(loadStart, true);
+            CacheEvents.commit(loadEvent, getName(), CacheEvents.LAYER_LOADER, CacheEvents.OUTCOME_SUCCESS, 0);
+            CacheTracing.end(loadSpan, CacheEvents.LAYER_LOADER, CacheEvents.OUTCOME_SUCCESS);
+            return value;
+        } catch (Exception e) {
+            stats.recordLoad(loadStart, false);
+            CacheEvents.commit(loadEvent, getName(), CacheEvents.LAYER_LOADER, CacheEvents.OUTCOME_FAILURE, 0);
+            CacheTracing.endWithError(loadSpan, e);
+            throw new LoaderCacheValueException(key, e);
+        }
+    }
+
+    /**
+     * redis熔断器是否允许访问二级缓存
+     */
+    private boolean isSecondCacheAvailable() {
+        return circuitBreaker == null || !circuitBreaker.isOpen();
+    }
+
+    /**
+     * 异常是否由redis熔断引起
+     */
+    private boolean isRedisUnavailable(Throwable e) {
+        while (e != null) {
+            if (e instanceof RedisUnavailableException) {
+                return true;
+            }
+            e = e.getCause() == e ? null : e.getCause();
+        }
+        return false;
+    }
+
+    /**
+     * 操作二级缓存，redis熔断中只执行降级操作（删除本机的一级缓存）
+     *
+     * @param operation 操作二级缓存
+     * @param fallback  降级操作
+     */
+    private void writeSecondCache(Runnable operation, Runnable fallback) {
+        if (isSecondCacheAvailable()) {
+            try {
+                operation.run();
+                return;
+            } catch (RuntimeException e) {
+                if (!isRedisUnavailable(e)) {
+                    throw e;
+                }
+            }
+        }
+        log.warn("redis熔断中，缓存{}只删除本机一级缓存", getName());
+        fallback.run();
+    }
+
+    /**
+     * 二级缓存或者被缓存的方法异常时，有旧值就继续使用旧值，否则抛出异常
+     *
+     * @param key   缓存key
+     * @param stale 一级缓存中的旧值
+     * @param e     异常
+     * @return 旧值
+     */
+    private Object staleOrThrow(Object key, CachedValue stale, RuntimeException e) {
+        if (stale == null) {
+            throw e;
+        }
+        log.warn("查询二级缓存异常，继续使用一级缓存中的旧值。 key={}，异常：{}", key, e.getMessage());
+        return stale.getValue();
+    }
+
+    /**
+     * 查询二级缓存，开启过期后继续使用旧值时取回带逻辑过期时间的包装值，一级缓存回填时沿用
+     */
+    private Object getSecondCache(Object key) {
+        if (serveStale && secondCache instanceof RedisCache) {
+            return ((RedisCache) secondCache).getWrapped(key);
+        }
+        return secondCache.get(key);
+    }
+
+    /**
+     * 拆开二级缓存返回的包装值
+     */
+    private static Object unwrap(Object value) {
+        return value instanceof CachedValue ? ((CachedValue) value).getValue() : value;
+    }
+
+    /**
+     * 将二级缓存的数据放到一级缓存，开启过期后继续使用旧值时保存带逻辑过期时间的包装值
+     *
+     * @param key   缓存key
+     * @param value 缓存值，开启过期后继续使用旧值时可能是二级缓存中的包装值
+     */
+    private void putFirstCache(Object key, Object value) {
+        if (!serveStale) {
+            firstCache.putIfAbsent(key, value);
+            return;
+        }
+        long softExpireAt = softExpireAt(value, System.currentTimeMillis() + firstCacheExpireTime);
+        value = unwrap(value);
+        // 一级缓存不保存NULL值
+        if (value != null && !(value instanceof NullValue)) {
+            // 覆盖已经过期的旧值
+            firstCache.put(key, new CachedValue(value, 0, softExpireAt));
+        }
+    }
+
+    /**
+     * 一级缓存的逻辑过期时间，不能晚于二级缓存包装值的逻辑过期时间，二级缓存中的旧值回填到一级缓存后仍然是旧值
+     *
+     * @param value        二级缓存返回的值
+     * @param softExpireAt 按一级缓存有效时间计算的逻辑过期时间
+     */
+    private static long softExpireAt(Object value, long softExpireAt) {
+        if (value instanceof CachedValue && ((CachedValue) value).getSoftExpireAt() > 0) {
+            return Math.min(softExpireAt, ((CachedValue) value).getSoftExpireAt());
+        }
+        return softExpireAt;
+    }
 
-        T result = secondCache.get(key, type);
-        firstCache.putIfAbsent(key, result);
-        log.debug("查询二级缓存,并将数据放到一级缓存。 key={},返回值是:{}", key, JSON.toJSONString(result));
+    /**
+     * 批量查询一级缓存，开启过期后继续使用旧值时拆开包装值，超过逻辑过期时间的旧值视为未命中
+     */
+    private <K> Map<K, Object> getAllFirstCache(Collection<K> keys) {
+        Map<K, Object> result = firstCache.getAll(keys);
+        if (serveStale) {
+            Map<K, Object> fresh = new HashMap<>(result.size());
+            for (Map.Entry<K, Object> entry : result.entrySet()) {
+                if (entry.getValue() instanceof CachedValue) {
+                    CachedValue cachedValue = (CachedValue) entry.getValue();
+                    if (!cachedValue.isStale()) {
+                        fresh.put(entry.getKey(), cachedValue.getValue());
+                    }
+                } else {
+                    fresh.put(entry.getKey(), entry.getValue());
+                }
+            }
+            return fresh;
+        }
         return result;
     }
 
-    public <T> T get(Object key, Callable<T> valueLoader) {
+    /**
+     * 批量将二级缓存的数据放到一级缓存
+     */
+    private void putAllFirstCache(Map<?, ?> map) {
+        if (!serveStale) {
+            firstCache.putAll(map);
+            return;
+        }
+        Map<Object, Object> storeValues = new HashMap<>(map.size());
+        long softExpireAt = System.currentTimeMillis() + firstCacheExpireTime;
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            Object value = unwrap(entry.getValue());
+            if (value != null && !(value instanceof NullValue)) {
+                storeValues.put(entry.getKey(), new CachedValue(value, 0, softExpireAt(entry.getValue(), softExpireAt)));
+            }
+        }
+        firstCache.putAll(storeValues);
+    }
+
+    @Override
+    public <K> Map<K, Object> getAll(Collection<K> keys) {
+        Map<K, Object> result = new HashMap<>(keys.size());
+        Set<K> missKeys = new LinkedHashSet<>(keys);
         if (useFirstCache) {
-            Object result = firstCache.get(key);
-            log.debug("查询一级缓存。 key={},返回值是:{}", key, JSON.toJSONString(result));
-            if (result != null) {
-                return (T) fromStoreValue(result);
+            result.putAll(getAllFirstCache(keys));
+            missKeys.removeAll(result.keySet());
+            log.debug("批量查询一级缓存。 key={},命中的key是:{}", keys, result.keySet());
+        }
+        if (!missKeys.isEmpty() && isSecondCacheAvailable()) {
+            Map<K, Object> secondResult;
+            try {
+                secondResult = serveStale && secondCache instanceof RedisCache
+                        ? ((RedisCache) secondCache).getAllWrapped(missKeys) : secondCache.getAll(missKeys);
+            } catch (RuntimeException e) {
+                if (!isRedisUnavailable(e)) {
+                    throw e;
+                }
+                return result;
+            }
+            if (useFirstCache) {
+                putAllFirstCache(secondResult);
             }
+            secondResult.forEach((key, value) -> result.put(key, unwrap(value)));
+            log.debug("批量查询二级缓存,并将数据放到一级缓存。 key={},命中的key是:{}", missKeys, secondResult.keySet());
         }
-        T result = secondCache.get(key, valueLoader);
-        firstCache.putIfAbsent(key, result);
-        log.debug("查询二级缓存,并将数据放到一级缓存。 key={},返回值是:{}", key, JSON.toJSONString(result));
         return result;
     }
 
-    public void put(Object key, Object value) {
-        secondCache.put(key, value);
-        // 删除一级缓存
+    @Override
+    public <K, V> Map<K, V> getAll(Collection<K> keys, Function<Set<K>, Map<K, V>> valueLoader) {
+        Map<K, V> result = new HashMap<>(keys.size());
+        Set<K> missKeys = new LinkedHashSet<>(keys);
         if (useFirstCache) {
-            deleteFirstCache(key);
+            result.putAll((Map<K, V>) getAllFirstCache(keys));
+            missKeys.removeAll(result.keySet());
+            log.debug("批量查询一级缓存。 key={},命中的key是:{}", keys, result.keySet());
+        }
+        if (!missKeys.isEmpty()) {
+            // 只有一级缓存未命中的key才去查询二级缓存，二级缓存也未命中的key一次性交给valueLoader加载
+            Map<K, Object> secondResult = getAllSecondCacheOrLoad(missKeys, valueLoader);
+            if (useFirstCache) {
+                putAllFirstCache(secondResult);
+            }
+            secondResult.forEach((key, value) -> result.put(key, (V) unwrap(value)));
+            log.debug("批量查询二级缓存,并将数据放到一级缓存。 key={},返回的key是:{}", missKeys, secondResult.keySet());
         }
+        return result;
     }
 
-    public Object putIfAbsent(Object key, Object value) {
-        Object result = secondCache.putIfAbsent(key, value);
-        // 删除一级缓存
-        if (useFirstCache) {
-           deleteFirstCache(key);
+    /**
+     * 批量查询二级缓存，redis熔断中直接执行被缓存的方法
+     */
+    private <K, V> Map<K, Object> getAllSecondCacheOrLoad(Set<K> keys, Function<Set<K>, Map<K, V>> valueLoader) {
+        if (isSecondCacheAvailable()) {
+            try {
+                if (serveStale && secondCache instanceof RedisCache) {
+                    return ((RedisCache) secondCache).getAllWrapped(keys, valueLoader);
+                }
+                return (Map<K, Object>) secondCache.getAll(keys, valueLoader);
+            } catch (RuntimeException e) {
+                if (!isRedisUnavailable(e)) {
+                    throw e;
+                }
+            }
+        }
+        Map<K, V> loaded;
+        try {
+            loaded = valueLoader.apply(keys);
+        } catch (Exception e) {
+            throw new LoaderCacheValueException(keys, e);
+        }
+        Map<K, Object> result = new HashMap<>(keys.size());
+        if (loaded != null) {
+            for (Map.Entry<K, V> entry : loaded.entrySet()) {
+                if (entry.getValue() != null) {
+                    result.put(entry.getKey(), entry.getValue());
+                }
+            }
         }
         return result;
     }
 
-    public void evict(Object key) {
-        // 删除的时候要先删除二级缓存再删除一级缓存，否则有并发问题
-        secondCache.evict(key);
-        // 删除一级缓存
+    /**
+     * 异步获取缓存，一级缓存在调用线程中查询，命中时不切换线程；二级缓存的查询和写入在异步线程池中执行，
+     * 同一个key并发的调用合并到同一个正在执行的加载上
+     */
+    @Override
+    public <T> CompletableFuture<T> getAsync(Object key, Supplier<? extends CompletionStage<T>> valueLoader) {
+        CachedValue stale = null;
         if (useFirstCache) {
-            deleteFirstCache(key);
+            Object result = firstCache.get(key);
+            log.debug("异步查询一级缓存。 key={},返回值是:{}", key, DiagnosticLog.json(result));
+            if (result instanceof CachedValue) {
+                stale = (CachedValue) result;
+                if (!stale.isStale()) {
+                    return CompletableFuture.completedFuture((T) fromStoreValue(stale.getValue()));
+                }
+            } else if (result != null) {
+                return CompletableFuture.completedFuture((T) fromStoreValue(result));
+            }
+        }
+
+        CompletableFuture<Object> call = new CompletableFuture<>();
+        CompletableFuture<Object> existing = asyncCalls.putIfAbsent(key, call);
+        if (existing != null) {
+            // 每个调用方拿到不同的future，一个调用方取消不会影响其他调用方
+            return (CompletableFuture<T>) existing.thenApply(Function.identity());
+        }
+
+        CachedValue finalStale = stale;
+        getSecondCacheAsync(key)
+                .thenCompose(storeValue -> {
+                    if (storeValue != null) {
+                        putFirstCache(key, storeValue);
+                        log.debug("异步查询二级缓存,并将数据放到一级缓存。 key={},返回值是:{}", key, DiagnosticLog.json(storeValue));
+                        return CompletableFuture.completedFuture(fromStoreValue(unwrap(storeValue)));
+                    }
+                    return loadAsync(key, valueLoader);
+                })
+                .whenComplete((value, e) -> {
+                    asyncCalls.remove(key, call);
+                    if (e == null) {
+                        call.complete(value);
+                    } else if (finalStale != null) {
+                        log.warn("异步加载缓存异常，继续使用一级缓存中的旧值。 key={}，异常：{}", key, e.getMessage());
+                        call.complete(fromStoreValue(finalStale.getValue()));
+                    } else {
+                        call.completeExceptionally(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+                    }
+                });
+        return (CompletableFuture<T>) call.thenApply(Function.identity());
+    }
+
+    /**
+     * 在异步线程池中查询二级缓存，redis熔断中或者查询异常时视为未命中。
+     * 线程池已满时查询被拒绝，返回失败的结果，不再执行被缓存的方法增加负载
+     */
+    private CompletableFuture<Object> getSecondCacheAsync(Object key) {
+        if (!isSecondCacheAvailable()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Object> reading = ThreadTaskUtils.supplyAsync(() -> getSecondCache(key), asyncExecutor);
+        if (reading.isCompletedExceptionally()) {
+            log.warn("异步查询二级缓存的线程池已满，查询被拒绝。 key={}", key);
+            return reading;
+        }
+        return reading.exceptionally(e -> {
+            log.warn("异步查询二级缓存异常，直接执行被缓存的方法。 key={}，异常：{}", key, e.getMessage());
+            return null;
+        });
+    }
+
+    /**
+     * 执行被缓存的方法异步加载数据，完成后在异步线程池中写入二级缓存和一级缓存，写缓存异常或者被线程池拒绝不影响返回加载的数据
+     */
+    private <T> CompletableFuture<Object> loadAsync(Object key, Supplier<? extends CompletionStage<T>> valueLoader) {
+        long loadStart = System.nanoTime();
+        Object loadEvent = CacheEvents.begin(CacheEvents.Type.LOAD, "load");
+        CompletionStage<T> loading;
+        try {
+            loading = valueLoader.get();
+        } catch (RuntimeException e) {
+            stats.recordLoad(loadStart, false);
+            CacheEvents.commit(loadEvent, getName(), CacheEvents.LAYER_LOADER, CacheEvents.OUTCOME_FAILURE, 0);
+            CompletableFuture<Object> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+        if (loading == null) {
+            loading = CompletableFuture.completedFuture(null);
         }
+        loading.whenComplete((value, e) -> {
+            stats.recordLoad(loadStart, e == null);
+            CacheEvents.commit(loadEvent, getName(), CacheEvents.LAYER_LOADER, e == null ? CacheEvents.OUTCOME_SUCCESS : CacheEvents.OUTCOME_FAILURE, 0);
+        });
+        return ThreadTaskUtils.<Object>writeAsync(loading, value -> {
+            try {
+                if (isSecondCacheAvailable()) {
+                    secondCache.put(key, value);
+                }
+                putFirstCache(key, value);
+                log.debug("异步执行被缓存的方法，并将其放入缓存。 key={}", key);
+            } catch (RuntimeException e) {
+                log.warn("异步写入缓存异常。 key={}，异常：{}", key, e.getMessage());
+            }
+        }, asyncExecutor);
+    }
+
+    public void put(Object key, Object value) {
+        writeSecondCache(() -> {
+            secondCache.put(key, value);
+            // 删除一级缓存
+            if (useFirstCache) {
+                deleteFirstCache(key);
+            }
+        }, () -> firstCache.evict(key));
+    }
+
+    @Override
+    public void putAll(Map<?, ?> map) {
+        writeSecondCache(() -> {
+            secondCache.putAll(map);
+            // 删除一级缓存
+            if (useFirstCache) {
+                batchDeleteFirstCache(map.keySet());
+            }
+        }, () -> firstCache.evictAll(map.keySet()));
+    }
+
+    public Object putIfAbsent(Object key, Object value) {
+        Object[] result = new Object[1];
+        writeSecondCache(() -> {
+            result[0] = secondCache.putIfAbsent(key, value);
+            // 删除一级缓存
+            if (useFirstCache) {
+                deleteFirstCache(key);
+            }
+        }, () -> firstCache.evict(key));
+        return result[0];
+    }
+
+    public void evict(Object key) {
+        writeSecondCache(() -> {
+            // 删除的时候要先删除二级缓存再删除一级缓存，否则有并发问题
+            secondCache.evict(key);
+            // 删除一级缓存
+            if (useFirstCache) {
+                deleteFirstCache(key);
+            }
+        }, () -> firstCache.evict(key));
+    }
+
+    @Override
+    public void evictAll(Collection<?> keys) {
+        writeSecondCache(() -> {
+            // 删除的时候要先删除二级缓存再删除一级缓存，否则有并发问题
+            secondCache.evictAll(keys);
+            // 删除一级缓存
+            if (useFirstCache) {
+                batchDeleteFirstCache(keys);
+            }
+        }, () -> firstCache.evictAll(keys));
+    }
+
+    /**
+     * 批量删除一级缓存，所有key合并成一条消息发布
+     *
+     * @param keys 缓存key集合
+     */
+    private void batchDeleteFirstCache(Collection<?> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        RedisPubSubMessage message = new RedisPubSubMessage();
+        message.setCacheName(getName());
+        message.setKeys(new ArrayList<>(keys));
+        message.setMessageType(RedisPubSubMessageType.BATCH_EVICT);
+        // 发布消息
+        RedisPublisher.publisher(redisTemplate, new ChannelTopic(getName()), message);
     }
 
     private void deleteFirstCache(Object key) {
@@ -128,18 +678,73 @@ public class MultiLayeringCache extends AbstractValueAdaptingCache {
     }
 
     public void clear() {
-        // 删除的时候要先删除二级缓存再删除一级缓存，否则有并发问题
-        secondCache.clear();
-        if (useFirstCache) {
+        clear(secondCache instanceof RedisCache && ((RedisCache) secondCache).isAsyncClear());
+    }
+
+    /**
+     * 在后台线程清空二级缓存，清空完成后再通知各个节点清空一级缓存
+     *
+     * @return 清空进度 {@link ClearProgress}
+     */
+    public ClearProgress clearAsync() {
+        return clear(true);
+    }
+
+    private ClearProgress clear(boolean async) {
+        ClearProgress[] progress = new ClearProgress[1];
+        writeSecondCache(() -> {
+            // 删除的时候要先删除二级缓存再删除一级缓存，否则有并发问题
+            if (secondCache instanceof RedisCache) {
+                progress[0] = ((RedisCache) secondCache).clear(async);
+            } else {
+                secondCache.clear();
+                progress[0] = new ClearProgress(getName());
+                progress[0].complete();
+            }
+            // 二级缓存删除结束后再清除一级缓存，否则一级缓存可能又加载到还没删除的二级缓存
+            progress[0].onComplete(this::publishClear);
+        }, () -> firstCache.clear());
+        if (progress[0] == null) {
+            progress[0] = new ClearProgress(getName());
+            progress[0].complete();
+        }
+        return progress[0];
+    }
+
+    private void publishClear() {
+        boolean useGeneration = secondCache instanceof RedisCache && ((RedisCache) secondCache).isUseGeneration();
+        if (useFirstCache || useGeneration) {
             // 清除一级缓存需要用到redis的订阅/发布模式，否则集群中其他服服务器节点的一级缓存数据无法删除
             RedisPubSubMessage message = new RedisPubSubMessage();
             message.setCacheName(getName());
             message.setMessageType(RedisPubSubMessageType.CLEAR);
+            if (useGeneration) {
+                // 其他节点收到消息后直接更新本机缓存的版本号
+                message.setGeneration(((RedisCache) secondCache).getGeneration());
+            }
             // 发布消息
             RedisPublisher.publisher(redisTemplate, new ChannelTopic(getName()), message);
         }
     }
 
+    /**
+     * 设置redis熔断器，熔断期间一级缓存未命中时直接执行被缓存的方法
+     *
+     * @param circuitBreaker {@link RedisCircuitBreaker}
+     */
+    public void setCircuitBreaker(RedisCircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    /**
+     * 设置异步查询和写入二级缓存的线程池，默认是 {@link ThreadTaskUtils#getAsyncExecutor()}
+     *
+     * @param asyncExecutor {@link Executor}
+     */
+    public void setAsyncExecutor(Executor asyncExecutor) {
+        this.asyncExecutor = asyncExecutor;
+    }
+
     public ICache getFirstCache() {
         return firstCache;
     }
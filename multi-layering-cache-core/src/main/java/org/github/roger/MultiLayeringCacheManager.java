@@ -1,26 +1,126 @@
 package org.github.roger;
 
+import lombok.Getter;
+import org.github.roger.cache.AbstractValueAdaptingCache;
 import org.github.roger.cache.ICache;
+import org.github.roger.cache.IExpireTimeAdjustable;
 import org.github.roger.cache.caffeine.CaffeineCache;
+import org.github.roger.cache.offheap.OffHeapCache;
+import org.github.roger.cache.offheap.TieredFirstCache;
 import org.github.roger.cache.redis.RedisCache;
+import org.github.roger.concurrent.RefreshScheduler;
+import org.github.roger.enumeration.CircuitState;
 import org.github.roger.manager.AbstractCacheManager;
+import org.github.roger.settings.CircuitBreakerSetting;
+import org.github.roger.settings.FirstCacheSetting;
 import org.github.roger.settings.MultiLayeringCacheSetting;
+import org.github.roger.settings.SecondaryCacheSetting;
+import org.github.roger.support.CircuitBreakerRedisTemplate;
+import org.github.roger.support.RedisCircuitBreaker;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.ArrayList;
 
 public class MultiLayeringCacheManager extends AbstractCacheManager {
 
+    /**
+     * redis熔断器，为null表示没有开启熔断
+     */
+    @Getter
+    private RedisCircuitBreaker circuitBreaker;
+
     public MultiLayeringCacheManager(RedisTemplate<String, Object> redisTemplate) {
         this.redisTemplate = redisTemplate;
         cacheManagers.add(this);
     }
 
+    /**
+     * 开启redis熔断，redis异常或者变慢时缓存降级为只使用一级缓存
+     *
+     * @param redisTemplate         redis客户端
+     * @param circuitBreakerSetting 熔断器配置{@link CircuitBreakerSetting}
+     */
+    public MultiLayeringCacheManager(RedisTemplate<String, Object> redisTemplate, CircuitBreakerSetting circuitBreakerSetting) {
+        this.circuitBreaker = new RedisCircuitBreaker(circuitBreakerSetting);
+        this.redisTemplate = new CircuitBreakerRedisTemplate(redisTemplate, circuitBreaker);
+        this.circuitBreaker.addListener(this::onCircuitStateChange);
+        cacheManagers.add(this);
+    }
+
     @Override
     protected ICache getMissingCache(String name, MultiLayeringCacheSetting multilayeringCacheSetting) {
         // 创建一级缓存
-        CaffeineCache caffeineCache = new CaffeineCache(name, multilayeringCacheSetting.getFirstCacheSetting());
+        // 开启过期后继续使用旧值时，一级缓存也要保留旧值
+        SecondaryCacheSetting secondaryCacheSetting = multilayeringCacheSetting.getSecondaryCacheSetting();
+        long staleTime = secondaryCacheSetting.getTimeUnit().toMillis(secondaryCacheSetting.getMaxStaleness());
+        AbstractValueAdaptingCache firstCache = createFirstCache(name, multilayeringCacheSetting.getFirstCacheSetting(), staleTime);
         // 创建二级缓存
         RedisCache redisCache = new RedisCache(name, redisTemplate, multilayeringCacheSetting.getSecondaryCacheSetting());
-        return new MultiLayeringCache(redisTemplate, caffeineCache, redisCache,  multilayeringCacheSetting);
+        redisCache.setRefreshScheduler(getRefreshScheduler());
+        MultiLayeringCache multiLayeringCache = new MultiLayeringCache(redisTemplate, firstCache, redisCache, multilayeringCacheSetting);
+        multiLayeringCache.setCircuitBreaker(circuitBreaker);
+        return multiLayeringCache;
+    }
+
+    @Override
+    protected void applyRefreshScheduler(ICache cache, RefreshScheduler refreshScheduler) {
+        if (cache instanceof MultiLayeringCache && ((MultiLayeringCache) cache).getSecondCache() instanceof RedisCache) {
+            ((RedisCache) ((MultiLayeringCache) cache).getSecondCache()).setRefreshScheduler(refreshScheduler);
+        }
+    }
+
+    /**
+     * 释放堆外一级缓存占用的直接内存
+     */
+    @Override
+    protected void destroyCache(ICache cache) {
+        if (!(cache instanceof MultiLayeringCache)) {
+            return;
+        }
+        ICache firstCache = ((MultiLayeringCache) cache).getFirstCache();
+        if (firstCache instanceof OffHeapCache) {
+            ((OffHeapCache) firstCache).close();
+        } else if (firstCache instanceof TieredFirstCache) {
+            ((TieredFirstCache) firstCache).close();
+        }
     }
 
+    /**
+     * 按 {@link FirstCacheSetting#getType()} 创建一级缓存，堆外缓存使用redis的value序列化器
+     */
+    private AbstractValueAdaptingCache createFirstCache(String name, FirstCacheSetting firstCacheSetting, long staleTime) {
+        switch (firstCacheSetting.getType()) {
+            case OFF_HEAP:
+                return new OffHeapCache(name, firstCacheSetting, (RedisSerializer<Object>) redisTemplate.getValueSerializer(), staleTime);
+            case CAFFEINE_OFF_HEAP:
+                return new TieredFirstCache(name, firstCacheSetting, (RedisSerializer<Object>) redisTemplate.getValueSerializer(), staleTime);
+            default:
+                return new CaffeineCache(name, firstCacheSetting, staleTime);
+        }
+    }
+
+    /**
+     * 熔断器打开时延长一级缓存的有效时间；关闭时恢复有效时间，并清空一级缓存，因为熔断期间可能漏掉了删除缓存的消息
+     */
+    private void onCircuitStateChange(CircuitState from, CircuitState to) {
+        if (to == CircuitState.HALF_OPEN) {
+            return;
+        }
+        for (String name : new ArrayList<>(getCacheNames())) {
+            for (ICache cache : getCache(name)) {
+                if (!(cache instanceof MultiLayeringCache)
+                        || !(((MultiLayeringCache) cache).getFirstCache() instanceof IExpireTimeAdjustable)) {
+                    continue;
+                }
+                ICache firstCache = ((MultiLayeringCache) cache).getFirstCache();
+                if (to == CircuitState.OPEN) {
+                    ((IExpireTimeAdjustable) firstCache).setExpireTime(circuitBreaker.getSetting().getOpenFirstCacheExpireTime());
+                } else {
+                    ((IExpireTimeAdjustable) firstCache).resetExpireTime();
+                    firstCache.clear();
+                }
+            }
+        }
+    }
 }
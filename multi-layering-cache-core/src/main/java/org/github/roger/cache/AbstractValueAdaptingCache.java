@@ -1,6 +1,6 @@
 package org.github.roger.cache;
 
-import com.alibaba.fastjson.JSON;
+import org.github.roger.support.DiagnosticLog;
 import org.github.roger.support.NullValue;
 import org.springframework.util.Assert;
 
@@ -29,7 +29,11 @@ public abstract class AbstractValueAdaptingCache implements ICache{
 
     @Override
     public <T> T get(Object key, Class<T> type) {
-        return (T) fromStoreValue(get(key));
+        Object value = fromStoreValue(get(key));
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException("缓存值不是需要的类型 [" + type.getName() + "]: " + value);
+        }
+        return (T) value;
     }
 
     protected Object fromStoreValue(Object storeValue) {
@@ -55,7 +59,7 @@ public abstract class AbstractValueAdaptingCache implements ICache{
         private final Object key;
 
         public LoaderCacheValueException(Object key, Throwable ex) {
-            super(String.format("加载key为 %s 的缓存数据,执行被缓存方法异常", JSON.toJSONString(key)), ex);
+            super(String.format("加载key为 %s 的缓存数据,执行被缓存方法异常", DiagnosticLog.json(key)), ex);
             this.key = key;
         }
 
@@ -1,6 +1,15 @@
 package org.github.roger.cache;
 
+import org.github.roger.concurrent.ThreadTaskUtils;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * 缓存的顶级接口
@@ -45,6 +54,49 @@ public interface ICache {
      */
     <T> T get(Object key, Callable<T> valueLoader);
 
+    /**
+     * 异步获取缓存对象，如果对应key不存在则调用valueLoader异步加载数据，加载完成后放到缓存
+     * <p>
+     * 默认实现在 {@link ThreadTaskUtils#getAsyncExecutor()} 线程池中查询和写入缓存，不会阻塞调用线程。
+     * 线程池已满时查询被拒绝，返回以 {@link java.util.concurrent.RejectedExecutionException} 失败的结果；写缓存被拒绝时跳过写缓存
+     * </p>
+     *
+     * @param key         缓存key
+     * @param valueLoader 异步加载缓存的回调方法
+     * @param <T>         缓存值的类型
+     * @return 缓存值的 {@link CompletableFuture}
+     */
+    default <T> CompletableFuture<T> getAsync(Object key, Supplier<? extends CompletionStage<T>> valueLoader) {
+        return ThreadTaskUtils.supplyAsync(() -> get(key), ThreadTaskUtils.getAsyncExecutor())
+                .thenCompose(value -> {
+                    if (value != null) {
+                        return CompletableFuture.completedFuture((T) value);
+                    }
+                    return ThreadTaskUtils.writeAsync(valueLoader.get(), loaded -> put(key, loaded), ThreadTaskUtils.getAsyncExecutor());
+                });
+    }
+
+    /**
+     * 批量获取缓存对象，只返回命中且值不为NULL的key-value
+     *
+     * @param keys 缓存key集合
+     * @param <K>  缓存key的类型
+     * @return 命中的缓存key和缓存值
+     */
+    <K> Map<K, Object> getAll(Collection<K> keys);
+
+    /**
+     * 批量获取缓存对象，所有未命中的key会一次性交给valueLoader加载，
+     * 这样一次数据库查询就能填充所有未命中的缓存
+     *
+     * @param keys        缓存key集合
+     * @param valueLoader 批量加载缓存的回调方法，入参是未命中的key集合，返回key和值的映射，没有返回的key视为NULL值
+     * @param <K>         缓存key的类型
+     * @param <V>         缓存值的类型
+     * @return 值不为NULL的缓存key和缓存值
+     */
+    <K, V> Map<K, V> getAll(Collection<K> keys, Function<Set<K>, Map<K, V>> valueLoader);
+
     /**
      * 将对应key-value放到缓存，如果key原来有值就直接覆盖
      *
@@ -53,6 +105,13 @@ public interface ICache {
      */
     void put(Object key, Object value);
 
+    /**
+     * 批量将key-value放到缓存，如果key原来有值就直接覆盖
+     *
+     * @param map 缓存key和缓存值
+     */
+    void putAll(Map<?, ?> map);
+
     /**
      * 如果缓存key没有对应的值就将值put到缓存，如果有就直接返回原有的值
      * 就相当于:
@@ -77,6 +136,13 @@ public interface ICache {
      */
     void evict(Object key);
 
+    /**
+     * 在缓存中批量删除对应的key
+     *
+     * @param keys 缓存key集合
+     */
+    void evictAll(Collection<?> keys);
+
     /**
      * 清楚缓存
      */
@@ -0,0 +1,19 @@
+package org.github.roger.cache;
+
+/**
+ * 可以临时调整有效时间的一级缓存，redis熔断期间用来延长一级缓存的有效时间
+ */
+public interface IExpireTimeAdjustable {
+
+    /**
+     * 临时延长缓存的有效时间，对已经存在的缓存同样生效，不会小于配置的有效时间
+     *
+     * @param millis 有效时间，单位毫秒
+     */
+    void setExpireTime(long millis);
+
+    /**
+     * 恢复配置的有效时间
+     */
+    void resetExpireTime();
+}
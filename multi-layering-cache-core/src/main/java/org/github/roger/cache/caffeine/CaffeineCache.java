@@ -1,23 +1,36 @@
 package org.github.roger.cache.caffeine;
 
-import com.alibaba.fastjson.JSON;
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.stats.StatsCounter;
 import lombok.extern.slf4j.Slf4j;
 import org.github.roger.cache.AbstractValueAdaptingCache;
+import org.github.roger.cache.IExpireTimeAdjustable;
 import org.github.roger.enumeration.ExpireMode;
 import org.github.roger.settings.FirstCacheSetting;
+import org.github.roger.support.CacheStats;
+import org.github.roger.support.DiagnosticLog;
 import org.github.roger.support.NullValue;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 @Slf4j
-public class CaffeineCache extends AbstractValueAdaptingCache {
+public class CaffeineCache extends AbstractValueAdaptingCache implements IExpireTimeAdjustable {
 
     /** caffeine 缓存对象 */
     private Cache<Object,Object> cache;
 
+    /** 配置的有效时间，单位毫秒 */
+    private long expireTime;
+
 
     /**
      * 使用name和{@link FirstCacheSetting}创建一个 {@link CaffeineCache} 实例
@@ -26,26 +39,43 @@ public class CaffeineCache extends AbstractValueAdaptingCache {
      * @param firstCacheSetting 一级缓存配置 {@link FirstCacheSetting}
      */
     public CaffeineCache(String name, FirstCacheSetting firstCacheSetting) {
+        this(name, firstCacheSetting, 0);
+    }
+
+    /**
+     * 使用name和{@link FirstCacheSetting}创建一个 {@link CaffeineCache} 实例，缓存的实际有效时间延长staleTime，
+     * 用来保存超过逻辑过期时间后仍然可以使用的旧值
+     *
+     * @param name              缓存名称
+     * @param firstCacheSetting 一级缓存配置 {@link FirstCacheSetting}
+     * @param staleTime         超过有效时间后仍然保留旧值的时间，单位毫秒
+     */
+    public CaffeineCache(String name, FirstCacheSetting firstCacheSetting, long staleTime) {
         super( name);
-        this.cache = getCache(firstCacheSetting);
+        this.cache = getCache(name, firstCacheSetting, staleTime);
     }
 
     /**
      *  构建一个caffeine缓存对象，用于存储一级缓存
+     * @param name 缓存名称
      * @param firstCacheSetting 一级缓存配置
      * @return  一级缓存对象
      */
-    private Cache<Object,Object> getCache(FirstCacheSetting firstCacheSetting) {
+    private Cache<Object,Object> getCache(String name, FirstCacheSetting firstCacheSetting, long staleTime) {
         //根据一级缓存设置，构建caffeine缓存对象
         Caffeine<Object,Object> cacheBuilder = Caffeine.newBuilder();
         cacheBuilder.initialCapacity(firstCacheSetting.getInitialCapacity());
         cacheBuilder.maximumSize(firstCacheSetting.getMaximumSize());
+        expireTime = firstCacheSetting.getTimeUnit().toMillis(firstCacheSetting.getExpireTime()) + staleTime;
         if(ExpireMode.WRITE.equals(firstCacheSetting.getExpireMode())){
-            cacheBuilder.expireAfterWrite(firstCacheSetting.getExpireTime(),firstCacheSetting.getTimeUnit());
+            cacheBuilder.expireAfterWrite(expireTime, TimeUnit.MILLISECONDS);
         }
         if(ExpireMode.ACCESS.equals(firstCacheSetting.getExpireMode())){
-            cacheBuilder.expireAfterAccess(firstCacheSetting.getExpireTime(),firstCacheSetting.getTimeUnit());
+            cacheBuilder.expireAfterAccess(expireTime, TimeUnit.MILLISECONDS);
         }
+        // 命中、未命中和淘汰次数记录在缓存名称的统计信息中
+        CacheStats stats = CacheStats.getStats(name);
+        cacheBuilder.recordStats(() -> new FirstCacheStatsCounter(stats));
         return cacheBuilder.build();
     }
 
@@ -59,7 +89,7 @@ public class CaffeineCache extends AbstractValueAdaptingCache {
     }
 
     public Object get(Object key) {
-        log.debug("caffeine缓存 key={} 获取缓存", JSON.toJSONString(key));
+        log.debug("caffeine缓存 key={} 获取缓存", DiagnosticLog.json(key));
 
         if (this.cache instanceof LoadingCache) {
             return ((LoadingCache<Object, Object>) this.cache).get(key);
@@ -69,7 +99,7 @@ public class CaffeineCache extends AbstractValueAdaptingCache {
     }
 
     public <T> T get(Object key, Callable<T> valueLoader) {
-        log.debug("caffeine缓存 key={} 获取缓存， 如果没有命中就走库加载缓存", JSON.toJSONString(key));
+        log.debug("caffeine缓存 key={} 获取缓存， 如果没有命中就走库加载缓存", DiagnosticLog.json(key));
         // 获取key对应的缓存值，如果没有，就使用valuLoader 获取值，类似设置一个默认值
         Object result = this.cache.get(key, (k) -> loaderValue(key, valueLoader));
         // 如果不允许存NULL值 直接删除NULL值缓存
@@ -80,13 +110,56 @@ public class CaffeineCache extends AbstractValueAdaptingCache {
         return (T) fromStoreValue(result);
     }
 
+    public <K> Map<K, Object> getAll(Collection<K> keys) {
+        log.debug("caffeine缓存 key={} 批量获取缓存", DiagnosticLog.json(keys));
+        Map<Object, Object> present = this.cache.getAllPresent(keys);
+        Map<K, Object> result = new HashMap<>(present.size());
+        for (Map.Entry<Object, Object> entry : present.entrySet()) {
+            Object value = fromStoreValue(entry.getValue());
+            if (value != null) {
+                result.put((K) entry.getKey(), value);
+            }
+        }
+        return result;
+    }
+
+    public <K, V> Map<K, V> getAll(Collection<K> keys, Function<Set<K>, Map<K, V>> valueLoader) {
+        Map<K, V> result = (Map<K, V>) getAll(keys);
+        Set<K> missKeys = new LinkedHashSet<>(keys);
+        missKeys.removeAll(result.keySet());
+        if (missKeys.isEmpty()) {
+            return result;
+        }
+        log.debug("caffeine缓存 key={} 批量获取缓存未命中，从库批量加载缓存", DiagnosticLog.json(missKeys));
+        Map<K, V> loaded = loaderValues(missKeys, valueLoader);
+        putAll(loaded);
+        for (Map.Entry<K, V> entry : loaded.entrySet()) {
+            if (entry.getValue() != null && !(entry.getValue() instanceof NullValue)) {
+                result.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 批量加载数据
+     */
+    private <K, V> Map<K, V> loaderValues(Set<K> keys, Function<Set<K>, Map<K, V>> valueLoader) {
+        try {
+            Map<K, V> loaded = valueLoader.apply(keys);
+            return loaded == null ? new HashMap<>() : loaded;
+        } catch (Exception e) {
+            throw new LoaderCacheValueException(keys, e);
+        }
+    }
+
     /**
      * 加载数据
      */
     private <T> Object loaderValue(Object key, Callable<T> valueLoader) {
         try {
             T t = valueLoader.call();
-            log.debug("caffeine缓存 key={} 从库加载缓存", JSON.toJSONString(key), JSON.toJSONString(t));
+            log.debug("caffeine缓存 key={} 从库加载缓存，缓存值：{}", DiagnosticLog.json(key), DiagnosticLog.json(t));
 
             return toStoreValue(t);
         } catch (Exception e) {
@@ -97,36 +170,128 @@ public class CaffeineCache extends AbstractValueAdaptingCache {
     public void put(Object key, Object value) {
         // 允许存NULL值
         if (isAllowNullValues()) {
-            log.debug("caffeine缓存 key={} put缓存，缓存值：{}", JSON.toJSONString(key), JSON.toJSONString(value));
+            log.debug("caffeine缓存 key={} put缓存，缓存值：{}", DiagnosticLog.json(key), DiagnosticLog.json(value));
             this.cache.put(key, toStoreValue(value));
             return;
         }
 
         // 不允许存NULL值
         if (value != null && !(value instanceof NullValue)) {
-            log.debug("caffeine缓存 key={} put缓存，缓存值：{}", JSON.toJSONString(key), JSON.toJSONString(value));
+            log.debug("caffeine缓存 key={} put缓存，缓存值：{}", DiagnosticLog.json(key), DiagnosticLog.json(value));
             this.cache.put(key, toStoreValue(value));
         }
         log.debug("缓存值为NULL并且不允许存NULL值，不缓存数据");
     }
 
+    public void putAll(Map<?, ?> map) {
+        log.debug("caffeine缓存 key={} 批量put缓存", DiagnosticLog.json(map.keySet()));
+        Map<Object, Object> storeValues = new HashMap<>(map.size());
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            // 不允许存NULL值
+            if (isAllowNullValues() || (entry.getValue() != null && !(entry.getValue() instanceof NullValue))) {
+                storeValues.put(entry.getKey(), toStoreValue(entry.getValue()));
+            }
+        }
+        this.cache.putAll(storeValues);
+    }
+
     public Object putIfAbsent(Object key, Object value) {
-        log.debug("caffeine缓存 key={} putIfAbsent 缓存，缓存值：{}", JSON.toJSONString(key), JSON.toJSONString(value));
+        log.debug("caffeine缓存 key={} putIfAbsent 缓存，缓存值：{}", DiagnosticLog.json(key), DiagnosticLog.json(value));
         boolean flag = !isAllowNullValues() && (value == null || value instanceof NullValue);
         if (flag) {
             return null;
         }
-        Object result = this.cache.get(key, k -> toStoreValue(value));
-        return fromStoreValue(result);
+        // 通过asMap写入，不会被统计为一次未命中
+        Object storeValue = toStoreValue(value);
+        Object result = this.cache.asMap().putIfAbsent(key, storeValue);
+        return fromStoreValue(result == null ? storeValue : result);
+    }
+
+    /**
+     * 临时延长缓存的有效时间，对已经存在的缓存同样生效，不会小于配置的有效时间
+     *
+     * @param millis 有效时间，单位毫秒
+     */
+    @Override
+    public void setExpireTime(long millis) {
+        updateExpireTime(Math.max(millis, expireTime));
+    }
+
+    /**
+     * 恢复配置的有效时间
+     */
+    @Override
+    public void resetExpireTime() {
+        updateExpireTime(expireTime);
+    }
+
+    private void updateExpireTime(long millis) {
+        cache.policy().expireAfterWrite().ifPresent(expiration -> expiration.setExpiresAfter(millis, TimeUnit.MILLISECONDS));
+        cache.policy().expireAfterAccess().ifPresent(expiration -> expiration.setExpiresAfter(millis, TimeUnit.MILLISECONDS));
     }
 
     public void evict(Object key) {
-        log.debug("caffeine缓存 key={} 清除缓存", JSON.toJSONString(key));
+        log.debug("caffeine缓存 key={} 清除缓存", DiagnosticLog.json(key));
         this.cache.invalidate(key);
     }
 
+    public void evictAll(Collection<?> keys) {
+        log.debug("caffeine缓存 key={} 批量清除缓存", DiagnosticLog.json(keys));
+        this.cache.invalidateAll(keys);
+    }
+
     public void clear() {
         log.debug("caffeine缓存 key={} 清空缓存");
         this.cache.invalidateAll();
     }
+
+    /**
+     * 把caffeine的统计回调转到 {@link CacheStats}，只记录命中、未命中和淘汰，
+     * 一级缓存的加载是查询二级缓存，加载耗时由二级缓存记录
+     */
+    private static class FirstCacheStatsCounter implements StatsCounter {
+
+        private final CacheStats stats;
+
+        FirstCacheStatsCounter(CacheStats stats) {
+            this.stats = stats;
+        }
+
+        @Override
+        public void recordHits(int count) {
+            stats.recordFirstCacheHits(count);
+        }
+
+        @Override
+        public void recordMisses(int count) {
+            stats.recordFirstCacheMisses(count);
+        }
+
+        @Override
+        public void recordLoadSuccess(long loadTime) {
+        }
+
+        @Override
+        public void recordLoadFailure(long loadTime) {
+        }
+
+        @Override
+        @Deprecated
+        public void recordEviction() {
+            recordEviction(1);
+        }
+
+        @Override
+        public void recordEviction(int weight) {
+            stats.recordFirstCacheEviction();
+        }
+
+        @Override
+        public com.github.benmanes.caffeine.cache.stats.CacheStats snapshot() {
+            // 一级缓存没有配置weigher，每个缓存的权重都是1，淘汰的权重等于淘汰次数
+            long evictions = stats.getFirstCacheEvictions();
+            return new com.github.benmanes.caffeine.cache.stats.CacheStats(stats.getFirstCacheHits(),
+                    stats.getFirstCacheMisses(), 0, 0, 0, evictions, evictions);
+        }
+    }
 }
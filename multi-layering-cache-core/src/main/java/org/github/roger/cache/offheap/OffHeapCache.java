@@ -0,0 +1,263 @@
+package org.github.roger.cache.offheap;
+
+import lombok.extern.slf4j.Slf4j;
+import org.github.roger.cache.AbstractValueAdaptingCache;
+import org.github.roger.cache.IExpireTimeAdjustable;
+import org.github.roger.enumeration.ExpireMode;
+import org.github.roger.settings.FirstCacheSetting;
+import org.github.roger.support.CacheStats;
+import org.github.roger.support.DiagnosticLog;
+import org.github.roger.support.NullValue;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.util.Assert;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.function.Function;
+
+/**
+ * 堆外一级缓存，缓存值序列化后保存在直接内存中，读取时反序列化
+ * <p>
+ * 缓存值不占用堆内存，大量缓存数据不会增加老年代GC的停顿；代价是每次读取都要反序列化，
+ * 并且每次返回的都是新的对象。内存按 {@link FirstCacheSetting#getOffHeapMaxBytes()} 限制，
+ * 超过时淘汰最早写入的数据。直接内存在第一次写入时按段分配，{@link #close()} 时释放。
+ * </p>
+ */
+@Slf4j
+public class OffHeapCache extends AbstractValueAdaptingCache implements IExpireTimeAdjustable {
+
+    private final OffHeapStore store;
+
+    private final RedisSerializer<Object> serializer;
+
+    /**
+     * 统计信息，作为caffeine和redis之间的中间层时为null，由caffeine记录一级缓存的统计信息
+     */
+    private final CacheStats stats;
+
+    /** 配置的有效时间，单位毫秒 */
+    private final long expireTime;
+
+    /**
+     * 使用name和{@link FirstCacheSetting}创建一个 {@link OffHeapCache} 实例
+     *
+     * @param name              缓存名称
+     * @param firstCacheSetting 一级缓存配置 {@link FirstCacheSetting}
+     * @param serializer        缓存值的序列化器，需要支持 {@link org.github.roger.support.CachedValue}
+     * @param staleTime         超过有效时间后仍然保留旧值的时间，单位毫秒
+     */
+    public OffHeapCache(String name, FirstCacheSetting firstCacheSetting, RedisSerializer<Object> serializer, long staleTime) {
+        this(name, firstCacheSetting, serializer, staleTime, true);
+    }
+
+    OffHeapCache(String name, FirstCacheSetting firstCacheSetting, RedisSerializer<Object> serializer, long staleTime, boolean recordStats) {
+        super(name);
+        Assert.notNull(serializer, "堆外缓存的序列化器不能为NULL");
+        this.serializer = serializer;
+        this.stats = recordStats ? CacheStats.getStats(name) : null;
+        this.expireTime = firstCacheSetting.getTimeUnit().toMillis(firstCacheSetting.getExpireTime()) + staleTime;
+        Runnable evictionListener = stats == null ? null : stats::recordFirstCacheEviction;
+        this.store = new OffHeapStore(firstCacheSetting.getOffHeapMaxBytes(), firstCacheSetting.getInitialCapacity(),
+                expireTime, ExpireMode.ACCESS.equals(firstCacheSetting.getExpireMode()), evictionListener);
+    }
+
+    @Override
+    public boolean isAllowNullValues() {
+        return false;
+    }
+
+    @Override
+    public Object getRealCache() {
+        return this.store;
+    }
+
+    @Override
+    public Object get(Object key) {
+        log.debug("堆外缓存 key={} 获取缓存", DiagnosticLog.json(key));
+        Object value = deserialize(key, store.get(key));
+        if (stats != null) {
+            if (value == null) {
+                stats.recordFirstCacheMisses(1);
+            } else {
+                stats.recordFirstCacheHits(1);
+            }
+        }
+        return value;
+    }
+
+    @Override
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        log.debug("堆外缓存 key={} 获取缓存， 如果没有命中就走库加载缓存", DiagnosticLog.json(key));
+        Object result = get(key);
+        if (result != null) {
+            return (T) fromStoreValue(result);
+        }
+        try {
+            T value = valueLoader.call();
+            put(key, value);
+            return value;
+        } catch (Exception e) {
+            throw new LoaderCacheValueException(key, e);
+        }
+    }
+
+    @Override
+    public <K> Map<K, Object> getAll(Collection<K> keys) {
+        log.debug("堆外缓存 key={} 批量获取缓存", DiagnosticLog.json(keys));
+        Map<K, Object> result = new HashMap<>(keys.size());
+        for (K key : keys) {
+            Object value = fromStoreValue(get(key));
+            if (value != null) {
+                result.put(key, value);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public <K, V> Map<K, V> getAll(Collection<K> keys, Function<Set<K>, Map<K, V>> valueLoader) {
+        Map<K, V> result = (Map<K, V>) getAll(keys);
+        Set<K> missKeys = new LinkedHashSet<>(keys);
+        missKeys.removeAll(result.keySet());
+        if (missKeys.isEmpty()) {
+            return result;
+        }
+        log.debug("堆外缓存 key={} 批量获取缓存未命中，从库批量加载缓存", DiagnosticLog.json(missKeys));
+        Map<K, V> loaded;
+        try {
+            loaded = valueLoader.apply(missKeys);
+        } catch (Exception e) {
+            throw new LoaderCacheValueException(missKeys, e);
+        }
+        if (loaded != null) {
+            putAll(loaded);
+            for (Map.Entry<K, V> entry : loaded.entrySet()) {
+                if (entry.getValue() != null && !(entry.getValue() instanceof NullValue)) {
+                    result.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        // 不允许存NULL值
+        if (value == null || value instanceof NullValue) {
+            log.debug("缓存值为NULL并且不允许存NULL值，不缓存数据");
+            return;
+        }
+        log.debug("堆外缓存 key={} put缓存，缓存值：{}", DiagnosticLog.json(key), DiagnosticLog.json(value));
+        byte[] bytes = serialize(key, value);
+        if (bytes == null || !store.put(key, bytes)) {
+            // 没有写入时删除旧值，防止读到过期的数据
+            store.remove(key);
+        }
+    }
+
+    @Override
+    public void putAll(Map<?, ?> map) {
+        log.debug("堆外缓存 key={} 批量put缓存", DiagnosticLog.json(map.keySet()));
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override
+    public Object putIfAbsent(Object key, Object value) {
+        log.debug("堆外缓存 key={} putIfAbsent 缓存，缓存值：{}", DiagnosticLog.json(key), DiagnosticLog.json(value));
+        if (value == null || value instanceof NullValue) {
+            return null;
+        }
+        byte[] bytes = serialize(key, value);
+        if (bytes == null) {
+            return value;
+        }
+        Object existing = deserialize(key, store.putIfAbsent(key, bytes));
+        return fromStoreValue(existing == null ? value : existing);
+    }
+
+    @Override
+    public void evict(Object key) {
+        log.debug("堆外缓存 key={} 清除缓存", DiagnosticLog.json(key));
+        store.remove(key);
+    }
+
+    @Override
+    public void evictAll(Collection<?> keys) {
+        log.debug("堆外缓存 key={} 批量清除缓存", DiagnosticLog.json(keys));
+        for (Object key : keys) {
+            store.remove(key);
+        }
+    }
+
+    @Override
+    public void clear() {
+        log.debug("堆外缓存 name={} 清空缓存", getName());
+        store.clear();
+    }
+
+    @Override
+    public void setExpireTime(long millis) {
+        store.setExpireTime(Math.max(millis, expireTime));
+    }
+
+    @Override
+    public void resetExpireTime() {
+        store.setExpireTime(expireTime);
+    }
+
+    /**
+     * 清空缓存并立即释放占用的直接内存，CacheManager关闭时调用，关闭后缓存不再生效
+     */
+    public void close() {
+        log.debug("堆外缓存 name={} 关闭缓存，释放直接内存", getName());
+        store.close();
+    }
+
+    /**
+     * 缓存的数据条数
+     */
+    public long size() {
+        return store.size();
+    }
+
+    /**
+     * 已经使用的堆外内存，单位字节
+     */
+    public long usedBytes() {
+        return store.usedBytes();
+    }
+
+    /**
+     * 序列化缓存值，失败时不缓存，一级缓存只是加速，不能影响业务
+     */
+    private byte[] serialize(Object key, Object value) {
+        try {
+            return serializer.serialize(value);
+        } catch (RuntimeException e) {
+            log.warn("堆外缓存 key={} 序列化缓存值失败，不缓存数据：{}", DiagnosticLog.json(key), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 反序列化缓存值，失败时删除该缓存，当作未命中
+     */
+    private Object deserialize(Object key, byte[] bytes) {
+        if (bytes == null) {
+            return null;
+        }
+        try {
+            return serializer.deserialize(bytes);
+        } catch (RuntimeException e) {
+            log.warn("堆外缓存 key={} 反序列化缓存值失败，删除缓存：{}", DiagnosticLog.json(key), e.getMessage());
+            store.remove(key);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,505 @@
+package org.github.roger.cache.offheap;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * 堆外存储，保存序列化后的缓存值
+ * <p>
+ * 数据分成多个段，每个段一把锁。每个段是一块固定大小的直接内存，按环形日志追加写入：
+ * 空间不够时从最早写入的位置开始淘汰，直到放得下新数据，所以总内存不会超过配置的字节数，也不会产生碎片。
+ * 覆盖和删除的数据只从索引中移除，占用的空间在淘汰指针经过时回收。
+ * </p>
+ * <p>
+ * 每个段的索引是线性探测的开放寻址表，用几个并行数组保存key、hash、数据位置、长度和时间，
+ * 删除时向前移动后面的元素，不需要墓碑。索引中保存的是key对象本身，缓存值只在堆外保存一份。
+ * </p>
+ * <p>
+ * 段的直接内存在第一次写入时才分配，配置了很大的上限但数据很少的缓存不会提前占用内存；
+ * 直接内存不足（超过 -XX:MaxDirectMemorySize）时不写入，只是不缓存。{@link #close()} 后立即释放直接内存，不等待GC。
+ * </p>
+ */
+@Slf4j
+class OffHeapStore {
+
+    /**
+     * 每条数据的头部：数据长度和key的hash，淘汰时用来找到索引中的位置
+     */
+    private static final int HEADER_SIZE = 8;
+
+    /**
+     * 每个段最小的内存，单位字节，大于一个段的数据不会被缓存
+     */
+    private static final long MIN_SEGMENT_BYTES = 4 * 1024 * 1024;
+
+    /**
+     * 段数上限
+     */
+    private static final int MAX_SEGMENTS = 64;
+
+    private final Segment[] segments;
+
+    private final boolean expireAfterAccess;
+
+    /**
+     * 淘汰和过期时的回调，可以为null
+     */
+    private final Runnable evictionListener;
+
+    /**
+     * 有效时间，单位毫秒
+     */
+    private volatile long expireTime;
+
+    /**
+     * 已经关闭，关闭后不再写入
+     */
+    private volatile boolean closed;
+
+    /**
+     * @param maxBytes          最多使用的内存，单位字节
+     * @param initialCapacity   初始容量
+     * @param expireTime        有效时间，单位毫秒
+     * @param expireAfterAccess true 从最后一次访问开始计算有效时间，false 从写入开始计算
+     * @param evictionListener  淘汰和过期时的回调
+     */
+    OffHeapStore(long maxBytes, int initialCapacity, long expireTime, boolean expireAfterAccess, Runnable evictionListener) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("堆外缓存的内存大小必须大于0");
+        }
+        int count = 1;
+        while (count < MAX_SEGMENTS && (maxBytes / (count * 2) >= MIN_SEGMENT_BYTES || maxBytes / count > Integer.MAX_VALUE)) {
+            count *= 2;
+        }
+        if (maxBytes / count > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("堆外缓存的内存大小不能超过" + (long) Integer.MAX_VALUE * MAX_SEGMENTS + "字节");
+        }
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment((int) (maxBytes / count), Math.max(initialCapacity / count, 16));
+        }
+        this.expireTime = expireTime;
+        this.expireAfterAccess = expireAfterAccess;
+        this.evictionListener = evictionListener;
+    }
+
+    /**
+     * 获取key对应的数据
+     *
+     * @return 数据的拷贝，没有或者已经过期时返回null
+     */
+    byte[] get(Object key) {
+        int hash = hash(key);
+        Segment segment = segmentFor(hash);
+        synchronized (segment) {
+            int slot = segment.find(key, hash);
+            if (slot < 0 || expireIfNecessary(segment, slot)) {
+                return null;
+            }
+            if (expireAfterAccess) {
+                segment.times[slot] = System.currentTimeMillis();
+            }
+            return segment.read(slot);
+        }
+    }
+
+    /**
+     * 写入数据，原来有值就覆盖
+     *
+     * @return false 数据大于一个段的内存，没有写入
+     */
+    boolean put(Object key, byte[] value) {
+        int hash = hash(key);
+        Segment segment = segmentFor(hash);
+        synchronized (segment) {
+            int slot = segment.find(key, hash);
+            if (slot >= 0) {
+                segment.remove(slot);
+            }
+            return segment.append(key, hash, value);
+        }
+    }
+
+    /**
+     * key没有对应的数据时写入
+     *
+     * @return 原来的数据，没有时返回null
+     */
+    byte[] putIfAbsent(Object key, byte[] value) {
+        int hash = hash(key);
+        Segment segment = segmentFor(hash);
+        synchronized (segment) {
+            int slot = segment.find(key, hash);
+            if (slot >= 0 && !expireIfNecessary(segment, slot)) {
+                return segment.read(slot);
+            }
+            segment.append(key, hash, value);
+            return null;
+        }
+    }
+
+    /**
+     * 删除key对应的数据
+     */
+    void remove(Object key) {
+        int hash = hash(key);
+        Segment segment = segmentFor(hash);
+        synchronized (segment) {
+            int slot = segment.find(key, hash);
+            if (slot >= 0) {
+                segment.remove(slot);
+            }
+        }
+    }
+
+    /**
+     * 清空所有数据，不释放内存
+     */
+    void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    /**
+     * 清空所有数据并释放直接内存，关闭后读取都返回null，写入都不生效
+     */
+    void close() {
+        closed = true;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.free();
+            }
+        }
+    }
+
+    /**
+     * 修改有效时间，对已经存在的数据同样生效
+     *
+     * @param expireTime 有效时间，单位毫秒
+     */
+    void setExpireTime(long expireTime) {
+        this.expireTime = expireTime;
+    }
+
+    /**
+     * 数据条数，包括已经过期但还没有被访问到的数据
+     */
+    long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * 已经使用的内存，包括被覆盖和删除但还没有回收的数据，单位字节
+     */
+    long usedBytes() {
+        long used = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                used += segment.tail - segment.head;
+            }
+        }
+        return used;
+    }
+
+    /**
+     * 已经分配的直接内存，单位字节
+     */
+    long allocatedBytes() {
+        long allocated = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                if (segment.buffer != null) {
+                    allocated += segment.capacity;
+                }
+            }
+        }
+        return allocated;
+    }
+
+    /**
+     * 最多使用的内存，单位字节
+     */
+    long maxBytes() {
+        return (long) segments[0].capacity * segments.length;
+    }
+
+    private boolean expireIfNecessary(Segment segment, int slot) {
+        if (System.currentTimeMillis() - segment.times[slot] < expireTime) {
+            return false;
+        }
+        segment.remove(slot);
+        onEviction();
+        return true;
+    }
+
+    private void onEviction() {
+        if (evictionListener != null) {
+            evictionListener.run();
+        }
+    }
+
+    private Segment segmentFor(int hash) {
+        // 用hash的高位选择段，低位用来定位索引中的位置
+        return segments[(int) (((hash & 0xFFFFFFFFL) * segments.length) >>> 32)];
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * 立即释放直接内存，释放失败时只能等待GC回收
+     */
+    private static void freeDirectBuffer(ByteBuffer buffer) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner;
+            try {
+                invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            } catch (NoSuchMethodException e) {
+                // JDK 8 没有 Unsafe.invokeCleaner，直接调用DirectByteBuffer的Cleaner
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+                return;
+            }
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            invokeCleaner.invoke(theUnsafe.get(null), buffer);
+        } catch (Exception e) {
+            log.debug("释放堆外缓存的直接内存失败，等待GC回收：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 一个段：一块环形的直接内存和它的索引
+     */
+    private final class Segment {
+
+        /**
+         * 直接内存，第一次写入时分配，关闭后为null
+         */
+        private ByteBuffer buffer;
+
+        private final int capacity;
+
+        private final byte[] header = new byte[HEADER_SIZE];
+
+        /**
+         * 最早一条数据的逻辑位置，逻辑位置对capacity取余是实际位置
+         */
+        private long head;
+
+        /**
+         * 下一条数据的逻辑位置，tail - head 是已经使用的内存
+         */
+        private long tail;
+
+        private Object[] keys;
+
+        private int[] hashes;
+
+        private long[] positions;
+
+        private int[] lengths;
+
+        /**
+         * 写入时间，按访问计算有效时间时是最后一次访问时间
+         */
+        private long[] times;
+
+        private int size;
+
+        Segment(int capacity, int initialCapacity) {
+            this.capacity = capacity;
+            allocateIndex(Integer.highestOneBit(initialCapacity * 2 - 1));
+        }
+
+        int find(Object key, int hash) {
+            int mask = keys.length - 1;
+            for (int i = hash & mask; keys[i] != null; i = (i + 1) & mask) {
+                if (hashes[i] == hash && (keys[i] == key || keys[i].equals(key))) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        byte[] read(int slot) {
+            byte[] value = new byte[lengths[slot]];
+            copy(positions[slot] + HEADER_SIZE, value, false);
+            return value;
+        }
+
+        boolean append(Object key, int hash, byte[] value) {
+            long length = (long) HEADER_SIZE + value.length;
+            if (length > capacity || closed) {
+                return false;
+            }
+            if (buffer == null) {
+                try {
+                    buffer = ByteBuffer.allocateDirect(capacity);
+                } catch (OutOfMemoryError e) {
+                    log.warn("分配堆外缓存的直接内存失败，不缓存数据，需要的内存：{}字节，{}", capacity, e.getMessage());
+                    return false;
+                }
+            }
+            while (capacity - (tail - head) < length) {
+                evictHead();
+            }
+            ByteBuffer.wrap(header).putInt(value.length).putInt(hash);
+            copy(tail, header, true);
+            copy(tail + HEADER_SIZE, value, true);
+            if ((size + 1) * 4 > keys.length * 3) {
+                resize();
+            }
+            int mask = keys.length - 1;
+            int i = hash & mask;
+            while (keys[i] != null) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            hashes[i] = hash;
+            positions[i] = tail;
+            lengths[i] = value.length;
+            times[i] = System.currentTimeMillis();
+            size++;
+            tail += length;
+            return true;
+        }
+
+        /**
+         * 淘汰最早写入的一条数据，已经被覆盖或删除的数据只回收空间
+         */
+        private void evictHead() {
+            copy(head, header, false);
+            ByteBuffer wrapped = ByteBuffer.wrap(header);
+            int length = wrapped.getInt();
+            int hash = wrapped.getInt();
+            int mask = keys.length - 1;
+            for (int i = hash & mask; keys[i] != null; i = (i + 1) & mask) {
+                if (positions[i] == head) {
+                    remove(i);
+                    onEviction();
+                    break;
+                }
+            }
+            head += HEADER_SIZE + length;
+        }
+
+        /**
+         * 删除索引中的一项，把后面同一探测序列上的元素向前移动
+         */
+        void remove(int slot) {
+            int mask = keys.length - 1;
+            int empty = slot;
+            for (int i = (slot + 1) & mask; keys[i] != null; i = (i + 1) & mask) {
+                int ideal = hashes[i] & mask;
+                // ideal 不在 (empty, i] 之间时可以移动到空位
+                boolean movable = empty <= i ? (ideal <= empty || ideal > i) : (ideal <= empty && ideal > i);
+                if (movable) {
+                    keys[empty] = keys[i];
+                    hashes[empty] = hashes[i];
+                    positions[empty] = positions[i];
+                    lengths[empty] = lengths[i];
+                    times[empty] = times[i];
+                    empty = i;
+                }
+            }
+            keys[empty] = null;
+            size--;
+        }
+
+        void clear() {
+            Arrays.fill(keys, null);
+            size = 0;
+            head = 0;
+            tail = 0;
+        }
+
+        /**
+         * 清空数据并释放直接内存
+         */
+        void free() {
+            clear();
+            if (buffer != null) {
+                freeDirectBuffer(buffer);
+                buffer = null;
+            }
+        }
+
+        private void resize() {
+            Object[] oldKeys = keys;
+            int[] oldHashes = hashes;
+            long[] oldPositions = positions;
+            int[] oldLengths = lengths;
+            long[] oldTimes = times;
+            allocateIndex(oldKeys.length * 2);
+            int mask = keys.length - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldKeys[j] == null) {
+                    continue;
+                }
+                int i = oldHashes[j] & mask;
+                while (keys[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                hashes[i] = oldHashes[j];
+                positions[i] = oldPositions[j];
+                lengths[i] = oldLengths[j];
+                times[i] = oldTimes[j];
+            }
+        }
+
+        private void allocateIndex(int length) {
+            keys = new Object[length];
+            hashes = new int[length];
+            positions = new long[length];
+            lengths = new int[length];
+            times = new long[length];
+        }
+
+        /**
+         * 在逻辑位置和字节数组之间拷贝数据，超过内存末尾的部分从头开始
+         *
+         * @param write true 写入直接内存，false 从直接内存读取
+         */
+        private void copy(long position, byte[] bytes, boolean write) {
+            int offset = (int) (position % capacity);
+            int first = Math.min(bytes.length, capacity - offset);
+            ByteBuffer view = buffer.duplicate();
+            view.position(offset);
+            if (write) {
+                view.put(bytes, 0, first);
+            } else {
+                view.get(bytes, 0, first);
+            }
+            if (first < bytes.length) {
+                view.position(0);
+                if (write) {
+                    view.put(bytes, first, bytes.length - first);
+                } else {
+                    view.get(bytes, first, bytes.length - first);
+                }
+            }
+        }
+    }
+}
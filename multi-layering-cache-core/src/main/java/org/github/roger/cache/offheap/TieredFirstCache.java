@@ -0,0 +1,182 @@
+package org.github.roger.cache.offheap;
+
+import lombok.extern.slf4j.Slf4j;
+import org.github.roger.cache.AbstractValueAdaptingCache;
+import org.github.roger.cache.IExpireTimeAdjustable;
+import org.github.roger.cache.caffeine.CaffeineCache;
+import org.github.roger.settings.FirstCacheSetting;
+import org.github.roger.support.DiagnosticLog;
+import org.github.roger.support.NullValue;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.function.Function;
+
+/**
+ * caffeine和堆外缓存组成的一级缓存，堆外缓存是caffeine和redis之间的中间层
+ * <p>
+ * caffeine按 {@link FirstCacheSetting#getMaximumSize()} 只保存最热的对象，堆外缓存按字节数保存更多的数据；
+ * caffeine未命中时查询堆外缓存，命中后放回caffeine。写入和删除同时作用于两层，
+ * 所以对 {@link org.github.roger.MultiLayeringCache} 来说仍然只有一个一级缓存，删除缓存的消息不需要区分。
+ * 统计信息只记录caffeine的命中情况。
+ * </p>
+ */
+@Slf4j
+public class TieredFirstCache extends AbstractValueAdaptingCache implements IExpireTimeAdjustable {
+
+    private final CaffeineCache caffeineCache;
+
+    private final OffHeapCache offHeapCache;
+
+    /**
+     * 使用name和{@link FirstCacheSetting}创建一个 {@link TieredFirstCache} 实例
+     *
+     * @param name              缓存名称
+     * @param firstCacheSetting 一级缓存配置 {@link FirstCacheSetting}
+     * @param serializer        堆外缓存的序列化器
+     * @param staleTime         超过有效时间后仍然保留旧值的时间，单位毫秒
+     */
+    public TieredFirstCache(String name, FirstCacheSetting firstCacheSetting, RedisSerializer<Object> serializer, long staleTime) {
+        super(name);
+        this.caffeineCache = new CaffeineCache(name, firstCacheSetting, staleTime);
+        this.offHeapCache = new OffHeapCache(name, firstCacheSetting, serializer, staleTime, false);
+    }
+
+    @Override
+    public boolean isAllowNullValues() {
+        return false;
+    }
+
+    @Override
+    public Object getRealCache() {
+        return this;
+    }
+
+    @Override
+    public Object get(Object key) {
+        Object value = caffeineCache.get(key);
+        if (value == null) {
+            value = offHeapCache.get(key);
+            if (value != null) {
+                log.debug("caffeine缓存 key={} 未命中，堆外缓存命中，放回caffeine", DiagnosticLog.json(key));
+                caffeineCache.put(key, value);
+            }
+        }
+        return value;
+    }
+
+    @Override
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        return caffeineCache.get(key, () -> (T) offHeapCache.get(key, valueLoader));
+    }
+
+    @Override
+    public <K> Map<K, Object> getAll(Collection<K> keys) {
+        Map<K, Object> result = caffeineCache.getAll(keys);
+        if (result.size() < keys.size()) {
+            Set<K> missKeys = new LinkedHashSet<>(keys);
+            missKeys.removeAll(result.keySet());
+            Map<K, Object> offHeapValues = offHeapCache.getAll(missKeys);
+            caffeineCache.putAll(offHeapValues);
+            result.putAll(offHeapValues);
+        }
+        return result;
+    }
+
+    @Override
+    public <K, V> Map<K, V> getAll(Collection<K> keys, Function<Set<K>, Map<K, V>> valueLoader) {
+        Map<K, V> result = (Map<K, V>) getAll(keys);
+        Set<K> missKeys = new LinkedHashSet<>(keys);
+        missKeys.removeAll(result.keySet());
+        if (missKeys.isEmpty()) {
+            return result;
+        }
+        Map<K, V> loaded;
+        try {
+            loaded = valueLoader.apply(missKeys);
+        } catch (Exception e) {
+            throw new LoaderCacheValueException(missKeys, e);
+        }
+        if (loaded != null) {
+            putAll(loaded);
+            for (Map.Entry<K, V> entry : loaded.entrySet()) {
+                if (entry.getValue() != null && !(entry.getValue() instanceof NullValue)) {
+                    result.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        offHeapCache.put(key, value);
+        caffeineCache.put(key, value);
+    }
+
+    @Override
+    public void putAll(Map<?, ?> map) {
+        offHeapCache.putAll(map);
+        caffeineCache.putAll(map);
+    }
+
+    @Override
+    public Object putIfAbsent(Object key, Object value) {
+        // 以数据更多的堆外缓存为准
+        Object result = offHeapCache.putIfAbsent(key, value);
+        if (result != null) {
+            caffeineCache.put(key, result);
+        }
+        return result;
+    }
+
+    @Override
+    public void evict(Object key) {
+        caffeineCache.evict(key);
+        offHeapCache.evict(key);
+    }
+
+    @Override
+    public void evictAll(Collection<?> keys) {
+        caffeineCache.evictAll(keys);
+        offHeapCache.evictAll(keys);
+    }
+
+    @Override
+    public void clear() {
+        caffeineCache.clear();
+        offHeapCache.clear();
+    }
+
+    @Override
+    public void setExpireTime(long millis) {
+        caffeineCache.setExpireTime(millis);
+        offHeapCache.setExpireTime(millis);
+    }
+
+    @Override
+    public void resetExpireTime() {
+        caffeineCache.resetExpireTime();
+        offHeapCache.resetExpireTime();
+    }
+
+    /**
+     * 清空caffeine并释放堆外缓存的直接内存，CacheManager关闭时调用
+     */
+    public void close() {
+        caffeineCache.clear();
+        offHeapCache.close();
+    }
+
+    public CaffeineCache getCaffeineCache() {
+        return caffeineCache;
+    }
+
+    public OffHeapCache getOffHeapCache() {
+        return offHeapCache;
+    }
+}
@@ -1,22 +1,62 @@
 package org.github.roger.cache.redis;
 
-import com.alibaba.fastjson.JSON;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.github.roger.cache.AbstractValueAdaptingCache;
 import org.github.roger.concurrent.RedisDistriLock;
+import org.github.roger.concurrent.RefreshScheduler;
+import org.github.roger.concurrent.SingleFlight;
 import org.github.roger.concurrent.ThreadTaskUtils;
+import org.github.roger.enumeration.RedisPubSubMessageType;
+import org.github.roger.enumeration.RefreshPolicy;
+import org.github.roger.jfr.CacheEvents;
+import org.github.roger.listener.RedisPublisher;
+import org.github.roger.message.RedisPubSubMessage;
 import org.github.roger.settings.SecondaryCacheSetting;
+import org.github.roger.serializer.CompressRedisSerializer;
+import org.github.roger.serializer.DeflateCompressor;
+import org.github.roger.serializer.StatsRedisSerializer;
 import org.github.roger.support.AwaitThreadContainer;
+import org.github.roger.support.CacheStats;
+import org.github.roger.support.CachedValue;
+import org.github.roger.support.CircuitBreakerRedisTemplate;
+import org.github.roger.support.ClearProgress;
+import org.github.roger.support.DiagnosticLog;
+import org.github.roger.support.KeyedValue;
 import org.github.roger.support.NullValue;
+import org.github.roger.trace.CacheTracing;
 import org.github.roger.utils.RedisCacheKey;
+import org.github.roger.utils.RedisTemplateUtils;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisClusterNode;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.util.Assert;
 import org.springframework.util.CollectionUtils;
 
-import java.util.Set;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 @Slf4j
 @Getter
@@ -31,16 +71,101 @@ public class RedisCache  extends AbstractValueAdaptingCache {
      */
     private static final long WAIT_TIME = 20;
 
+    /**
+     * 本机缓存的版本号重新从redis读取的间隔时间，单位毫秒
+     */
+    private static final long GENERATION_RELOAD_TIME = 60 * 1000;
+
+    /**
+     * 保存缓存名称版本号的redis key前缀
+     */
+    private static final String GENERATION_KEY_PREFIX = "multi-layering-cache:generation:";
+
+    /**
+     * 登记紧凑key的ID的redis hash，field是key中的缓存名称"~ID"，value是缓存名称，只有开启紧凑key时才会写入。
+     * <p>
+     * 用来检查紧凑key的ID冲突。这个hash没有过期时间，redis的淘汰策略必须是noeviction（或者只淘汰有过期时间的key的volatile-*），
+     * 否则登记信息被淘汰后无法发现ID冲突
+     * </p>
+     */
+    private static final String NAME_REGISTRY_KEY = "{multi-layering-cache:names}";
+
+    /**
+     * 本机使用过的普通（非紧凑）缓存名称，清空缓存时排除以"缓存名称:"开头的其他缓存
+     */
+    private static final Set<String> PLAIN_KEY_NAMES = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 登记缓存名称的lua脚本，返回field已经登记的缓存名称，没有登记时登记并返回当前缓存名称
+     */
+    private static final byte[] REGISTER_NAME_SCRIPT = ("local name = redis.call('HGET', KEYS[1], ARGV[1]) "
+            + "if name then "
+            + "    return name "
+            + "end "
+            + "redis.call('HSET', KEYS[1], ARGV[1], ARGV[2]) "
+            + "return ARGV[2] ").getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * 紧凑key中缓存名称ID的位数，ID取缓存名称SHA-1摘要的前40位
+     */
+    private static final int COMPACT_NAME_BITS = 40;
+
+    /**
+     * 紧凑key中缓存名称ID的标识，区分正常的缓存名称
+     */
+    private static final String COMPACT_NAME_FLAG = "~";
+
+    /**
+     * SCAN命令的起始游标，返回这个游标表示扫描结束
+     */
+    private static final byte[] SCAN_START = "0".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * 从指定游标扫描一批key的lua脚本，返回 {下一个游标, {key...}}。
+     * 通过脚本执行是为了拿到游标，spring-data-redis的SCAN游标绑定在一个连接上，不能分多次execute继续扫描
+     */
+    private static final byte[] SCAN_SCRIPT = "return redis.call('SCAN', ARGV[1], 'MATCH', ARGV[2], 'COUNT', ARGV[3]) "
+            .getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * 一次往返读取缓存的lua脚本
+     * <p>
+     * key不存在时返回 {0, -2}，存在时返回 {1, 剩余有效时间(毫秒), 缓存值}。
+     * 缓存值放在最后，是因为lua的table遇到nil会被截断
+     * </p>
+     */
+    private static final RedisScript<List> GET_WITH_TTL_SCRIPT = RedisScript.of(
+            "local value = redis.call('GET', KEYS[1]) "
+                    + "if not value then "
+                    + "    return {0, -2} "
+                    + "end "
+                    + "return {1, redis.call('PTTL', KEYS[1]), value} ", List.class);
+
     /**
      * 等待线程容器
      */
     private AwaitThreadContainer container = new AwaitThreadContainer();
 
+    /**
+     * 各个缓存名称单机内合并并发加载的容器，同一个缓存名称（即使配置不同）共用一个
+     */
+    private static final ConcurrentMap<String, SingleFlight> SINGLE_FLIGHTS = new ConcurrentHashMap<>();
+
+    /**
+     * 单机内按redis key合并同一个key的并发加载，只有一个线程去竞争分布式锁和执行被缓存的方法
+     */
+    private final SingleFlight singleFlight;
+
     /**
      * redis 客户端 即缓存对象
      */
     private RedisTemplate<String, Object> redisTemplate;
 
+    /**
+     * 缓存名称的统计信息
+     */
+    private final CacheStats stats;
+
     /**
      * 缓存有效时间,毫秒
      */
@@ -63,6 +188,25 @@ public class RedisCache  extends AbstractValueAdaptingCache {
      */
     private boolean forceRefresh = false;
 
+    /**
+     * 刷新策略，默认是固定刷新窗口
+     */
+    private RefreshPolicy refreshPolicy = RefreshPolicy.FIXED_WINDOW;
+
+    /**
+     * 概率提前刷新的系数，大于1提前刷新得更早，小于1更晚，refreshPolicy=PROBABILISTIC才有效
+     */
+    private double beta = 1.0;
+
+    /**
+     * 超过缓存有效时间后仍然可以使用旧值的最长时间，单位毫秒，0表示不开启
+     * <p>
+     * 开启后缓存有效时间只是逻辑过期时间，redis中的实际有效时间是 expiration + maxStaleness。
+     * 超过逻辑过期时间的旧值直接返回，同时异步重新加载；加载失败时继续使用旧值直到实际过期
+     * </p>
+     */
+    private long maxStaleness = 0;
+
     /**
      * 是否使用缓存名称作为 redis key 前缀
      */
@@ -82,6 +226,71 @@ public class RedisCache  extends AbstractValueAdaptingCache {
      */
     private final int magnification;
 
+    /**
+     * 是否使用lua脚本一次往返读取缓存，redis不支持EVAL命令时会自动降级
+     */
+    private volatile boolean useScriptRead = true;
+
+    /**
+     * 加载完成消息中携带缓存值的最大字节数，超过时只通知不携带缓存值，小于等于0表示不携带缓存值
+     */
+    private int loadedMessageValueLimit = 16 * 1024;
+
+    /**
+     * 强制刷新缓存的调度器，由CacheManager设置，没有设置时使用{@link ThreadTaskUtils}
+     */
+    private volatile RefreshScheduler refreshScheduler;
+
+    /**
+     * 清空缓存时每批 SCAN 和 UNLINK 的key数量
+     */
+    private int clearBatchSize = 1000;
+
+    /**
+     * 清空缓存时每批之间暂停的毫秒数
+     */
+    private long clearBatchPause = 0;
+
+    /**
+     * 是否在后台线程清空缓存
+     */
+    private boolean asyncClear = false;
+
+    /**
+     * 是否给缓存key加上缓存名称的版本号
+     */
+    private boolean useGeneration = false;
+
+    /**
+     * 本机缓存的版本号，小于0表示还没有从redis读取
+     */
+    private volatile long generation = -1;
+
+    /**
+     * 本机版本号的读取时间，超过{@link #GENERATION_RELOAD_TIME}重新读取一次，防止漏掉清空消息
+     */
+    private volatile long generationLoadTime = 0;
+
+    /**
+     * 是否使用紧凑的redis key（缓存名称换成数字ID，过长的key换成摘要）
+     */
+    private boolean compactKey = false;
+
+    /**
+     * key的摘要阈值，序列化后超过这个字节数的key替换成摘要，compactKey = true才有效
+     */
+    private int keyDigestThreshold = 64;
+
+    /**
+     * redis key中使用的缓存名称，使用紧凑key时是根据缓存名称计算出来的"~ID"
+     */
+    private volatile String keyName;
+
+    /**
+     * 缓存前缀，版本号变化时重新计算
+     */
+    private volatile KeyPrefix keyPrefix;
+
     /**
      * @param name                  缓存名称
      * @param redisTemplate         redis客户端 redis 客户端
@@ -89,10 +298,24 @@ public class RedisCache  extends AbstractValueAdaptingCache {
      */
     public RedisCache(String name, RedisTemplate<String, Object> redisTemplate, SecondaryCacheSetting secondaryCacheSetting) {
 
-        this(name, redisTemplate, secondaryCacheSetting.getTimeUnit().toMillis(secondaryCacheSetting.getExpiration()),
+        this(name, cacheTemplate(redisTemplate, name, secondaryCacheSetting.isCompress(), secondaryCacheSetting.getCompressThreshold()),
+                secondaryCacheSetting.getTimeUnit().toMillis(secondaryCacheSetting.getExpiration()),
                 secondaryCacheSetting.getTimeUnit().toMillis(secondaryCacheSetting.getPreloadTime()),
                 secondaryCacheSetting.isForceRefresh(), secondaryCacheSetting.isUsePrefix(),
                 secondaryCacheSetting.isAllowNullValue(), secondaryCacheSetting.getMagnification());
+        this.useScriptRead = secondaryCacheSetting.isUseScriptRead();
+        this.loadedMessageValueLimit = secondaryCacheSetting.getLoadedMessageValueLimit();
+        this.refreshPolicy = secondaryCacheSetting.getRefreshPolicy();
+        this.beta = secondaryCacheSetting.getBeta();
+        this.maxStaleness = secondaryCacheSetting.getTimeUnit().toMillis(secondaryCacheSetting.getMaxStaleness());
+        this.clearBatchSize = secondaryCacheSetting.getClearBatchSize();
+        this.clearBatchPause = secondaryCacheSetting.getClearBatchPause();
+        this.asyncClear = secondaryCacheSetting.isAsyncClear();
+        this.useGeneration = secondaryCacheSetting.isUseGeneration() && secondaryCacheSetting.isUsePrefix();
+        // 旧版本的key只能等待过期删除，没有有效时间的key会一直留在redis中
+        Assert.isTrue(!useGeneration || expiration > 0, "缓存" + name + "开启了版本号清空缓存，必须设置二级缓存的有效时间");
+        this.compactKey = secondaryCacheSetting.isCompactKey() && secondaryCacheSetting.isUsePrefix();
+        this.keyDigestThreshold = secondaryCacheSetting.getKeyDigestThreshold();
     }
 
     /**
@@ -111,6 +334,8 @@ public class RedisCache  extends AbstractValueAdaptingCache {
 
         Assert.notNull(redisTemplate, "RedisTemplate 不能为NULL");
         this.redisTemplate = redisTemplate;
+        this.stats = CacheStats.getStats(name);
+        this.singleFlight = SINGLE_FLIGHTS.computeIfAbsent(name, n -> new SingleFlight());
         this.expiration = expiration;
         this.preloadTime = preloadTime;
         this.forceRefresh = forceRefresh;
@@ -119,6 +344,42 @@ public class RedisCache  extends AbstractValueAdaptingCache {
         this.magnification = magnification;
     }
 
+    /**
+     * 复制一个当前缓存专用的RedisTemplate，值序列化器按缓存名称记录序列化耗时和数据大小，开启压缩时只压缩当前缓存的值，
+     * 压缩统计信息同样按缓存名称记录。原RedisTemplate的值序列化器已经带压缩时不再重复压缩。
+     * 除了值序列化器，其他配置和原RedisTemplate一致，见 {@link RedisTemplateUtils#copyProperties}
+     */
+    private static RedisTemplate<String, Object> cacheTemplate(RedisTemplate<String, Object> redisTemplate, String name,
+                                                               boolean compress, int threshold) {
+        Assert.notNull(redisTemplate, "RedisTemplate 不能为NULL");
+        RedisSerializer<Object> valueSerializer = (RedisSerializer<Object>) redisTemplate.getValueSerializer();
+        if (valueSerializer instanceof StatsRedisSerializer) {
+            valueSerializer = ((StatsRedisSerializer<Object>) valueSerializer).getDelegate();
+        }
+        if (compress && !(valueSerializer instanceof CompressRedisSerializer)) {
+            valueSerializer = new CompressRedisSerializer<>(valueSerializer, threshold, new DeflateCompressor(), name);
+        }
+        RedisTemplate<String, Object> cacheTemplate;
+        if (redisTemplate instanceof CircuitBreakerRedisTemplate) {
+            cacheTemplate = new CircuitBreakerRedisTemplate(redisTemplate, ((CircuitBreakerRedisTemplate) redisTemplate).getCircuitBreaker());
+        } else {
+            cacheTemplate = new RedisTemplate<>();
+            RedisTemplateUtils.copyProperties(redisTemplate, cacheTemplate);
+        }
+        cacheTemplate.setValueSerializer(new StatsRedisSerializer<>(valueSerializer, name));
+        cacheTemplate.afterPropertiesSet();
+        return cacheTemplate;
+    }
+
+    /**
+     * 设置强制刷新缓存的调度器
+     *
+     * @param refreshScheduler {@link RefreshScheduler}
+     */
+    public void setRefreshScheduler(RefreshScheduler refreshScheduler) {
+        this.refreshScheduler = refreshScheduler;
+    }
+
     @Override
     public boolean isAllowNullValues() {
         return this.allowNullValues;
@@ -136,59 +397,349 @@ public class RedisCache  extends AbstractValueAdaptingCache {
      * @return RedisCacheKey
      */
     public RedisCacheKey getRedisCacheKey(Object key) {
-        return new RedisCacheKey(key, redisTemplate.getKeySerializer())
-                .cacheName(getName()).usePrefix(usePrefix);
+        RedisCacheKey redisCacheKey = new RedisCacheKey(key, redisTemplate.getKeySerializer())
+                .cacheName(getName()).usePrefix(usePrefix).digestThreshold(compactKey ? keyDigestThreshold : 0);
+        return usePrefix ? redisCacheKey.prefix(getKeyPrefix()) : redisCacheKey;
+    }
+
+    /**
+     * 获取缓存前缀，同一个版本号的前缀只计算一次
+     */
+    private byte[] getKeyPrefix() {
+        long currentGeneration = useGeneration ? getGeneration() : -1;
+        KeyPrefix current = keyPrefix;
+        if (current == null || current.generation != currentGeneration) {
+            current = new KeyPrefix(currentGeneration, RedisCacheKey.prefixBytes(getKeyName(), currentGeneration));
+            keyPrefix = current;
+        }
+        return current.bytes;
+    }
+
+    /**
+     * 获取redis key中使用的缓存名称，使用紧凑key时是"~ID"，ID是缓存名称SHA-1摘要的前40位（36进制），各个节点计算的结果相同
+     * <p>
+     * 紧凑key第一次获取时在 {@link #NAME_REGISTRY_KEY} 中登记，ID已经被其他缓存名称登记时抛出异常，不会和其他缓存共用key；
+     * 普通缓存名称不访问redis，只记录在本机，用于清空其他缓存时的排除
+     * </p>
+     *
+     * @return String
+     */
+    public String getKeyName() {
+        String current = keyName;
+        if (current != null) {
+            return current;
+        }
+        if (!compactKey) {
+            PLAIN_KEY_NAMES.add(getName());
+            keyName = getName();
+            return keyName;
+        }
+        current = compactName(getName());
+        String registered = registerKeyName(current);
+        if (!getName().equals(registered)) {
+            throw new IllegalStateException("缓存名称" + getName() + "和" + registered + "在redis key中使用的名称都是" + current
+                    + "，请修改其中一个缓存名称或者关闭紧凑key");
+        }
+        log.info("缓存{}在redis key中使用的名称是{}", getName(), current);
+        keyName = current;
+        return current;
+    }
+
+    /**
+     * 登记redis key中使用的缓存名称
+     *
+     * @param name redis key中使用的缓存名称
+     * @return 已经登记的缓存名称
+     */
+    private String registerKeyName(String name) {
+        byte[] registered = redisTemplate.execute((RedisCallback<byte[]>) connection -> connection.eval(REGISTER_NAME_SCRIPT,
+                ReturnType.VALUE, 1, rawString(NAME_REGISTRY_KEY), rawString(name), rawString(getName())));
+        Assert.notNull(registered, "登记缓存名称失败");
+        return ((RedisSerializer<String>) redisTemplate.getKeySerializer()).deserialize(registered);
+    }
+
+    private static String compactName(String name) {
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1").digest(name.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        long id = 0;
+        for (int i = 0; i < COMPACT_NAME_BITS / 8; i++) {
+            id = (id << 8) | (digest[i] & 0xFF);
+        }
+        return COMPACT_NAME_FLAG + Long.toString(id, Character.MAX_RADIX);
+    }
+
+    /**
+     * 获取缓存名称当前的版本号，优先使用本机缓存的版本号，不会每次读缓存都多一次redis访问
+     *
+     * @return 版本号，没有开启版本号时返回-1
+     */
+    public long getGeneration() {
+        if (!useGeneration) {
+            return -1;
+        }
+        long current = generation;
+        if (current >= 0 && System.currentTimeMillis() - generationLoadTime < GENERATION_RELOAD_TIME) {
+            return current;
+        }
+        byte[] value = redisTemplate.execute((RedisCallback<byte[]>) connection -> connection.get(generationKey()));
+        long loaded = value == null ? 0 : Long.parseLong(new String(value, StandardCharsets.UTF_8));
+        updateGeneration(loaded);
+        return generation;
+    }
+
+    /**
+     * 收到清空消息后更新本机缓存的版本号，版本号只增不减
+     *
+     * @param newGeneration 新的版本号
+     */
+    public void onGenerationChanged(long newGeneration) {
+        if (useGeneration) {
+            updateGeneration(newGeneration);
+        }
+    }
+
+    private synchronized void updateGeneration(long newGeneration) {
+        if (newGeneration > generation) {
+            log.info("缓存{}的版本号从{}变为{}", getName(), generation, newGeneration);
+            generation = newGeneration;
+        }
+        generationLoadTime = System.currentTimeMillis();
+    }
+
+    private byte[] generationKey() {
+        return rawString(GENERATION_KEY_PREFIX + getName());
+    }
+
+    private byte[] rawString(String value) {
+        return ((RedisSerializer<String>) redisTemplate.getKeySerializer()).serialize(value);
     }
 
     @Override
     public Object get(Object key) {
+        return unwrap(getWrapped(key));
+    }
 
+    /**
+     * 查询缓存，和 {@link #get(Object)} 一样，只是不拆开包装值
+     * <p>
+     * 开启过期后继续使用旧值时返回带逻辑过期时间的 {@link CachedValue}，
+     * 一级缓存回填时沿用这个逻辑过期时间，旧值放到一级缓存后仍然是旧值
+     * </p>
+     *
+     * @param key 缓存key
+     * @return redis中保存的缓存值（可能是 {@link CachedValue}），没有缓存时返回null
+     */
+    public Object getWrapped(Object key) {
         RedisCacheKey redisCacheKey = getRedisCacheKey(key);
 
         log.debug("redis缓存 key= {} 查询redis缓存", redisCacheKey.getKey());
-        return redisTemplate.opsForValue().get(redisCacheKey.getKey());
+        Object result = getStoreValue(redisCacheKey);
+        recordGet(result != null);
+        return result;
+    }
+
+    /**
+     * 查询redis中的缓存值
+     *
+     * @return 缓存值（可能是 {@link CachedValue}），没有缓存或者摘要冲突时返回null
+     */
+    private Object getStoreValue(RedisCacheKey redisCacheKey) {
+        return checkFullKey(redisCacheKey, roundTrip("get", () -> redisTemplate.opsForValue().get(redisCacheKey.getKey()), Objects::nonNull));
+    }
+
+    /**
+     * 执行一次redis往返，并记录二级缓存的JFR事件和链路追踪的span
+     *
+     * @param operation 操作
+     * @param call      redis操作
+     * @param hit       根据返回值判断是否命中，写操作为null
+     * @return redis操作的返回值
+     */
+    private <R> R roundTrip(String operation, Supplier<R> call, Predicate<R> hit) {
+        Object event = CacheEvents.begin(CacheEvents.Type.SECOND_CACHE, operation);
+        Object span = CacheTracing.startSpan("cache.second." + operation, getName());
+        R result;
+        try {
+            result = call.get();
+        } catch (RuntimeException e) {
+            CacheEvents.commit(event, getName(), CacheEvents.LAYER_SECOND, CacheEvents.OUTCOME_ERROR, 0);
+            CacheTracing.endWithError(span, e);
+            throw e;
+        }
+        String outcome = hit == null ? CacheEvents.OUTCOME_SUCCESS : hit.test(result) ? CacheEvents.OUTCOME_HIT : CacheEvents.OUTCOME_MISS;
+        CacheEvents.commit(event, getName(), CacheEvents.LAYER_SECOND, outcome, 0);
+        CacheTracing.end(span, CacheEvents.LAYER_SECOND, outcome);
+        return result;
+    }
+
+    /**
+     * 记录二级缓存是否命中
+     */
+    private void recordGet(boolean hit) {
+        if (hit) {
+            stats.recordSecondCacheHits(1);
+        } else {
+            stats.recordSecondCacheMisses(1);
+        }
     }
 
     @Override
     public <T> T get(Object key, Callable<T> valueLoader) {
+        return (T) fromStoreValue(unwrap(getWrapped(key, valueLoader)));
+    }
+
+    /**
+     * 查询缓存，没有命中时执行被缓存的方法，和 {@link #get(Object, Callable)} 一样，只是命中时不拆开包装值
+     *
+     * @param key         缓存key
+     * @param valueLoader 被缓存的方法
+     * @return 命中时是redis中保存的缓存值（可能是 {@link CachedValue}），没有命中时是加载的值
+     * @see #getWrapped(Object)
+     */
+    public <T> Object getWrapped(Object key, Callable<T> valueLoader) {
         RedisCacheKey redisCacheKey = getRedisCacheKey(key);
         log.debug("redis缓存 key= {} 查询redis缓存如果没有命中，从数据库获取数据", redisCacheKey.getKey());
+        if (useScriptRead) {
+            List<Object> reply = null;
+            try {
+                reply = getWithTtl(redisCacheKey);
+            } catch (RedisSystemException e) {
+                // 只有redis确实不支持lua脚本时才降级，网络抖动等异常直接抛出，下次仍然使用脚本读取
+                if (!isScriptUnsupported(e)) {
+                    throw e;
+                }
+                useScriptRead = false;
+                log.warn("redis缓存 {} 不支持EVAL命令，降级为多条命令读取缓存：{}", getName(), e.getMessage());
+            }
+            // 加载数据和写缓存在try之外，写缓存失败不会重新执行一遍查询和被缓存的方法
+            if (useScriptRead) {
+                return getByScript(redisCacheKey, reply, valueLoader);
+            }
+        }
         // 先获取缓存，如果有直接返回
-        Object result = redisTemplate.opsForValue().get(redisCacheKey.getKey());
-        if (result != null || redisTemplate.hasKey(redisCacheKey.getKey())) {
+        Object result = getStoreValue(redisCacheKey);
+        // 摘要key的缓存值都带有完整key，不会是NULL，读取到NULL说明没有缓存或者摘要冲突
+        if (result != null || (!redisCacheKey.isDigested() && redisTemplate.hasKey(redisCacheKey.getKey()))) {
+            recordGet(true);
             // 刷新缓存
-            refreshCache(redisCacheKey, valueLoader, result);
-            return (T) fromStoreValue(result);
+            Long ttl = redisTemplate.getExpire(redisCacheKey.getKey());
+            refreshCache(redisCacheKey, valueLoader, result, null == ttl ? -2 : TimeUnit.SECONDS.toMillis(ttl));
+            return result;
+        }
+        recordGet(false);
+        // 执行缓存方法
+        return executeCacheMethodOnce(redisCacheKey, valueLoader);
+    }
+
+    /**
+     * 通过lua脚本一次往返获取缓存值、key是否存在以及剩余有效时间
+     */
+    private List<Object> getWithTtl(RedisCacheKey redisCacheKey) {
+        return roundTrip("getWithTtl", () -> redisTemplate.execute(GET_WITH_TTL_SCRIPT,
+                Collections.singletonList(redisCacheKey.getKey())), r -> r != null && Long.valueOf(1).equals(r.get(0)));
+    }
+
+    /**
+     * 异常是否说明redis不支持lua脚本（没有EVAL命令或者脚本不可用）
+     */
+    private static boolean isScriptUnsupported(Throwable e) {
+        while (e != null) {
+            String message = e.getMessage();
+            if (message != null) {
+                String upperMessage = message.toUpperCase(Locale.ROOT);
+                if (upperMessage.contains("NOSCRIPT") || upperMessage.contains("UNKNOWN COMMAND")) {
+                    return true;
+                }
+            }
+            e = e.getCause() == e ? null : e.getCause();
         }
+        return false;
+    }
+
+    /**
+     * 根据lua脚本的返回值获取缓存，没有命中时执行被缓存的方法
+     */
+    private <T> Object getByScript(RedisCacheKey redisCacheKey, List<Object> reply, Callable<T> valueLoader) {
+        if (reply != null && reply.size() == 3 && Long.valueOf(1).equals(reply.get(0))) {
+            Object result = checkFullKey(redisCacheKey, reply.get(2));
+            if (result != null || !redisCacheKey.isDigested()) {
+                recordGet(true);
+                // 刷新缓存
+                refreshCache(redisCacheKey, valueLoader, result, (Long) reply.get(1));
+                return result;
+            }
+        }
+        recordGet(false);
         // 执行缓存方法
-        return executeCacheMethod(redisCacheKey, valueLoader);
+        return executeCacheMethodOnce(redisCacheKey, valueLoader);
     }
 
     /**
      * 刷新缓存数据
+     *
+     * @param ttl 缓存剩余有效时间，单位毫秒
      */
-    private <T> void refreshCache(RedisCacheKey redisCacheKey, Callable<T> valueLoader, Object result) {
-        Long ttl = redisTemplate.getExpire(redisCacheKey.getKey());
-        Long preload = preloadTime;
-        // 允许缓存NULL值，则自动刷新时间也要除以倍数
-        boolean flag = isAllowNullValues() && (result instanceof NullValue || result == null);
-        if (flag) {
-            preload = preload / getMagnification();
+    private <T> void refreshCache(RedisCacheKey redisCacheKey, Callable<T> valueLoader, Object result, long ttl) {
+        if (result instanceof CachedValue && ((CachedValue) result).getSoftExpireAt() > 0) {
+            // 使用逻辑过期时间判断是否需要刷新
+            ttl = ((CachedValue) result).getSoftExpireAt() - System.currentTimeMillis();
+            if (ttl <= 0) {
+                log.debug("redis缓存 key={} 超过逻辑过期时间，返回旧值并异步重新加载", redisCacheKey.getKey());
+                revalidate(redisCacheKey, valueLoader);
+                return;
+            }
+            // 软刷新只能延长实际有效时间，不能修改逻辑过期时间，只保留强刷新
+            if (!isForceRefresh()) {
+                return;
+            }
         }
-        //这里的判断含义是：当前缓存的key还没到失效时间
-        //并且是否满足强制刷新的时间 TimeUnit.SECONDS.toMillis(ttl) <= preload
-        if (null != ttl && ttl > 0 && TimeUnit.SECONDS.toMillis(ttl) <= preload) {
+        if (isNeedRefresh(result, ttl)) {
             // 判断是否需要强制刷新在开启刷新线程
             if (!isForceRefresh()) {
                 log.debug("redis缓存 key={} 软刷新缓存模式", redisCacheKey.getKey());
                 softRefresh(redisCacheKey);
             } else {
                 log.debug("redis缓存 key={} 强刷新缓存模式", redisCacheKey.getKey());
-                forceRefresh(redisCacheKey, valueLoader);
+                forceRefresh(redisCacheKey, valueLoader, ttl);
             }
         }
     }
 
+    /**
+     * 判断是否需要刷新缓存
+     *
+     * @param result 缓存值（可能是包装后的）
+     * @param ttl    缓存剩余有效时间，单位毫秒
+     * @return true 需要刷新
+     */
+    private boolean isNeedRefresh(Object result, long ttl) {
+        // 当前缓存的key已经失效或者没有设置有效时间
+        if (ttl <= 0) {
+            return false;
+        }
+        // XFetch：-loadCost * beta * ln(random) >= ttl 时提前刷新，
+        // 每个请求各自抽样，刷新时间分散开，加载越慢、越接近过期，提前刷新的概率越大
+        if (refreshPolicy == RefreshPolicy.PROBABILISTIC && result instanceof CachedValue
+                && ((CachedValue) result).getLoadCost() > 0) {
+            double random = 1.0 - ThreadLocalRandom.current().nextDouble();
+            return -((CachedValue) result).getLoadCost() * beta * Math.log(random) >= ttl;
+        }
+
+        long preload = preloadTime;
+        // 允许缓存NULL值，则自动刷新时间也要除以倍数
+        Object value = unwrap(result);
+        boolean flag = isAllowNullValues() && (value instanceof NullValue || value == null);
+        if (flag) {
+            preload = preload / getMagnification();
+        }
+        // 是否满足强制刷新的时间 ttl <= preload
+        return ttl <= preload;
+    }
+
     /**
      * 软刷新，直接修改缓存时间
      *
@@ -197,9 +748,11 @@ public class RedisCache  extends AbstractValueAdaptingCache {
     private void softRefresh(RedisCacheKey redisCacheKey) {
         // 加一个分布式锁，只放一个请求去刷新缓存
         RedisDistriLock redisLock = new RedisDistriLock(redisTemplate, redisCacheKey.getKey() + "_lock");
+        redisLock.setCacheName(getName());
         try {
             if (redisLock.tryLock()) {
                 redisTemplate.expire(redisCacheKey.getKey(), this.expiration, TimeUnit.MILLISECONDS);
+                stats.recordSoftRefresh();
             }
         } catch (Exception e) {
             log.error(e.getMessage(), e);
@@ -213,19 +766,22 @@ public class RedisCache  extends AbstractValueAdaptingCache {
      *
      * @param redisCacheKey {@link RedisCacheKey}
      * @param valueLoader   数据加载器
+     * @param triggerTtl    触发刷新时缓存的剩余有效时间，单位毫秒
      */
-    private <T> void forceRefresh(RedisCacheKey redisCacheKey, Callable<T> valueLoader) {
+    private <T> void forceRefresh(RedisCacheKey redisCacheKey, Callable<T> valueLoader, long triggerTtl) {
         // 尽量少的去开启线程，因为线程池是有限的
-        ThreadTaskUtils.run(() -> {
+        Runnable refreshTask = () -> {
             // 加一个分布式锁，只放一个请求去刷新缓存
             RedisDistriLock redisLock = new RedisDistriLock(redisTemplate, redisCacheKey.getKey() + "_lock");
+            redisLock.setCacheName(getName());
             try {
                 if (redisLock.lock()) {
-                    // 获取锁之后再判断一下过期时间，看是否需要加载数据
-                    Long ttl = redisTemplate.getExpire(redisCacheKey.getKey());
-                    if (null != ttl && ttl > 0 && TimeUnit.SECONDS.toMillis(ttl) <= preloadTime) {
+                    // 获取锁之后再判断一下过期时间，看是否需要加载数据（概率提前刷新时可能早于preloadTime触发）
+                    Long ttl = redisTemplate.getExpire(redisCacheKey.getKey(), TimeUnit.MILLISECONDS);
+                    if (null != ttl && ttl > 0 && ttl - maxStaleness <= Math.max(preloadTime, triggerTtl)) {
+                        stats.recordForceRefresh();
                         // 加载数据并放到缓存
-                        loaderAndPutValue(redisCacheKey, valueLoader, false);
+                        loaderAndPutValue(redisCacheKey, valueLoader, false, false);
                     }
                 }
             } catch (Exception e) {
@@ -233,27 +789,174 @@ public class RedisCache  extends AbstractValueAdaptingCache {
             } finally {
                 redisLock.unlock();
             }
+        };
+        submitRefresh(redisCacheKey, refreshTask);
+    }
+
+    /**
+     * 缓存超过逻辑过期时间后异步重新加载，加载失败时继续使用旧值
+     *
+     * @param redisCacheKey {@link RedisCacheKey}
+     * @param valueLoader   数据加载器
+     */
+    private <T> void revalidate(RedisCacheKey redisCacheKey, Callable<T> valueLoader) {
+        submitRefresh(redisCacheKey, () -> {
+            // 加一个分布式锁，只放一个请求去重新加载
+            RedisDistriLock redisLock = new RedisDistriLock(redisTemplate, redisCacheKey.getKey() + "_lock");
+            redisLock.setCacheName(getName());
+            try {
+                if (redisLock.tryLock()) {
+                    // 获取锁之后再判断一下是否已经被其他节点重新加载
+                    Object current = getStoreValue(redisCacheKey);
+                    if (current == null || (current instanceof CachedValue && ((CachedValue) current).isStale())) {
+                        stats.recordForceRefresh();
+                        loaderAndPutValue(redisCacheKey, valueLoader, false, false);
+                    }
+                }
+            } catch (Exception e) {
+                log.warn("redis缓存 key={} 异步重新加载失败，继续使用旧值：{}", redisCacheKey.getKey(), e.getMessage());
+            } finally {
+                redisLock.unlock();
+            }
         });
     }
 
+    /**
+     * 提交异步刷新任务，同一个key只排队一个刷新任务
+     */
+    private void submitRefresh(RedisCacheKey redisCacheKey, Runnable refreshTask) {
+        Runnable task = traceRefresh(refreshTask);
+        if (refreshScheduler != null) {
+            if (!refreshScheduler.submit(getName(), redisCacheKey.getKey(), task)) {
+                stats.recordDroppedRefresh();
+            }
+        } else {
+            ThreadTaskUtils.run(task);
+        }
+    }
+
+    /**
+     * 触发刷新的请求被采样时，刷新任务在一个关联到该请求的新链路中执行
+     */
+    private Runnable traceRefresh(Runnable refreshTask) {
+        Object trigger = CacheTracing.currentSpan();
+        if (trigger == null) {
+            return refreshTask;
+        }
+        return () -> {
+            Object span = CacheTracing.startLinkedSpan("cache.refresh", getName(), trigger);
+            try {
+                refreshTask.run();
+            } catch (RuntimeException e) {
+                CacheTracing.endWithError(span, e);
+                throw e;
+            }
+            CacheTracing.end(span, null, CacheEvents.OUTCOME_SUCCESS);
+        };
+    }
+
     /**
      * 加载并将数据放到redis缓存
+     *
+     * @param isLoad    是否是缓存未命中时的加载，是的话加载完成后通知等待线程
+     * @param contended 加载前是否发现有其他线程在等待或者加载同一个key
      */
-    private <T> T loaderAndPutValue(RedisCacheKey key, Callable<T> valueLoader, boolean isLoad) {
+    private <T> T loaderAndPutValue(RedisCacheKey key, Callable<T> valueLoader, boolean isLoad, boolean contended) {
         long start = System.currentTimeMillis();
-
+        long loadStart = System.nanoTime();
+        Object loadEvent = CacheEvents.begin(CacheEvents.Type.LOAD, "load");
+        Object loadSpan = CacheTracing.startSpan("cache.load", getName());
+        boolean loaded = false;
         try {
             // 加载数据
-            Object result = putValue(key, valueLoader.call());
-            log.debug("redis缓存 key={} 执行被缓存的方法，并将其放入缓存, 耗时：{}。数据:{}", key.getKey(), System.currentTimeMillis() - start, JSON.toJSONString(result));
+            Object value = valueLoader.call();
+            loaded = true;
+            stats.recordLoad(loadStart, true);
+            CacheEvents.commit(loadEvent, getName(), CacheEvents.LAYER_LOADER, CacheEvents.OUTCOME_SUCCESS, 0);
+            CacheTracing.end(loadSpan, CacheEvents.LAYER_LOADER, CacheEvents.OUTCOME_SUCCESS);
+            Object result = putValue(key, value, System.currentTimeMillis() - start);
+            log.debug("redis缓存 key={} 执行被缓存的方法，并将其放入缓存, 耗时：{}。数据:{}", key.getKey(), System.currentTimeMillis() - start, DiagnosticLog.json(result));
+            if (isLoad) {
+                notifyLoaded(key, result, contended);
+            }
 
             return (T) fromStoreValue(result);
         } catch (Exception e) {
+            if (!loaded) {
+                stats.recordLoad(loadStart, false);
+                CacheEvents.commit(loadEvent, getName(), CacheEvents.LAYER_LOADER, CacheEvents.OUTCOME_FAILURE, 0);
+                CacheTracing.endWithError(loadSpan, e);
+            }
             throw new LoaderCacheValueException(key.getKey(), e);
         }
     }
 
+    /**
+     * 唤醒本机的等待线程，并通过redis的Pub/Sub通知其他节点上等待该key的线程
+     * <p>
+     * 只有发现竞争（本机有等待线程，或者加载前等待过其他线程）时，缓存值不大才随消息一起发送，
+     * 等待线程不需要再查询一次redis；没有竞争时只发送key，避免每次加载都把缓存值广播给所有节点
+     * </p>
+     *
+     * @param key       {@link RedisCacheKey}
+     * @param value     放入缓存的值，为null时表示没有放入缓存
+     * @param contended 加载前是否发现有其他线程在等待或者加载同一个key
+     */
+    private void notifyLoaded(RedisCacheKey key, Object value, boolean contended) {
+        boolean cached = value != null && (isAllowNullValues() || !(value instanceof NullValue));
+        boolean attachValue = cached && loadedMessageValueLimit > 0 && (contended || container.hasWaiters(key.getKey()));
+        if (cached) {
+            container.signalAll(key.getKey(), value);
+        } else {
+            container.signalAll(key.getKey());
+        }
+        try {
+            RedisPubSubMessage message = new RedisPubSubMessage();
+            message.setCacheName(getName());
+            message.setKey(key.getKey());
+            message.setMessageType(RedisPubSubMessageType.LOADED);
+            if (attachValue) {
+                Object messageValue = key.isDigested() ? new KeyedValue(key.getFullKey(), value) : value;
+                byte[] bytes = ((RedisSerializer<Object>) redisTemplate.getValueSerializer()).serialize(messageValue);
+                if (bytes != null && bytes.length <= loadedMessageValueLimit) {
+                    message.setValue(bytes);
+                }
+            }
+            RedisPublisher.publisher(redisTemplate, new ChannelTopic(getName()), message);
+        } catch (Exception e) {
+            log.warn("redis缓存 key={} 发布加载完成消息失败：{}", key.getKey(), e.getMessage());
+        }
+    }
+
+    /**
+     * 收到其他节点加载完成的消息，唤醒本机等待该key的线程
+     *
+     * @param redisKey redis中的缓存key
+     * @param value    序列化后的缓存值，没有携带缓存值时为null，等待线程会重新查询redis
+     */
+    public void onLoaded(String redisKey, byte[] value) {
+        // 本机没有等待该key的线程，不需要唤醒，也不需要反序列化缓存值
+        if (!container.hasWaiters(redisKey)) {
+            return;
+        }
+        if (value == null) {
+            container.signalAll(redisKey);
+            return;
+        }
+        container.signalAll(redisKey, redisTemplate.getValueSerializer().deserialize(value));
+    }
+
     private Object putValue(RedisCacheKey key, Object value) {
+        return putValue(key, value, 0);
+    }
+
+    /**
+     * 将数据放到redis缓存
+     *
+     * @param loadCost 加载缓存值的耗时，单位毫秒，0表示不是通过加载得到的缓存值
+     * @return 放入缓存的值（没有包装）
+     */
+    private Object putValue(RedisCacheKey key, Object value, long loadCost) {
         Object result = toStoreValue(value);
         // redis 缓存不允许直接存NULL，如果结果返回NULL需要删除缓存
         if (result == null) {
@@ -266,59 +969,379 @@ public class RedisCache  extends AbstractValueAdaptingCache {
             return result;
         }
 
-        // 允许缓存NULL值
+        // 将数据放到缓存
+        Object storeValue = wrap(key, result, loadCost);
+        roundTrip("set", () -> {
+            redisTemplate.opsForValue().set(key.getKey(), storeValue, getExpirationTime(result) + maxStaleness, TimeUnit.MILLISECONDS);
+            return null;
+        }, null);
+        return result;
+    }
+
+    /**
+     * 包装需要放到redis的缓存值，概率提前刷新需要保存加载耗时，过期后继续使用旧值需要保存逻辑过期时间，
+     * 使用摘要key时需要保存完整的key
+     *
+     * @param key      {@link RedisCacheKey}
+     * @param result   缓存值
+     * @param loadCost 加载缓存值的耗时，单位毫秒
+     * @return 需要放到redis的缓存值
+     */
+    private Object wrap(RedisCacheKey key, Object result, long loadCost) {
+        Object storeValue = wrap(result, loadCost);
+        return key.isDigested() ? new KeyedValue(key.getFullKey(), storeValue) : storeValue;
+    }
+
+    private Object wrap(Object result, long loadCost) {
+        long cost = refreshPolicy == RefreshPolicy.PROBABILISTIC ? loadCost : 0;
+        if (maxStaleness > 0) {
+            return new CachedValue(result, cost, System.currentTimeMillis() + getExpirationTime(result));
+        }
+        if (cost > 0) {
+            return new CachedValue(result, cost);
+        }
+        return result;
+    }
+
+    /**
+     * 校验摘要key读取到的缓存值的完整key，并去掉完整key的包装
+     *
+     * @param key         {@link RedisCacheKey}
+     * @param storeValue  redis中保存的缓存值
+     * @return 缓存值（可能是 {@link CachedValue}），完整key不一致（摘要冲突）或者摘要key的缓存值没有完整key时返回null
+     */
+    private Object checkFullKey(RedisCacheKey key, Object storeValue) {
+        if (storeValue == null) {
+            return null;
+        }
+        if (!key.isDigested()) {
+            if (storeValue instanceof KeyedValue) {
+                log.warn("redis缓存 key= {} 不是摘要key，缓存值中却有完整key{}，按没有命中缓存处理",
+                        key.getKey(), ((KeyedValue) storeValue).getFullKey());
+                return null;
+            }
+            return storeValue;
+        }
+        if (!(storeValue instanceof KeyedValue)) {
+            log.warn("redis缓存 key= {} 是摘要key，缓存值中没有完整key，无法校验摘要冲突，按没有命中缓存处理", key.getKey());
+            return null;
+        }
+        KeyedValue keyedValue = (KeyedValue) storeValue;
+        if (!keyedValue.getFullKey().equals(key.getFullKey())) {
+            log.warn("redis缓存 key= {} 摘要冲突，完整key是{}，缓存中的完整key是{}，按没有命中缓存处理",
+                    key.getKey(), key.getFullKey(), keyedValue.getFullKey());
+            return null;
+        }
+        return keyedValue.getValue();
+    }
+
+    /**
+     * 拆开包装后的缓存值
+     *
+     * @param storeValue redis中保存的缓存值
+     * @return 缓存值
+     */
+    private Object unwrap(Object storeValue) {
+        if (storeValue instanceof CachedValue) {
+            return ((CachedValue) storeValue).getValue();
+        }
+        return storeValue;
+    }
+
+    /**
+     * 获取缓存值的有效时间，允许缓存NULL值且缓存为值为null时需要重新计算缓存时间
+     *
+     * @param result 缓存值
+     * @return 有效时间，单位毫秒
+     */
+    private long getExpirationTime(Object result) {
         long expirationTime = this.expiration;
-        // 允许缓存NULL值且缓存为值为null时需要重新计算缓存时间
         if (isAllowNullValues() && result instanceof NullValue) {
             expirationTime = expirationTime / getMagnification();
         }
-        // 将数据放到缓存
-        redisTemplate.opsForValue().set(key.getKey(), result, expirationTime, TimeUnit.MILLISECONDS);
-        return result;
+        return expirationTime;
     }
 
 
+    /**
+     * 合并同一个JVM内同一个redis key的并发加载，其他线程等待加载结果，不会重复加载
+     */
+    private <T> T executeCacheMethodOnce(RedisCacheKey redisCacheKey, Callable<T> valueLoader) {
+        try {
+            return singleFlight.execute(redisCacheKey.getKey(), () -> executeCacheMethod(redisCacheKey, valueLoader));
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new LoaderCacheValueException(redisCacheKey.getKey(), e);
+        }
+    }
+
     /**
      * 同一个线程循环5次查询缓存，每次等待20毫秒，如果还是没有数据直接去执行被缓存的方法
      */
     private <T> T executeCacheMethod(RedisCacheKey redisCacheKey, Callable<T> valueLoader) {
         RedisDistriLock redisLock = new RedisDistriLock(redisTemplate, redisCacheKey.getKey() + "_sync_lock");
-        // 同一个线程循环20次查询缓存，每次等待20毫秒，如果还是没有数据直接去执行被缓存的方法
-        for (int i = 0; i < RETRY_COUNT; i++) {
-            try {
-                // 先取缓存，如果有直接返回，没有再去做拿锁操作
-                Object result = redisTemplate.opsForValue().get(redisCacheKey.getKey());
-                if (result != null) {
-                    log.debug("redis缓存 key= {} 获取到锁后查询查询缓存命中，不需要执行被缓存的方法", redisCacheKey.getKey());
-                    return (T) fromStoreValue(result);
-                }
+        redisLock.setCacheName(getName());
+        long waitStart = System.nanoTime();
+        Object waitSpan = CacheTracing.startSpan("cache.lock.wait", getName());
+        boolean waiting = false;
+        try {
+            // 同一个线程循环20次查询缓存，每次等待20毫秒，如果还是没有数据直接去执行被缓存的方法
+            for (int i = 0; i < RETRY_COUNT; i++) {
+                try {
+                    // 持有锁的线程（可能在其他节点）加载完成时随通知送达了缓存值，直接返回
+                    AwaitThreadContainer.LoadedValue loadedValue = container.getLoadedValue(redisCacheKey.getKey(), waitStart);
+                    if (loadedValue != null) {
+                        Object value = checkFullKey(redisCacheKey, loadedValue.getValue());
+                        if (value != null || !redisCacheKey.isDigested()) {
+                            recordLockWait(waitStart, waitSpan, i, "notified");
+                            log.debug("redis缓存 key= {} 等待期间收到加载完成的缓存值，不需要再查询缓存", redisCacheKey.getKey());
+                            return (T) fromStoreValue(value);
+                        }
+                    }
 
-                // 获取分布式锁去后台查询数据
-                if (redisLock.lock()) {
-                    T t = loaderAndPutValue(redisCacheKey, valueLoader, true);
-                    log.debug("redis缓存 key= {} 从数据库获取数据完毕，唤醒所有等待线程", redisCacheKey.getKey());
-                    // 唤醒线程
+                    // 先取缓存，如果有直接返回，没有再去做拿锁操作
+                    Object result = getStoreValue(redisCacheKey);
+                    if (result != null) {
+                        recordLockWait(waitStart, waitSpan, i, CacheEvents.OUTCOME_HIT);
+                        log.debug("redis缓存 key= {} 获取到锁后查询查询缓存命中，不需要执行被缓存的方法", redisCacheKey.getKey());
+                        return (T) fromStoreValue(unwrap(result));
+                    }
+
+                    // 获取分布式锁去后台查询数据
+                    if (redisLock.lock()) {
+                        recordLockWait(waitStart, waitSpan, i, "locked");
+                        waitSpan = null;
+                        // 加载完成后会唤醒所有节点上的等待线程
+                        T t = loaderAndPutValue(redisCacheKey, valueLoader, true, i > 0);
+                        log.debug("redis缓存 key= {} 从数据库获取数据完毕，唤醒所有等待线程", redisCacheKey.getKey());
+                        return t;
+                    }
+                    // 线程等待
+                    log.debug("redis缓存 key= {} 从数据库获取数据未获取到锁，进入等待状态，等待{}毫秒", redisCacheKey.getKey(), WAIT_TIME);
+                    if (!waiting) {
+                        container.enter(redisCacheKey.getKey());
+                        waiting = true;
+                    }
+                    container.await(redisCacheKey.getKey(), WAIT_TIME);
+                } catch (Exception e) {
+                    CacheTracing.endWithError(waitSpan, e);
                     container.signalAll(redisCacheKey.getKey());
-                    return t;
+                    throw new LoaderCacheValueException(redisCacheKey.getKey(), e);
+                } finally {
+                    redisLock.unlock();
                 }
-                // 线程等待
-                log.debug("redis缓存 key= {} 从数据库获取数据未获取到锁，进入等待状态，等待{}毫秒", redisCacheKey.getKey(), WAIT_TIME);
-                container.await(redisCacheKey.getKey(), WAIT_TIME);
-            } catch (Exception e) {
-                container.signalAll(redisCacheKey.getKey());
-                throw new LoaderCacheValueException(redisCacheKey.getKey(), e);
-            } finally {
-                redisLock.unlock();
+            }
+        } finally {
+            if (waiting) {
+                container.leave(redisCacheKey.getKey());
             }
         }
         log.debug("redis缓存 key={} 等待{}次，共{}毫秒，任未获取到缓存，直接去执行被缓存的方法", redisCacheKey.getKey(), RETRY_COUNT, RETRY_COUNT * WAIT_TIME, WAIT_TIME);
-        return loaderAndPutValue(redisCacheKey, valueLoader, true);
+        recordLockWait(waitStart, waitSpan, RETRY_COUNT, "timeout");
+        return loaderAndPutValue(redisCacheKey, valueLoader, true, true);
+    }
+
+    /**
+     * 记录等待锁的耗时，并结束链路追踪的span
+     *
+     * @param retries 重试次数
+     * @param outcome 结束等待的原因
+     */
+    private void recordLockWait(long waitStart, Object waitSpan, int retries, String outcome) {
+        stats.recordLockWait(waitStart);
+        CacheTracing.setAttribute(waitSpan, CacheTracing.LOCK_RETRIES, retries);
+        CacheTracing.end(waitSpan, null, outcome);
+    }
+
+    @Override
+    public <K> Map<K, Object> getAll(Collection<K> keys) {
+        return unwrapAll(getAllWrapped(keys));
+    }
+
+    /**
+     * 批量查询缓存，和 {@link #getAll(Collection)} 一样，只是不拆开包装值
+     *
+     * @param keys 缓存key
+     * @return 命中的缓存值（可能是 {@link CachedValue}）
+     * @see #getWrapped(Object)
+     */
+    public <K> Map<K, Object> getAllWrapped(Collection<K> keys) {
+        Map<K, Object> result = getAllStoreValues(keys);
+        // 缓存的NULL值不返回
+        result.values().removeIf(value -> unwrap(value) instanceof NullValue);
+        return result;
+    }
+
+    /**
+     * 拆开批量查询结果中的包装值
+     */
+    private <K, V> Map<K, V> unwrapAll(Map<K, Object> storeValues) {
+        storeValues.replaceAll((key, value) -> unwrap(value));
+        return (Map<K, V>) storeValues;
+    }
+
+    /**
+     * 批量查询redis中的缓存值（可能是 {@link CachedValue}），缓存的NULL值以 {@link NullValue} 返回，没有缓存的key不在返回结果中
+     * <p>
+     * 序列化器一般会把缓存的NULL值反序列化成null，所以MGET取回原始数据：key不存在时原始数据是null，
+     * 原始数据不是null但反序列化后是null，说明缓存的是NULL值
+     * </p>
+     */
+    private <K> Map<K, Object> getAllStoreValues(Collection<K> keys) {
+        List<K> keyList = new ArrayList<>(keys);
+        List<RedisCacheKey> redisCacheKeys = new ArrayList<>(keyList.size());
+        byte[][] rawKeys = new byte[keyList.size()][];
+        for (int i = 0; i < keyList.size(); i++) {
+            RedisCacheKey redisCacheKey = getRedisCacheKey(keyList.get(i));
+            redisCacheKeys.add(redisCacheKey);
+            rawKeys[i] = rawKey(redisCacheKey);
+        }
+        log.debug("redis缓存 key= {} 批量查询redis缓存", DiagnosticLog.json(keyList));
+        List<byte[]> values = roundTrip("mget", () -> redisTemplate.execute((RedisCallback<List<byte[]>>) connection -> connection.mGet(rawKeys)),
+                r -> r != null && !r.contains(null));
+        Map<K, Object> result = new HashMap<>(keyList.size());
+        if (values != null) {
+            RedisSerializer<Object> valueSerializer = (RedisSerializer<Object>) redisTemplate.getValueSerializer();
+            for (int i = 0; i < keyList.size(); i++) {
+                if (values.get(i) == null) {
+                    continue;
+                }
+                RedisCacheKey redisCacheKey = redisCacheKeys.get(i);
+                Object storeValue = valueSerializer.deserialize(values.get(i));
+                // 摘要key的缓存值都带有完整key，不会是NULL
+                Object value = storeValue == null && !redisCacheKey.isDigested() ? NullValue.INSTANCE
+                        : checkFullKey(redisCacheKey, storeValue);
+                if (value != null) {
+                    result.put(keyList.get(i), value);
+                }
+            }
+        }
+        stats.recordSecondCacheHits(result.size());
+        stats.recordSecondCacheMisses(keyList.size() - result.size());
+        return result;
+    }
+
+    @Override
+    public <K, V> Map<K, V> getAll(Collection<K> keys, Function<Set<K>, Map<K, V>> valueLoader) {
+        return unwrapAll(getAllWrapped(keys, valueLoader));
+    }
+
+    /**
+     * 批量查询缓存，没有命中的key一次性加载，和 {@link #getAll(Collection, Function)} 一样，只是命中时不拆开包装值
+     *
+     * @param keys        缓存key
+     * @param valueLoader 批量加载没有命中的key
+     * @return 命中的缓存值（可能是 {@link CachedValue}）和加载的值
+     * @see #getWrapped(Object)
+     */
+    public <K, V> Map<K, Object> getAllWrapped(Collection<K> keys, Function<Set<K>, Map<K, V>> valueLoader) {
+        // 缓存了NULL值的key也算命中，不再交给valueLoader加载，防止缓存穿透
+        Map<K, Object> result = getAllStoreValues(keys);
+        Set<K> missKeys = new LinkedHashSet<>(keys);
+        missKeys.removeAll(result.keySet());
+        result.values().removeIf(value -> unwrap(value) instanceof NullValue);
+        if (missKeys.isEmpty()) {
+            return result;
+        }
+        long start = System.currentTimeMillis();
+        long loadStart = System.nanoTime();
+        Object loadEvent = CacheEvents.begin(CacheEvents.Type.LOAD, "loadAll");
+        Object loadSpan = CacheTracing.startSpan("cache.loadAll", getName());
+        Map<K, V> loaded;
+        try {
+            loaded = valueLoader.apply(missKeys);
+        } catch (Exception e) {
+            stats.recordLoad(loadStart, false);
+            CacheEvents.commit(loadEvent, getName(), CacheEvents.LAYER_LOADER, CacheEvents.OUTCOME_FAILURE, 0);
+            CacheTracing.endWithError(loadSpan, e);
+            throw new LoaderCacheValueException(missKeys, e);
+        }
+        stats.recordLoad(loadStart, true);
+        CacheEvents.commit(loadEvent, getName(), CacheEvents.LAYER_LOADER, CacheEvents.OUTCOME_SUCCESS, 0);
+        CacheTracing.end(loadSpan, CacheEvents.LAYER_LOADER, CacheEvents.OUTCOME_SUCCESS);
+        // 没有加载到的key视为NULL值，允许缓存NULL值时同样放到缓存，防止缓存穿透
+        Map<K, Object> storeValues = new HashMap<>(missKeys.size());
+        for (K key : missKeys) {
+            V value = loaded == null ? null : loaded.get(key);
+            storeValues.put(key, value);
+            if (value != null) {
+                result.put(key, value);
+            }
+        }
+        putAll(storeValues);
+        log.debug("redis缓存 key={} 批量执行被缓存的方法，并将其放入缓存, 耗时：{}", missKeys, System.currentTimeMillis() - start);
+        return result;
+    }
+
+    @Override
+    public void putAll(Map<?, ?> map) {
+        if (CollectionUtils.isEmpty(map)) {
+            return;
+        }
+        log.debug("redis缓存 key= {} 批量put缓存", map.keySet());
+        RedisSerializer<Object> valueSerializer = (RedisSerializer<Object>) redisTemplate.getValueSerializer();
+        pipeline(connection -> {
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                RedisCacheKey redisCacheKey = getRedisCacheKey(entry.getKey());
+                byte[] rawKey = rawKey(redisCacheKey);
+                Object result = toStoreValue(entry.getValue());
+                // redis 缓存不允许直接存NULL，不允许缓存NULL值时删除缓存
+                if (result == null || (!isAllowNullValues() && result instanceof NullValue)) {
+                    connection.unlink(rawKey);
+                    continue;
+                }
+                connection.pSetEx(rawKey, getExpirationTime(result) + maxStaleness, valueSerializer.serialize(wrap(redisCacheKey, result, 0)));
+            }
+        });
+    }
+
+    @Override
+    public void evictAll(Collection<?> keys) {
+        if (CollectionUtils.isEmpty(keys)) {
+            return;
+        }
+        log.info("批量清除redis缓存 key= {} ", keys);
+        pipeline(connection -> {
+            for (Object key : keys) {
+                connection.unlink(rawKey(getRedisCacheKey(key)));
+            }
+        });
+    }
+
+    /**
+     * 以管道的方式批量执行redis命令，集群连接不支持管道，逐条执行
+     *
+     * @param commands 需要执行的命令
+     */
+    private void pipeline(Consumer<RedisConnection> commands) {
+        roundTrip("pipeline", () -> redisTemplate.execute((RedisCallback<Object>) connection -> {
+            boolean pipelined = !(connection instanceof RedisClusterConnection);
+            if (pipelined) {
+                connection.openPipeline();
+            }
+            try {
+                commands.accept(connection);
+            } finally {
+                if (pipelined) {
+                    connection.closePipeline();
+                }
+            }
+            return null;
+        }), null);
+    }
+
+    /**
+     * 使用RedisTemplate的key序列化器序列化缓存key，保证和通过RedisTemplate操作的key一致
+     */
+    private byte[] rawKey(RedisCacheKey redisCacheKey) {
+        return ((RedisSerializer<String>) redisTemplate.getKeySerializer()).serialize(redisCacheKey.getKey());
     }
 
     @Override
     public void put(Object key, Object value) {
         RedisCacheKey redisCacheKey = getRedisCacheKey(key);
-        log.debug("redis缓存 key= {} put缓存，缓存值：{}", redisCacheKey.getKey(), JSON.toJSONString(value));
+        log.debug("redis缓存 key= {} put缓存，缓存值：{}", redisCacheKey.getKey(), DiagnosticLog.json(value));
         putValue(redisCacheKey, value);
     }
 
@@ -331,7 +1354,7 @@ public class RedisCache  extends AbstractValueAdaptingCache {
      */
     @Override
     public Object putIfAbsent(Object key, Object value) {
-        log.debug("redis缓存 key= {} putIfAbsent缓存，缓存值：{}", getRedisCacheKey(key).getKey(), JSON.toJSONString(value));
+        log.debug("redis缓存 key= {} putIfAbsent缓存，缓存值：{}", getRedisCacheKey(key).getKey(), DiagnosticLog.json(value));
         Object result = get(key);
         if (result != null) {
             return result;
@@ -344,18 +1367,237 @@ public class RedisCache  extends AbstractValueAdaptingCache {
     public void evict(Object key) {
         RedisCacheKey redisCacheKey = getRedisCacheKey(key);
         log.info("清除redis缓存 key= {} ", redisCacheKey.getKey());
-        redisTemplate.delete(redisCacheKey.getKey());
+        roundTrip("del", () -> redisTemplate.delete(redisCacheKey.getKey()), null);
     }
 
     @Override
     public void clear() {
+        clear(asyncClear);
+    }
+
+    /**
+     * 在后台线程清空缓存
+     *
+     * @return 清空进度 {@link ClearProgress}
+     */
+    public ClearProgress clearAsync() {
+        return clear(true);
+    }
+
+    /**
+     * 使用 SCAN 分批扫描缓存名称前缀的key，并用 UNLINK 删除，避免 KEYS 命令长时间阻塞redis
+     * <p>
+     * 集群模式下在每个主节点上分别扫描
+     * </p>
+     *
+     * @param async 是否在后台线程执行
+     * @return 清空进度 {@link ClearProgress}，同步执行时返回的进度已经结束
+     */
+    public ClearProgress clear(boolean async) {
+        ClearProgress progress = new ClearProgress(getName());
         // 必须开启了使用缓存名称作为前缀，clear才有效
-        if (usePrefix) {
-            log.info("清空redis缓存 ，缓存前缀为{}", getName());
-            Set<String> keys = redisTemplate.keys(getName() + "*");
-            if (!CollectionUtils.isEmpty(keys)) {
-                redisTemplate.delete(keys);
+        if (!usePrefix) {
+            progress.complete();
+            return progress;
+        }
+        if (useGeneration) {
+            // 版本号加1，旧版本的key等待过期自动删除
+            Long newGeneration = redisTemplate.execute((RedisCallback<Long>) connection -> connection.incr(generationKey()));
+            log.info("清空redis缓存，缓存{}的版本号加1", getName());
+            if (newGeneration == null) {
+                // 在pipeline或者事务中执行时INCR没有返回值，重新读取redis中的版本号
+                generationLoadTime = 0;
+                getGeneration();
+            } else {
+                updateGeneration(newGeneration);
+            }
+            progress.complete();
+            return progress;
+        }
+        log.info("清空redis缓存 ，缓存前缀为{}", getKeyName());
+        if (!async) {
+            doClear(progress);
+            return progress;
+        }
+        try {
+            ThreadTaskUtils.runClear(() -> {
+                try {
+                    doClear(progress);
+                } catch (Exception e) {
+                    log.error("后台清空redis缓存异常，缓存前缀为{}", getName(), e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 任务没有提交成功，结束进度，防止等待进度的调用方一直等下去
+            log.warn("后台清空redis缓存的任务太多，缓存{}的清空任务被拒绝", getName());
+            progress.completeExceptionally(e);
+        }
+        return progress;
+    }
+
+    private void doClear(ClearProgress progress) {
+        try {
+            String keyName = getKeyName();
+            String pattern = escapePattern(keyName) + ":*";
+            List<byte[]> excludedPrefixes = nestedKeyPrefixes(keyName);
+            Boolean cluster = redisTemplate.execute((RedisCallback<Boolean>) connection -> connection instanceof RedisClusterConnection);
+            if (Boolean.TRUE.equals(cluster)) {
+                ScanOptions options = ScanOptions.scanOptions().match(pattern).count(clearBatchSize).build();
+                // 集群模式下SCAN游标绑定在节点上，每个节点在一次execute中扫描完
+                redisTemplate.execute((RedisCallback<Object>) connection -> {
+                    RedisClusterConnection clusterConnection = (RedisClusterConnection) connection;
+                    for (RedisClusterNode node : clusterConnection.clusterGetNodes()) {
+                        if (node.isMaster() && !progress.isCancelled()) {
+                            scanAndUnlink(connection, clusterConnection.scan(node, options), excludedPrefixes, progress);
+                        }
+                    }
+                    return null;
+                });
+            } else {
+                try {
+                    scanAndUnlink(rawString(pattern), excludedPrefixes, progress);
+                } catch (RedisSystemException e) {
+                    if (!isScriptUnsupported(e)) {
+                        throw e;
+                    }
+                    log.warn("redis缓存 {} 不支持EVAL命令，在一次execute中扫描并删除：{}", getName(), e.getMessage());
+                    ScanOptions options = ScanOptions.scanOptions().match(pattern).count(clearBatchSize).build();
+                    redisTemplate.execute((RedisCallback<Object>) connection -> {
+                        scanAndUnlink(connection, connection.scan(options), excludedPrefixes, progress);
+                        return null;
+                    });
+                }
+            }
+            log.info("清空redis缓存完成，缓存前缀为{}，删除key数量{}", getName(), progress.getDeletedCount());
+            progress.complete();
+        } catch (RuntimeException e) {
+            progress.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * 按游标逐批 SCAN 和 UNLINK，每一批单独执行一次execute，批次之间暂停时不占用redis连接
+     */
+    private void scanAndUnlink(byte[] pattern, List<byte[]> excludedPrefixes, ClearProgress progress) {
+        byte[] count = String.valueOf(clearBatchSize).getBytes(StandardCharsets.UTF_8);
+        byte[] cursorId = SCAN_START;
+        do {
+            byte[] current = cursorId;
+            cursorId = redisTemplate.execute((RedisCallback<byte[]>) connection -> {
+                List<Object> reply = connection.eval(SCAN_SCRIPT, ReturnType.MULTI, 0, current, pattern, count);
+                List<byte[]> batch = new ArrayList<>((List<byte[]>) reply.get(1));
+                unlink(connection, batch, excludedPrefixes, progress);
+                return (byte[]) reply.get(0);
+            });
+            if (!Arrays.equals(SCAN_START, cursorId)) {
+                pause();
+            }
+        } while (!Arrays.equals(SCAN_START, cursorId) && !progress.isCancelled());
+    }
+
+    private void scanAndUnlink(RedisConnection connection, Cursor<byte[]> cursor, List<byte[]> excludedPrefixes, ClearProgress progress) {
+        try (Cursor<byte[]> keys = cursor) {
+            List<byte[]> batch = new ArrayList<>(clearBatchSize);
+            while (keys.hasNext() && !progress.isCancelled()) {
+                batch.add(keys.next());
+                if (batch.size() >= clearBatchSize) {
+                    unlink(connection, batch, excludedPrefixes, progress);
+                    pause();
+                }
+            }
+            unlink(connection, batch, excludedPrefixes, progress);
+        } catch (IOException e) {
+            log.warn("关闭redis scan游标异常：{}", e.getMessage());
+        }
+    }
+
+    private void unlink(RedisConnection connection, List<byte[]> batch, List<byte[]> excludedPrefixes, ClearProgress progress) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        progress.addScanned(batch.size());
+        batch.removeIf(key -> startsWithAny(key, excludedPrefixes));
+        if (batch.isEmpty()) {
+            return;
+        }
+        if (connection instanceof RedisClusterConnection) {
+            // 同一批key可能分布在不同的slot上，逐个删除
+            long deleted = 0;
+            for (byte[] key : batch) {
+                Long count = connection.unlink(key);
+                deleted += count == null ? 0 : count;
+            }
+            progress.addDeleted(deleted);
+        } else {
+            Long deleted = connection.unlink(batch.toArray(new byte[batch.size()][]));
+            progress.addDeleted(deleted == null ? 0 : deleted);
+        }
+        batch.clear();
+    }
+
+    /**
+     * 本机使用过的以"缓存名称:"开头的其他缓存的key前缀，清空缓存时跳过这些key。
+     * 当前缓存中看起来像这些缓存的key不会被删除，只能等待过期。紧凑key的"~ID"不会互相嵌套，不需要排除
+     */
+    private List<byte[]> nestedKeyPrefixes(String keyName) {
+        String nestedPrefix = keyName + ":";
+        List<byte[]> prefixes = new ArrayList<>();
+        for (String name : PLAIN_KEY_NAMES) {
+            if (name.startsWith(nestedPrefix)) {
+                log.info("清空redis缓存 {} 时跳过缓存名称 {} 的key", getName(), name);
+                prefixes.add(rawString(name + ":"));
+            }
+        }
+        return prefixes;
+    }
+
+    private static boolean startsWithAny(byte[] key, List<byte[]> prefixes) {
+        for (byte[] prefix : prefixes) {
+            if (key.length >= prefix.length && Arrays.equals(prefix, Arrays.copyOf(key, prefix.length))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 转义SCAN匹配模式中的特殊字符，缓存名称按字面匹配
+     */
+    private static String escapePattern(String value) {
+        StringBuilder builder = new StringBuilder(value.length());
+        for (char c : value.toCharArray()) {
+            if (c == '*' || c == '?' || c == '[' || c == ']' || c == '\\') {
+                builder.append('\\');
             }
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+
+    private void pause() {
+        if (clearBatchPause <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(clearBatchPause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 版本号和对应的缓存前缀
+     */
+    private static class KeyPrefix {
+
+        private final long generation;
+
+        private final byte[] bytes;
+
+        KeyPrefix(long generation, byte[] bytes) {
+            this.generation = generation;
+            this.bytes = bytes;
         }
     }
 }
@@ -1,5 +1,7 @@
 package org.github.roger.concurrent;
 
+import org.github.roger.exception.RedisUnavailableException;
+import org.github.roger.jfr.CacheEvents;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.redis.core.RedisTemplate;
@@ -78,6 +80,11 @@ public class RedisDistriLock {
      */
     private String lockKeyLog = "";
 
+    /**
+     * 锁所属的缓存名称，记录到JFR事件
+     */
+    private String cacheName;
+
     /**
      * 锁对应的值
      */
@@ -154,23 +161,28 @@ public class RedisDistriLock {
      * @return boolean
      */
     public boolean tryLock() {
+        Object event = CacheEvents.begin(CacheEvents.Type.LOCK, "tryLock");
         // 生成随机key
         this.lockValue = UUID.randomUUID().toString();
         // 请求锁超时时间，纳秒
         long timeout = timeOut * 1000000;
         // 系统当前时间，纳秒
         long nowTime = System.nanoTime();
-        while ((System.nanoTime() - nowTime) < timeout) {
-            if (this.set(lockKey, lockValue, expireTime)) {
-                locked = true;
-                // 上锁成功结束请求
-                return locked;
-            }
+        try {
+            while ((System.nanoTime() - nowTime) < timeout) {
+                if (this.set(lockKey, lockValue, expireTime)) {
+                    locked = true;
+                    // 上锁成功结束请求
+                    return locked;
+                }
 
-            // 每次请求等待一段时间
-            seleep(10, 50000);
+                // 每次请求等待一段时间
+                seleep(10, 50000);
+            }
+            return locked;
+        } finally {
+            commitEvent(event);
         }
-        return locked;
     }
 
     /**
@@ -179,10 +191,15 @@ public class RedisDistriLock {
      * @return 是否成功获得锁
      */
     public boolean lock() {
+        Object event = CacheEvents.begin(CacheEvents.Type.LOCK, "lock");
         this.lockValue = UUID.randomUUID().toString();
-        //不存在则添加 且设置过期时间（单位ms）
-        locked = set(lockKey, lockValue, expireTime);
-        return locked;
+        try {
+            //不存在则添加 且设置过期时间（单位ms）
+            locked = set(lockKey, lockValue, expireTime);
+            return locked;
+        } finally {
+            commitEvent(event);
+        }
     }
 
     /**
@@ -191,18 +208,31 @@ public class RedisDistriLock {
      * @return 是否成功获得锁
      */
     public boolean lockBlock() {
+        Object event = CacheEvents.begin(CacheEvents.Type.LOCK, "lockBlock");
         this.lockValue = UUID.randomUUID().toString();
-        while (true) {
-            //不存在则添加 且设置过期时间（单位ms）
-            locked = set(lockKey, lockValue, expireTime);
-            if (locked) {
-                return locked;
+        try {
+            while (true) {
+                //不存在则添加 且设置过期时间（单位ms）
+                locked = set(lockKey, lockValue, expireTime);
+                if (locked) {
+                    return locked;
+                }
+                // 每次请求等待一段时间
+                seleep(10, 50000);
             }
-            // 每次请求等待一段时间
-            seleep(10, 50000);
+        } finally {
+            commitEvent(event);
         }
     }
 
+    /**
+     * 提交获取锁的JFR事件，获取锁时抛出异常的结果是failure
+     */
+    private void commitEvent(Object event) {
+        CacheEvents.commit(event, cacheName, CacheEvents.LAYER_SECOND,
+                locked ? CacheEvents.OUTCOME_SUCCESS : CacheEvents.OUTCOME_FAILURE, 0);
+    }
+
     /**
      * 解锁
      * <p>
@@ -229,6 +259,10 @@ public class RedisDistriLock {
 
                 locked = result == 0;
                 return result == 1;
+            } catch (RedisUnavailableException e) {
+                // redis熔断中，等待锁自动过期
+                logger.warn("Redis熔断中，无法解锁{}，等待锁自动过期", lockKey);
+                return false;
             } catch (Throwable e) {
                 logger.warn("Redis不支持EVAL命令，使用降级方式解锁：{}", e.getMessage());
                 String value = this.get(lockKey, String.class);
@@ -313,6 +347,14 @@ public class RedisDistriLock {
         this.lockKeyLog = lockKeyLog;
     }
 
+    public String getCacheName() {
+        return cacheName;
+    }
+
+    public void setCacheName(String cacheName) {
+        this.cacheName = cacheName;
+    }
+
     public int getExpireTime() {
         return expireTime;
     }
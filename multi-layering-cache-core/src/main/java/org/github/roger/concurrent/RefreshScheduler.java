@@ -0,0 +1,266 @@
+package org.github.roger.concurrent;
+
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 缓存刷新调度器，由CacheManager持有，替代{@link ThreadTaskUtils}执行强制刷新缓存的任务
+ * <p>
+ * 1. 同一个key同一时刻最多只有一个刷新任务在排队，重复提交只会累加命中次数<br>
+ * 2. 排队的刷新任务按命中次数排序，热点key优先刷新<br>
+ * 3. 排队的任务数有上限，超过上限的任务直接丢弃并计数<br>
+ * 4. 每个缓存同时执行的刷新任务数有上限，避免一个缓存占满所有刷新线程<br>
+ * </p>
+ */
+@Slf4j
+public class RefreshScheduler {
+
+    /**
+     * 排队中的刷新任务，key是redis中的缓存key
+     */
+    private final ConcurrentMap<String, RefreshTask> pending = new ConcurrentHashMap<>();
+
+    /**
+     * 因为缓存的并发数已满而延后执行的任务，key是缓存名称
+     */
+    private final ConcurrentMap<String, PriorityBlockingQueue<RefreshTask>> deferred = new ConcurrentHashMap<>();
+
+    /**
+     * 每个缓存的并发执行许可，key是缓存名称
+     */
+    private final ConcurrentMap<String, Semaphore> slots = new ConcurrentHashMap<>();
+
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * 排队任务数上限
+     */
+    private final int queueCapacity;
+
+    /**
+     * 每个缓存同时执行的刷新任务数上限
+     */
+    private final int concurrencyPerCache;
+
+    /**
+     * 任务提交顺序，命中次数相同时先提交的先执行
+     */
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final AtomicInteger running = new AtomicInteger();
+
+    private final LongAdder dropped = new LongAdder();
+
+    private final LongAdder completed = new LongAdder();
+
+    public RefreshScheduler() {
+        this(8, 1000, 2);
+    }
+
+    /**
+     * @param threads             刷新线程数
+     * @param queueCapacity       排队任务数上限
+     * @param concurrencyPerCache 每个缓存同时执行的刷新任务数上限
+     */
+    public RefreshScheduler(int threads, int queueCapacity, int concurrencyPerCache) {
+        this.queueCapacity = queueCapacity;
+        this.concurrencyPerCache = concurrencyPerCache;
+        // 优先级队列是无界的，排队任务数由queueCapacity控制，所以核心线程数和最大线程数相同
+        this.executor = new ThreadPoolExecutor(threads, threads, 120, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<>(), new CustomizableThreadFactory("cache-refresh-"));
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 提交刷新任务
+     *
+     * @param cacheName 缓存名称
+     * @param key       redis中的缓存key
+     * @param runnable  刷新缓存的操作
+     * @return 刷新任务已在排队或者排队成功返回true，被丢弃返回false
+     */
+    public boolean submit(String cacheName, String key, Runnable runnable) {
+        RefreshTask task = new RefreshTask(cacheName, key, runnable);
+        RefreshTask existing = pending.putIfAbsent(key, task);
+        if (existing != null) {
+            existing.hit();
+            return true;
+        }
+
+        if (queued.incrementAndGet() > queueCapacity) {
+            queued.decrementAndGet();
+            pending.remove(key, task);
+            dropped.increment();
+            log.debug("缓存刷新队列已满，丢弃缓存{}的刷新任务,key={}", cacheName, key);
+            return false;
+        }
+        try {
+            executor.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            queued.decrementAndGet();
+            pending.remove(key, task);
+            dropped.increment();
+            return false;
+        }
+    }
+
+    /**
+     * 排队中（包括延后执行）的刷新任务数
+     */
+    public int getQueuedCount() {
+        return queued.get();
+    }
+
+    /**
+     * 正在执行的刷新任务数
+     */
+    public int getRunningCount() {
+        return running.get();
+    }
+
+    /**
+     * 因为队列已满或者调度器已关闭而丢弃的刷新任务数
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * 已执行完成的刷新任务数
+     */
+    public long getCompletedCount() {
+        return completed.sum();
+    }
+
+    /**
+     * 关闭调度器，排队中的刷新任务不再执行
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 刷新线程的执行入口，缓存的并发数已满时把任务延后，由该缓存正在执行的任务结束后接着执行
+     */
+    private void dispatch(RefreshTask task) {
+        Semaphore semaphore = slots.computeIfAbsent(task.cacheName, k -> new Semaphore(concurrencyPerCache));
+        RefreshTask current = task;
+        if (!semaphore.tryAcquire()) {
+            deferred.computeIfAbsent(task.cacheName, k -> new PriorityBlockingQueue<>()).offer(task);
+            // 正在执行的任务可能刚好结束，没有看到刚延后的任务，这里再检查一次
+            current = pollDeferred(task.cacheName, semaphore);
+        }
+        while (current != null) {
+            try {
+                execute(current);
+            } finally {
+                semaphore.release();
+            }
+            current = pollDeferred(task.cacheName, semaphore);
+        }
+    }
+
+    /**
+     * 获取执行许可并取出一个延后的任务
+     */
+    private RefreshTask pollDeferred(String cacheName, Semaphore semaphore) {
+        PriorityBlockingQueue<RefreshTask> queue = deferred.get(cacheName);
+        while (queue != null && !queue.isEmpty() && semaphore.tryAcquire()) {
+            RefreshTask task = queue.poll();
+            if (task != null) {
+                return task;
+            }
+            semaphore.release();
+        }
+        return null;
+    }
+
+    private void execute(RefreshTask task) {
+        // 开始执行后，同一个key可以再次排队
+        pending.remove(task.key, task);
+        queued.decrementAndGet();
+        running.incrementAndGet();
+        if (task.context != null) {
+            MDC.setContextMap(task.context);
+        }
+        try {
+            task.runnable.run();
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+        } finally {
+            running.decrementAndGet();
+            completed.increment();
+            MDC.clear();
+        }
+    }
+
+    /**
+     * 刷新任务，按命中次数从高到低排序
+     */
+    private class RefreshTask implements Runnable, Comparable<RefreshTask> {
+
+        private final String cacheName;
+
+        private final String key;
+
+        private final Runnable runnable;
+
+        private final long seq = sequence.incrementAndGet();
+
+        /**
+         * 提交线程的MDC内容
+         */
+        private final Map<String, String> context = MDC.getCopyOfContextMap();
+
+        private final AtomicLong hits = new AtomicLong(1);
+
+        /**
+         * 在队列中排序使用的命中次数，只在任务不在队列中时修改
+         */
+        private volatile long priority = 1;
+
+        RefreshTask(String cacheName, String key, Runnable runnable) {
+            this.cacheName = cacheName;
+            this.key = key;
+            this.runnable = runnable;
+        }
+
+        /**
+         * 累加命中次数，命中次数每翻一倍调整一次任务在队列中的位置
+         */
+        void hit() {
+            long count = hits.incrementAndGet();
+            if ((count & (count - 1)) == 0 && executor.getQueue().remove(this)) {
+                priority = count;
+                executor.getQueue().offer(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            dispatch(this);
+        }
+
+        @Override
+        public int compareTo(RefreshTask other) {
+            int result = Long.compare(other.priority, priority);
+            return result != 0 ? result : Long.compare(seq, other.seq);
+        }
+    }
+}
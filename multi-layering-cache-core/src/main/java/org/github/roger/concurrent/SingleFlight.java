@@ -0,0 +1,115 @@
+package org.github.roger.concurrent;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 单机内按key合并并发加载
+ * <p>
+ * 同一个key同一时刻只有一个线程真正执行加载方法，其他线程等待同一个加载结果（包括异常）。
+ * 这样缓存未命中时，一个JVM内只有一个线程去竞争redis分布式锁或者执行被缓存的方法。
+ * </p>
+ * <p>
+ * 加载完成后立即从容器中移除，不会缓存加载结果。
+ * 同一个线程在加载方法中重入同一个key时直接执行加载方法，避免自己等待自己。
+ * 等待的线程最多等待 awaitTime 毫秒（默认 {@link #DEFAULT_AWAIT_TIME}），加载慢只会让等待的线程多等，不会重复加载；
+ * 加载的线程超时还没有返回（比如被阻塞）时，等待的线程抛出 {@link TimeoutException}，由调用方决定使用旧值还是失败，
+ * 不会因为一个线程卡住而全部一直卡住。
+ * </p>
+ */
+public class SingleFlight {
+
+    /**
+     * 默认的最长等待时间，单位毫秒，和redis分布式锁的默认过期时间一致，超过这个时间的加载认为已经卡住
+     */
+    public static final long DEFAULT_AWAIT_TIME = TimeUnit.SECONDS.toMillis(60);
+
+    /**
+     * 正在执行的加载任务，key是缓存key
+     */
+    private final ConcurrentMap<Object, Call> calls = new ConcurrentHashMap<>();
+
+    /**
+     * 等待其他线程加载完成的最长时间，单位毫秒
+     */
+    private final long awaitTime;
+
+    public SingleFlight() {
+        this(DEFAULT_AWAIT_TIME);
+    }
+
+    /**
+     * @param awaitTime 等待其他线程加载完成的最长时间，单位毫秒
+     */
+    public SingleFlight(long awaitTime) {
+        this.awaitTime = awaitTime;
+    }
+
+    /**
+     * 执行加载方法，同一个key的并发调用会合并成一次
+     *
+     * @param key    缓存key
+     * @param loader 加载方法
+     * @param <T>    返回值类型
+     * @return 加载结果
+     * @throws Exception 加载方法抛出的异常，等待时被中断，或者等待超时（{@link TimeoutException}）
+     */
+    public <T> T execute(Object key, Callable<T> loader) throws Exception {
+        Call call = new Call();
+        Call existing = calls.putIfAbsent(key, call);
+        if (existing != null) {
+            if (existing.owner == Thread.currentThread()) {
+                return loader.call();
+            }
+            return (T) await(existing);
+        }
+
+        try {
+            T result = loader.call();
+            call.complete(result);
+            return result;
+        } catch (Throwable e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            calls.remove(key, call);
+        }
+    }
+
+    /**
+     * 正在执行加载任务的数量
+     *
+     * @return 正在执行加载任务的数量
+     */
+    public int inFlightSize() {
+        return calls.size();
+    }
+
+    private Object await(Call call) throws Exception {
+        try {
+            return call.get(awaitTime, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 一次加载任务，记录执行加载的线程
+     */
+    private static class Call extends CompletableFuture<Object> {
+
+        private final Thread owner = Thread.currentThread();
+    }
+}
@@ -1,15 +1,35 @@
 package org.github.roger.concurrent;
 
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * 线程池
  *
  * @author yuhao.wang3
  */
+@Slf4j
 public class ThreadTaskUtils {
     private static MdcThreadPoolTaskExecutor taskExecutor = null;
 
+    /**
+     * 异步缓存操作（查询和写入redis）的线程池，队列满时拒绝，不在调用线程（可能是完成异步结果的IO线程）中执行。
+     * 通过 {@link #supplyAsync} 和 {@link #writeAsync} 提交任务，被拒绝的任务不会让等待结果的调用方永远不完成
+     */
+    private static MdcThreadPoolTaskExecutor asyncExecutor = null;
+
+    /**
+     * 后台清空缓存的线程池，和其他任务分开，队列满时拒绝并抛出异常，由调用方结束清空进度
+     */
+    private static MdcThreadPoolTaskExecutor clearExecutor = null;
+
     static {
         taskExecutor = new MdcThreadPoolTaskExecutor();
         // 核心线程数
@@ -30,9 +50,95 @@ public class ThreadTaskUtils {
         taskExecutor.setRejectedExecutionHandler(new ThreadPoolExecutor.DiscardPolicy());
 
         taskExecutor.initialize();
+
+        asyncExecutor = new MdcThreadPoolTaskExecutor();
+        asyncExecutor.setCorePoolSize(8);
+        asyncExecutor.setMaxPoolSize(64);
+        asyncExecutor.setQueueCapacity(1000);
+        asyncExecutor.setKeepAliveSeconds(120);
+        asyncExecutor.setThreadNamePrefix("multi-layering-cache-async-");
+        asyncExecutor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        asyncExecutor.initialize();
+
+        clearExecutor = new MdcThreadPoolTaskExecutor();
+        clearExecutor.setCorePoolSize(2);
+        clearExecutor.setMaxPoolSize(2);
+        clearExecutor.setQueueCapacity(100);
+        clearExecutor.setThreadNamePrefix("multi-layering-cache-clear-");
+        clearExecutor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        clearExecutor.initialize();
     }
 
     public static void run(Runnable runnable) {
         taskExecutor.execute(runnable);
     }
+
+    /**
+     * 在后台清空缓存的线程池中执行
+     *
+     * @param runnable 清空缓存的任务
+     * @throws java.util.concurrent.RejectedExecutionException 线程池队列已满
+     */
+    public static void runClear(Runnable runnable) {
+        clearExecutor.execute(runnable);
+    }
+
+    /**
+     * 在线程池中执行查询，线程池队列已满时返回以 {@link RejectedExecutionException} 失败的结果，不会抛出异常
+     *
+     * @param supplier 查询操作
+     * @param executor 线程池
+     * @param <T>      查询结果的类型
+     * @return 查询结果
+     */
+    public static <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier, Executor executor) {
+        try {
+            return CompletableFuture.supplyAsync(supplier, executor);
+        } catch (RejectedExecutionException e) {
+            CompletableFuture<T> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally(e);
+            return rejected;
+        }
+    }
+
+    /**
+     * 异步结果成功完成后在线程池中写缓存，写完后返回的结果才完成；线程池队列已满时跳过写缓存，直接完成
+     *
+     * @param stage    异步结果
+     * @param write    写缓存的操作，参数是完成的值
+     * @param executor 线程池
+     * @param <T>      值的类型
+     * @return 和异步结果相同的值
+     */
+    public static <T> CompletableFuture<T> writeAsync(CompletionStage<? extends T> stage, Consumer<T> write, Executor executor) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        stage.whenComplete((value, e) -> {
+            if (e != null) {
+                result.completeExceptionally(e);
+                return;
+            }
+            try {
+                executor.execute(() -> {
+                    try {
+                        write.accept(value);
+                    } finally {
+                        result.complete(value);
+                    }
+                });
+            } catch (RejectedExecutionException re) {
+                log.warn("异步缓存操作的线程池已满，跳过写缓存：{}", re.getMessage());
+                result.complete(value);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 获取异步缓存操作的线程池
+     *
+     * @return {@link Executor}
+     */
+    public static Executor getAsyncExecutor() {
+        return asyncExecutor;
+    }
 }
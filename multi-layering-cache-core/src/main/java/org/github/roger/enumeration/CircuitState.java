@@ -0,0 +1,25 @@
+package org.github.roger.enumeration;
+
+public enum CircuitState {
+
+    /**
+     * 关闭，redis命令正常执行
+     */
+    CLOSED("关闭"),
+
+    /**
+     * 打开，拒绝执行redis命令，缓存降级为只使用一级缓存
+     */
+    OPEN("打开"),
+
+    /**
+     * 半开，放少量探测请求去redis，探测成功后关闭熔断器
+     */
+    HALF_OPEN("半开");
+
+    private String label;
+
+    CircuitState(String label) {
+        this.label = label;
+    }
+}
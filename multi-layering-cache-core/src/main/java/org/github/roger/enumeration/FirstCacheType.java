@@ -0,0 +1,25 @@
+package org.github.roger.enumeration;
+
+public enum FirstCacheType {
+
+    /**
+     * 使用caffeine在堆内保存反序列化后的对象
+     */
+    CAFFEINE("堆内缓存，读取不需要反序列化"),
+
+    /**
+     * 使用堆外内存保存序列化后的数据，读取时反序列化
+     */
+    OFF_HEAP("堆外缓存，按字节数淘汰，不占用堆内存"),
+
+    /**
+     * caffeine保存最热的数据，未命中时查询堆外缓存，都未命中时再查询redis
+     */
+    CAFFEINE_OFF_HEAP("caffeine和堆外缓存两层，堆外缓存作为caffeine和redis之间的中间层");
+
+    private String label;
+
+    FirstCacheType(String label) {
+        this.label = label;
+    }
+}
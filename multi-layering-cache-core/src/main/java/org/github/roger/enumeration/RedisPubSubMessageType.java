@@ -10,10 +10,20 @@ public enum RedisPubSubMessageType {
      */
     EVICT("删除缓存"),
 
+    /**
+     * 批量删除缓存
+     */
+    BATCH_EVICT("批量删除缓存"),
+
     /**
      * 清空缓存
      */
-    CLEAR("清空缓存");
+    CLEAR("清空缓存"),
+
+    /**
+     * 缓存加载完成，唤醒其他节点上等待该缓存的线程
+     */
+    LOADED("缓存加载完成");
 
     private String label;
 
@@ -0,0 +1,20 @@
+package org.github.roger.enumeration;
+
+public enum RefreshPolicy {
+
+    /**
+     * 缓存剩余有效时间小于等于preloadTime时刷新缓存
+     */
+    FIXED_WINDOW("剩余有效时间进入固定的刷新窗口时刷新缓存"),
+
+    /**
+     * 根据加载缓存的耗时按概率提前刷新缓存（XFetch），越接近过期、加载越慢，提前刷新的概率越大
+     */
+    PROBABILISTIC("根据加载耗时按概率提前刷新缓存，把各个节点的刷新时间错开");
+
+    private String label;
+
+    RefreshPolicy(String label) {
+        this.label = label;
+    }
+}
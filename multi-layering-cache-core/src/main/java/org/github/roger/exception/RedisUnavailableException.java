@@ -0,0 +1,14 @@
+package org.github.roger.exception;
+
+/**
+ * redis熔断器打开时，拒绝执行redis命令抛出的异常
+ */
+public class RedisUnavailableException extends NestedRuntimeException {
+
+    /**
+     * @param msg msg
+     */
+    public RedisUnavailableException(String msg) {
+        super(msg);
+    }
+}
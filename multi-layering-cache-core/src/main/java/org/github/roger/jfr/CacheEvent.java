@@ -0,0 +1,67 @@
+package org.github.roger.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 缓存操作的JFR事件，所有事件都带有缓存名称、缓存层、操作、结果、数据大小，持续时间由JFR记录
+ * <p>
+ * 只能通过 {@link CacheEvents} 使用，没有JFR的JDK不会加载这些类。
+ * </p>
+ */
+@Category("Multi Layering Cache")
+@StackTrace(false)
+abstract class CacheEvent extends Event {
+
+    @Label("Cache Name")
+    String cacheName;
+
+    @Label("Layer")
+    @Description("first：一级缓存，second：二级缓存，loader：被缓存的方法")
+    String layer;
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Outcome")
+    String outcome;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    @Name("org.github.roger.CacheGet")
+    @Label("Cache Get")
+    @Description("多级缓存的一次查询，layer是返回结果的缓存层")
+    static class Get extends CacheEvent {
+    }
+
+    @Name("org.github.roger.SecondCacheAccess")
+    @Label("Second Cache Access")
+    @Description("二级缓存（redis）的一次往返，bytes是序列化和反序列化的数据大小")
+    static class SecondCache extends CacheEvent {
+    }
+
+    @Name("org.github.roger.CacheLock")
+    @Label("Cache Lock")
+    @Description("获取redis分布式锁，cacheName没有设置时为空")
+    static class Lock extends CacheEvent {
+    }
+
+    @Name("org.github.roger.CacheLoad")
+    @Label("Cache Load")
+    @Description("执行被缓存的方法加载数据")
+    static class Load extends CacheEvent {
+    }
+
+    @Name("org.github.roger.CacheMessage")
+    @Label("Cache Message")
+    @Description("处理redis的Pub/Sub消息，outcome是消息类型，处理异常时是error")
+    static class Message extends CacheEvent {
+    }
+}
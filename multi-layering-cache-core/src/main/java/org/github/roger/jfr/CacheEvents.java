@@ -0,0 +1,180 @@
+package org.github.roger.jfr;
+
+import org.springframework.util.ClassUtils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 记录缓存操作的JFR事件
+ * <p>
+ * 用法是操作开始时调用 {@link #begin(Type, String)}，结束时调用 {@link #commit(Object, String, String, String, long)}。
+ * 没有开始JFR录制或者没有启用对应的事件时begin返回null，commit什么都不做，开销只有一次事件是否启用的判断；
+ * JDK没有JFR（低于8u262的JDK 8）时不会加载任何JFR的类。
+ * 二级缓存往返期间的序列化数据大小通过 {@link #addBytes(int)} 累加到当前线程的二级缓存事件。
+ * </p>
+ */
+public final class CacheEvents {
+
+    private static final boolean JFR_PRESENT = ClassUtils.isPresent("jdk.jfr.Event", CacheEvents.class.getClassLoader());
+
+    public static final String LAYER_FIRST = "first";
+
+    public static final String LAYER_SECOND = "second";
+
+    public static final String LAYER_LOADER = "loader";
+
+    public static final String OUTCOME_HIT = "hit";
+
+    public static final String OUTCOME_MISS = "miss";
+
+    public static final String OUTCOME_STALE = "stale";
+
+    public static final String OUTCOME_SUCCESS = "success";
+
+    public static final String OUTCOME_FAILURE = "failure";
+
+    public static final String OUTCOME_ERROR = "error";
+
+    /**
+     * 事件类型
+     */
+    public enum Type {
+        /**
+         * 多级缓存的查询
+         */
+        GET,
+        /**
+         * 二级缓存的一次往返
+         */
+        SECOND_CACHE,
+        /**
+         * 获取分布式锁
+         */
+        LOCK,
+        /**
+         * 执行被缓存的方法
+         */
+        LOAD,
+        /**
+         * 处理Pub/Sub消息
+         */
+        MESSAGE
+    }
+
+    private CacheEvents() {
+    }
+
+    /**
+     * 当前JDK是否支持JFR
+     */
+    public static boolean isAvailable() {
+        return JFR_PRESENT;
+    }
+
+    /**
+     * 开始一个事件
+     *
+     * @param type      事件类型
+     * @param operation 操作
+     * @return 事件，没有启用时返回null
+     */
+    public static Object begin(Type type, String operation) {
+        return JFR_PRESENT ? JfrRecorder.begin(type, operation) : null;
+    }
+
+    /**
+     * 结束并提交事件
+     *
+     * @param event     {@link #begin(Type, String)} 返回的事件，为null时什么都不做
+     * @param cacheName 缓存名称
+     * @param layer     缓存层
+     * @param outcome   结果
+     * @param bytes     数据大小，单位字节
+     */
+    public static void commit(Object event, String cacheName, String layer, String outcome, long bytes) {
+        if (event != null) {
+            JfrRecorder.commit(event, cacheName, layer, outcome, bytes);
+        }
+    }
+
+    /**
+     * 累加当前线程正在进行的二级缓存事件的数据大小，由序列化器调用
+     *
+     * @param bytes 序列化或反序列化的数据大小，单位字节
+     */
+    public static void addBytes(int bytes) {
+        if (JFR_PRESENT) {
+            JfrRecorder.addBytes(bytes);
+        }
+    }
+
+    /**
+     * 隔离对JFR的引用，没有JFR时不会加载这个类
+     */
+    private static class JfrRecorder {
+
+        /**
+         * 当前线程正在进行的二级缓存事件
+         */
+        private static final ThreadLocal<CacheEvent> CURRENT = new ThreadLocal<>();
+
+        /**
+         * 正在进行的二级缓存事件数，没有时序列化器不需要读取ThreadLocal
+         */
+        private static final AtomicInteger ACTIVE = new AtomicInteger();
+
+        static Object begin(Type type, String operation) {
+            CacheEvent event = create(type);
+            if (!event.isEnabled()) {
+                return null;
+            }
+            event.operation = operation;
+            if (type == Type.SECOND_CACHE) {
+                CURRENT.set(event);
+                ACTIVE.incrementAndGet();
+            }
+            event.begin();
+            return event;
+        }
+
+        static void commit(Object e, String cacheName, String layer, String outcome, long bytes) {
+            CacheEvent event = (CacheEvent) e;
+            if (event instanceof CacheEvent.SecondCache) {
+                CURRENT.remove();
+                ACTIVE.decrementAndGet();
+            }
+            event.end();
+            if (event.shouldCommit()) {
+                event.cacheName = cacheName;
+                event.layer = layer;
+                event.outcome = outcome;
+                event.bytes += bytes;
+                event.commit();
+            }
+        }
+
+        static void addBytes(int bytes) {
+            if (ACTIVE.get() > 0) {
+                CacheEvent event = CURRENT.get();
+                if (event != null) {
+                    event.bytes += bytes;
+                }
+            }
+        }
+
+        private static CacheEvent create(Type type) {
+            switch (type) {
+                case GET:
+                    return new CacheEvent.Get();
+                case SECOND_CACHE:
+                    return new CacheEvent.SecondCache();
+                case LOCK:
+                    return new CacheEvent.Lock();
+                case LOAD:
+                    return new CacheEvent.Load();
+                default:
+                    return new CacheEvent.Message();
+            }
+        }
+    }
+}
@@ -1,12 +1,15 @@
 package org.github.roger.listener;
 
-import com.alibaba.fastjson.JSON;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.github.roger.MultiLayeringCache;
 import org.github.roger.cache.ICache;
+import org.github.roger.cache.redis.RedisCache;
+import org.github.roger.jfr.CacheEvents;
 import org.github.roger.manager.AbstractCacheManager;
 import org.github.roger.message.RedisPubSubMessage;
+import org.github.roger.support.CacheStats;
+import org.github.roger.support.DiagnosticLog;
 import org.springframework.data.redis.connection.Message;
 import org.springframework.data.redis.listener.adapter.MessageListenerAdapter;
 
@@ -25,10 +28,28 @@ public class RedisMessageListener extends MessageListenerAdapter {
     @Override
     public void onMessage(Message message, byte[] pattern) {
         super.onMessage(message, pattern);
-        // 解析订阅发布的信息，获取缓存的名称和缓存的key
-        RedisPubSubMessage redisPubSubMessage = (RedisPubSubMessage) cacheManager.getRedisTemplate()
-                .getValueSerializer().deserialize(message.getBody());
-        log.debug("redis消息订阅者接收到频道【{}】发布的消息。消息内容：{}", new String(message.getChannel()), JSON.toJSONString(redisPubSubMessage));
+        Object event = CacheEvents.begin(CacheEvents.Type.MESSAGE, "receive");
+        String cacheName = null;
+        try {
+            // 解析订阅发布的信息，获取缓存的名称和缓存的key
+            RedisPubSubMessage redisPubSubMessage = (RedisPubSubMessage) cacheManager.getRedisTemplate()
+                    .getValueSerializer().deserialize(message.getBody());
+            cacheName = redisPubSubMessage.getCacheName();
+            CacheStats.getStats(cacheName).recordReceived();
+            handleMessage(message, redisPubSubMessage);
+            CacheEvents.commit(event, cacheName, CacheEvents.LAYER_FIRST, redisPubSubMessage.getMessageType().name(),
+                    message.getBody().length);
+        } catch (RuntimeException e) {
+            CacheEvents.commit(event, cacheName, CacheEvents.LAYER_FIRST, CacheEvents.OUTCOME_ERROR, message.getBody().length);
+            throw e;
+        }
+    }
+
+    /**
+     * 根据消息类型处理本机的一级缓存
+     */
+    private void handleMessage(Message message, RedisPubSubMessage redisPubSubMessage) {
+        log.debug("redis消息订阅者接收到频道【{}】发布的消息。消息内容：{}", new String(message.getChannel()), DiagnosticLog.json(redisPubSubMessage));
 
         // 根据缓存名称获取多级缓存，可能有多个
         Collection<ICache> caches = cacheManager.getCache(redisPubSubMessage.getCacheName());
@@ -42,12 +63,31 @@ public class RedisMessageListener extends MessageListenerAdapter {
                         log.info("删除一级缓存{}数据,key={}", redisPubSubMessage.getCacheName(), redisPubSubMessage.getKey());
                         break;
 
+                    case BATCH_EVICT:
+                        // 获取一级缓存，并批量删除一级缓存数据
+                        ((MultiLayeringCache) cache).getFirstCache().evictAll(redisPubSubMessage.getKeys());
+                        log.info("批量删除一级缓存{}数据,key={}", redisPubSubMessage.getCacheName(), redisPubSubMessage.getKeys());
+                        break;
+
                     case CLEAR:
-                        // 获取一级缓存，并删除一级缓存数据
+                        // 先更新本机缓存的版本号，再删除一级缓存数据，防止一级缓存又加载到旧版本的缓存
+                        if (redisPubSubMessage.getGeneration() != null
+                                && ((MultiLayeringCache) cache).getSecondCache() instanceof RedisCache) {
+                            ((RedisCache) ((MultiLayeringCache) cache).getSecondCache()).onGenerationChanged(redisPubSubMessage.getGeneration());
+                        }
                         ((MultiLayeringCache) cache).getFirstCache().clear();
                         log.info("清除一级缓存{}数据", redisPubSubMessage.getCacheName());
                         break;
 
+                    case LOADED:
+                        // 唤醒本机等待该key加载完成的线程
+                        ICache secondCache = ((MultiLayeringCache) cache).getSecondCache();
+                        if (secondCache instanceof RedisCache) {
+                            ((RedisCache) secondCache).onLoaded((String) redisPubSubMessage.getKey(), redisPubSubMessage.getValue());
+                        }
+                        log.debug("缓存{}加载完成,key={}", redisPubSubMessage.getCacheName(), redisPubSubMessage.getKey());
+                        break;
+
                     default:
                         log.error("接收到没有定义的订阅消息频道数据");
                         break;
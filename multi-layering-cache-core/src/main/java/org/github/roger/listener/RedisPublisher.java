@@ -1,6 +1,8 @@
 package org.github.roger.listener;
 
 import lombok.extern.slf4j.Slf4j;
+import org.github.roger.exception.RedisUnavailableException;
+import org.github.roger.support.CacheStats;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.listener.ChannelTopic;
 
@@ -18,7 +20,15 @@ public class RedisPublisher {
      * @param message       消息内容
      */
     public static void publisher(RedisTemplate<String, Object> redisTemplate, ChannelTopic channelTopic, Object message) {
-        redisTemplate.convertAndSend(channelTopic.toString(), message);
-        log.debug("redis消息发布者向频道【{}】发布了【{}】消息", channelTopic.toString(), message.toString());
+        try {
+            redisTemplate.convertAndSend(channelTopic.toString(), message);
+        } catch (RedisUnavailableException e) {
+            // 熔断期间漏掉的消息，在熔断器关闭时通过清空一级缓存弥补
+            log.warn("redis熔断中，消息没有发布到频道【{}】：{}", channelTopic, message);
+            return;
+        }
+        // 频道名称就是缓存名称
+        CacheStats.getStats(channelTopic.getTopic()).recordPublished();
+        log.debug("redis消息发布者向频道【{}】发布了【{}】消息", channelTopic, message);
     }
 }
@@ -3,14 +3,18 @@ package org.github.roger.manager;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.github.roger.cache.ICache;
+import org.github.roger.concurrent.RefreshScheduler;
 import org.github.roger.listener.RedisMessageListener;
+import org.github.roger.serializer.CompressRedisSerializer;
 import org.github.roger.settings.MultiLayeringCacheSetting;
+import org.github.roger.support.CacheStats;
 import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.context.SmartLifecycle;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.listener.ChannelTopic;
 import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.util.Assert;
 import org.springframework.util.CollectionUtils;
 
 import java.util.Collection;
@@ -57,6 +61,35 @@ public abstract class AbstractCacheManager implements ICacheManager,Initializing
     @Getter
     protected RedisTemplate<String, Object> redisTemplate;
 
+    /**
+     * 强制刷新缓存的调度器，该CacheManager创建的缓存共用
+     */
+    @Getter
+    private volatile RefreshScheduler refreshScheduler = new RefreshScheduler();
+
+    /**
+     * 替换强制刷新缓存的调度器，已经创建的缓存改用新的调度器，然后关闭原调度器，原调度器中排队的刷新任务不再执行
+     *
+     * @param refreshScheduler {@link RefreshScheduler}
+     */
+    public void setRefreshScheduler(RefreshScheduler refreshScheduler) {
+        Assert.notNull(refreshScheduler, "强制刷新缓存的调度器不能为NULL");
+        RefreshScheduler old;
+        // 和创建缓存互斥，保证替换之后不会再有缓存拿到原调度器
+        synchronized (this.cacheContainer) {
+            old = this.refreshScheduler;
+            this.refreshScheduler = refreshScheduler;
+            for (ConcurrentMap<String, ICache> cacheMap : cacheContainer.values()) {
+                for (ICache iCache : cacheMap.values()) {
+                    applyRefreshScheduler(iCache, refreshScheduler);
+                }
+            }
+        }
+        if (old != refreshScheduler) {
+            old.shutdown();
+        }
+    }
+
     public static Set<AbstractCacheManager> getCacheManager() {
         return cacheManagers;
     }
@@ -153,6 +186,23 @@ public abstract class AbstractCacheManager implements ICacheManager,Initializing
         return iCache;
     }
 
+    /**
+     * 让已经创建的缓存使用新的强制刷新缓存调度器，替换调度器时对每个缓存调用一次
+     *
+     * @param iCache           已经创建的Cache实例
+     * @param refreshScheduler 新的调度器
+     */
+    protected void applyRefreshScheduler(ICache iCache, RefreshScheduler refreshScheduler) {
+    }
+
+    /**
+     * 释放已经创建的缓存占用的资源，CacheManager关闭时对每个缓存调用一次
+     *
+     * @param iCache 已经创建的Cache实例
+     */
+    protected void destroyCache(ICache iCache) {
+    }
+
     /**
      * 添加消息监听
      *
@@ -173,6 +223,16 @@ public abstract class AbstractCacheManager implements ICacheManager,Initializing
     @Override
     public void destroy() throws Exception {
         container.destroy();
+        refreshScheduler.shutdown();
+        for (String name : getCacheNames()) {
+            CompressRedisSerializer.removeStats(name);
+            CacheStats.removeStats(name);
+        }
+        for (ConcurrentMap<String, ICache> cacheMap : cacheContainer.values()) {
+            for (ICache iCache : cacheMap.values()) {
+                destroyCache(iCache);
+            }
+        }
     }
 
     @Override
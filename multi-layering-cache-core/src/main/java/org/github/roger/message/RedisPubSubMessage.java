@@ -1,11 +1,17 @@
 package org.github.roger.message;
 
 import lombok.Data;
+import lombok.ToString;
 import org.github.roger.enumeration.RedisPubSubMessageType;
 
 import java.io.Serializable;
+import java.util.Collection;
 
+/**
+ * 缓存的redis消息，toString不输出序列化后的缓存值，避免日志中打印大的字节数组
+ */
 @Data
+@ToString(exclude = "value")
 public class RedisPubSubMessage implements Serializable {
 
     /**
@@ -18,6 +24,21 @@ public class RedisPubSubMessage implements Serializable {
      */
     private Object key;
 
+    /**
+     * 批量删除时的缓存key集合
+     */
+    private Collection<Object> keys;
+
+    /**
+     * 加载完成消息携带的序列化后的缓存值，此时key是redis中的缓存key
+     */
+    private byte[] value;
+
+    /**
+     * 清空消息携带的缓存名称的新版本号，没有使用版本号时为null
+     */
+    private Long generation;
+
     /**
      * 消息类型
      */
@@ -0,0 +1,173 @@
+package org.github.roger.serializer;
+
+import org.github.roger.exception.SerializationException;
+import org.github.roger.support.CompressStats;
+import org.github.roger.utils.SerializationUtils;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.util.Assert;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 压缩缓存值的序列化器装饰器，可以包装 {@link KryoRedisSerializer}、{@link FastJsonRedisSerializer} 等任意序列化器
+ * <p>
+ * 序列化结果超过压缩阈值时才压缩，压缩数据的格式是：魔数(3字节) + 算法ID(1字节) + 原始长度(4字节) + 压缩数据。
+ * 反序列化时根据魔数判断是否需要解压，所以压缩和没有压缩的数据可以同时存在，开启或关闭压缩都不需要清空缓存。
+ * </p>
+ *
+ * @param <T> T
+ */
+public class CompressRedisSerializer<T> implements RedisSerializer<T> {
+
+    /**
+     * 压缩数据的魔数，Kryo和FastJson的序列化结果不会以它开头
+     */
+    private static final byte[] MAGIC = {(byte) 0xFE, 'M', 'C'};
+
+    private static final int HEADER_LENGTH = MAGIC.length + 1 + 4;
+
+    /**
+     * 默认的压缩阈值，单位字节
+     */
+    public static final int DEFAULT_THRESHOLD = 1024;
+
+    /**
+     * 各个统计名称（一般是缓存名称）的压缩统计信息
+     */
+    private static final Map<String, CompressStats> STATS = new ConcurrentHashMap<>();
+
+    /**
+     * 所有缓存共用一个压缩序列化器时的统计名称
+     */
+    public static final String GLOBAL_STATS_NAME = "*";
+
+    private final RedisSerializer<T> delegate;
+
+    private final int threshold;
+
+    private final Compressor compressor;
+
+    private final CompressStats stats;
+
+    public CompressRedisSerializer(RedisSerializer<T> delegate) {
+        this(delegate, DEFAULT_THRESHOLD, new DeflateCompressor(), GLOBAL_STATS_NAME);
+    }
+
+    /**
+     * @param delegate   被包装的序列化器
+     * @param threshold  压缩阈值，序列化结果超过这个字节数才压缩
+     * @param compressor 压缩算法 {@link Compressor}
+     * @param statsName  统计名称，一般是缓存名称
+     */
+    public CompressRedisSerializer(RedisSerializer<T> delegate, int threshold, Compressor compressor, String statsName) {
+        Assert.notNull(delegate, "被包装的序列化器不能为NULL");
+        Assert.isTrue(!(delegate instanceof CompressRedisSerializer), "序列化器已经压缩过，不能重复包装");
+        this.delegate = delegate;
+        this.threshold = threshold;
+        this.compressor = compressor;
+        this.stats = STATS.computeIfAbsent(statsName, name -> new CompressStats());
+    }
+
+    @Override
+    public byte[] serialize(T t) throws SerializationException {
+        byte[] bytes = delegate.serialize(t);
+        if (bytes == null || bytes.length <= threshold) {
+            stats.recordSkipped();
+            return bytes;
+        }
+        byte[] compressed = compressor.compress(bytes);
+        if (compressed.length + HEADER_LENGTH >= bytes.length) {
+            // 压缩后没有变小，保存原始数据
+            stats.recordSkipped();
+            return bytes;
+        }
+        byte[] result = new byte[HEADER_LENGTH + compressed.length];
+        System.arraycopy(MAGIC, 0, result, 0, MAGIC.length);
+        result[MAGIC.length] = compressor.getId();
+        writeInt(result, MAGIC.length + 1, bytes.length);
+        System.arraycopy(compressed, 0, result, HEADER_LENGTH, compressed.length);
+        stats.recordCompressed(bytes.length, result.length);
+        return result;
+    }
+
+    @Override
+    public T deserialize(byte[] bytes) throws SerializationException {
+        if (!isCompressed(bytes)) {
+            return delegate.deserialize(bytes);
+        }
+        if (bytes[MAGIC.length] != compressor.getId()) {
+            throw new SerializationException("不支持的压缩算法ID: " + bytes[MAGIC.length]);
+        }
+        int originalLength = readInt(bytes, MAGIC.length + 1);
+        return delegate.deserialize(compressor.decompress(bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH, originalLength));
+    }
+
+    /**
+     * 是否是压缩过的数据
+     *
+     * @param bytes 序列化结果
+     * @return true 压缩过
+     */
+    public static boolean isCompressed(byte[] bytes) {
+        if (SerializationUtils.isEmpty(bytes) || bytes.length < HEADER_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (bytes[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void writeInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) << 24 | (bytes[offset + 1] & 0xFF) << 16
+                | (bytes[offset + 2] & 0xFF) << 8 | (bytes[offset + 3] & 0xFF);
+    }
+
+    public RedisSerializer<T> getDelegate() {
+        return delegate;
+    }
+
+    public CompressStats getStats() {
+        return stats;
+    }
+
+    /**
+     * 获取指定名称的压缩统计信息
+     *
+     * @param name 统计名称，一般是缓存名称
+     * @return {@link CompressStats}，没有时返回null
+     */
+    public static CompressStats getStats(String name) {
+        return STATS.get(name);
+    }
+
+    /**
+     * 删除指定名称的压缩统计信息，缓存管理器关闭时调用，避免静态统计信息一直累积
+     * <p>
+     * 已经创建的序列化器仍然持有原来的统计信息，继续使用时不会报错，只是不再出现在 {@link #getAllStats()} 中
+     * </p>
+     *
+     * @param name 统计名称，一般是缓存名称
+     */
+    public static void removeStats(String name) {
+        STATS.remove(name);
+    }
+
+    /**
+     * 所有的压缩统计信息
+     */
+    public static Map<String, CompressStats> getAllStats() {
+        return Collections.unmodifiableMap(STATS);
+    }
+}
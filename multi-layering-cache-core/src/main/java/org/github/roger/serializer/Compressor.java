@@ -0,0 +1,33 @@
+package org.github.roger.serializer;
+
+/**
+ * 压缩算法，{@link CompressRedisSerializer}会把算法ID写在压缩数据的头部，不同算法压缩的数据可以同时存在
+ */
+public interface Compressor {
+
+    /**
+     * 算法ID，写入压缩数据头部，一旦使用就不能再改
+     *
+     * @return 算法ID
+     */
+    byte getId();
+
+    /**
+     * 压缩
+     *
+     * @param data 原始数据
+     * @return 压缩后的数据
+     */
+    byte[] compress(byte[] data);
+
+    /**
+     * 解压
+     *
+     * @param data           压缩数据
+     * @param offset         压缩数据的开始位置
+     * @param length         压缩数据的长度
+     * @param originalLength 原始数据的长度
+     * @return 原始数据
+     */
+    byte[] decompress(byte[] data, int offset, int length, int originalLength);
+}
@@ -0,0 +1,75 @@
+package org.github.roger.serializer;
+
+import org.github.roger.exception.SerializationException;
+
+import java.io.ByteArrayOutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 使用JDK Deflater的压缩算法，Deflater和Inflater在线程内复用
+ */
+public class DeflateCompressor implements Compressor {
+
+    public static final byte ID = 1;
+
+    private final ThreadLocal<Deflater> deflaters;
+
+    private static final ThreadLocal<Inflater> INFLATERS = ThreadLocal.withInitial(Inflater::new);
+
+    public DeflateCompressor() {
+        this(Deflater.BEST_SPEED);
+    }
+
+    /**
+     * @param level 压缩级别，0到9，越大压缩率越高、速度越慢
+     */
+    public DeflateCompressor(int level) {
+        this.deflaters = ThreadLocal.withInitial(() -> new Deflater(level));
+    }
+
+    @Override
+    public byte getId() {
+        return ID;
+    }
+
+    @Override
+    public byte[] compress(byte[] data) {
+        Deflater deflater = deflaters.get();
+        deflater.reset();
+        deflater.setInput(data);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 2));
+        byte[] buffer = new byte[Math.min(data.length, 8192)];
+        while (!deflater.finished()) {
+            int count = deflater.deflate(buffer);
+            out.write(buffer, 0, count);
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public byte[] decompress(byte[] data, int offset, int length, int originalLength) {
+        Inflater inflater = INFLATERS.get();
+        inflater.reset();
+        inflater.setInput(data, offset, length);
+        byte[] result = new byte[originalLength];
+        try {
+            int count = 0;
+            while (count < originalLength && !inflater.finished()) {
+                int inflated = inflater.inflate(result, count, originalLength - count);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                count += inflated;
+            }
+            if (count != originalLength) {
+                throw new SerializationException("Deflate 解压后的长度不正确: " + count + ", 期望: " + originalLength);
+            }
+            return result;
+        } catch (DataFormatException e) {
+            throw new SerializationException("Deflate 解压异常: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package org.github.roger.serializer;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.parser.ParserConfig;
+import com.alibaba.fastjson.serializer.JSONSerializer;
+import com.alibaba.fastjson.serializer.SerializeWriter;
+import com.alibaba.fastjson.serializer.SerializerFeature;
+import org.github.roger.exception.SerializationException;
+import org.github.roger.support.NullValue;
+import org.github.roger.utils.SerializationUtils;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.util.ClassUtils;
+
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 直接读写UTF-8字节的FastJson序列化器
+ * <p>
+ * 第一个字节是类型头，后面是内容：字符串和基本类型直接写文本，对象和集合写带类名的JSON，
+ * 数组和枚举在内容前面加上"类名:"。序列化时在FastJson复用的缓冲区中一次生成结果，
+ * 反序列化时直接解析字节，不再经过包装对象和中间的String。
+ * </p>
+ * <p>
+ * 旧格式（{@link FastJsonRedisSerializer}）的数据以'{'开头，会交给旧的序列化器读取，所以可以直接替换。
+ * </p>
+ *
+ * @param <T> T
+ */
+public class FastJsonBytesRedisSerializer<T> implements RedisSerializer<T> {
+
+    private static final byte NULL = 1;
+    private static final byte STRING = 2;
+    private static final byte INTEGER = 3;
+    private static final byte LONG = 4;
+    private static final byte DOUBLE = 5;
+    private static final byte FLOAT = 6;
+    private static final byte BOOLEAN = 7;
+    private static final byte BYTE = 8;
+    private static final byte CHARACTER = 9;
+    private static final byte SHORT = 10;
+    private static final byte OBJECT = 11;
+    private static final byte LIST = 12;
+    private static final byte SET = 13;
+    private static final byte ARRAY = 14;
+    private static final byte ENUM = 15;
+
+    /**
+     * 旧格式的第一个字节
+     */
+    private static final byte LEGACY_HEADER = '{';
+
+    /**
+     * 数组和枚举的类名与内容之间的分隔符
+     */
+    private static final char CLASS_NAME_SEPARATOR = ':';
+
+    private static final ThreadLocal<CharsetDecoder> DECODERS = ThreadLocal.withInitial(StandardCharsets.UTF_8::newDecoder);
+
+    /**
+     * 读取旧格式数据的序列化器
+     */
+    private final FastJsonRedisSerializer<T> legacySerializer;
+
+    /**
+     * 指定小范围包的序列化和反序列化，具体原因可以参考：
+     * <P>https://www.jianshu.com/p/a92ecc33fd0d</P>
+     *
+     * @param clazz    clazz
+     * @param packages 白名单包名，如:"com.xxx."
+     */
+    public FastJsonBytesRedisSerializer(Class<T> clazz, String... packages) {
+        this.legacySerializer = new FastJsonRedisSerializer<>(clazz, packages);
+    }
+
+    @Override
+    public byte[] serialize(T t) throws SerializationException {
+        SerializeWriter out = new SerializeWriter(null, JSON.DEFAULT_GENERATE_FEATURE, SerializerFeature.WriteClassName);
+        try {
+            write(out, t);
+            return out.toBytes(StandardCharsets.UTF_8);
+        } catch (SerializationException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new SerializationException(String.format("FastJsonBytesRedisSerializer 序列化异常: %s, 【JSON：%s】",
+                    e.getMessage(), JSON.toJSONString(t)), e);
+        } finally {
+            // 归还FastJson线程内复用的缓冲区
+            out.close();
+        }
+    }
+
+    private void write(SerializeWriter out, Object t) {
+        if (t == null || t instanceof NullValue) {
+            out.write(NULL);
+        } else if (t instanceof String) {
+            out.write(STRING);
+            out.write((String) t);
+        } else if (t instanceof Integer) {
+            writeText(out, INTEGER, t);
+        } else if (t instanceof Long) {
+            writeText(out, LONG, t);
+        } else if (t instanceof Double) {
+            writeText(out, DOUBLE, t);
+        } else if (t instanceof Float) {
+            writeText(out, FLOAT, t);
+        } else if (t instanceof Boolean) {
+            writeText(out, BOOLEAN, t);
+        } else if (t instanceof Byte) {
+            writeText(out, BYTE, t);
+        } else if (t instanceof Character) {
+            writeText(out, CHARACTER, t);
+        } else if (t instanceof Short) {
+            writeText(out, SHORT, t);
+        } else if (t instanceof List) {
+            writeJson(out, LIST, t);
+        } else if (t instanceof Set) {
+            writeJson(out, SET, t);
+        } else if (t.getClass().isArray()) {
+            writeClassName(out, ARRAY, t.getClass());
+            new JSONSerializer(out).write(t);
+        } else if (t instanceof Enum) {
+            writeClassName(out, ENUM, ((Enum<?>) t).getDeclaringClass());
+            out.write(((Enum<?>) t).name());
+        } else {
+            writeJson(out, OBJECT, t);
+        }
+    }
+
+    private void writeText(SerializeWriter out, byte type, Object value) {
+        out.write(type);
+        out.write(value.toString());
+    }
+
+    private void writeJson(SerializeWriter out, byte type, Object value) {
+        out.write(type);
+        new JSONSerializer(out).write(value);
+    }
+
+    private void writeClassName(SerializeWriter out, byte type, Class<?> clazz) {
+        out.write(type);
+        out.write(clazz.getName());
+        out.write(CLASS_NAME_SEPARATOR);
+    }
+
+    @Override
+    public T deserialize(byte[] bytes) throws SerializationException {
+        if (SerializationUtils.isEmpty(bytes)) {
+            return null;
+        }
+        if (bytes[0] == LEGACY_HEADER) {
+            return legacySerializer.deserialize(bytes);
+        }
+
+        try {
+            return (T) read(bytes);
+        } catch (SerializationException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new SerializationException(String.format("FastJsonBytesRedisSerializer 反序列化异常: %s, 【JSON：%s】",
+                    e.getMessage(), new String(bytes, StandardCharsets.UTF_8)), e);
+        }
+    }
+
+    private Object read(byte[] bytes) throws ClassNotFoundException {
+        int length = bytes.length - 1;
+        switch (bytes[0]) {
+            case NULL:
+                return null;
+            case STRING:
+                return text(bytes);
+            case INTEGER:
+                return Integer.valueOf(text(bytes));
+            case LONG:
+                return Long.valueOf(text(bytes));
+            case DOUBLE:
+                return Double.valueOf(text(bytes));
+            case FLOAT:
+                return Float.valueOf(text(bytes));
+            case BOOLEAN:
+                return Boolean.valueOf(text(bytes));
+            case BYTE:
+                return Byte.valueOf(text(bytes));
+            case CHARACTER:
+                return text(bytes).charAt(0);
+            case SHORT:
+                return Short.valueOf(text(bytes));
+            case OBJECT:
+            case SET:
+                Object result = JSON.parse(bytes, 1, length, DECODERS.get(), JSON.DEFAULT_PARSER_FEATURE);
+                return result instanceof NullValue ? null : result;
+            case LIST:
+                return JSON.parseObject(bytes, 1, length, DECODERS.get(), ArrayList.class);
+            case ARRAY:
+                int arrayStart = classNameEnd(bytes) + 1;
+                return JSON.parseObject(bytes, arrayStart, bytes.length - arrayStart, DECODERS.get(), loadClass(bytes));
+            case ENUM:
+                int nameStart = classNameEnd(bytes) + 1;
+                return Enum.valueOf((Class) loadClass(bytes), new String(bytes, nameStart, bytes.length - nameStart, StandardCharsets.UTF_8));
+            default:
+                throw new SerializationException("不支持反序列化的对象类型: " + bytes[0]);
+        }
+    }
+
+    private String text(byte[] bytes) {
+        return new String(bytes, 1, bytes.length - 1, StandardCharsets.UTF_8);
+    }
+
+    private int classNameEnd(byte[] bytes) {
+        for (int i = 1; i < bytes.length; i++) {
+            if (bytes[i] == CLASS_NAME_SEPARATOR) {
+                return i;
+            }
+        }
+        throw new SerializationException("FastJsonBytesRedisSerializer 反序列化异常: 缺少类名");
+    }
+
+    /**
+     * 加载数组和枚举的类，非JDK的类必须在FastJson的白名单中
+     */
+    private Class<?> loadClass(byte[] bytes) throws ClassNotFoundException {
+        String className = new String(bytes, 1, classNameEnd(bytes) - 1, StandardCharsets.UTF_8);
+        Class<?> clazz = ClassUtils.forName(className, ClassUtils.getDefaultClassLoader());
+        Class<?> componentType = clazz;
+        while (componentType.isArray()) {
+            componentType = componentType.getComponentType();
+        }
+        if (!componentType.isPrimitive() && !componentType.getName().startsWith("java.")) {
+            ParserConfig.getGlobalInstance().checkAutoType(componentType.getName(), null);
+        }
+        return clazz;
+    }
+}
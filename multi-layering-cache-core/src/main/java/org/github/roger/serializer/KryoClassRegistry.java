@@ -0,0 +1,79 @@
+package org.github.roger.serializer;
+
+import com.esotericsoftware.kryo.Kryo;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Kryo类注册表，给类指定固定的注册ID
+ * <p>
+ * 注册过的类序列化时只写ID，不写类名，序列化结果更小、速度更快。
+ * 同一个redis中的数据会被不同的服务读写，所以各个服务的ID必须一致，并且ID一旦使用就不能再改。
+ * Kryo默认注册的类和序列化器自身注册的类占用了较小的ID，所以自定义ID必须从100开始分配。
+ * </p>
+ */
+public class KryoClassRegistry {
+
+    /**
+     * 自定义的最小注册ID，小于这个值的ID留给Kryo默认注册的类
+     */
+    public static final int MIN_ID = 100;
+
+    private final Map<Class<?>, Integer> registrations = new LinkedHashMap<>();
+
+    /**
+     * 注册类
+     *
+     * @param clazz 类
+     * @param id    注册ID
+     * @return KryoClassRegistry
+     */
+    public synchronized KryoClassRegistry register(Class<?> clazz, int id) {
+        Assert.notNull(clazz, "注册的类不能为NULL");
+        Assert.isTrue(id >= MIN_ID, "Kryo注册ID不能小于" + MIN_ID + "：" + clazz.getName());
+        Integer old = registrations.get(clazz);
+        Assert.isTrue(old == null || old == id, "类" + clazz.getName() + "已经注册了ID：" + old);
+        Assert.isTrue(old != null || !registrations.containsValue(id), "Kryo注册ID重复：" + id);
+        registrations.put(clazz, id);
+        return this;
+    }
+
+    /**
+     * 按类名注册，一般用于从配置文件读取的注册表
+     *
+     * @param classNameIds 类的全名和注册ID
+     * @return KryoClassRegistry
+     */
+    public KryoClassRegistry registerAll(Map<String, Integer> classNameIds) {
+        if (classNameIds == null) {
+            return this;
+        }
+        for (Map.Entry<String, Integer> entry : classNameIds.entrySet()) {
+            try {
+                register(ClassUtils.forName(entry.getKey(), ClassUtils.getDefaultClassLoader()), entry.getValue());
+            } catch (ClassNotFoundException e) {
+                throw new IllegalArgumentException("Kryo注册的类不存在：" + entry.getKey(), e);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * 把注册表应用到Kryo实例
+     *
+     * @param kryo Kryo
+     */
+    public synchronized void applyTo(Kryo kryo) {
+        for (Map.Entry<Class<?>, Integer> entry : registrations.entrySet()) {
+            kryo.register(entry.getKey(), entry.getValue());
+        }
+    }
+
+    public synchronized Map<Class<?>, Integer> getRegistrations() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(registrations));
+    }
+}
@@ -0,0 +1,148 @@
+package org.github.roger.serializer;
+
+import com.alibaba.fastjson.JSON;
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.io.UnsafeInput;
+import com.esotericsoftware.kryo.io.UnsafeOutput;
+import org.github.roger.exception.SerializationException;
+import org.github.roger.settings.KryoSetting;
+import org.github.roger.support.NullValue;
+import org.github.roger.utils.SerializationUtils;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * 使用对象池的Kryo序列化器
+ * <p>
+ * Kryo实例和读写缓冲区一起放在池中复用，不用每次序列化都重新创建Kryo、注册类和分配缓冲区。
+ * 没有配置注册表且不使用Unsafe时，序列化结果和 {@link KryoRedisSerializer} 兼容。
+ * </p>
+ *
+ * @param <T> T
+ */
+public class KryoPoolRedisSerializer<T> implements RedisSerializer<T> {
+
+    private final Class<T> clazz;
+
+    private final KryoSetting setting;
+
+    private final KryoClassRegistry registry;
+
+    private final BlockingQueue<KryoHolder> pool;
+
+    public KryoPoolRedisSerializer(Class<T> clazz) {
+        this(clazz, new KryoSetting());
+    }
+
+    public KryoPoolRedisSerializer(Class<T> clazz, KryoSetting setting) {
+        this(clazz, setting, new KryoClassRegistry().registerAll(setting.getRegistrations()));
+    }
+
+    /**
+     * @param clazz    反序列化的类型
+     * @param setting  配置 {@link KryoSetting}，其中的注册表会被忽略
+     * @param registry 类注册表 {@link KryoClassRegistry}
+     */
+    public KryoPoolRedisSerializer(Class<T> clazz, KryoSetting setting, KryoClassRegistry registry) {
+        this.clazz = clazz;
+        this.setting = setting;
+        this.registry = registry;
+        this.pool = new ArrayBlockingQueue<>(Math.max(1, setting.getPoolSize()));
+    }
+
+    @Override
+    public byte[] serialize(T t) throws SerializationException {
+        if (t == null) {
+            return SerializationUtils.EMPTY_ARRAY;
+        }
+
+        KryoHolder holder = borrow();
+        try {
+            holder.output.clear();
+            holder.kryo.writeClassAndObject(holder.output, t);
+            return holder.output.toBytes();
+        } catch (Exception e) {
+            throw new SerializationException(String.format("KryoPoolRedisSerializer 序列化异常: %s, 【JSON：%s】",
+                    e.getMessage(), JSON.toJSONString(t)), e);
+        } finally {
+            release(holder);
+        }
+    }
+
+    @Override
+    public T deserialize(byte[] bytes) throws SerializationException {
+        if (SerializationUtils.isEmpty(bytes)) {
+            return null;
+        }
+
+        KryoHolder holder = borrow();
+        try {
+            holder.input.setBuffer(bytes);
+            Object result = holder.kryo.readClassAndObject(holder.input);
+            if (result instanceof NullValue) {
+                return null;
+            }
+            return (T) result;
+        } catch (Exception e) {
+            throw new SerializationException(String.format("KryoPoolRedisSerializer 反序列化异常: %s, 【JSON：%s】",
+                    e.getMessage(), JSON.toJSONString(bytes)), e);
+        } finally {
+            // 不持有调用方的数组
+            holder.input.setBuffer(SerializationUtils.EMPTY_ARRAY);
+            release(holder);
+        }
+    }
+
+    private KryoHolder borrow() {
+        KryoHolder holder = pool.poll();
+        return holder != null ? holder : new KryoHolder();
+    }
+
+    private void release(KryoHolder holder) {
+        if (holder.output.getBuffer().length > setting.getMaxPooledBufferSize()) {
+            // 序列化过大对象后缓冲区变大，缩小到初始大小
+            holder.output.setBuffer(new byte[setting.getBufferSize()], -1);
+        }
+        // 池满了直接丢弃
+        pool.offer(holder);
+    }
+
+    /**
+     * 池中当前空闲的Kryo实例数
+     */
+    public int getIdleCount() {
+        return pool.size();
+    }
+
+    /**
+     * Kryo实例和它使用的读写缓冲区，只能被一个线程使用
+     */
+    private class KryoHolder {
+
+        private final Kryo kryo;
+
+        private final Output output;
+
+        private final Input input;
+
+        KryoHolder() {
+            kryo = new Kryo();
+            // 设置成false 序列化速度更快，但是遇到循环应用序列化器会报栈内存溢出
+            kryo.setReferences(false);
+            kryo.setRegistrationRequired(setting.isRegistrationRequired());
+            kryo.register(clazz);
+            registry.applyTo(kryo);
+            if (setting.isUnsafe()) {
+                output = new UnsafeOutput(setting.getBufferSize(), -1);
+                input = new UnsafeInput();
+            } else {
+                output = new Output(setting.getBufferSize(), -1);
+                input = new Input();
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package org.github.roger.serializer;
+
+import org.github.roger.exception.SerializationException;
+import org.github.roger.jfr.CacheEvents;
+import org.github.roger.support.CacheStats;
+import org.github.roger.trace.CacheTracing;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.util.Assert;
+
+/**
+ * 记录序列化耗时和数据大小的序列化器装饰器，统计信息记录在缓存名称的 {@link CacheStats} 中，
+ * 数据大小同时累加到当前线程的二级缓存JFR事件和链路追踪的span
+ *
+ * @param <T> T
+ */
+public class StatsRedisSerializer<T> implements RedisSerializer<T> {
+
+    private final RedisSerializer<T> delegate;
+
+    private final CacheStats stats;
+
+    /**
+     * @param delegate  被包装的序列化器
+     * @param cacheName 缓存名称
+     */
+    public StatsRedisSerializer(RedisSerializer<T> delegate, String cacheName) {
+        Assert.notNull(delegate, "被包装的序列化器不能为NULL");
+        this.delegate = delegate instanceof StatsRedisSerializer ? ((StatsRedisSerializer<T>) delegate).delegate : delegate;
+        this.stats = CacheStats.getStats(cacheName);
+    }
+
+    @Override
+    public byte[] serialize(T t) throws SerializationException {
+        long start = System.nanoTime();
+        byte[] bytes = delegate.serialize(t);
+        int length = bytes == null ? 0 : bytes.length;
+        stats.recordSerialize(start, length);
+        CacheEvents.addBytes(length);
+        CacheTracing.addBytes(length);
+        return bytes;
+    }
+
+    @Override
+    public T deserialize(byte[] bytes) throws SerializationException {
+        long start = System.nanoTime();
+        T t = delegate.deserialize(bytes);
+        int length = bytes == null ? 0 : bytes.length;
+        stats.recordDeserialize(start, length);
+        CacheEvents.addBytes(length);
+        CacheTracing.addBytes(length);
+        return t;
+    }
+
+    /**
+     * 被包装的序列化器
+     */
+    public RedisSerializer<T> getDelegate() {
+        return delegate;
+    }
+}
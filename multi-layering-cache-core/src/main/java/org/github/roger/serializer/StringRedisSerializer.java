@@ -34,6 +34,13 @@ public class StringRedisSerializer implements RedisSerializer<Object> {
 
     @Override
     public byte[] serialize(Object object) {
+        // 常用的key类型不经过JSON，结果和JSON序列化后去掉引号一致
+        if (object instanceof String && !needJsonEscape((String) object)) {
+            return ((String) object).getBytes(charset);
+        }
+        if (object instanceof Long || object instanceof Integer) {
+            return object.toString().getBytes(charset);
+        }
         String string = JSON.toJSONString(object);
         if (string == null) {
             return null;
@@ -41,4 +48,17 @@ public class StringRedisSerializer implements RedisSerializer<Object> {
         string = string.replace(target, replacement);
         return string.getBytes(charset);
     }
+
+    /**
+     * 字符串中是否有JSON序列化时需要转义的字符，有的话走JSON序列化保持原来的结果
+     */
+    private static boolean needJsonEscape(String string) {
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            if (c < 0x20 || c == '"' || c == '\\' || c == 0x7F || c == '\u2028' || c == '\u2029') {
+                return true;
+            }
+        }
+        return false;
+    }
 }
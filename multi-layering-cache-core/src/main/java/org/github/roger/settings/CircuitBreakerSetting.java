@@ -0,0 +1,55 @@
+package org.github.roger.settings;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import java.io.Serializable;
+
+/**
+ * redis熔断器配置，时间单位都是毫秒
+ * <p>
+ * 使用starter时通过 spring.multi-layering-cache.circuit-breaker.* 配置，比如
+ * spring.multi-layering-cache.circuit-breaker.open-time=5000
+ * </p>
+ */
+@Data
+@NoArgsConstructor
+@ToString
+public class CircuitBreakerSetting implements Serializable {
+
+    /**
+     * 统计窗口的长度
+     */
+    private long windowTime = 10000;
+
+    /**
+     * 统计窗口内至少执行了多少次命令才计算失败率
+     */
+    private int minimumCalls = 20;
+
+    /**
+     * 失败率（包括慢调用）达到该值时打开熔断器
+     */
+    private double failureRateThreshold = 0.5;
+
+    /**
+     * 命令执行时间超过该值视为慢调用
+     */
+    private long slowCallTime = 200;
+
+    /**
+     * 熔断器打开后，经过多长时间进入半开状态
+     */
+    private long openTime = 5000;
+
+    /**
+     * 半开状态下连续成功多少次探测请求后关闭熔断器
+     */
+    private int halfOpenProbes = 3;
+
+    /**
+     * 熔断器打开期间一级缓存的有效时间，拿不到二级缓存时尽量多用一级缓存
+     */
+    private long openFirstCacheExpireTime = 300000;
+}
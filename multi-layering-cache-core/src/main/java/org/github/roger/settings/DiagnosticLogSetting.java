@@ -0,0 +1,26 @@
+package org.github.roger.settings;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import java.io.Serializable;
+
+/**
+ * 诊断日志配置 {@link org.github.roger.support.DiagnosticLog}
+ */
+@Data
+@NoArgsConstructor
+@ToString
+public class DiagnosticLogSetting implements Serializable {
+
+    /**
+     * 日志中缓存key和缓存值渲染成JSON后的最大长度，超过时截断，默认256
+     */
+    private int maxValueLength = 256;
+
+    /**
+     * 采样事件的采样率，每个缓存名称每N次查询输出一次，默认0不输出
+     */
+    private int sampleRate = 0;
+}
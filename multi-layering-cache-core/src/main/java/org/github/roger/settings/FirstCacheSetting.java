@@ -1,17 +1,16 @@
 package org.github.roger.settings;
 
-import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.ToString;
 import org.github.roger.enumeration.ExpireMode;
+import org.github.roger.enumeration.FirstCacheType;
 
 import java.io.Serializable;
 import java.util.concurrent.TimeUnit;
 
 @Data
 @NoArgsConstructor
-@AllArgsConstructor
 @ToString
 public class FirstCacheSetting implements Serializable {
 
@@ -40,6 +39,25 @@ public class FirstCacheSetting implements Serializable {
      */
     private ExpireMode expireMode = ExpireMode.WRITE;
 
+    /**
+     * 一级缓存的类型{@link FirstCacheType}
+     */
+    private FirstCacheType type = FirstCacheType.CAFFEINE;
+
+    /**
+     * 堆外缓存最多使用的内存，单位字节，默认64MB，超过时淘汰最早写入的数据。
+     * 内存按段在写入时分配，每个缓存名称单独计算，所有缓存的总和受 -XX:MaxDirectMemorySize 限制
+     */
+    private long offHeapMaxBytes = 64 * 1024 * 1024;
+
+    public FirstCacheSetting(int initialCapacity, int maximumSize, int expireTime, TimeUnit timeUnit, ExpireMode expireMode) {
+        this.initialCapacity = initialCapacity;
+        this.maximumSize = maximumSize;
+        this.expireTime = expireTime;
+        this.timeUnit = timeUnit;
+        this.expireMode = expireMode;
+    }
+
     public boolean isAllowNullValues() {
         return false;
     }
@@ -0,0 +1,51 @@
+package org.github.roger.settings;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Kryo序列化器配置 {@link org.github.roger.serializer.KryoPoolRedisSerializer}
+ */
+@Data
+@NoArgsConstructor
+@ToString
+public class KryoSetting implements Serializable {
+
+    /**
+     * 类注册表，key是类的全名，value是固定的注册ID，ID必须从100开始分配，一旦使用就不能再改
+     */
+    private Map<String, Integer> registrations = new LinkedHashMap<>();
+
+    /**
+     * 是否必须注册才能序列化，默认false，没有注册的类会写入类名
+     */
+    private boolean registrationRequired = false;
+
+    /**
+     * 是否使用Unsafe读写，速度更快，默认false
+     * <p>
+     * Unsafe方式的序列化结果和普通方式不兼容，并且依赖机器的字节序，切换前需要清空缓存
+     * </p>
+     */
+    private boolean unsafe = false;
+
+    /**
+     * 池中缓存的Kryo实例数上限，超过时用完直接丢弃，默认64
+     */
+    private int poolSize = 64;
+
+    /**
+     * 序列化缓冲区初始大小，单位字节，默认4KB
+     */
+    private int bufferSize = 4 * 1024;
+
+    /**
+     * 归还到池中的缓冲区最大保留大小，单位字节，默认1MB，超过时缩小到初始大小，防止大对象长期占用内存
+     */
+    private int maxPooledBufferSize = 1024 * 1024;
+}
@@ -5,6 +5,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.ToString;
 import org.github.roger.enumeration.ExpireMode;
+import org.github.roger.enumeration.RefreshPolicy;
 
 import java.io.Serializable;
 import java.util.concurrent.TimeUnit;
@@ -52,4 +53,110 @@ public class SecondaryCacheSetting implements Serializable {
      * 那么当缓存value为null时，缓存的有效时间将是20秒，非空时为200秒
      */
     int magnification = 1;
+
+    /**
+     * 刷新策略，默认是固定刷新窗口 {@link RefreshPolicy#FIXED_WINDOW}
+     * <p>
+     * PROBABILISTIC 会把加载缓存的耗时和缓存值一起保存，根据耗时和剩余有效时间按概率提前刷新，
+     * 没有记录加载耗时的缓存值仍然按preloadTime刷新
+     * </p>
+     */
+    private RefreshPolicy refreshPolicy = RefreshPolicy.FIXED_WINDOW;
+
+    /**
+     * 概率提前刷新的系数，默认是1，大于1提前刷新得更早，小于1更晚
+     */
+    private double beta = 1.0;
+
+    /**
+     * 超过缓存有效时间后仍然可以使用旧值的最长时间，时间单位同expiration，默认是0不开启
+     * <p>
+     * 开启后超过有效时间的旧值会直接返回，同时异步重新加载缓存；
+     * 被缓存的方法或者redis异常时继续使用旧值，直到超过maxStaleness
+     * </p>
+     */
+    private long maxStaleness = 0;
+
+    /**
+     * 是否使用lua脚本一次往返读取缓存值、key是否存在以及剩余有效时间，默认开启
+     * <p>
+     * 关闭后会退回到 GET、EXISTS、TTL 三条命令的读取方式
+     * </p>
+     */
+    private boolean useScriptRead = true;
+
+    /**
+     * 缓存加载完成后发布的通知消息中携带缓存值的最大字节数，默认16KB
+     * <p>
+     * 超过时只通知不携带缓存值，其他节点的等待线程被唤醒后再查询一次redis；小于等于0表示不携带缓存值。
+     * 只有加载时发现竞争才会携带缓存值，没有竞争时只通知key
+     * </p>
+     */
+    private int loadedMessageValueLimit = 16 * 1024;
+
+    /**
+     * 清空缓存时每批 SCAN 和 UNLINK 的key数量，默认1000
+     */
+    private int clearBatchSize = 1000;
+
+    /**
+     * 清空缓存时每批之间暂停的毫秒数，用来限制对redis的压力，默认0不暂停
+     */
+    private long clearBatchPause = 0;
+
+    /**
+     * 是否在后台线程清空redis缓存，默认false
+     * <p>
+     * 开启后clear立即返回，redis缓存删除完成后才通知各个节点清空一级缓存
+     * </p>
+     */
+    private boolean asyncClear = false;
+
+    /**
+     * 是否给缓存key加上缓存名称的版本号，默认false。usePrefix = true才有效
+     * <p>
+     * 开启后key的格式是"缓存名称:版本号:key"，clear只把redis中的版本号加1并通知其他节点，
+     * 旧版本的key不再被访问，等待过期时间到了自动删除，所以必须设置有效时间（expiration大于0），否则创建缓存时抛出异常
+     * </p>
+     */
+    private boolean useGeneration = false;
+
+    /**
+     * 是否压缩缓存值，默认false
+     * <p>
+     * 开启后序列化结果超过compressThreshold的缓存值压缩后再放到redis，压缩和没有压缩的缓存值可以同时存在
+     * </p>
+     */
+    private boolean compress = false;
+
+    /**
+     * 压缩阈值，序列化结果超过这个字节数才压缩，默认1KB
+     */
+    private int compressThreshold = 1024;
+
+    /**
+     * 是否使用紧凑的redis key，默认false。usePrefix = true才有效
+     * <p>
+     * 开启后key前缀变成"~ID:"，ID根据缓存名称计算，并登记在redis中检查不同缓存名称的ID冲突，冲突时创建缓存失败；
+     * 序列化后超过keyDigestThreshold字节的key替换成定长的摘要，完整的key和缓存值保存在一起，读取时校验防止摘要冲突。
+     * 登记信息没有过期时间，要求redis的淘汰策略是noeviction（或者volatile-*）
+     * </p>
+     */
+    private boolean compactKey = false;
+
+    /**
+     * key的摘要阈值，序列化后超过这个字节数的key替换成摘要，默认64，compactKey = true才有效
+     */
+    private int keyDigestThreshold = 64;
+
+    public SecondaryCacheSetting(long expiration, long preloadTime, TimeUnit timeUnit, boolean forceRefresh,
+                                 boolean usePrefix, boolean allowNullValue, int magnification) {
+        this.expiration = expiration;
+        this.preloadTime = preloadTime;
+        this.timeUnit = timeUnit;
+        this.forceRefresh = forceRefresh;
+        this.usePrefix = usePrefix;
+        this.allowNullValue = allowNullValue;
+        this.magnification = magnification;
+    }
 }
@@ -8,14 +8,31 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.LockSupport;
 
 /**
  * 等待线程容器
  */
 public class AwaitThreadContainer {
+    /**
+     * 送达的缓存值最多保留的时间，超过后等待线程重新查询redis
+     */
+    private static final long LOADED_VALUE_EXPIRE_NANOS = TimeUnit.SECONDS.toNanos(1);
+
     private final Map<String, Set<Thread>> threadMap = new ConcurrentHashMap<>();
 
+    /**
+     * 正在等待该key的线程数，从第一次等待开始到不再等待（拿到缓存值或者自己加载）结束，
+     * 包括被唤醒后还没有读取送达值的线程
+     */
+    private final Map<String, AtomicInteger> waiterCountMap = new ConcurrentHashMap<>();
+
+    /**
+     * 加载完成时随通知一起送达的缓存值，只有存在等待线程时才会保存，所有等待线程结束等待或者过期后删除
+     */
+    private final Map<String, LoadedValue> loadedValueMap = new ConcurrentHashMap<>();
+
     /**
      * 线程等待,最大等待100毫秒
      * @param key 缓存Key
@@ -27,16 +44,54 @@ public class AwaitThreadContainer {
         if (Thread.interrupted()) {
             throw new InterruptedException();
         }
-        Set<Thread> threadSet = threadMap.get(key);
-        // 判断线程容器是否是null，如果是就新创建一个
-        if (threadSet == null) {
-            threadSet = new ConcurrentSkipListSet<>(Comparator.comparing(Thread::toString));
-            threadMap.put(key, threadSet);
-        }
+        Set<Thread> threadSet = threadMap.computeIfAbsent(key,
+                k -> new ConcurrentSkipListSet<>(Comparator.comparing(Thread::toString)));
         // 将线程放到容器
         threadSet.add(Thread.currentThread());
         // 阻塞一定的时间
         LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(milliseconds));
+        // 超时醒来的线程需要自己从容器中移除
+        threadSet.remove(Thread.currentThread());
+    }
+
+    /**
+     * 当前线程开始等待该key，和 {@link #leave(String)} 成对调用，期间可以多次 {@link #await(String, long)}
+     *
+     * @param key key
+     */
+    public final void enter(String key) {
+        waiterCountMap.compute(key, (k, count) -> {
+            if (count == null) {
+                return new AtomicInteger(1);
+            }
+            count.incrementAndGet();
+            return count;
+        });
+    }
+
+    /**
+     * 当前线程结束等待该key，没有等待线程后删除送达的缓存值
+     *
+     * @param key key
+     */
+    public final void leave(String key) {
+        waiterCountMap.computeIfPresent(key, (k, count) -> {
+            if (count.decrementAndGet() > 0) {
+                return count;
+            }
+            loadedValueMap.remove(key);
+            return null;
+        });
+    }
+
+    /**
+     * 是否有线程在等待该key
+     *
+     * @param key key
+     * @return 有等待线程时返回true
+     */
+    public final boolean hasWaiters(String key) {
+        return waiterCountMap.containsKey(key) || !CollectionUtils.isEmpty(threadMap.get(key));
     }
 
     /**
@@ -55,4 +110,62 @@ public class AwaitThreadContainer {
         }
     }
 
+    /**
+     * 线程唤醒，并把加载完成的缓存值交给等待线程，等待线程不需要再去redis查询
+     *
+     * @param key   key
+     * @param value 加载完成的缓存值
+     */
+    public final void signalAll(String key, Object value) {
+        if (hasWaiters(key)) {
+            long now = System.nanoTime();
+            // 顺便删除没有被读取的过期值
+            loadedValueMap.values().removeIf(loadedValue -> loadedValue.isExpired(now));
+            loadedValueMap.put(key, new LoadedValue(value, now));
+        }
+        signalAll(key);
+    }
+
+    /**
+     * 读取在指定时间之后送达的缓存值，不会删除，同一次通知唤醒的所有等待线程都能读取到
+     *
+     * @param key        key
+     * @param sinceNanos 开始等待的时间{@link System#nanoTime()}，在这之前送达的值已经过时
+     * @return 送达的缓存值，没有时返回null
+     */
+    public final LoadedValue getLoadedValue(String key, long sinceNanos) {
+        LoadedValue loadedValue = loadedValueMap.get(key);
+        if (loadedValue == null || loadedValue.nanoTime - sinceNanos < 0) {
+            return null;
+        }
+        if (loadedValue.isExpired(System.nanoTime())) {
+            loadedValueMap.remove(key, loadedValue);
+            return null;
+        }
+        return loadedValue;
+    }
+
+    /**
+     * 加载完成时送达的缓存值
+     */
+    public static final class LoadedValue {
+
+        private final Object value;
+
+        private final long nanoTime;
+
+        private LoadedValue(Object value, long nanoTime) {
+            this.value = value;
+            this.nanoTime = nanoTime;
+        }
+
+        public Object getValue() {
+            return value;
+        }
+
+        private boolean isExpired(long now) {
+            return now - nanoTime > LOADED_VALUE_EXPIRE_NANOS;
+        }
+    }
+
 }
@@ -0,0 +1,296 @@
+package org.github.roger.support;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 缓存的运行统计信息，按缓存名称记录，一级缓存、二级缓存、加载数据、刷新、序列化和消息都记录在这里
+ * <p>
+ * 计数都使用 {@link LongAdder}，耗时使用 {@link LatencyHistogram}，在读写缓存的热点路径上记录的开销很小。
+ * 统计信息只在本机累加，由监控系统（如Micrometer）定时读取。
+ * </p>
+ */
+public class CacheStats {
+
+    /**
+     * 各个缓存名称的统计信息
+     */
+    private static final Map<String, CacheStats> STATS = new ConcurrentHashMap<>();
+
+    /**
+     * 新的缓存名称创建统计信息时的监听器，缓存是按需创建的，监控系统通过监听器注册后来出现的缓存名称
+     */
+    private static final List<Consumer<CacheStats>> LISTENERS = new CopyOnWriteArrayList<>();
+
+    private final String cacheName;
+
+    private final LongAdder firstCacheHits = new LongAdder();
+
+    private final LongAdder firstCacheMisses = new LongAdder();
+
+    private final LongAdder firstCacheEvictions = new LongAdder();
+
+    private final LongAdder secondCacheHits = new LongAdder();
+
+    private final LongAdder secondCacheMisses = new LongAdder();
+
+    /**
+     * 执行被缓存方法（加载数据）失败的次数，成功的次数是加载耗时的记录次数减去失败次数
+     */
+    private final LongAdder loadFailures = new LongAdder();
+
+    private final LongAdder softRefreshes = new LongAdder();
+
+    private final LongAdder forceRefreshes = new LongAdder();
+
+    /**
+     * 刷新队列已满被丢弃的刷新任务数
+     */
+    private final LongAdder droppedRefreshes = new LongAdder();
+
+    private final LongAdder serializedBytes = new LongAdder();
+
+    private final LongAdder deserializedBytes = new LongAdder();
+
+    private final LongAdder publishedMessages = new LongAdder();
+
+    private final LongAdder receivedMessages = new LongAdder();
+
+    /**
+     * 执行被缓存方法（加载数据）的耗时，包括成功和失败
+     */
+    private final LatencyHistogram loadLatency = new LatencyHistogram();
+
+    /**
+     * 二级缓存未命中时等待分布式锁或者等待其他线程加载完成的耗时
+     */
+    private final LatencyHistogram lockWait = new LatencyHistogram();
+
+    private final LatencyHistogram serializeLatency = new LatencyHistogram();
+
+    private final LatencyHistogram deserializeLatency = new LatencyHistogram();
+
+    private CacheStats(String cacheName) {
+        this.cacheName = cacheName;
+    }
+
+    /**
+     * 获取缓存名称的统计信息，没有时创建
+     *
+     * @param cacheName 缓存名称
+     * @return {@link CacheStats}
+     */
+    public static CacheStats getStats(String cacheName) {
+        CacheStats stats = STATS.get(cacheName);
+        if (stats != null) {
+            return stats;
+        }
+        CacheStats created = new CacheStats(cacheName);
+        stats = STATS.putIfAbsent(cacheName, created);
+        if (stats != null) {
+            return stats;
+        }
+        // 不在ConcurrentHashMap的计算函数中回调监听器
+        for (Consumer<CacheStats> listener : LISTENERS) {
+            listener.accept(created);
+        }
+        return created;
+    }
+
+    /**
+     * 删除缓存名称的统计信息，缓存管理器关闭时调用，避免静态统计信息一直累积
+     * <p>
+     * 已经创建的缓存仍然持有原来的统计信息，继续使用时不会报错，只是不再出现在 {@link #getAllStats()} 中
+     * </p>
+     *
+     * @param cacheName 缓存名称
+     */
+    public static void removeStats(String cacheName) {
+        STATS.remove(cacheName);
+    }
+
+    /**
+     * 获取所有缓存名称的统计信息
+     *
+     * @return 缓存名称和统计信息
+     */
+    public static Map<String, CacheStats> getAllStats() {
+        return Collections.unmodifiableMap(STATS);
+    }
+
+    /**
+     * 添加创建统计信息的监听器，已经存在的统计信息不会回调，需要通过 {@link #getAllStats()} 获取
+     * <p>
+     * 监听器保存在静态变量中，不再使用时（如Spring容器关闭）需要调用 {@link Registration#remove()} 删除，
+     * 否则监听器和它引用的对象一直不会被回收
+     * </p>
+     *
+     * @param listener 监听器，参数是新创建的统计信息
+     * @return 监听器的注册信息，用于删除监听器
+     */
+    public static Registration addListener(Consumer<CacheStats> listener) {
+        // 每次注册一个新的对象，同一个监听器注册多次时也只删除对应的一次
+        Consumer<CacheStats> registered = listener::accept;
+        LISTENERS.add(registered);
+        return () -> LISTENERS.remove(registered);
+    }
+
+    public String getCacheName() {
+        return cacheName;
+    }
+
+    public void recordFirstCacheHits(int count) {
+        firstCacheHits.add(count);
+    }
+
+    public void recordFirstCacheMisses(int count) {
+        firstCacheMisses.add(count);
+    }
+
+    public void recordFirstCacheEviction() {
+        firstCacheEvictions.increment();
+    }
+
+    public void recordSecondCacheHits(int count) {
+        secondCacheHits.add(count);
+    }
+
+    public void recordSecondCacheMisses(int count) {
+        secondCacheMisses.add(count);
+    }
+
+    /**
+     * 记录一次加载数据
+     *
+     * @param startNanos 开始加载的时间（{@link System#nanoTime()}）
+     * @param success    是否加载成功
+     */
+    public void recordLoad(long startNanos, boolean success) {
+        loadLatency.recordSince(startNanos);
+        if (!success) {
+            loadFailures.increment();
+        }
+    }
+
+    public void recordLockWait(long startNanos) {
+        lockWait.recordSince(startNanos);
+    }
+
+    public void recordSoftRefresh() {
+        softRefreshes.increment();
+    }
+
+    public void recordForceRefresh() {
+        forceRefreshes.increment();
+    }
+
+    public void recordDroppedRefresh() {
+        droppedRefreshes.increment();
+    }
+
+    public void recordSerialize(long startNanos, int bytes) {
+        serializeLatency.recordSince(startNanos);
+        serializedBytes.add(bytes);
+    }
+
+    public void recordDeserialize(long startNanos, int bytes) {
+        deserializeLatency.recordSince(startNanos);
+        deserializedBytes.add(bytes);
+    }
+
+    public void recordPublished() {
+        publishedMessages.increment();
+    }
+
+    public void recordReceived() {
+        receivedMessages.increment();
+    }
+
+    public long getFirstCacheHits() {
+        return firstCacheHits.sum();
+    }
+
+    public long getFirstCacheMisses() {
+        return firstCacheMisses.sum();
+    }
+
+    public long getFirstCacheEvictions() {
+        return firstCacheEvictions.sum();
+    }
+
+    public long getSecondCacheHits() {
+        return secondCacheHits.sum();
+    }
+
+    public long getSecondCacheMisses() {
+        return secondCacheMisses.sum();
+    }
+
+    public long getLoadCount() {
+        return loadLatency.getCount();
+    }
+
+    public long getLoadFailures() {
+        return loadFailures.sum();
+    }
+
+    public long getSoftRefreshes() {
+        return softRefreshes.sum();
+    }
+
+    public long getForceRefreshes() {
+        return forceRefreshes.sum();
+    }
+
+    public long getDroppedRefreshes() {
+        return droppedRefreshes.sum();
+    }
+
+    public long getSerializedBytes() {
+        return serializedBytes.sum();
+    }
+
+    public long getDeserializedBytes() {
+        return deserializedBytes.sum();
+    }
+
+    public long getPublishedMessages() {
+        return publishedMessages.sum();
+    }
+
+    public long getReceivedMessages() {
+        return receivedMessages.sum();
+    }
+
+    public LatencyHistogram getLoadLatency() {
+        return loadLatency;
+    }
+
+    public LatencyHistogram getLockWait() {
+        return lockWait;
+    }
+
+    public LatencyHistogram getSerializeLatency() {
+        return serializeLatency;
+    }
+
+    public LatencyHistogram getDeserializeLatency() {
+        return deserializeLatency;
+    }
+
+    /**
+     * 监听器的注册信息
+     */
+    public interface Registration {
+
+        /**
+         * 删除监听器，重复调用没有影响
+         */
+        void remove();
+    }
+}
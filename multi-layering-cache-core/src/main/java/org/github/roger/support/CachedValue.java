@@ -0,0 +1,53 @@
+package org.github.roger.support;
+
+import com.alibaba.fastjson.annotation.JSONField;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * 二级缓存中缓存值的包装类，除了缓存值还保存刷新缓存需要的元数据
+ * <p>
+ * 只有需要元数据的刷新策略或者开启了过期后继续使用旧值时才会包装缓存值，读取缓存时会自动拆包
+ * </p>
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CachedValue implements Serializable {
+
+    /**
+     * 缓存值
+     */
+    private Object value;
+
+    /**
+     * 加载缓存值（执行被缓存的方法）的耗时，单位毫秒
+     */
+    private long loadCost;
+
+    /**
+     * 逻辑过期时间（时间戳，单位毫秒），0表示没有逻辑过期时间
+     * <p>
+     * 开启过期后继续使用旧值（stale-while-revalidate）时，缓存的实际有效时间比逻辑过期时间更长，
+     * 超过逻辑过期时间的旧值仍然可以返回，同时异步重新加载
+     * </p>
+     */
+    private long softExpireAt;
+
+    public CachedValue(Object value, long loadCost) {
+        this(value, loadCost, 0);
+    }
+
+    /**
+     * 是否已经超过逻辑过期时间
+     *
+     * @return true 已经过期，是旧值
+     */
+    @JSONField(serialize = false, deserialize = false)
+    public boolean isStale() {
+        return softExpireAt > 0 && System.currentTimeMillis() >= softExpireAt;
+    }
+}
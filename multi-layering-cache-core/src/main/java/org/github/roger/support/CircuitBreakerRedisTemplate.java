@@ -0,0 +1,54 @@
+package org.github.roger.support;
+
+import org.github.roger.exception.RedisUnavailableException;
+import org.github.roger.utils.RedisTemplateUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+
+/**
+ * 带熔断器的{@link RedisTemplate}，所有通过RedisCallback执行的redis命令（包括opsForValue、lua脚本和发布消息）都经过熔断器
+ * <p>
+ * 熔断器打开时直接抛出{@link RedisUnavailableException}，不会再去连接redis
+ * </p>
+ */
+public class CircuitBreakerRedisTemplate extends RedisTemplate<String, Object> {
+
+    private final RedisCircuitBreaker circuitBreaker;
+
+    /**
+     * 复制原RedisTemplate的配置，包括连接工厂、序列化器和事务支持等，见 {@link RedisTemplateUtils#copyProperties}
+     *
+     * @param redisTemplate  原RedisTemplate
+     * @param circuitBreaker {@link RedisCircuitBreaker}
+     */
+    public CircuitBreakerRedisTemplate(RedisTemplate<String, Object> redisTemplate, RedisCircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+        RedisTemplateUtils.copyProperties(redisTemplate, this);
+        afterPropertiesSet();
+    }
+
+    @Override
+    public <T> T execute(RedisCallback<T> action, boolean exposeConnection, boolean pipeline) {
+        if (!circuitBreaker.tryAcquire()) {
+            throw new RedisUnavailableException("redis熔断器已打开，拒绝执行redis命令");
+        }
+        long start = System.nanoTime();
+        try {
+            T result = super.execute(action, exposeConnection, pipeline);
+            circuitBreaker.onSuccess(System.nanoTime() - start);
+            return result;
+        } catch (DataAccessException e) {
+            // 只统计redis访问异常，序列化等异常不代表redis不可用
+            circuitBreaker.onError(System.nanoTime() - start);
+            throw e;
+        } catch (RuntimeException | Error e) {
+            circuitBreaker.onSuccess(System.nanoTime() - start);
+            throw e;
+        }
+    }
+
+    public RedisCircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+}
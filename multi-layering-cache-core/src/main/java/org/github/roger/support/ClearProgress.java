@@ -0,0 +1,121 @@
+package org.github.roger.support;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 清空redis缓存的进度
+ */
+public class ClearProgress {
+
+    private final String cacheName;
+
+    /**
+     * 已经扫描到的key数量
+     */
+    private final AtomicLong scannedCount = new AtomicLong();
+
+    /**
+     * 已经删除的key数量
+     */
+    private final AtomicLong deletedCount = new AtomicLong();
+
+    private volatile boolean cancelled = false;
+
+    private final CompletableFuture<ClearProgress> future = new CompletableFuture<>();
+
+    public ClearProgress(String cacheName) {
+        this.cacheName = cacheName;
+    }
+
+    public String getCacheName() {
+        return cacheName;
+    }
+
+    public long getScannedCount() {
+        return scannedCount.get();
+    }
+
+    public long getDeletedCount() {
+        return deletedCount.get();
+    }
+
+    /**
+     * 取消清空，已经删除的key不会恢复
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * 是否已经结束（包括完成、取消和异常）
+     */
+    public boolean isDone() {
+        return future.isDone();
+    }
+
+    /**
+     * 清空过程中的异常，没有异常或者还没结束返回null
+     */
+    public Throwable getError() {
+        if (!future.isCompletedExceptionally()) {
+            return null;
+        }
+        try {
+            future.join();
+            return null;
+        } catch (RuntimeException e) {
+            return e.getCause() != null ? e.getCause() : e;
+        }
+    }
+
+    /**
+     * 等待清空结束
+     *
+     * @param timeout 超时时间
+     * @param unit    时间单位
+     * @return true 已经结束
+     */
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        try {
+            future.get(timeout, unit);
+        } catch (ExecutionException e) {
+            // 异常结束也算结束，通过getError获取异常
+        } catch (TimeoutException e) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 结束后执行，不管是否成功
+     *
+     * @param action 需要执行的动作
+     */
+    public void onComplete(Runnable action) {
+        future.whenComplete((progress, e) -> action.run());
+    }
+
+    public void addScanned(long count) {
+        scannedCount.addAndGet(count);
+    }
+
+    public void addDeleted(long count) {
+        deletedCount.addAndGet(count);
+    }
+
+    public void complete() {
+        future.complete(this);
+    }
+
+    public void completeExceptionally(Throwable e) {
+        future.completeExceptionally(e);
+    }
+}
@@ -0,0 +1,63 @@
+package org.github.roger.support;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 缓存值压缩的统计信息
+ */
+public class CompressStats {
+
+    /**
+     * 压缩的次数
+     */
+    private final LongAdder compressedCount = new LongAdder();
+
+    /**
+     * 小于压缩阈值或者压缩后没有变小而没有压缩的次数
+     */
+    private final LongAdder skippedCount = new LongAdder();
+
+    /**
+     * 压缩前的总字节数
+     */
+    private final LongAdder originalBytes = new LongAdder();
+
+    /**
+     * 压缩后的总字节数
+     */
+    private final LongAdder compressedBytes = new LongAdder();
+
+    public void recordCompressed(int originalLength, int compressedLength) {
+        compressedCount.increment();
+        originalBytes.add(originalLength);
+        compressedBytes.add(compressedLength);
+    }
+
+    public void recordSkipped() {
+        skippedCount.increment();
+    }
+
+    public long getCompressedCount() {
+        return compressedCount.sum();
+    }
+
+    public long getSkippedCount() {
+        return skippedCount.sum();
+    }
+
+    public long getOriginalBytes() {
+        return originalBytes.sum();
+    }
+
+    public long getCompressedBytes() {
+        return compressedBytes.sum();
+    }
+
+    /**
+     * 压缩率，压缩后的总字节数/压缩前的总字节数，没有压缩过时返回1
+     */
+    public double getCompressRatio() {
+        long original = originalBytes.sum();
+        return original == 0 ? 1 : (double) compressedBytes.sum() / original;
+    }
+}
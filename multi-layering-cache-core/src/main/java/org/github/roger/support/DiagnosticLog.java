@@ -0,0 +1,120 @@
+package org.github.roger.support;
+
+import com.alibaba.fastjson.JSON;
+import org.github.roger.settings.DiagnosticLogSetting;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 缓存的诊断日志
+ * <p>
+ * {@link #json(Object)} 返回一个延迟渲染的日志参数，只有日志级别开启、真正输出时才会序列化成JSON，
+ * 超过最大长度时截断；日志级别没有开启时热点路径上不会序列化缓存值。
+ * {@link #event(String, String, Object, String, String)} 按缓存名称采样输出结构化的查询事件，
+ * 日志名称是 {@value #EVENT_LOGGER}，没有配置采样率时只有一次判断的开销。
+ * </p>
+ */
+public final class DiagnosticLog {
+
+    public static final String EVENT_LOGGER = "org.github.roger.diagnostic";
+
+    private static final Logger eventLog = LoggerFactory.getLogger(EVENT_LOGGER);
+
+    private static final ConcurrentMap<String, AtomicLong> COUNTERS = new ConcurrentHashMap<>();
+
+    private static volatile int maxValueLength = 256;
+
+    private static volatile int sampleRate = 0;
+
+    private DiagnosticLog() {
+    }
+
+    /**
+     * 使用配置初始化诊断日志
+     *
+     * @param setting {@link DiagnosticLogSetting}
+     */
+    public static void configure(DiagnosticLogSetting setting) {
+        maxValueLength = setting.getMaxValueLength();
+        sampleRate = setting.getSampleRate();
+        COUNTERS.clear();
+    }
+
+    /**
+     * 延迟渲染成JSON的日志参数
+     *
+     * @param value 缓存key或者缓存值
+     * @return 日志参数，toString时才序列化
+     */
+    public static Object json(Object value) {
+        return new LazyJson(value);
+    }
+
+    /**
+     * 该缓存名称的本次操作是否被采样，每N次操作采样一次
+     *
+     * @param cacheName 缓存名称
+     * @return true 被采样
+     */
+    public static boolean sample(String cacheName) {
+        int rate = sampleRate;
+        if (rate <= 0) {
+            return false;
+        }
+        AtomicLong counter = COUNTERS.get(cacheName);
+        if (counter == null) {
+            counter = COUNTERS.computeIfAbsent(cacheName, name -> new AtomicLong());
+        }
+        return counter.getAndIncrement() % rate == 0;
+    }
+
+    /**
+     * 采样输出结构化的缓存操作事件
+     *
+     * @param cacheName 缓存名称
+     * @param operation 操作
+     * @param key       缓存key
+     * @param layer     返回结果的缓存层
+     * @param outcome   结果
+     */
+    public static void event(String cacheName, String operation, Object key, String layer, String outcome) {
+        if (sample(cacheName) && eventLog.isInfoEnabled()) {
+            eventLog.info("cache={} operation={} key={} layer={} outcome={} sampleRate={}",
+                    cacheName, operation, json(key), layer, outcome, sampleRate);
+        }
+    }
+
+    /**
+     * 截断超过最大长度的字符串
+     */
+    static String truncate(String text) {
+        int max = maxValueLength;
+        if (text == null || max <= 0 || text.length() <= max) {
+            return text;
+        }
+        return text.substring(0, max) + "...(共" + text.length() + "个字符)";
+    }
+
+    private static class LazyJson {
+
+        private final Object value;
+
+        LazyJson(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        public String toString() {
+            try {
+                return truncate(JSON.toJSONString(value));
+            } catch (RuntimeException e) {
+                // 日志不能影响缓存操作，无法序列化时只输出类型
+                return value.getClass().getName() + "(无法序列化：" + e.getMessage() + ")";
+            }
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package org.github.roger.support;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * 使用摘要key时保存到redis的缓存值，带上完整的key
+ * <p>
+ * 不同的key摘要相同时，读取到的完整key和当前key不一致，按没有命中缓存处理
+ * </p>
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class KeyedValue implements Serializable {
+
+    /**
+     * 完整的key（不包括缓存前缀）
+     */
+    private String fullKey;
+
+    /**
+     * 缓存值，可能是 {@link CachedValue}
+     */
+    private Object value;
+}
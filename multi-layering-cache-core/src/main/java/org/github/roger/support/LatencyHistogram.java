@@ -0,0 +1,142 @@
+package org.github.roger.support;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 固定桶的耗时直方图，每个桶是一个 {@link LongAdder}，记录时只有一次桶查找和几次累加，不会在热点路径上加锁
+ * <p>
+ * 桶的上限从10微秒到10秒，同时适用于序列化（微秒级）和加载数据（毫秒到秒级）的耗时。
+ * </p>
+ * <p>
+ * 次数、总耗时和桶都是累计值；最大耗时按时间窗口滚动，和Micrometer的最大值一样会衰减，
+ * 读取时返回当前窗口和上一个窗口的最大值，监控系统每个发布周期都能读到周期内的峰值。
+ * </p>
+ */
+public class LatencyHistogram {
+
+    /**
+     * 桶的上限（包含），单位纳秒，超过最后一个上限的记录在最后一个桶（+Inf）
+     */
+    private static final long[] BUCKET_BOUNDS = {
+            TimeUnit.MICROSECONDS.toNanos(10), TimeUnit.MICROSECONDS.toNanos(50),
+            TimeUnit.MICROSECONDS.toNanos(100), TimeUnit.MICROSECONDS.toNanos(500),
+            TimeUnit.MILLISECONDS.toNanos(1), TimeUnit.MILLISECONDS.toNanos(5),
+            TimeUnit.MILLISECONDS.toNanos(10), TimeUnit.MILLISECONDS.toNanos(50),
+            TimeUnit.MILLISECONDS.toNanos(100), TimeUnit.MILLISECONDS.toNanos(500),
+            TimeUnit.SECONDS.toNanos(1), TimeUnit.SECONDS.toNanos(5),
+            TimeUnit.SECONDS.toNanos(10)};
+
+    private final LongAdder[] buckets = new LongAdder[BUCKET_BOUNDS.length + 1];
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder totalNanos = new LongAdder();
+
+    /**
+     * 最大耗时窗口的默认长度，和Micrometer默认的发布周期一致
+     */
+    private static final long DEFAULT_MAX_WINDOW_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * 当前窗口的最大耗时
+     */
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    /**
+     * 上一个窗口的最大耗时
+     */
+    private volatile long previousMaxNanos;
+
+    /**
+     * 当前窗口的开始时间
+     */
+    private volatile long maxWindowStart = System.currentTimeMillis();
+
+    private final long maxWindowMillis;
+
+    public LatencyHistogram() {
+        this(DEFAULT_MAX_WINDOW_MILLIS);
+    }
+
+    /**
+     * @param maxWindowMillis 最大耗时窗口的长度，单位毫秒，不能小于监控系统的发布周期
+     */
+    public LatencyHistogram(long maxWindowMillis) {
+        this.maxWindowMillis = maxWindowMillis;
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * 记录一次耗时
+     *
+     * @param nanos 耗时，单位纳秒
+     */
+    public void record(long nanos) {
+        int index = 0;
+        while (index < BUCKET_BOUNDS.length && nanos > BUCKET_BOUNDS[index]) {
+            index++;
+        }
+        buckets[index].increment();
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+    }
+
+    /**
+     * 记录从startNanos（{@link System#nanoTime()}）到现在的耗时
+     *
+     * @param startNanos 开始时间，单位纳秒
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public double getTotalTime(TimeUnit unit) {
+        return (double) totalNanos.sum() / unit.toNanos(1);
+    }
+
+    /**
+     * 最近一到两个窗口内的最大耗时，窗口在读取时滚动，不影响记录耗时的热点路径
+     */
+    public double getMax(TimeUnit unit) {
+        long now = System.currentTimeMillis();
+        if (now - maxWindowStart >= maxWindowMillis) {
+            synchronized (this) {
+                if (now - maxWindowStart >= maxWindowMillis) {
+                    previousMaxNanos = maxNanos.getThenReset();
+                    maxWindowStart = now;
+                }
+            }
+        }
+        return (double) Math.max(maxNanos.get(), previousMaxNanos) / unit.toNanos(1);
+    }
+
+    /**
+     * 桶的上限（不包括+Inf），单位纳秒
+     */
+    public static long[] getBucketBounds() {
+        return BUCKET_BOUNDS.clone();
+    }
+
+    /**
+     * 耗时小于等于第index个桶上限的累计次数，index等于桶上限的个数时是总次数
+     *
+     * @param index 桶的下标
+     * @return 累计次数
+     */
+    public long getCumulativeCount(int index) {
+        long sum = 0;
+        for (int i = 0; i <= index; i++) {
+            sum += buckets[i].sum();
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,276 @@
+package org.github.roger.support;
+
+import lombok.extern.slf4j.Slf4j;
+import org.github.roger.enumeration.CircuitState;
+import org.github.roger.settings.CircuitBreakerSetting;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * redis熔断器
+ * <p>
+ * 在统计窗口内失败率（异常或者慢调用）达到阈值时打开，打开期间拒绝执行redis命令；
+ * 经过openTime后进入半开状态，放少量探测请求去redis，连续成功后关闭，任意一次失败重新打开。
+ * </p>
+ * <p>
+ * 状态变化监听器在单独的通知线程中按状态变化的顺序调用，不占用执行redis命令的线程。
+ * </p>
+ */
+@Slf4j
+public class RedisCircuitBreaker {
+
+    private final CircuitBreakerSetting setting;
+
+    private final AtomicReference<CircuitState> state = new AtomicReference<>(CircuitState.CLOSED);
+
+    /**
+     * 当前统计窗口
+     */
+    private final AtomicReference<Window> window;
+
+    /**
+     * 熔断器打开的时间
+     */
+    private volatile long openedAt;
+
+    /**
+     * 半开状态下正在执行的探测请求数
+     */
+    private final AtomicInteger probing = new AtomicInteger();
+
+    /**
+     * 半开状态下探测成功的次数
+     */
+    private final AtomicInteger probeSuccesses = new AtomicInteger();
+
+    private final List<StateListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * 调用状态变化监听器的线程，所有熔断器共用，只有一个线程保证监听器按状态变化的顺序执行
+     */
+    private static final ExecutorService LISTENER_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "multi-layering-cache-circuit-breaker");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 进入各个状态的次数
+     */
+    private final Map<CircuitState, LongAdder> transitions = new ConcurrentHashMap<>();
+
+    private final LongAdder rejectedCount = new LongAdder();
+
+    private final LongAdder failureCount = new LongAdder();
+
+    private final LongAdder slowCallCount = new LongAdder();
+
+    public RedisCircuitBreaker(CircuitBreakerSetting setting) {
+        this.setting = setting;
+        this.window = new AtomicReference<>(new Window(System.currentTimeMillis()));
+        for (CircuitState circuitState : CircuitState.values()) {
+            transitions.put(circuitState, new LongAdder());
+        }
+    }
+
+    /**
+     * 是否允许执行redis命令，允许时执行完成后必须调用 {@link #onSuccess(long)} 或者 {@link #onError(long)}
+     *
+     * @return true 允许
+     */
+    public boolean tryAcquire() {
+        CircuitState current = state.get();
+        if (current == CircuitState.OPEN) {
+            if (System.currentTimeMillis() - openedAt < setting.getOpenTime()) {
+                rejectedCount.increment();
+                return false;
+            }
+            if (transition(CircuitState.OPEN, CircuitState.HALF_OPEN)) {
+                probing.set(0);
+                probeSuccesses.set(0);
+            }
+            current = state.get();
+        }
+        if (current == CircuitState.HALF_OPEN) {
+            if (probing.incrementAndGet() > setting.getHalfOpenProbes()) {
+                probing.decrementAndGet();
+                rejectedCount.increment();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * redis命令执行成功
+     *
+     * @param costNanos 执行耗时，单位纳秒
+     */
+    public void onSuccess(long costNanos) {
+        boolean slow = TimeUnit.NANOSECONDS.toMillis(costNanos) >= setting.getSlowCallTime();
+        if (slow) {
+            slowCallCount.increment();
+        }
+        record(!slow);
+    }
+
+    /**
+     * redis命令执行失败
+     *
+     * @param costNanos 执行耗时，单位纳秒
+     */
+    public void onError(long costNanos) {
+        failureCount.increment();
+        record(false);
+    }
+
+    private void record(boolean success) {
+        if (state.get() == CircuitState.HALF_OPEN) {
+            probing.updateAndGet(count -> count > 0 ? count - 1 : 0);
+            if (!success) {
+                open(CircuitState.HALF_OPEN);
+            } else if (probeSuccesses.incrementAndGet() >= setting.getHalfOpenProbes()
+                    && transition(CircuitState.HALF_OPEN, CircuitState.CLOSED)) {
+                window.set(new Window(System.currentTimeMillis()));
+            }
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        Window current = window.get();
+        if (now - current.start >= setting.getWindowTime()) {
+            // 窗口过期，重新开始统计
+            Window next = new Window(now);
+            current = window.compareAndSet(current, next) ? next : window.get();
+        }
+        int calls = current.calls.incrementAndGet();
+        int failures = success ? current.failures.get() : current.failures.incrementAndGet();
+        if (calls >= setting.getMinimumCalls() && failures >= calls * setting.getFailureRateThreshold()) {
+            open(CircuitState.CLOSED);
+        }
+    }
+
+    private void open(CircuitState from) {
+        openedAt = System.currentTimeMillis();
+        transition(from, CircuitState.OPEN);
+    }
+
+    private boolean transition(CircuitState from, CircuitState to) {
+        if (!state.compareAndSet(from, to)) {
+            return false;
+        }
+        transitions.get(to).increment();
+        log.warn("redis熔断器状态从{}变为{}", from, to);
+        if (!listeners.isEmpty()) {
+            LISTENER_EXECUTOR.execute(() -> notifyListeners(from, to));
+        }
+        return true;
+    }
+
+    private void notifyListeners(CircuitState from, CircuitState to) {
+        for (StateListener listener : listeners) {
+            try {
+                listener.onStateChange(from, to);
+            } catch (Exception e) {
+                log.error(e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * 添加状态变化监听器
+     *
+     * @param listener {@link StateListener}
+     */
+    public void addListener(StateListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * 当前状态
+     */
+    public CircuitState getState() {
+        return state.get();
+    }
+
+    /**
+     * 熔断器打开（尚未进入半开）时返回true
+     */
+    public boolean isOpen() {
+        return state.get() == CircuitState.OPEN && System.currentTimeMillis() - openedAt < setting.getOpenTime();
+    }
+
+    /**
+     * 进入指定状态的次数
+     *
+     * @param to 状态
+     * @return 次数
+     */
+    public long getTransitionCount(CircuitState to) {
+        return transitions.get(to).sum();
+    }
+
+    /**
+     * 被拒绝执行的redis命令数
+     */
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    /**
+     * 执行失败的redis命令数
+     */
+    public long getFailureCount() {
+        return failureCount.sum();
+    }
+
+    /**
+     * 慢调用的redis命令数
+     */
+    public long getSlowCallCount() {
+        return slowCallCount.sum();
+    }
+
+    public CircuitBreakerSetting getSetting() {
+        return setting;
+    }
+
+    /**
+     * 熔断器状态变化监听器，在通知线程中异步调用，监听器之间共用一个线程，不要在监听器中长时间阻塞
+     */
+    public interface StateListener {
+
+        /**
+         * 状态变化
+         *
+         * @param from 原状态
+         * @param to   新状态
+         */
+        void onStateChange(CircuitState from, CircuitState to);
+    }
+
+    /**
+     * 统计窗口
+     */
+    private static class Window {
+
+        private final long start;
+
+        private final AtomicInteger calls = new AtomicInteger();
+
+        private final AtomicInteger failures = new AtomicInteger();
+
+        Window(long start) {
+            this.start = start;
+        }
+    }
+}
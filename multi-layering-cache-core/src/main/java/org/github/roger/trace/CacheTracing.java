@@ -0,0 +1,240 @@
+package org.github.roger.trace;
+
+import io.opentelemetry.api.GlobalOpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanBuilder;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Scope;
+import org.springframework.util.ClassUtils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 缓存操作的OpenTelemetry链路追踪，引入了opentelemetry-api时生效
+ * <p>
+ * 按头部采样：只有当前线程的span被采样时才创建子span，没有被采样的请求只有一次判断的开销。
+ * 开始的span会成为当前span，所以二级缓存、等待锁、加载数据的span都挂在查询缓存的span下面；
+ * 异步刷新在后台线程中执行，刷新的span是一个新的链路，通过link关联触发刷新的请求。
+ * 二级缓存往返期间的序列化数据大小通过 {@link #addBytes(int)} 累加到当前线程最近的span。
+ * </p>
+ */
+public final class CacheTracing {
+
+    private static final boolean OTEL_PRESENT = ClassUtils.isPresent("io.opentelemetry.api.trace.Span",
+            CacheTracing.class.getClassLoader());
+
+    private static final String INSTRUMENTATION_NAME = "multi-layering-cache";
+
+    public static final String CACHE_NAME = "cache.name";
+
+    public static final String LAYER = "cache.layer";
+
+    public static final String OUTCOME = "cache.outcome";
+
+    public static final String VALUE_SIZE = "cache.value_size";
+
+    public static final String LOCK_RETRIES = "cache.lock.retries";
+
+    private CacheTracing() {
+    }
+
+    /**
+     * 当前线程的span被采样时，开始一个子span并设置为当前span
+     *
+     * @param name      span名称
+     * @param cacheName 缓存名称
+     * @return span，没有被采样时返回null
+     */
+    public static Object startSpan(String name, String cacheName) {
+        return OTEL_PRESENT ? OpenTelemetryTracer.startSpan(name, cacheName, null) : null;
+    }
+
+    /**
+     * 获取当前线程被采样的span，用来关联异步执行的操作
+     *
+     * @return 当前span的上下文，没有被采样时返回null
+     */
+    public static Object currentSpan() {
+        return OTEL_PRESENT ? OpenTelemetryTracer.currentSpan() : null;
+    }
+
+    /**
+     * 开始一个新的链路（通常在后台线程中），通过link关联触发它的span
+     *
+     * @param name      span名称
+     * @param cacheName 缓存名称
+     * @param link      {@link #currentSpan()} 的返回值，为null时不创建span
+     * @return span，没有关联的span时返回null
+     */
+    public static Object startLinkedSpan(String name, String cacheName, Object link) {
+        return link == null ? null : OpenTelemetryTracer.startSpan(name, cacheName, link);
+    }
+
+    /**
+     * 设置span的属性
+     *
+     * @param span  {@link #startSpan(String, String)} 返回的span，为null时什么都不做
+     * @param key   属性名称
+     * @param value 属性值
+     */
+    public static void setAttribute(Object span, String key, long value) {
+        if (span != null) {
+            OpenTelemetryTracer.setAttribute(span, key, value);
+        }
+    }
+
+    /**
+     * 添加span事件
+     *
+     * @param span    {@link #startSpan(String, String)} 返回的span，为null时什么都不做
+     * @param name    事件名称
+     * @param outcome 结果
+     */
+    public static void addEvent(Object span, String name, String outcome) {
+        if (span != null) {
+            OpenTelemetryTracer.addEvent(span, name, outcome);
+        }
+    }
+
+    /**
+     * 结束span，已经结束的span什么都不做
+     *
+     * @param span    {@link #startSpan(String, String)} 返回的span，为null时什么都不做
+     * @param layer   返回结果的缓存层，没有时为null
+     * @param outcome 结果
+     */
+    public static void end(Object span, String layer, String outcome) {
+        if (span != null) {
+            OpenTelemetryTracer.end(span, layer, outcome, null);
+        }
+    }
+
+    /**
+     * 以异常结束span，已经结束的span什么都不做
+     *
+     * @param span {@link #startSpan(String, String)} 返回的span，为null时什么都不做
+     * @param e    异常
+     */
+    public static void endWithError(Object span, Throwable e) {
+        if (span != null) {
+            OpenTelemetryTracer.end(span, null, "error", e);
+        }
+    }
+
+    /**
+     * 累加当前线程最近的span的数据大小，由序列化器调用
+     *
+     * @param bytes 序列化或反序列化的数据大小，单位字节
+     */
+    public static void addBytes(int bytes) {
+        if (OTEL_PRESENT) {
+            OpenTelemetryTracer.addBytes(bytes);
+        }
+    }
+
+    /**
+     * 隔离对OpenTelemetry的引用，没有引入OpenTelemetry时不会加载这个类
+     */
+    private static class OpenTelemetryTracer {
+
+        /**
+         * 当前线程最近开始的span
+         */
+        private static final ThreadLocal<TracedSpan> CURRENT = new ThreadLocal<>();
+
+        /**
+         * 正在进行的span数，没有时序列化器不需要读取ThreadLocal
+         */
+        private static final AtomicInteger ACTIVE = new AtomicInteger();
+
+        static Object currentSpan() {
+            SpanContext spanContext = Span.current().getSpanContext();
+            return spanContext.isSampled() ? spanContext : null;
+        }
+
+        static Object startSpan(String name, String cacheName, Object link) {
+            SpanBuilder builder;
+            if (link == null) {
+                if (!Span.current().getSpanContext().isSampled()) {
+                    return null;
+                }
+                builder = tracer().spanBuilder(name);
+            } else {
+                builder = tracer().spanBuilder(name).setNoParent().addLink((SpanContext) link);
+            }
+            Span span = builder.setAttribute(CACHE_NAME, cacheName).startSpan();
+            TracedSpan tracedSpan = new TracedSpan(span, span.makeCurrent(), CURRENT.get());
+            CURRENT.set(tracedSpan);
+            ACTIVE.incrementAndGet();
+            return tracedSpan;
+        }
+
+        static void setAttribute(Object span, String key, long value) {
+            ((TracedSpan) span).span.setAttribute(key, value);
+        }
+
+        static void addEvent(Object span, String name, String outcome) {
+            ((TracedSpan) span).span.addEvent(name, Attributes.of(AttributeKey.stringKey(OUTCOME), outcome));
+        }
+
+        static void end(Object s, String layer, String outcome, Throwable e) {
+            TracedSpan tracedSpan = (TracedSpan) s;
+            if (tracedSpan.ended) {
+                return;
+            }
+            tracedSpan.ended = true;
+            Span span = tracedSpan.span;
+            if (layer != null) {
+                span.setAttribute(LAYER, layer);
+            }
+            span.setAttribute(OUTCOME, outcome);
+            if (tracedSpan.bytes > 0) {
+                span.setAttribute(VALUE_SIZE, tracedSpan.bytes);
+            }
+            if (e != null) {
+                span.recordException(e);
+                span.setStatus(StatusCode.ERROR);
+            }
+            tracedSpan.scope.close();
+            span.end();
+            CURRENT.set(tracedSpan.previous);
+            ACTIVE.decrementAndGet();
+        }
+
+        static void addBytes(int bytes) {
+            if (ACTIVE.get() > 0) {
+                TracedSpan tracedSpan = CURRENT.get();
+                if (tracedSpan != null) {
+                    tracedSpan.bytes += bytes;
+                }
+            }
+        }
+
+        private static Tracer tracer() {
+            return GlobalOpenTelemetry.getTracer(INSTRUMENTATION_NAME);
+        }
+
+        private static class TracedSpan {
+
+            private final Span span;
+
+            private final Scope scope;
+
+            private final TracedSpan previous;
+
+            private long bytes;
+
+            private boolean ended;
+
+            TracedSpan(Span span, Scope scope, TracedSpan previous) {
+                this.span = span;
+                this.scope = scope;
+                this.previous = previous;
+            }
+        }
+    }
+}
@@ -1,18 +1,30 @@
 package org.github.roger.utils;
 
 import org.springframework.data.redis.serializer.RedisSerializer;
-import org.springframework.data.redis.serializer.StringRedisSerializer;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
+import java.util.Base64;
 
 public class RedisCacheKey {
 
     /**
-     * 前缀序列化器
+     * 摘要key的标识。开启摘要后，以它开头的普通key会再加一个标识转义成"##..."，
+     * 摘要（Base64编码）不会以它开头，所以普通key不会和摘要key相同
      */
-    private final RedisSerializer prefixSerializer1 = new StringRedisSerializer();
+    private static final byte DIGEST_FLAG = '#';
+
+    private static final ThreadLocal<MessageDigest> DIGESTS = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
 
     /**
      * 缓存key
@@ -29,11 +41,41 @@ public class RedisCacheKey {
      */
     private boolean usePrefix = true;
 
+    /**
+     * 缓存名称的版本号，小于0表示不使用版本号
+     */
+    private long generation = -1;
+
+    /**
+     * 预先计算好的缓存前缀，为null时根据缓存名称和版本号计算
+     */
+    private byte[] prefix;
+
+    /**
+     * 摘要阈值，序列化后超过这个字节数的key替换成摘要，小于等于0表示不使用摘要
+     */
+    private int digestThreshold = 0;
+
+    /**
+     * 完整的key（不包括缓存前缀），只有key被替换成摘要时才有值
+     */
+    private String fullKey;
+
     /**
      * RedisTemplate 的key序列化器
      */
     private final RedisSerializer serializer;
 
+    /**
+     * 计算过的key的byte数组，一次操作中多次获取key时只计算一次
+     */
+    private byte[] keyBytes;
+
+    /**
+     * 计算过的缓存key
+     */
+    private String key;
+
     /**
      * @param keyElement 缓存key
      * @param serializer RedisSerializer
@@ -52,8 +94,10 @@ public class RedisCacheKey {
      * @return String
      */
     public String getKey() {
-
-        return new String(getKeyBytes());
+        if (key == null) {
+            key = new String(getKeyBytes());
+        }
+        return key;
     }
 
     /**
@@ -62,17 +106,22 @@ public class RedisCacheKey {
      * @return byte[]
      */
     public byte[] getKeyBytes() {
+        if (keyBytes != null) {
+            return keyBytes;
+        }
 
-        byte[] rawKey = serializeKeyElement();
+        byte[] rawKey = digestIfNecessary(serializeKeyElement());
         if (!usePrefix) {
-            return rawKey;
+            keyBytes = rawKey;
+            return keyBytes;
         }
         byte[] prefix = getPrefix();
 
         byte[] prefixedKey = Arrays.copyOf(prefix, prefix.length + rawKey.length);
         System.arraycopy(rawKey, 0, prefixedKey, prefix.length, rawKey.length);
 
-        return prefixedKey;
+        keyBytes = prefixedKey;
+        return keyBytes;
     }
 
     private byte[] serializeKeyElement() {
@@ -85,12 +134,71 @@ public class RedisCacheKey {
     }
 
     /**
-     * 获取缓存前缀，默认缓存前缀是":"，是否使用缓存名称作为前缀
+     * 超过摘要阈值的key替换成"#"加上SHA-1摘要的Base64编码，长度固定是28个字节；
+     * 没有超过阈值但以"#"开头的key在前面再加一个"#"
+     */
+    private byte[] digestIfNecessary(byte[] rawKey) {
+        fullKey = null;
+        if (digestThreshold <= 0) {
+            return rawKey;
+        }
+        if (rawKey.length <= digestThreshold) {
+            if (rawKey.length == 0 || rawKey[0] != DIGEST_FLAG) {
+                return rawKey;
+            }
+            byte[] escapedKey = new byte[rawKey.length + 1];
+            escapedKey[0] = DIGEST_FLAG;
+            System.arraycopy(rawKey, 0, escapedKey, 1, rawKey.length);
+            return escapedKey;
+        }
+        fullKey = new String(rawKey, StandardCharsets.UTF_8);
+        byte[] digest = Base64.getUrlEncoder().withoutPadding().encode(DIGESTS.get().digest(rawKey));
+        byte[] digestKey = new byte[digest.length + 1];
+        digestKey[0] = DIGEST_FLAG;
+        System.arraycopy(digest, 0, digestKey, 1, digest.length);
+        return digestKey;
+    }
+
+    /**
+     * key是否被替换成了摘要
+     *
+     * @return true 使用摘要
+     */
+    public boolean isDigested() {
+        return getFullKey() != null;
+    }
+
+    /**
+     * 获取被替换成摘要前的完整key（不包括缓存前缀），没有使用摘要时返回null
+     *
+     * @return String
+     */
+    public String getFullKey() {
+        getKeyBytes();
+        return fullKey;
+    }
+
+    /**
+     * 获取缓存前缀，默认缓存前缀是":"，是否使用缓存名称作为前缀；设置了版本号时前缀是"缓存名称:版本号:"
      *
      * @return byte[]
      */
     public byte[] getPrefix() {
-        return prefixSerializer1.serialize((StringUtils.isEmpty(cacheName) ? "" : cacheName.concat(":")));
+        return prefix != null ? prefix : prefixBytes(cacheName, generation);
+    }
+
+    /**
+     * 计算缓存前缀，同一个缓存名称和版本号的前缀不变，可以预先计算好后通过 {@link #prefix(byte[])} 设置
+     *
+     * @param cacheName  缓存名称
+     * @param generation 版本号，小于0表示不使用版本号
+     * @return byte[]
+     */
+    public static byte[] prefixBytes(String cacheName, long generation) {
+        if (StringUtils.isEmpty(cacheName)) {
+            return new byte[0];
+        }
+        return (generation < 0 ? cacheName.concat(":") : cacheName + ":" + generation + ":").getBytes(StandardCharsets.UTF_8);
     }
 
     /**
@@ -101,6 +209,19 @@ public class RedisCacheKey {
      */
     public RedisCacheKey cacheName(String cacheName) {
         this.cacheName = cacheName;
+        reset();
+        return this;
+    }
+
+    /**
+     * 设置缓存名称的版本号，版本号变化后旧版本的key不会再被访问，等待过期自动删除
+     *
+     * @param generation 版本号，小于0表示不使用版本号
+     * @return RedisCacheKey
+     */
+    public RedisCacheKey generation(long generation) {
+        this.generation = generation;
+        reset();
         return this;
     }
 
@@ -112,7 +233,40 @@ public class RedisCacheKey {
      */
     public RedisCacheKey usePrefix(boolean usePrefix) {
         this.usePrefix = usePrefix;
+        reset();
         return this;
     }
 
+    /**
+     * 设置预先计算好的缓存前缀，设置后不再根据缓存名称和版本号计算前缀
+     *
+     * @param prefix 缓存前缀，见 {@link #prefixBytes(String, long)}
+     * @return RedisCacheKey
+     */
+    public RedisCacheKey prefix(byte[] prefix) {
+        this.prefix = prefix;
+        reset();
+        return this;
+    }
+
+    /**
+     * 设置摘要阈值，序列化后超过这个字节数的key替换成定长的摘要，避免过长的组合key占用redis内存
+     *
+     * @param digestThreshold 摘要阈值，单位字节，小于等于0表示不使用摘要
+     * @return RedisCacheKey
+     */
+    public RedisCacheKey digestThreshold(int digestThreshold) {
+        this.digestThreshold = digestThreshold;
+        reset();
+        return this;
+    }
+
+    /**
+     * 参数变化后重新计算key
+     */
+    private void reset() {
+        this.keyBytes = null;
+        this.key = null;
+    }
+
 }
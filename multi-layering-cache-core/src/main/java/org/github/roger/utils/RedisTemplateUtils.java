@@ -0,0 +1,56 @@
+package org.github.roger.utils;
+
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultScriptExecutor;
+import org.springframework.data.redis.core.script.ScriptExecutor;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+
+/**
+ * RedisTemplate工具类
+ *
+ */
+public abstract class RedisTemplateUtils {
+
+    /**
+     * 把原RedisTemplate的配置复制到新的RedisTemplate，复制后需要调用 {@link RedisTemplate#afterPropertiesSet()}
+     * <p>
+     * 包括连接工厂、所有序列化器、默认序列化器、事务支持、是否暴露原始连接和类加载器。
+     * 默认的脚本执行器绑定在原RedisTemplate上，不复制，由新的RedisTemplate重新创建；自定义的脚本执行器原样复制
+     * </p>
+     *
+     * @param source 原RedisTemplate
+     * @param target 新的RedisTemplate
+     */
+    public static void copyProperties(RedisTemplate<?, ?> source, RedisTemplate<?, ?> target) {
+        target.setConnectionFactory(source.getConnectionFactory());
+        target.setExposeConnection(source.isExposeConnection());
+        target.setEnableDefaultSerializer(source.isEnableDefaultSerializer());
+        target.setDefaultSerializer(source.getDefaultSerializer());
+        target.setKeySerializer(source.getKeySerializer());
+        target.setValueSerializer(source.getValueSerializer());
+        target.setHashKeySerializer(source.getHashKeySerializer());
+        target.setHashValueSerializer(source.getHashValueSerializer());
+        target.setStringSerializer(source.getStringSerializer());
+        // 以下属性没有getter
+        target.setEnableTransactionSupport(Boolean.TRUE.equals(getField(source, "enableTransactionSupport")));
+        ClassLoader classLoader = (ClassLoader) getField(source, "classLoader");
+        if (classLoader != null) {
+            target.setBeanClassLoader(classLoader);
+        }
+        ScriptExecutor scriptExecutor = (ScriptExecutor) getField(source, "scriptExecutor");
+        if (scriptExecutor != null && !(scriptExecutor instanceof DefaultScriptExecutor)) {
+            ((RedisTemplate) target).setScriptExecutor(scriptExecutor);
+        }
+    }
+
+    private static Object getField(RedisTemplate<?, ?> template, String name) {
+        Field field = ReflectionUtils.findField(RedisTemplate.class, name);
+        if (field == null) {
+            return null;
+        }
+        ReflectionUtils.makeAccessible(field);
+        return ReflectionUtils.getField(field, template);
+    }
+}
@@ -0,0 +1,90 @@
+package org.github.roger.benchmark;
+
+import org.github.roger.message.RedisPubSubMessage;
+import org.github.roger.enumeration.RedisPubSubMessageType;
+import org.github.roger.serializer.KryoPoolRedisSerializer;
+import org.github.roger.serializer.KryoRedisSerializer;
+import org.github.roger.settings.KryoSetting;
+import org.github.roger.support.CachedValue;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对比 {@link KryoRedisSerializer} 和 {@link KryoPoolRedisSerializer} 序列化、反序列化的吞吐量和每次操作分配的内存。
+ * <p>
+ * 每次操作分配的内存看GC profiler输出的 gc.alloc.rate.norm，直接运行main方法即可
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class KryoSerializerBenchmark {
+
+    /**
+     * threadLocal：现有的序列化器；pool：对象池序列化器；registered：对象池并注册类；unsafe：对象池、注册类并使用Unsafe读写
+     */
+    @Param({"threadLocal", "pool", "registered", "unsafe"})
+    private String serializerType;
+
+    private RedisSerializer<Object> serializer;
+
+    private Object value;
+
+    private byte[] bytes;
+
+    @Setup
+    public void setup() {
+        KryoSetting setting = new KryoSetting();
+        switch (serializerType) {
+            case "threadLocal":
+                serializer = new KryoRedisSerializer<>(Object.class);
+                break;
+            case "unsafe":
+                setting.setUnsafe(true);
+            case "registered":
+                setting.getRegistrations().put(CachedValue.class.getName(), 100);
+                setting.getRegistrations().put(RedisPubSubMessage.class.getName(), 101);
+                setting.getRegistrations().put(ArrayList.class.getName(), 102);
+            default:
+                serializer = new KryoPoolRedisSerializer<>(Object.class, setting);
+        }
+
+        List<Object> keys = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            keys.add("cache:key:" + i);
+        }
+        RedisPubSubMessage message = new RedisPubSubMessage();
+        message.setCacheName("cache:name");
+        message.setKeys(keys);
+        message.setMessageType(RedisPubSubMessageType.BATCH_EVICT);
+        value = new CachedValue(message, 12);
+        bytes = serializer.serialize(value);
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return serializer.serialize(value);
+    }
+
+    @Benchmark
+    public Object deserialize() {
+        return serializer.deserialize(bytes);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(KryoSerializerBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class).build()).run();
+    }
+}
@@ -0,0 +1,132 @@
+package org.github.roger.benchmark;
+
+import io.lettuce.core.resource.DefaultClientResources;
+import org.github.roger.cache.redis.RedisCache;
+import org.github.roger.serializer.KryoRedisSerializer;
+import org.github.roger.serializer.StringRedisSerializer;
+import org.github.roger.settings.SecondaryCacheSetting;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 对比 {@link RedisCache#get(Object, java.util.concurrent.Callable)} 在命中时，
+ * lua脚本一次往返读取和 GET、EXISTS、TTL 多条命令读取的吞吐量，并输出每次命中发送到redis的命令数。
+ * <p>
+ * 需要本地启动redis(127.0.0.1:6379)，直接运行main方法即可
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class RedisCacheGetBenchmark {
+
+    private static final String KEY = "benchmark:key";
+
+    /**
+     * 不算作redis命令的连接方法
+     */
+    private static final Set<String> NOT_COMMANDS = new HashSet<>(Arrays.asList("close", "isClosed",
+            "getNativeConnection", "isQueueing", "isPipelined", "openPipeline", "closePipeline",
+            "getSentinelConnection", "toString", "hashCode", "equals"));
+
+    @Param({"true", "false"})
+    private boolean useScriptRead;
+
+    private final LongAdder commands = new LongAdder();
+
+    private final LongAdder operations = new LongAdder();
+
+    private LettuceConnectionFactory connectionFactory;
+
+    private RedisCache redisCache;
+
+    @Setup
+    public void setup() {
+        RedisStandaloneConfiguration config = new RedisStandaloneConfiguration("127.0.0.1", 6379);
+        connectionFactory = new LettuceConnectionFactory(config,
+                LettuceClientConfiguration.builder().clientResources(DefaultClientResources.create()).build());
+        connectionFactory.afterPropertiesSet();
+
+        RedisTemplate<String, Object> redisTemplate = new RedisTemplate<>();
+        redisTemplate.setConnectionFactory(countingConnectionFactory(connectionFactory));
+        KryoRedisSerializer<Object> kryoRedisSerializer = new KryoRedisSerializer<>(Object.class);
+        redisTemplate.setValueSerializer(kryoRedisSerializer);
+        redisTemplate.setKeySerializer(new StringRedisSerializer());
+        redisTemplate.afterPropertiesSet();
+
+        SecondaryCacheSetting setting = new SecondaryCacheSetting(1, 0, TimeUnit.HOURS, false, true, false, 1);
+        setting.setUseScriptRead(useScriptRead);
+        redisCache = new RedisCache("benchmark", redisTemplate, setting);
+        redisCache.put(KEY, "value");
+        commands.reset();
+    }
+
+    @Benchmark
+    public Object get() {
+        operations.increment();
+        return redisCache.get(KEY, () -> "value");
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.out.printf("%n[useScriptRead=%s] 每次命中发送redis命令数: %.2f%n",
+                useScriptRead, commands.doubleValue() / Math.max(1, operations.sum()));
+        connectionFactory.destroy();
+    }
+
+    /**
+     * 包装连接工厂，统计通过连接发送的redis命令数
+     */
+    private RedisConnectionFactory countingConnectionFactory(RedisConnectionFactory factory) {
+        return (RedisConnectionFactory) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[]{RedisConnectionFactory.class}, (proxy, method, args) -> {
+                    Object result = invoke(factory, method, args);
+                    if (result instanceof RedisConnection) {
+                        return countingConnection((RedisConnection) result);
+                    }
+                    return result;
+                });
+    }
+
+    private RedisConnection countingConnection(RedisConnection connection) {
+        return (RedisConnection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[]{RedisConnection.class}, (proxy, method, args) -> {
+                    if (!NOT_COMMANDS.contains(method.getName()) && !method.getName().endsWith("Commands")) {
+                        commands.increment();
+                    }
+                    return invoke(connection, method, args);
+                });
+    }
+
+    private static Object invoke(Object target, java.lang.reflect.Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(RedisCacheGetBenchmark.class.getSimpleName()).build()).run();
+    }
+}
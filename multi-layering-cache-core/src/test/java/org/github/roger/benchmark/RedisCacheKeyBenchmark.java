@@ -0,0 +1,93 @@
+package org.github.roger.benchmark;
+
+import com.alibaba.fastjson.JSON;
+import org.github.roger.cache.redis.RedisCache;
+import org.github.roger.serializer.StringRedisSerializer;
+import org.github.roger.settings.SecondaryCacheSetting;
+import org.github.roger.utils.RedisCacheKey;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对比一次缓存操作中计算redis key的开销：旧的方式每次获取key都重新序列化前缀和key（经过JSON），
+ * 新的方式前缀按缓存预先计算、常用类型的key不经过JSON、一次操作只计算一次key。
+ * <p>
+ * 一次get操作大约会获取4次key（日志、锁名称、redis命令），每次操作分配的内存看GC profiler输出的 gc.alloc.rate.norm，
+ * 不需要redis，直接运行main方法即可
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RedisCacheKeyBenchmark {
+
+    private static final int KEY_USES = 4;
+
+    @Param({"user:10086", "10086"})
+    private String keyType;
+
+    private Object key;
+
+    private RedisCache redisCache;
+
+    private final StringRedisSerializer serializer = new StringRedisSerializer();
+
+    @Setup
+    public void setup() {
+        key = "10086".equals(keyType) ? (Object) 10086L : keyType;
+        RedisTemplate<String, Object> redisTemplate = new RedisTemplate<>();
+        // 只计算key，不会连接redis
+        redisTemplate.setConnectionFactory(new LettuceConnectionFactory());
+        redisTemplate.setKeySerializer(serializer);
+        redisTemplate.afterPropertiesSet();
+        redisCache = new RedisCache("benchmark:cache", redisTemplate,
+                new SecondaryCacheSetting(1, 0, TimeUnit.HOURS, false, true, false, 1));
+    }
+
+    @Benchmark
+    public int legacy() {
+        int length = 0;
+        for (int i = 0; i < KEY_USES; i++) {
+            length += legacyKey(key, "benchmark:cache").length();
+        }
+        return length;
+    }
+
+    @Benchmark
+    public int current() {
+        RedisCacheKey redisCacheKey = redisCache.getRedisCacheKey(key);
+        int length = 0;
+        for (int i = 0; i < KEY_USES; i++) {
+            length += redisCacheKey.getKey().length();
+        }
+        return length;
+    }
+
+    /**
+     * 旧的计算方式：每次都序列化前缀和key并拼接
+     */
+    private static String legacyKey(Object key, String cacheName) {
+        byte[] rawKey = JSON.toJSONString(key).replace("\"", "").getBytes(StandardCharsets.UTF_8);
+        byte[] prefix = cacheName.concat(":").getBytes(StandardCharsets.UTF_8);
+        byte[] prefixedKey = Arrays.copyOf(prefix, prefix.length + rawKey.length);
+        System.arraycopy(rawKey, 0, prefixedKey, prefix.length, rawKey.length);
+        return new String(prefixedKey);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(RedisCacheKeyBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class).build()).run();
+    }
+}
@@ -6,11 +6,22 @@ import org.github.roger.MultiLayeringCache;
 import org.github.roger.cache.ICache;
 import org.github.roger.cache.config.ICacheManagerConfig;
 import org.github.roger.cache.redis.RedisCache;
+import org.github.roger.concurrent.RefreshScheduler;
+import org.github.roger.concurrent.ThreadTaskUtils;
 import org.github.roger.enumeration.ExpireMode;
+import org.github.roger.enumeration.RefreshPolicy;
+import org.github.roger.manager.AbstractCacheManager;
 import org.github.roger.manager.ICacheManager;
+import org.github.roger.serializer.CompressRedisSerializer;
 import org.github.roger.settings.FirstCacheSetting;
 import org.github.roger.settings.MultiLayeringCacheSetting;
 import org.github.roger.settings.SecondaryCacheSetting;
+import org.github.roger.support.AwaitThreadContainer;
+import org.github.roger.support.CacheStats;
+import org.github.roger.support.CachedValue;
+import org.github.roger.support.ClearProgress;
+import org.github.roger.support.KeyedValue;
+import org.github.roger.support.LatencyHistogram;
 import org.github.roger.utils.RedisCacheKey;
 import org.junit.Assert;
 import org.junit.Before;
@@ -19,12 +30,25 @@ import org.junit.runner.RunWith;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
-import java.util.Collection;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 // SpringJUnit4ClassRunner再Junit环境下提供Spring TestContext Framework的功能。
 @RunWith(SpringJUnit4ClassRunner.class)
@@ -183,6 +207,589 @@ public class CacheCoreTest {
         Assert.assertNotNull(str2);
     }
 
+    @Test
+    public void testBatchOperations() throws Exception {
+        String cacheName = "cache:name:batch";
+        MultiLayeringCache cache = (MultiLayeringCache) cacheManager.getCache(cacheName, layeringCacheSetting1);
+        cache.evictAll(Arrays.asList("batch:key1", "batch:key2", "batch:key3"));
+        Thread.sleep(500);
+
+        cache.putAll(Collections.singletonMap("batch:key1", "value1"));
+        Thread.sleep(500);
+        // 只有未命中的key才会交给valueLoader加载
+        AtomicReference<Set<String>> loadKeys = new AtomicReference<>();
+        Map<String, String> result = cache.getAll(Arrays.asList("batch:key1", "batch:key2", "batch:key3"), keys -> {
+            loadKeys.set(keys);
+            return Collections.singletonMap("batch:key2", "value2");
+        });
+        Assert.assertEquals(2, loadKeys.get().size());
+        Assert.assertFalse(loadKeys.get().contains("batch:key1"));
+        Assert.assertEquals("value1", result.get("batch:key1"));
+        Assert.assertEquals("value2", result.get("batch:key2"));
+        Assert.assertFalse(result.containsKey("batch:key3"));
+        Assert.assertEquals(2, cache.getSecondCache().getAll(Arrays.asList("batch:key1", "batch:key2", "batch:key3")).size());
+
+        // 已经缓存了NULL值的key不会再交给valueLoader加载
+        result = cache.getAll(Arrays.asList("batch:key1", "batch:key3"), keys -> {
+            throw new IllegalStateException("不应该再加载" + keys);
+        });
+        Assert.assertEquals(1, result.size());
+        Assert.assertEquals("value1", result.get("batch:key1"));
+        Assert.assertTrue(cache.getSecondCache().getAll(Collections.singletonList("batch:key3"), keys -> {
+            throw new IllegalStateException("不应该再加载" + keys);
+        }).isEmpty());
+
+        cache.evictAll(Arrays.asList("batch:key1", "batch:key2"));
+        Thread.sleep(500);
+        Assert.assertTrue(cache.getFirstCache().getAll(Arrays.asList("batch:key1", "batch:key2")).isEmpty());
+        Assert.assertTrue(cache.getAll(Arrays.asList("batch:key1", "batch:key2")).isEmpty());
+    }
+
+    @Test
+    public void testGetAsync() throws Exception {
+        String cacheName = "cache:name:async";
+        MultiLayeringCache cache = (MultiLayeringCache) cacheManager.getCache(cacheName, layeringCacheSetting1);
+        cache.evictAll(Arrays.asList("async:key1", "async:key2"));
+        Thread.sleep(500);
+
+        // 同一个key并发的调用合并到同一个加载上
+        AtomicInteger loadCount = new AtomicInteger();
+        CompletableFuture<String> loading = new CompletableFuture<>();
+        CompletableFuture<String> first = cache.getAsync("async:key1", () -> {
+            loadCount.incrementAndGet();
+            return loading;
+        });
+        CompletableFuture<String> second = cache.getAsync("async:key1", () -> {
+            loadCount.incrementAndGet();
+            return loading;
+        });
+        Assert.assertNotSame(first, second);
+        Assert.assertFalse(first.isDone());
+        loading.complete("value1");
+        Assert.assertEquals("value1", first.get(5, TimeUnit.SECONDS));
+        Assert.assertEquals("value1", second.get(5, TimeUnit.SECONDS));
+        Assert.assertEquals(1, loadCount.get());
+
+        // 加载完成后已经写入二级缓存和一级缓存，一级缓存命中时直接返回完成的future
+        Assert.assertEquals("value1", cache.getSecondCache().get("async:key1"));
+        CompletableFuture<String> cached = cache.getAsync("async:key1", () -> {
+            throw new IllegalStateException("不应该再加载");
+        });
+        Assert.assertTrue(cached.isDone());
+        Assert.assertEquals("value1", cached.get());
+
+        // 加载异常时返回异常完成的future，不缓存
+        CompletableFuture<String> failing = new CompletableFuture<>();
+        failing.completeExceptionally(new IllegalStateException("load failed"));
+        try {
+            cache.<String>getAsync("async:key2", () -> failing).get(5, TimeUnit.SECONDS);
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        Assert.assertNull(cache.getSecondCache().get("async:key2"));
+    }
+
+    @Test
+    public void testGetAsyncRejected() throws Exception {
+        String cacheName = "cache:name:async:rejected";
+        MultiLayeringCache cache = (MultiLayeringCache) cacheManager.getCache(cacheName, layeringCacheSetting1);
+        cache.evictAll(Arrays.asList("rejected:key1", "rejected:key2"));
+        Thread.sleep(500);
+        AtomicInteger permits = new AtomicInteger();
+        cache.setAsyncExecutor(command -> {
+            if (permits.getAndDecrement() <= 0) {
+                throw new RejectedExecutionException("线程池已满");
+            }
+            ThreadTaskUtils.getAsyncExecutor().execute(command);
+        });
+        try {
+            // 查询二级缓存被拒绝时返回失败的future，不执行被缓存的方法
+            AtomicInteger loadCount = new AtomicInteger();
+            try {
+                cache.<String>getAsync("rejected:key1", () -> {
+                    loadCount.incrementAndGet();
+                    return CompletableFuture.completedFuture("value1");
+                }).get(5, TimeUnit.SECONDS);
+                Assert.fail();
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof RejectedExecutionException);
+            }
+            Assert.assertEquals(0, loadCount.get());
+
+            // 写缓存被拒绝时跳过写缓存，仍然返回加载的数据
+            permits.set(1);
+            Assert.assertEquals("value2", cache.<String>getAsync("rejected:key2",
+                    () -> CompletableFuture.completedFuture("value2")).get(5, TimeUnit.SECONDS));
+            Assert.assertNull(cache.getSecondCache().get("rejected:key2"));
+        } finally {
+            cache.setAsyncExecutor(ThreadTaskUtils.getAsyncExecutor());
+        }
+    }
+
+    @Test
+    public void testProbabilisticRefresh() throws Exception {
+        String cacheName = "cache:name:xfetch";
+        String cacheKey = "cache:key:xfetch";
+        FirstCacheSetting firstCacheSetting = new FirstCacheSetting(10, 1000, 5, TimeUnit.SECONDS, ExpireMode.WRITE);
+        SecondaryCacheSetting secondaryCacheSetting = new SecondaryCacheSetting(100, 1, TimeUnit.SECONDS, true, true, false, 1);
+        secondaryCacheSetting.setRefreshPolicy(RefreshPolicy.PROBABILISTIC);
+        // 系数足够大时每次命中都会提前刷新
+        secondaryCacheSetting.setBeta(1000000);
+        MultiLayeringCache cache = (MultiLayeringCache) cacheManager.getCache(cacheName,
+                new MultiLayeringCacheSetting(firstCacheSetting, secondaryCacheSetting));
+        cache.evict(cacheKey);
+        Thread.sleep(500);
+
+        AtomicInteger loadCount = new AtomicInteger();
+        Callable<String> loader = () -> {
+            loadCount.incrementAndGet();
+            Thread.sleep(50);
+            return "xfetch";
+        };
+        Assert.assertEquals("xfetch", cache.getSecondCache().get(cacheKey, loader));
+        // 加载耗时和缓存值一起保存
+        RedisCacheKey redisCacheKey = ((RedisCache) cache.getSecondCache()).getRedisCacheKey(cacheKey);
+        CachedValue cachedValue = (CachedValue) redisTemplate.opsForValue().get(redisCacheKey.getKey());
+        Assert.assertEquals("xfetch", cachedValue.getValue());
+        Assert.assertTrue(cachedValue.getLoadCost() >= 50);
+        Assert.assertEquals("xfetch", cache.getSecondCache().get(cacheKey));
+
+        // 剩余有效时间远大于preloadTime，仍然提前刷新
+        Assert.assertEquals("xfetch", cache.getSecondCache().get(cacheKey, loader));
+        Thread.sleep(1000);
+        Assert.assertEquals(2, loadCount.get());
+    }
+
+    @Test
+    public void testStaleWhileRevalidate() throws Exception {
+        String cacheName = "cache:name:stale";
+        String cacheKey = "cache:key:stale";
+        FirstCacheSetting firstCacheSetting = new FirstCacheSetting(10, 1000, 1, TimeUnit.SECONDS, ExpireMode.WRITE);
+        SecondaryCacheSetting secondaryCacheSetting = new SecondaryCacheSetting(2, 0, TimeUnit.SECONDS, true, true, false, 1);
+        secondaryCacheSetting.setMaxStaleness(10);
+        MultiLayeringCache cache = (MultiLayeringCache) cacheManager.getCache(cacheName,
+                new MultiLayeringCacheSetting(firstCacheSetting, secondaryCacheSetting));
+        cache.evict(cacheKey);
+        Thread.sleep(500);
+
+        Assert.assertEquals("v1", cache.get(cacheKey, () -> "v1"));
+        // redis中的实际有效时间包含可以使用旧值的时间
+        RedisCacheKey redisCacheKey = ((RedisCache) cache.getSecondCache()).getRedisCacheKey(cacheKey);
+        Assert.assertTrue(redisTemplate.getExpire(redisCacheKey.getKey()) > 2);
+
+        // 超过有效时间后直接返回旧值，异步重新加载
+        Thread.sleep(2500);
+        Assert.assertEquals("v1", cache.get(cacheKey, () -> "v2"));
+        Thread.sleep(1500);
+        Assert.assertEquals("v2", cache.get(cacheKey, () -> "v3"));
+
+        // 被缓存的方法异常时继续使用旧值
+        Thread.sleep(2500);
+        Callable<String> failLoader = () -> {
+            throw new IllegalStateException("db down");
+        };
+        Assert.assertEquals("v2", cache.get(cacheKey, failLoader));
+        Thread.sleep(1500);
+        Assert.assertEquals("v2", cache.get(cacheKey, failLoader));
+        Assert.assertEquals("v2", cache.get(cacheKey));
+    }
+
+    @Test
+    public void testStaleBackFillKeepsSoftExpire() throws Exception {
+        String cacheName = "cache:name:stale:backfill";
+        String cacheKey = "cache:key:stale:backfill";
+        FirstCacheSetting firstCacheSetting = new FirstCacheSetting(10, 1000, 60, TimeUnit.SECONDS, ExpireMode.WRITE);
+        SecondaryCacheSetting secondaryCacheSetting = new SecondaryCacheSetting(1, 0, TimeUnit.SECONDS, true, true, false, 1);
+        secondaryCacheSetting.setMaxStaleness(10);
+        MultiLayeringCache cache = (MultiLayeringCache) cacheManager.getCache(cacheName,
+                new MultiLayeringCacheSetting(firstCacheSetting, secondaryCacheSetting));
+        cache.evict(cacheKey);
+        Thread.sleep(500);
+
+        cache.put(cacheKey, "v1");
+        Thread.sleep(1500);
+        // 二级缓存中已经是旧值，回填到一级缓存后仍然是旧值，不会按一级缓存的有效时间变成新值
+        cache.getFirstCache().evict(cacheKey);
+        Assert.assertEquals("v1", cache.get(cacheKey));
+        Object firstValue = cache.getFirstCache().get(cacheKey);
+        Assert.assertTrue(firstValue instanceof CachedValue);
+        Assert.assertTrue(((CachedValue) firstValue).isStale());
+
+        // 类型不匹配时抛出异常，而不是返回错误类型的值
+        Assert.assertEquals("v1", cache.get(cacheKey, String.class));
+        try {
+            cache.get(cacheKey, Integer.class);
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertTrue(e.getMessage().contains(Integer.class.getName()));
+        }
+        cache.evict(cacheKey);
+    }
+
+    @Test
+    public void testClearByScan() throws Exception {
+        String cacheName = "cache:name:clear";
+        FirstCacheSetting firstCacheSetting = new FirstCacheSetting(10, 1000, 10, TimeUnit.SECONDS, ExpireMode.WRITE);
+        SecondaryCacheSetting secondaryCacheSetting = new SecondaryCacheSetting(100, 10, TimeUnit.SECONDS, true, true, false, 1);
+        secondaryCacheSetting.setClearBatchSize(100);
+        MultiLayeringCache cache = (MultiLayeringCache) cacheManager.getCache(cacheName,
+                new MultiLayeringCacheSetting(firstCacheSetting, secondaryCacheSetting));
+        Map<String, String> values = new HashMap<>();
+        for (int i = 0; i < 1050; i++) {
+            values.put("clear:key" + i, "value" + i);
+        }
+
+        cache.putAll(values);
+        Assert.assertEquals("value1", cache.get("clear:key1", String.class));
+        cache.clear();
+        Thread.sleep(500);
+        Assert.assertTrue(redisTemplate.keys(cacheName + "*").isEmpty());
+        Assert.assertNull(cache.getFirstCache().get("clear:key1"));
+
+        // 后台清空，通过进度等待完成
+        cache.putAll(values);
+        ClearProgress progress = cache.clearAsync();
+        Assert.assertTrue(progress.await(10, TimeUnit.SECONDS));
+        Assert.assertNull(progress.getError());
+        Assert.assertEquals(1050, progress.getDeletedCount());
+        Assert.assertTrue(redisTemplate.keys(cacheName + "*").isEmpty());
+    }
+
+    @Test
+    public void testClearByGeneration() throws Exception {
+        String cacheName = "cache:name:generation";
+        String cacheKey = "cache:key:generation";
+        FirstCacheSetting firstCacheSetting = new FirstCacheSetting(10, 1000, 10, TimeUnit.SECONDS, ExpireMode.WRITE);
+        SecondaryCacheSetting secondaryCacheSetting = new SecondaryCacheSetting(100, 10, TimeUnit.SECONDS, true, true, false, 1);
+        secondaryCacheSetting.setUseGeneration(true);
+        MultiLayeringCache cache = (MultiLayeringCache) cacheManager.getCache(cacheName,
+                new MultiLayeringCacheSetting(firstCacheSetting, secondaryCacheSetting));
+        RedisCache redisCache = (RedisCache) cache.getSecondCache();
+        cache.evict(cacheKey);
+
+        Assert.assertEquals("v1", cache.get(cacheKey, () -> "v1"));
+        long generation = redisCache.getGeneration();
+        String oldKey = redisCache.getRedisCacheKey(cacheKey).getKey();
+        Assert.assertEquals(cacheName + ":" + generation + ":" + cacheKey, oldKey);
+
+        // 清空只把版本号加1，旧版本的key保留到过期
+        cache.clear();
+        Thread.sleep(500);
+        Assert.assertEquals(generation + 1, redisCache.getGeneration());
+        Assert.assertTrue(redisTemplate.hasKey(oldKey));
+        Assert.assertNull(cache.getFirstCache().get(cacheKey));
+        Assert.assertNull(cache.get(cacheKey));
+        Assert.assertEquals("v2", cache.get(cacheKey, () -> "v2"));
+        redisTemplate.delete(oldKey);
+
+        // 没有有效时间时旧版本的key永远不会删除，不允许开启
+        SecondaryCacheSetting noExpiration = new SecondaryCacheSetting(0, 0, TimeUnit.SECONDS, true, true, false, 1);
+        noExpiration.setUseGeneration(true);
+        try {
+            new RedisCache(cacheName, redisTemplate, noExpiration);
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage().contains(cacheName));
+        }
+    }
+
+    @Test
+    public void testCompressValue() {
+        String cacheName = "cache:name:compress";
+        String cacheKey = "cache:key:compress";
+        FirstCacheSetting firstCacheSetting = new FirstCacheSetting(10, 1000, 10, TimeUnit.SECONDS, ExpireMode.WRITE);
+        SecondaryCacheSetting secondaryCacheSetting = new SecondaryCacheSetting(100, 10, TimeUnit.SECONDS, true, true, false, 1);
+        secondaryCacheSetting.setCompress(true);
+        MultiLayeringCache cache = (MultiLayeringCache) cacheManager.getCache(cacheName,
+                new MultiLayeringCacheSetting(firstCacheSetting, secondaryCacheSetting));
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            value.append("compress");
+        }
+
+        cache.put(cacheKey, value.toString());
+        RedisCacheKey redisCacheKey = ((RedisCache) cache.getSecondCache()).getRedisCacheKey(cacheKey);
+        byte[] bytes = redisTemplate.execute((RedisCallback<byte[]>) connection -> connection.get(redisCacheKey.getKeyBytes()));
+        Assert.assertTrue(CompressRedisSerializer.isCompressed(bytes));
+        Assert.assertTrue(bytes.length < value.length());
+        Assert.assertEquals(value.toString(), cache.getSecondCache().get(cacheKey));
+        Assert.assertTrue(CompressRedisSerializer.getStats(cacheName).getCompressRatio() < 1);
+        cache.evict(cacheKey);
+    }
+
+    @Test
+    public void testCacheStats() {
+        String cacheName = "cache:name:stats";
+        String cacheKey = "cache:key:stats";
+        FirstCacheSetting firstCacheSetting = new FirstCacheSetting(10, 1000, 10, TimeUnit.SECONDS, ExpireMode.WRITE);
+        SecondaryCacheSetting secondaryCacheSetting = new SecondaryCacheSetting(100, 10, TimeUnit.SECONDS, true, true, false, 1);
+        MultiLayeringCache cache = (MultiLayeringCache) cacheManager.getCache(cacheName,
+                new MultiLayeringCacheSetting(firstCacheSetting, secondaryCacheSetting));
+        cache.evict(cacheKey);
+        CacheStats stats = CacheStats.getStats(cacheName);
+        long firstCacheHits = stats.getFirstCacheHits();
+        long firstCacheMisses = stats.getFirstCacheMisses();
+        long secondCacheMisses = stats.getSecondCacheMisses();
+        long loadCount = stats.getLoadCount();
+        long loadFailures = stats.getLoadFailures();
+        long published = stats.getPublishedMessages();
+
+        // 两级缓存都未命中，执行一次被缓存的方法
+        Assert.assertEquals("stats", cache.get(cacheKey, () -> "stats"));
+        Assert.assertEquals(firstCacheMisses + 1, stats.getFirstCacheMisses());
+        Assert.assertEquals(secondCacheMisses + 1, stats.getSecondCacheMisses());
+        Assert.assertEquals(loadCount + 1, stats.getLoadCount());
+        Assert.assertTrue(stats.getLockWait().getCount() > 0);
+        Assert.assertTrue(stats.getSerializedBytes() > 0);
+        Assert.assertTrue(stats.getSerializeLatency().getCount() > 0);
+        Assert.assertTrue(stats.getPublishedMessages() > published);
+
+        // 一级缓存命中
+        Assert.assertEquals("stats", cache.get(cacheKey, () -> "other"));
+        Assert.assertEquals(firstCacheHits + 1, stats.getFirstCacheHits());
+        Assert.assertEquals(loadCount + 1, stats.getLoadCount());
+
+        // 加载失败，一级缓存通过消息异步删除，使用另一个key
+        try {
+            cache.get(cacheKey + ":failure", () -> {
+                throw new IllegalStateException("load failure");
+            });
+            Assert.fail();
+        } catch (RuntimeException e) {
+            Assert.assertEquals(loadFailures + 1, stats.getLoadFailures());
+        }
+        Assert.assertEquals(loadCount + 2, stats.getLoadLatency().getCumulativeCount(LatencyHistogram.getBucketBounds().length));
+        Assert.assertTrue(CacheStats.getAllStats().containsKey(cacheName));
+    }
+
+    @Test
+    public void testCacheStatsListener() {
+        List<String> created = new ArrayList<>();
+        CacheStats.Registration registration = CacheStats.addListener(stats -> created.add(stats.getCacheName()));
+        CacheStats.getStats("cache:name:stats:listener:1");
+        registration.remove();
+        registration.remove();
+        // 删除后不再回调
+        CacheStats.getStats("cache:name:stats:listener:2");
+        Assert.assertEquals(Collections.singletonList("cache:name:stats:listener:1"), created);
+
+        CacheStats.removeStats("cache:name:stats:listener:1");
+        Assert.assertFalse(CacheStats.getAllStats().containsKey("cache:name:stats:listener:1"));
+    }
+
+    @Test
+    public void testLatencyHistogramMax() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram(200);
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(5));
+        Assert.assertEquals(5, histogram.getMax(TimeUnit.MILLISECONDS), 0);
+        // 下一个窗口仍然能读到上一个窗口的最大值
+        Thread.sleep(250);
+        Assert.assertEquals(5, histogram.getMax(TimeUnit.MILLISECONDS), 0);
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(1));
+        Assert.assertEquals(5, histogram.getMax(TimeUnit.MILLISECONDS), 0);
+        // 再过一个窗口后只剩新的记录，累计值不受影响
+        Thread.sleep(250);
+        Assert.assertEquals(1, histogram.getMax(TimeUnit.MILLISECONDS), 0);
+        Thread.sleep(250);
+        Assert.assertEquals(0, histogram.getMax(TimeUnit.MILLISECONDS), 0);
+        Assert.assertEquals(2, histogram.getCount());
+    }
+
+    @Test
+    public void testCompactKey() {
+        String cacheName = "cache:name:compact";
+        FirstCacheSetting firstCacheSetting = new FirstCacheSetting(10, 1000, 10, TimeUnit.SECONDS, ExpireMode.WRITE);
+        SecondaryCacheSetting secondaryCacheSetting = new SecondaryCacheSetting(100, 10, TimeUnit.SECONDS, true, true, true, 1);
+        secondaryCacheSetting.setCompactKey(true);
+        secondaryCacheSetting.setKeyDigestThreshold(16);
+        MultiLayeringCache cache = (MultiLayeringCache) cacheManager.getCache(cacheName,
+                new MultiLayeringCacheSetting(firstCacheSetting, secondaryCacheSetting));
+        RedisCache redisCache = (RedisCache) cache.getSecondCache();
+        String shortKey = "short";
+        String longKey = "cache:key:compact:a-very-long-composite-key";
+
+        // 缓存名称换成注册的ID，每次注册得到的ID相同
+        String keyName = redisCache.getKeyName();
+        Assert.assertTrue(keyName.startsWith("~"));
+        Assert.assertEquals(keyName + ":" + shortKey, redisCache.getRedisCacheKey(shortKey).getKey());
+        Assert.assertEquals(keyName, new RedisCache(cacheName, redisTemplate, secondaryCacheSetting).getKeyName());
+
+        RedisCacheKey redisCacheKey = redisCache.getRedisCacheKey(longKey);
+        Assert.assertTrue(redisCacheKey.isDigested());
+        Assert.assertEquals(longKey, redisCacheKey.getFullKey());
+        Assert.assertEquals("v1", redisCache.get(longKey, () -> "v1"));
+        Assert.assertEquals(longKey, ((KeyedValue) redisTemplate.opsForValue().get(redisCacheKey.getKey())).getFullKey());
+        Assert.assertEquals("v1", redisCache.get(longKey));
+        Assert.assertEquals("v1", redisCache.getAll(Collections.singletonList(longKey)).get(longKey));
+
+        // 模拟摘要冲突：缓存值中的完整key不一致时按没有命中缓存处理
+        redisTemplate.opsForValue().set(redisCacheKey.getKey(), new KeyedValue("other", "v2"), 100, TimeUnit.SECONDS);
+        Assert.assertNull(redisCache.get(longKey));
+        Assert.assertEquals("v3", redisCache.get(longKey, () -> "v3"));
+        // 摘要key的缓存值没有完整key时无法校验，同样按没有命中缓存处理
+        redisTemplate.opsForValue().set(redisCacheKey.getKey(), "v2", 100, TimeUnit.SECONDS);
+        Assert.assertNull(redisCache.get(longKey));
+        Assert.assertEquals("v3", redisCache.get(longKey, () -> "v3"));
+
+        // 其他缓存名称已经登记了相同的ID时创建缓存失败
+        byte[] registryKey = serializeKey("{multi-layering-cache:names}");
+        redisTemplate.execute((RedisCallback<Boolean>) connection -> connection.hSet(registryKey, serializeKey(keyName), serializeKey("other")));
+        try {
+            new RedisCache(cacheName, redisTemplate, secondaryCacheSetting).getKeyName();
+            Assert.fail("ID冲突时应该创建缓存失败");
+        } catch (IllegalStateException e) {
+            Assert.assertTrue(e.getMessage().contains("other"));
+        } finally {
+            redisTemplate.execute((RedisCallback<Boolean>) connection -> connection.hSet(registryKey, serializeKey(keyName), serializeKey(cacheName)));
+        }
+
+        // 清空缓存时按紧凑前缀扫描
+        redisCache.put(shortKey, "v4");
+        redisCache.clear();
+        Assert.assertNull(redisCache.get(shortKey));
+        Assert.assertNull(redisCache.get(longKey));
+    }
+
+    @Test
+    public void testClearSkipsNestedCache() {
+        byte[] registryKey = serializeKey("{multi-layering-cache:names}");
+        // 删除旧版本登记的普通缓存名称
+        redisTemplate.execute((RedisCallback<Long>) connection -> connection.hDel(registryKey, serializeKey("cache:name:nested")));
+        SecondaryCacheSetting secondaryCacheSetting = new SecondaryCacheSetting(100, 10, TimeUnit.SECONDS, true, true, true, 1);
+        RedisCache parent = new RedisCache("cache:name:nested", redisTemplate, secondaryCacheSetting);
+        RedisCache child = new RedisCache("cache:name:nested:child", redisTemplate, secondaryCacheSetting);
+        parent.put("key", "parent");
+        child.put("key", "child");
+
+        // 清空缓存时不删除名称以"缓存名称:"开头的其他缓存
+        parent.clear();
+        Assert.assertNull(parent.get("key"));
+        Assert.assertEquals("child", child.get("key"));
+        child.clear();
+        Assert.assertNull(child.get("key"));
+
+        // 普通缓存名称不登记到redis
+        Assert.assertFalse(redisTemplate.execute((RedisCallback<Boolean>) connection ->
+                connection.hExists(registryKey, serializeKey("cache:name:nested"))));
+    }
+
+    private byte[] serializeKey(String value) {
+        return ((RedisSerializer<String>) redisTemplate.getKeySerializer()).serialize(value);
+    }
+
+    @Test
+    public void testScriptReadTransientError() {
+        String cacheKey = "cache:key:script";
+        AtomicInteger failures = new AtomicInteger(1);
+        RedisTemplate<String, Object> failingTemplate = new RedisTemplate<String, Object>() {
+            @Override
+            public <T> T execute(RedisScript<T> script, List<String> keys, Object... args) {
+                if (failures.getAndDecrement() > 0) {
+                    throw new RedisSystemException("Connection reset by peer", new IllegalStateException("Connection reset by peer"));
+                }
+                return super.execute(script, keys, args);
+            }
+        };
+        failingTemplate.setConnectionFactory(redisTemplate.getConnectionFactory());
+        failingTemplate.setKeySerializer(redisTemplate.getKeySerializer());
+        failingTemplate.setValueSerializer(redisTemplate.getValueSerializer());
+        failingTemplate.afterPropertiesSet();
+        RedisCache cache = new RedisCache("cache:name:script", failingTemplate, 10000, 0, false, true, true, 1);
+        cache.evict(cacheKey);
+
+        // 网络抖动不会关闭脚本读取，也不会执行被缓存的方法
+        AtomicInteger loadCount = new AtomicInteger();
+        try {
+            cache.get(cacheKey, () -> "v" + loadCount.incrementAndGet());
+            Assert.fail();
+        } catch (RedisSystemException e) {
+            Assert.assertEquals(0, loadCount.get());
+        }
+        Assert.assertTrue(cache.isUseScriptRead());
+        Assert.assertEquals("v1", cache.get(cacheKey, () -> "v" + loadCount.incrementAndGet()));
+        Assert.assertEquals("v1", cache.get(cacheKey, () -> "v" + loadCount.incrementAndGet()));
+        Assert.assertEquals(1, loadCount.get());
+        cache.evict(cacheKey);
+    }
+
+    @Test
+    public void testLoadedMessageWithoutWaiters() {
+        RedisCache cache = new RedisCache("cache:name:loaded", redisTemplate, 10000, 0, false, true, true, 1);
+        // 本机没有等待线程时直接忽略加载完成的消息，不会反序列化缓存值
+        cache.onLoaded("cache:name:loaded:key", new byte[]{1, 2, 3});
+        Assert.assertFalse(cache.getContainer().hasWaiters("cache:name:loaded:key"));
+    }
+
+    @Test
+    public void testLoadedValueSharedByWaiters() {
+        AwaitThreadContainer container = new AwaitThreadContainer();
+        String key = "cache:name:loaded:shared";
+        long waitStart = System.nanoTime();
+        container.enter(key);
+        container.enter(key);
+        container.signalAll(key, "value");
+        // 同一次通知唤醒的等待线程都能读取到送达的值
+        Assert.assertEquals("value", container.getLoadedValue(key, waitStart).getValue());
+        Assert.assertEquals("value", container.getLoadedValue(key, waitStart).getValue());
+        container.leave(key);
+        Assert.assertNotNull(container.getLoadedValue(key, waitStart));
+        // 所有等待线程结束等待后删除
+        container.leave(key);
+        Assert.assertFalse(container.hasWaiters(key));
+        Assert.assertNull(container.getLoadedValue(key, waitStart));
+        // 没有等待线程时不保存
+        container.signalAll(key, "value");
+        Assert.assertNull(container.getLoadedValue(key, waitStart));
+    }
+
+    @Test
+    public void testSlowLoadSharedByCachesWithSameName() throws Exception {
+        String cacheName = "cache:name:singleflight";
+        String cacheKey = "cache:key:singleflight";
+        // 同名但配置不同的两个缓存共用一次加载
+        RedisCache cache1 = new RedisCache(cacheName, redisTemplate, 10000, 0, false, true, true, 1);
+        RedisCache cache2 = new RedisCache(cacheName, redisTemplate, 20000, 0, false, true, true, 1);
+        cache1.evict(cacheKey);
+        AtomicInteger loadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                RedisCache cache = i % 2 == 0 ? cache1 : cache2;
+                futures.add(executor.submit(() -> cache.get(cacheKey, () -> {
+                    loadCount.incrementAndGet();
+                    // 加载时间超过等待分布式锁的时间，等待的线程也不会重复加载
+                    Thread.sleep(800);
+                    return "value";
+                })));
+            }
+            for (Future<String> future : futures) {
+                Assert.assertEquals("value", future.get(10, TimeUnit.SECONDS));
+            }
+            Assert.assertEquals(1, loadCount.get());
+        } finally {
+            executor.shutdownNow();
+            cache1.evict(cacheKey);
+        }
+    }
+
+    @Test
+    public void testReplaceRefreshScheduler() {
+        MultiLayeringCache cache = (MultiLayeringCache) cacheManager.getCache("cache:name:scheduler", layeringCacheSetting1);
+        RedisCache redisCache = (RedisCache) cache.getSecondCache();
+        AbstractCacheManager manager = (AbstractCacheManager) cacheManager;
+        RefreshScheduler old = manager.getRefreshScheduler();
+        Assert.assertSame(old, redisCache.getRefreshScheduler());
+
+        // 已经创建的缓存改用新的调度器，原调度器被关闭
+        RefreshScheduler scheduler = new RefreshScheduler();
+        manager.setRefreshScheduler(scheduler);
+        Assert.assertSame(scheduler, redisCache.getRefreshScheduler());
+        Assert.assertFalse(old.submit("cache:name:scheduler", "key", () -> {
+        }));
+    }
+
     private <T> T initCache(Class<T> t) {
         log.debug("加载缓存");
         return (T) "test";
@@ -0,0 +1,197 @@
+package org.github.roger.cache.offheap;
+
+import org.github.roger.MultiLayeringCache;
+import org.github.roger.cache.ICache;
+import org.github.roger.cache.config.ICacheManagerConfig;
+import org.github.roger.enumeration.ExpireMode;
+import org.github.roger.enumeration.FirstCacheType;
+import org.github.roger.manager.ICacheManager;
+import org.github.roger.settings.FirstCacheSetting;
+import org.github.roger.settings.MultiLayeringCacheSetting;
+import org.github.roger.settings.SecondaryCacheSetting;
+import org.github.roger.support.CachedValue;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = {ICacheManagerConfig.class})
+public class OffHeapCacheTest {
+
+    @Autowired
+    private ICacheManager cacheManager;
+
+    @Test
+    public void testPutGetEvict() {
+        OffHeapCache cache = new OffHeapCache("cache:name:offheap", setting(1024 * 1024, 10), new JdkSerializationRedisSerializer(), 0);
+        cache.put("key1", "value1");
+        cache.put("key2", Arrays.asList(1, 2, 3));
+        Assert.assertEquals("value1", cache.get("key1"));
+        Assert.assertEquals(Arrays.asList(1, 2, 3), cache.get("key2"));
+        // 每次读取都是反序列化出来的新对象
+        Assert.assertNotSame(cache.get("key2"), cache.get("key2"));
+
+        cache.put("key1", "value2");
+        Assert.assertEquals("value2", cache.get("key1"));
+        Assert.assertEquals("value2", cache.putIfAbsent("key1", "value3"));
+        Assert.assertEquals(2, cache.size());
+
+        // 不缓存NULL值
+        cache.put("key3", null);
+        Assert.assertNull(cache.get("key3"));
+
+        cache.evict("key1");
+        Assert.assertNull(cache.get("key1"));
+        Assert.assertEquals(1, cache.getAll(Arrays.asList("key1", "key2")).size());
+        cache.clear();
+        Assert.assertNull(cache.get("key2"));
+        Assert.assertEquals(0, cache.usedBytes());
+    }
+
+    @Test
+    public void testByteBudgetEviction() {
+        OffHeapStore store = new OffHeapStore(64 * 1024, 16, TimeUnit.MINUTES.toMillis(1), false, null);
+        byte[] value = new byte[1000];
+        // 写入的数据远超内存上限，最早写入的数据被淘汰，并且会多次绕回内存开头
+        for (int i = 0; i < 1000; i++) {
+            Arrays.fill(value, (byte) i);
+            Assert.assertTrue(store.put("key" + i, value));
+            Assert.assertTrue(store.usedBytes() <= store.maxBytes());
+        }
+        Assert.assertNull(store.get("key0"));
+        byte[] last = store.get("key999");
+        Assert.assertEquals(1000, last.length);
+        Assert.assertEquals((byte) 999, last[0]);
+        Assert.assertEquals((byte) 999, last[999]);
+        Assert.assertTrue(store.size() > 50);
+        Assert.assertTrue(store.size() < 70);
+
+        // 大于内存上限的数据不缓存
+        Assert.assertFalse(store.put("big", new byte[128 * 1024]));
+        Assert.assertNull(store.get("big"));
+    }
+
+    @Test
+    public void testAllocateLazilyAndClose() {
+        OffHeapStore store = new OffHeapStore(64 * 1024 * 1024, 16, TimeUnit.MINUTES.toMillis(1), false, null);
+        // 创建时不分配直接内存，写入时只分配用到的段
+        Assert.assertEquals(0, store.allocatedBytes());
+        Assert.assertNull(store.get("key"));
+        Assert.assertTrue(store.put("key", new byte[]{1}));
+        Assert.assertTrue(store.allocatedBytes() > 0);
+        Assert.assertTrue(store.allocatedBytes() < store.maxBytes());
+
+        // 关闭后释放内存，不再读写
+        store.close();
+        Assert.assertEquals(0, store.allocatedBytes());
+        Assert.assertNull(store.get("key"));
+        Assert.assertFalse(store.put("key", new byte[]{1}));
+        Assert.assertNull(store.putIfAbsent("key", new byte[]{1}));
+        Assert.assertEquals(0, store.size());
+
+        OffHeapCache cache = new OffHeapCache("cache:name:offheap:close", setting(1024 * 1024, 10), new JdkSerializationRedisSerializer(), 0);
+        cache.put("key", "value");
+        cache.close();
+        Assert.assertNull(cache.get("key"));
+        cache.put("key", "value");
+        Assert.assertNull(cache.get("key"));
+    }
+
+    @Test
+    public void testIndexUnderChurn() {
+        OffHeapStore store = new OffHeapStore(256 * 1024, 16, TimeUnit.MINUTES.toMillis(1), false, null);
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(42);
+        // 随机写入和删除少量key，数据总量不超过内存上限，结果要和HashMap一致
+        for (int i = 0; i < 100000; i++) {
+            int key = random.nextInt(500);
+            if (random.nextInt(4) == 0) {
+                store.remove(key);
+                expected.remove(key);
+            } else {
+                store.put(key, new byte[]{(byte) i, (byte) (i >> 8)});
+                expected.put(key, i);
+            }
+        }
+        Assert.assertEquals(expected.size(), store.size());
+        for (int key = 0; key < 500; key++) {
+            byte[] value = store.get(key);
+            if (expected.containsKey(key)) {
+                int i = expected.get(key);
+                Assert.assertArrayEquals(new byte[]{(byte) i, (byte) (i >> 8)}, value);
+            } else {
+                Assert.assertNull(value);
+            }
+        }
+    }
+
+    @Test
+    public void testExpire() throws Exception {
+        OffHeapCache cache = new OffHeapCache("cache:name:offheap:expire", setting(1024 * 1024, 0), new JdkSerializationRedisSerializer(), 200);
+        cache.put("key", "value");
+        Assert.assertEquals("value", cache.get("key"));
+        Thread.sleep(300);
+        Assert.assertNull(cache.get("key"));
+        Assert.assertEquals(0, cache.size());
+
+        // 熔断期间延长有效时间，对已经存在的缓存同样生效
+        cache.put("key", "value");
+        Thread.sleep(300);
+        cache.setExpireTime(TimeUnit.MINUTES.toMillis(1));
+        Assert.assertEquals("value", cache.get("key"));
+        cache.resetExpireTime();
+        Assert.assertNull(cache.get("key"));
+    }
+
+    @Test
+    public void testSelectFirstCacheType() {
+        String cacheKey = "cache:key:offheap";
+        for (FirstCacheType type : FirstCacheType.values()) {
+            String cacheName = "cache:name:offheap:" + type;
+            FirstCacheSetting firstCacheSetting = setting(1024 * 1024, 10);
+            firstCacheSetting.setType(type);
+            SecondaryCacheSetting secondaryCacheSetting = new SecondaryCacheSetting(100, 10, TimeUnit.SECONDS, true, true, false, 1);
+            secondaryCacheSetting.setMaxStaleness(10);
+            MultiLayeringCache cache = (MultiLayeringCache) cacheManager.getCache(cacheName,
+                    new MultiLayeringCacheSetting(firstCacheSetting, secondaryCacheSetting));
+            cache.evict(cacheKey);
+            try {
+                Assert.assertEquals("value", cache.get(cacheKey, () -> "value"));
+                ICache firstCache = cache.getFirstCache();
+                // 开启了过期后继续使用旧值，一级缓存中保存的是包装值
+                Assert.assertTrue(firstCache.get(cacheKey) instanceof CachedValue);
+                Assert.assertEquals("value", cache.get(cacheKey, () -> "other"));
+                if (type == FirstCacheType.CAFFEINE_OFF_HEAP) {
+                    TieredFirstCache tieredFirstCache = (TieredFirstCache) firstCache;
+                    // caffeine中被淘汰后从堆外缓存中找回
+                    tieredFirstCache.getCaffeineCache().evict(cacheKey);
+                    Assert.assertTrue(tieredFirstCache.get(cacheKey) instanceof CachedValue);
+                    Assert.assertNotNull(tieredFirstCache.getCaffeineCache().get(cacheKey));
+                } else if (type == FirstCacheType.OFF_HEAP) {
+                    Assert.assertTrue(firstCache instanceof OffHeapCache);
+                }
+                // 删除同时作用于一级缓存的每一层
+                firstCache.evict(cacheKey);
+                Assert.assertNull(firstCache.get(cacheKey));
+            } finally {
+                cache.evict(cacheKey);
+            }
+        }
+    }
+
+    private FirstCacheSetting setting(long maxBytes, int expireTime) {
+        FirstCacheSetting firstCacheSetting = new FirstCacheSetting(10, 1000, expireTime, TimeUnit.SECONDS, ExpireMode.WRITE);
+        firstCacheSetting.setOffHeapMaxBytes(maxBytes);
+        return firstCacheSetting;
+    }
+}
@@ -0,0 +1,115 @@
+package org.github.roger.concurrent;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RefreshSchedulerTest {
+
+    @Test
+    public void testDuplicateKeyQueuedOnce() throws Exception {
+        RefreshScheduler scheduler = new RefreshScheduler(1, 10, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger refreshCount = new AtomicInteger();
+        try {
+            // 占住唯一的刷新线程
+            scheduler.submit("cache", "blocker", () -> await(release));
+            waitFor(() -> scheduler.getRunningCount() == 1);
+
+            for (int i = 0; i < 100; i++) {
+                Assert.assertTrue(scheduler.submit("cache", "key", refreshCount::incrementAndGet));
+            }
+            Assert.assertEquals(1, scheduler.getQueuedCount());
+
+            release.countDown();
+            waitFor(() -> scheduler.getCompletedCount() == 2);
+            Assert.assertEquals(1, refreshCount.get());
+            Assert.assertEquals(0, scheduler.getQueuedCount());
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void testDropWhenQueueFullAndHotKeyFirst() throws Exception {
+        RefreshScheduler scheduler = new RefreshScheduler(1, 2, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> order = new CopyOnWriteArrayList<>();
+        try {
+            scheduler.submit("cache", "blocker", () -> await(release));
+            waitFor(() -> scheduler.getRunningCount() == 1);
+
+            Assert.assertTrue(scheduler.submit("cache", "cold", () -> order.add("cold")));
+            Assert.assertTrue(scheduler.submit("cache", "hot", () -> order.add("hot")));
+            Assert.assertFalse(scheduler.submit("cache", "dropped", () -> order.add("dropped")));
+            Assert.assertEquals(1, scheduler.getDroppedCount());
+            // hot 命中次数更多，先执行
+            for (int i = 0; i < 8; i++) {
+                scheduler.submit("cache", "hot", () -> order.add("hot"));
+            }
+
+            release.countDown();
+            waitFor(() -> order.size() == 2);
+            Assert.assertEquals("hot", order.get(0));
+            Assert.assertEquals("cold", order.get(1));
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void testConcurrencyPerCache() throws Exception {
+        RefreshScheduler scheduler = new RefreshScheduler(4, 100, 1);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        AtomicInteger otherCache = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            for (int i = 0; i < 10; i++) {
+                scheduler.submit("cache", "key" + i, () -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    await(release);
+                    running.decrementAndGet();
+                });
+            }
+            // 其他缓存的刷新任务不受影响
+            scheduler.submit("other", "key", otherCache::incrementAndGet);
+            waitFor(() -> otherCache.get() == 1);
+
+            release.countDown();
+            waitFor(() -> scheduler.getCompletedCount() == 11);
+            Assert.assertEquals(1, maxRunning.get());
+            Assert.assertEquals(0, scheduler.getQueuedCount());
+            Assert.assertEquals(0, scheduler.getRunningCount());
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void waitFor(Condition condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!condition.test()) {
+            if (System.currentTimeMillis() > deadline) {
+                Assert.fail("等待超时");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private interface Condition {
+        boolean test();
+    }
+}
@@ -0,0 +1,121 @@
+package org.github.roger.concurrent;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SingleFlightTest {
+
+    @Test
+    public void testConcurrentCallsShareOneLoad() throws Exception {
+        SingleFlight singleFlight = new SingleFlight();
+        AtomicInteger loadCount = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> singleFlight.execute("key", () -> {
+                    loadCount.incrementAndGet();
+                    started.countDown();
+                    release.await();
+                    return "value";
+                })));
+            }
+            started.await();
+            // 等待其他线程进入等待状态
+            Thread.sleep(200);
+            release.countDown();
+            for (Future<String> future : futures) {
+                Assert.assertEquals("value", future.get());
+            }
+            Assert.assertEquals(1, loadCount.get());
+            Assert.assertEquals(0, singleFlight.inFlightSize());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSlowLoadIsNotRepeated() throws Exception {
+        SingleFlight singleFlight = new SingleFlight();
+        AtomicInteger loadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                futures.add(executor.submit(() -> singleFlight.execute("key", () -> {
+                    loadCount.incrementAndGet();
+                    // 加载比较慢时等待的线程继续等待，不会各自重新加载
+                    Thread.sleep(800);
+                    return "value";
+                })));
+            }
+            for (Future<String> future : futures) {
+                Assert.assertEquals("value", future.get());
+            }
+            Assert.assertEquals(1, loadCount.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testExceptionIsSharedAndNotCached() throws Exception {
+        SingleFlight singleFlight = new SingleFlight();
+        try {
+            singleFlight.execute("key", () -> {
+                throw new IllegalStateException("load error");
+            });
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("load error", e.getMessage());
+        }
+        Assert.assertEquals("value", singleFlight.execute("key", () -> "value"));
+    }
+
+    @Test
+    public void testReentrantCall() throws Exception {
+        SingleFlight singleFlight = new SingleFlight();
+        String result = singleFlight.execute("key", () -> singleFlight.execute("key", () -> "value"));
+        Assert.assertEquals("value", result);
+    }
+
+    @Test
+    public void testAwaitTimeout() throws Exception {
+        SingleFlight singleFlight = new SingleFlight(100);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> leader = executor.submit(() -> singleFlight.execute("key", () -> {
+                started.countDown();
+                release.await();
+                return "leader";
+            }));
+            started.await();
+            // 加载的线程被阻塞，等待超时后失败，不会自己重复加载
+            long start = System.currentTimeMillis();
+            AtomicInteger followerLoads = new AtomicInteger();
+            try {
+                singleFlight.execute("key", () -> {
+                    followerLoads.incrementAndGet();
+                    return "follower";
+                });
+                Assert.fail();
+            } catch (TimeoutException e) {
+                Assert.assertEquals(0, followerLoads.get());
+            }
+            Assert.assertTrue(System.currentTimeMillis() - start < 5000);
+            release.countDown();
+            Assert.assertEquals("leader", leader.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package org.github.roger.jfr;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.github.roger.cache.ICache;
+import org.github.roger.cache.config.ICacheManagerConfig;
+import org.github.roger.enumeration.ExpireMode;
+import org.github.roger.manager.ICacheManager;
+import org.github.roger.settings.FirstCacheSetting;
+import org.github.roger.settings.MultiLayeringCacheSetting;
+import org.github.roger.settings.SecondaryCacheSetting;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = {ICacheManagerConfig.class})
+public class CacheEventsTest {
+
+    @Autowired
+    private ICacheManager cacheManager;
+
+    @Before
+    public void before() {
+        Assume.assumeTrue(CacheEvents.isAvailable());
+    }
+
+    @Test
+    public void testRecordEvents() throws Exception {
+        String cacheName = "cache:name:jfr";
+        String cacheKey = "cache:key:jfr";
+        FirstCacheSetting firstCacheSetting = new FirstCacheSetting(10, 1000, 10, TimeUnit.SECONDS, ExpireMode.WRITE);
+        SecondaryCacheSetting secondaryCacheSetting = new SecondaryCacheSetting(100, 10, TimeUnit.SECONDS, true, true, false, 1);
+        ICache cache = cacheManager.getCache(cacheName, new MultiLayeringCacheSetting(firstCacheSetting, secondaryCacheSetting));
+        cache.evict(cacheKey);
+
+        Path file = Files.createTempFile("cache-events", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("org.github.roger.CacheGet");
+            recording.enable("org.github.roger.SecondCacheAccess");
+            recording.enable("org.github.roger.CacheLock");
+            recording.enable("org.github.roger.CacheLoad");
+            recording.start();
+            // 两级缓存都未命中，第二次一级缓存命中
+            Assert.assertEquals("jfr", cache.get(cacheKey, () -> "jfr"));
+            Assert.assertEquals("jfr", cache.get(cacheKey, () -> "other"));
+            recording.stop();
+            recording.dump(file);
+
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                    .filter(event -> cacheName.equals(event.getString("cacheName")))
+                    .collect(Collectors.toList());
+            List<String> gets = events.stream().filter(event -> "org.github.roger.CacheGet".equals(event.getEventType().getName()))
+                    .map(event -> event.getString("layer") + ":" + event.getString("outcome")).collect(Collectors.toList());
+            Assert.assertEquals(2, gets.size());
+            Assert.assertTrue(gets.contains("second:hit"));
+            Assert.assertTrue(gets.contains("first:hit"));
+
+            Assert.assertTrue(events.stream().anyMatch(event -> "org.github.roger.CacheLoad".equals(event.getEventType().getName())
+                    && "success".equals(event.getString("outcome"))));
+            Assert.assertTrue(events.stream().anyMatch(event -> "org.github.roger.CacheLock".equals(event.getEventType().getName())
+                    && "success".equals(event.getString("outcome"))));
+            // 写入二级缓存时记录了序列化的数据大小
+            Assert.assertTrue(events.stream().anyMatch(event -> "org.github.roger.SecondCacheAccess".equals(event.getEventType().getName())
+                    && "set".equals(event.getString("operation")) && event.getLong("bytes") > 0));
+        } finally {
+            Files.deleteIfExists(file);
+            cache.evict(cacheKey);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package org.github.roger.serializer;
+
+import org.github.roger.support.CachedValue;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class CompressRedisSerializerTest {
+
+    @Test
+    public void testCompressKryoAndFastJson() {
+        List<String> list = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            list.add("cache:value:" + i);
+        }
+        CachedValue value = new CachedValue(list, 10);
+        assertCompress(new KryoRedisSerializer<>(Object.class), value, "kryo");
+        assertCompress(new FastJsonRedisSerializer<>(Object.class), value, "fastJson");
+        assertCompress(new FastJsonBytesRedisSerializer<>(Object.class), value, "fastJsonBytes");
+    }
+
+    private void assertCompress(org.springframework.data.redis.serializer.RedisSerializer<Object> delegate, CachedValue value, String name) {
+        CompressRedisSerializer<Object> serializer = new CompressRedisSerializer<>(delegate, 1024, new DeflateCompressor(), name);
+        byte[] original = delegate.serialize(value);
+        byte[] compressed = serializer.serialize(value);
+        Assert.assertTrue(CompressRedisSerializer.isCompressed(compressed));
+        Assert.assertTrue(compressed.length < original.length);
+        Assert.assertEquals(value, serializer.deserialize(compressed));
+
+        // 小于阈值不压缩，没有压缩的旧数据也可以读取
+        byte[] small = serializer.serialize("small");
+        Assert.assertFalse(CompressRedisSerializer.isCompressed(small));
+        Assert.assertEquals("small", serializer.deserialize(small));
+        Assert.assertEquals(value, serializer.deserialize(original));
+
+        Assert.assertEquals(1, CompressRedisSerializer.getStats(name).getCompressedCount());
+        Assert.assertEquals(1, CompressRedisSerializer.getStats(name).getSkippedCount());
+        Assert.assertTrue(CompressRedisSerializer.getStats(name).getCompressRatio() < 1);
+
+        CompressRedisSerializer.removeStats(name);
+        Assert.assertNull(CompressRedisSerializer.getStats(name));
+    }
+}
@@ -0,0 +1,53 @@
+package org.github.roger.serializer;
+
+import org.github.roger.enumeration.ExpireMode;
+import org.github.roger.support.CachedValue;
+import org.github.roger.support.NullValue;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+public class FastJsonBytesRedisSerializerTest {
+
+    private final FastJsonBytesRedisSerializer<Object> serializer = new FastJsonBytesRedisSerializer<>(Object.class);
+
+    @Test
+    public void testRoundTrip() {
+        assertRoundTrip("中文value");
+        assertRoundTrip(1);
+        assertRoundTrip(Long.MAX_VALUE);
+        assertRoundTrip(1.5D);
+        assertRoundTrip(true);
+        assertRoundTrip('c');
+        assertRoundTrip(new CachedValue("value", 10, 100));
+        assertRoundTrip(Arrays.asList(new CachedValue("a", 1), new CachedValue("b", 2)));
+        assertRoundTrip(new HashSet<>(Arrays.asList("a", "b")));
+        assertRoundTrip(ExpireMode.ACCESS);
+        Assert.assertArrayEquals(new String[]{"a", "b"}, (Object[]) serializer.deserialize(serializer.serialize(new String[]{"a", "b"})));
+        Assert.assertArrayEquals(new int[]{1, 2}, (int[]) serializer.deserialize(serializer.serialize(new int[]{1, 2})));
+        Object[] values = (Object[]) serializer.deserialize(serializer.serialize(new CachedValue[]{new CachedValue("a", 1)}));
+        Assert.assertEquals(new CachedValue("a", 1), values[0]);
+
+        Assert.assertNull(serializer.deserialize(serializer.serialize(null)));
+        Assert.assertNull(serializer.deserialize(serializer.serialize(NullValue.INSTANCE)));
+        // 字符串不再写成JSON，只多一个字节的类型头
+        Assert.assertEquals(6, serializer.serialize("value").length);
+    }
+
+    @Test
+    public void testReadLegacyFormat() {
+        FastJsonRedisSerializer<Object> legacySerializer = new FastJsonRedisSerializer<>(Object.class);
+        Assert.assertEquals("value", serializer.deserialize(legacySerializer.serialize("value")));
+        CachedValue value = new CachedValue("value", 10);
+        Assert.assertEquals(value, serializer.deserialize(legacySerializer.serialize(value)));
+        List<?> list = (List<?>) serializer.deserialize(legacySerializer.serialize(Arrays.asList("a", "b")));
+        Assert.assertEquals(Arrays.asList("a", "b"), list);
+    }
+
+    private void assertRoundTrip(Object value) {
+        Assert.assertEquals(value, serializer.deserialize(serializer.serialize(value)));
+    }
+}
@@ -0,0 +1,55 @@
+package org.github.roger.serializer;
+
+import org.github.roger.settings.KryoSetting;
+import org.github.roger.support.CachedValue;
+import org.github.roger.support.NullValue;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class KryoPoolRedisSerializerTest {
+
+    @Test
+    public void testCompatibleWithKryoRedisSerializer() {
+        KryoRedisSerializer<Object> oldSerializer = new KryoRedisSerializer<>(Object.class);
+        KryoPoolRedisSerializer<Object> serializer = new KryoPoolRedisSerializer<>(Object.class);
+        CachedValue value = new CachedValue(new ArrayList<>(Arrays.asList("a", "b")), 10);
+
+        byte[] bytes = serializer.serialize(value);
+        Assert.assertArrayEquals(oldSerializer.serialize(value), bytes);
+        Assert.assertEquals(value, oldSerializer.deserialize(bytes));
+        Assert.assertEquals(value, serializer.deserialize(bytes));
+        Assert.assertNull(serializer.deserialize(serializer.serialize(NullValue.INSTANCE)));
+        Assert.assertEquals(1, serializer.getIdleCount());
+    }
+
+    @Test
+    public void testRegistrationAndUnsafe() {
+        KryoSetting setting = new KryoSetting();
+        setting.getRegistrations().put(CachedValue.class.getName(), 100);
+        setting.setUnsafe(true);
+        // 缓冲区很小，序列化大对象后不保留变大的缓冲区
+        setting.setBufferSize(16);
+        setting.setMaxPooledBufferSize(64);
+        KryoPoolRedisSerializer<Object> serializer = new KryoPoolRedisSerializer<>(Object.class, setting);
+
+        List<String> list = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            list.add("value" + i);
+        }
+        CachedValue value = new CachedValue(list, 10);
+        byte[] bytes = serializer.serialize(value);
+        Assert.assertEquals(value, serializer.deserialize(bytes));
+        // 注册后只写ID，比写类名的结果小
+        setting.getRegistrations().clear();
+        Assert.assertTrue(bytes.length < new KryoPoolRedisSerializer<>(Object.class, setting).serialize(value).length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDuplicateId() {
+        new KryoClassRegistry().register(CachedValue.class, 100).register(ArrayList.class, 100);
+    }
+}
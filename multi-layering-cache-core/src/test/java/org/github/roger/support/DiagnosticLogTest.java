@@ -0,0 +1,75 @@
+package org.github.roger.support;
+
+import org.github.roger.settings.DiagnosticLogSetting;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class DiagnosticLogTest {
+
+    @After
+    public void after() {
+        DiagnosticLog.configure(new DiagnosticLogSetting());
+    }
+
+    @Test
+    public void testLazyJson() {
+        AtomicInteger rendered = new AtomicInteger();
+        Object arg = DiagnosticLog.json(new Bean(rendered, "value"));
+        // 没有输出日志时不序列化
+        Assert.assertEquals(0, rendered.get());
+        Assert.assertEquals("{\"name\":\"value\"}", arg.toString());
+        Assert.assertEquals(1, rendered.get());
+        Assert.assertEquals("null", DiagnosticLog.json(null).toString());
+    }
+
+    @Test
+    public void testTruncate() {
+        DiagnosticLogSetting setting = new DiagnosticLogSetting();
+        setting.setMaxValueLength(10);
+        DiagnosticLog.configure(setting);
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            value.append('a');
+        }
+        Assert.assertEquals("\"aaaaaaaaa...(共102个字符)", DiagnosticLog.json(value.toString()).toString());
+        Assert.assertEquals("\"short\"", DiagnosticLog.json("short").toString());
+    }
+
+    @Test
+    public void testSample() {
+        Assert.assertFalse(DiagnosticLog.sample("cache:name:diagnostic"));
+
+        DiagnosticLogSetting setting = new DiagnosticLogSetting();
+        setting.setSampleRate(4);
+        DiagnosticLog.configure(setting);
+        int sampled = 0;
+        for (int i = 0; i < 100; i++) {
+            if (DiagnosticLog.sample("cache:name:diagnostic")) {
+                sampled++;
+            }
+        }
+        Assert.assertEquals(25, sampled);
+        // 每个缓存名称单独计数
+        Assert.assertTrue(DiagnosticLog.sample("cache:name:diagnostic:other"));
+    }
+
+    public static class Bean {
+
+        private final AtomicInteger rendered;
+
+        private final String name;
+
+        Bean(AtomicInteger rendered, String name) {
+            this.rendered = rendered;
+            this.name = name;
+        }
+
+        public String getName() {
+            rendered.incrementAndGet();
+            return name;
+        }
+    }
+}
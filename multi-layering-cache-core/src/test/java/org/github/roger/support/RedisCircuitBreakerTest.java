@@ -0,0 +1,132 @@
+package org.github.roger.support;
+
+import org.github.roger.MultiLayeringCache;
+import org.github.roger.MultiLayeringCacheManager;
+import org.github.roger.enumeration.CircuitState;
+import org.github.roger.enumeration.ExpireMode;
+import org.github.roger.serializer.KryoRedisSerializer;
+import org.github.roger.serializer.StringRedisSerializer;
+import org.github.roger.settings.CircuitBreakerSetting;
+import org.github.roger.settings.FirstCacheSetting;
+import org.github.roger.settings.MultiLayeringCacheSetting;
+import org.github.roger.settings.SecondaryCacheSetting;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RedisCircuitBreakerTest {
+
+    @Test
+    public void testOpenHalfOpenAndClose() throws Exception {
+        CircuitBreakerSetting setting = new CircuitBreakerSetting();
+        setting.setMinimumCalls(4);
+        setting.setOpenTime(200);
+        setting.setHalfOpenProbes(2);
+        RedisCircuitBreaker breaker = new RedisCircuitBreaker(setting);
+        List<CircuitState> transitions = new CopyOnWriteArrayList<>();
+        List<Thread> listenerThreads = new CopyOnWriteArrayList<>();
+        breaker.addListener((from, to) -> {
+            transitions.add(to);
+            listenerThreads.add(Thread.currentThread());
+        });
+
+        // 失败率50%，达到最少调用次数后打开
+        for (int i = 0; i < 2; i++) {
+            Assert.assertTrue(breaker.tryAcquire());
+            breaker.onSuccess(TimeUnit.MILLISECONDS.toNanos(1));
+            Assert.assertTrue(breaker.tryAcquire());
+            breaker.onError(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        Assert.assertEquals(CircuitState.OPEN, breaker.getState());
+        Assert.assertFalse(breaker.tryAcquire());
+        Assert.assertEquals(1, breaker.getRejectedCount());
+
+        // 进入半开状态，只放两个探测请求
+        Thread.sleep(300);
+        Assert.assertTrue(breaker.tryAcquire());
+        Assert.assertTrue(breaker.tryAcquire());
+        Assert.assertFalse(breaker.tryAcquire());
+        Assert.assertEquals(CircuitState.HALF_OPEN, breaker.getState());
+        breaker.onSuccess(TimeUnit.MILLISECONDS.toNanos(1));
+        breaker.onSuccess(TimeUnit.MILLISECONDS.toNanos(1));
+        Assert.assertEquals(CircuitState.CLOSED, breaker.getState());
+
+        // 监听器在通知线程中按状态变化的顺序执行，不占用执行redis命令的线程
+        long deadline = System.currentTimeMillis() + 5000;
+        while (transitions.size() < 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(Arrays.asList(CircuitState.OPEN, CircuitState.HALF_OPEN, CircuitState.CLOSED), transitions);
+        Assert.assertFalse(listenerThreads.contains(Thread.currentThread()));
+        Assert.assertEquals(1, breaker.getTransitionCount(CircuitState.OPEN));
+        Assert.assertEquals(1, breaker.getTransitionCount(CircuitState.CLOSED));
+    }
+
+    @Test
+    public void testSlowCallsOpenCircuit() {
+        CircuitBreakerSetting setting = new CircuitBreakerSetting();
+        setting.setMinimumCalls(3);
+        setting.setSlowCallTime(100);
+        RedisCircuitBreaker breaker = new RedisCircuitBreaker(setting);
+        for (int i = 0; i < 3; i++) {
+            Assert.assertTrue(breaker.tryAcquire());
+            breaker.onSuccess(TimeUnit.MILLISECONDS.toNanos(150));
+        }
+        Assert.assertEquals(CircuitState.OPEN, breaker.getState());
+        Assert.assertEquals(3, breaker.getSlowCallCount());
+    }
+
+    @Test
+    public void testDegradeToFirstCacheWhenRedisDown() {
+        // 连接一个没有redis的端口
+        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration("127.0.0.1", 1));
+        connectionFactory.afterPropertiesSet();
+        RedisTemplate<String, Object> redisTemplate = new RedisTemplate<>();
+        redisTemplate.setConnectionFactory(connectionFactory);
+        redisTemplate.setValueSerializer(new KryoRedisSerializer<>(Object.class));
+        redisTemplate.setKeySerializer(new StringRedisSerializer());
+        redisTemplate.afterPropertiesSet();
+
+        CircuitBreakerSetting setting = new CircuitBreakerSetting();
+        setting.setMinimumCalls(1);
+        MultiLayeringCacheManager cacheManager = new MultiLayeringCacheManager(redisTemplate, setting);
+        try {
+            MultiLayeringCache cache = (MultiLayeringCache) cacheManager.getCache("cache:name:breaker",
+                    new MultiLayeringCacheSetting(new FirstCacheSetting(10, 100, 1, TimeUnit.SECONDS, ExpireMode.WRITE),
+                            new SecondaryCacheSetting(10, 1, TimeUnit.SECONDS, true, true, false, 1)));
+            AtomicInteger loadCount = new AtomicInteger();
+            try {
+                // 第一次访问redis失败，打开熔断器
+                cache.get("key", () -> "value" + loadCount.incrementAndGet());
+            } catch (RuntimeException e) {
+                // 允许第一次访问失败
+            }
+            Assert.assertEquals(CircuitState.OPEN, cacheManager.getCircuitBreaker().getState());
+
+            // 熔断中一级缓存未命中直接执行被缓存的方法，并放到一级缓存
+            String value = cache.get("key", () -> "value" + loadCount.incrementAndGet());
+            Assert.assertEquals("value" + loadCount.get(), value);
+            Assert.assertEquals(value, cache.get("key", () -> "other"));
+            Assert.assertEquals(value, cache.get("key"));
+            // 按类型查询同样降级为只使用一级缓存
+            Assert.assertEquals(value, cache.get("key", String.class));
+            Assert.assertNull(cache.get("missing", String.class));
+
+            // 熔断中写操作只删除本机一级缓存
+            cache.evict("key");
+            Assert.assertNull(cache.getFirstCache().get("key"));
+            Assert.assertEquals(CircuitState.OPEN, cacheManager.getCircuitBreaker().getState());
+            Assert.assertTrue(cacheManager.getCircuitBreaker().getFailureCount() > 0);
+        } finally {
+            connectionFactory.destroy();
+        }
+    }
+}
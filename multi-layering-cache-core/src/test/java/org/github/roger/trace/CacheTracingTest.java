@@ -0,0 +1,177 @@
+package org.github.roger.trace;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.TraceFlags;
+import io.opentelemetry.api.trace.TraceState;
+import io.opentelemetry.context.Scope;
+import io.opentelemetry.sdk.testing.junit4.OpenTelemetryRule;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import org.github.roger.MultiLayeringCache;
+import org.github.roger.cache.ICache;
+import org.github.roger.cache.config.ICacheManagerConfig;
+import org.github.roger.enumeration.ExpireMode;
+import org.github.roger.manager.ICacheManager;
+import org.github.roger.settings.FirstCacheSetting;
+import org.github.roger.settings.MultiLayeringCacheSetting;
+import org.github.roger.settings.SecondaryCacheSetting;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = {ICacheManagerConfig.class})
+public class CacheTracingTest {
+
+    @Rule
+    public OpenTelemetryRule otelTesting = OpenTelemetryRule.create();
+
+    @Autowired
+    private ICacheManager cacheManager;
+
+    @Test
+    public void testSampledSpans() throws Exception {
+        String cacheName = "cache:name:trace";
+        String cacheKey = "cache:key:trace";
+        ICache cache = getCache(cacheName, new SecondaryCacheSetting(100, 10, TimeUnit.SECONDS, true, true, false, 1));
+        cache.evict(cacheKey);
+        try {
+            Span request = otelTesting.getOpenTelemetry().getTracer("test").spanBuilder("request").startSpan();
+            try (Scope ignored = request.makeCurrent()) {
+                // 两级缓存都未命中，第二次一级缓存命中
+                Assert.assertEquals("trace", cache.get(cacheKey, () -> "trace"));
+                Assert.assertEquals("trace", cache.get(cacheKey, () -> "other"));
+            } finally {
+                request.end();
+            }
+
+            List<SpanData> spans = spansOf(cacheName);
+            List<SpanData> gets = spans.stream().filter(span -> "cache.get".equals(span.getName())).collect(Collectors.toList());
+            Assert.assertEquals(2, gets.size());
+            for (SpanData get : gets) {
+                Assert.assertEquals(request.getSpanContext().getSpanId(), get.getParentSpanId());
+                Assert.assertEquals("cache.first.get", get.getEvents().get(0).getName());
+            }
+            Assert.assertEquals("second", gets.get(0).getAttributes().get(AttributeKey.stringKey(CacheTracing.LAYER)));
+            Assert.assertEquals("first", gets.get(1).getAttributes().get(AttributeKey.stringKey(CacheTracing.LAYER)));
+
+            // 二级缓存、等待锁、加载数据的span都挂在第一次查询下面
+            String firstGet = gets.get(0).getSpanId();
+            SpanData lockWait = find(spans, "cache.lock.wait");
+            Assert.assertEquals(firstGet, lockWait.getParentSpanId());
+            Assert.assertEquals(Long.valueOf(0), lockWait.getAttributes().get(AttributeKey.longKey(CacheTracing.LOCK_RETRIES)));
+            Assert.assertEquals("locked", lockWait.getAttributes().get(AttributeKey.stringKey(CacheTracing.OUTCOME)));
+            Assert.assertEquals(firstGet, find(spans, "cache.load").getParentSpanId());
+            SpanData set = find(spans, "cache.second.set");
+            Assert.assertEquals(firstGet, set.getParentSpanId());
+            Assert.assertTrue(set.getAttributes().get(AttributeKey.longKey(CacheTracing.VALUE_SIZE)) > 0);
+        } finally {
+            cache.evict(cacheKey);
+        }
+    }
+
+    @Test
+    public void testRefreshLinkedToRequest() throws Exception {
+        String cacheName = "cache:name:trace:refresh";
+        String cacheKey = "cache:key:trace:refresh";
+        // 刷新时间等于有效时间，每次命中二级缓存都会强制刷新
+        ICache cache = getCache(cacheName, new SecondaryCacheSetting(100, 100, TimeUnit.SECONDS, true, true, false, 1));
+        cache.evict(cacheKey);
+        try {
+            Assert.assertEquals("trace", cache.get(cacheKey, () -> "trace"));
+            ICache secondCache = ((MultiLayeringCache) cache).getSecondCache();
+            Span request = otelTesting.getOpenTelemetry().getTracer("test").spanBuilder("request").startSpan();
+            try (Scope ignored = request.makeCurrent()) {
+                Assert.assertEquals("trace", secondCache.get(cacheKey, () -> "refresh"));
+            } finally {
+                request.end();
+            }
+
+            SpanData refresh = null;
+            for (int i = 0; i < 50 && refresh == null; i++) {
+                refresh = spansOf(cacheName).stream().filter(span -> "cache.refresh".equals(span.getName())).findFirst().orElse(null);
+                Thread.sleep(100);
+            }
+            Assert.assertNotNull(refresh);
+            // 刷新是一个新链路，通过link关联触发刷新的请求
+            Assert.assertNotEquals(request.getSpanContext().getTraceId(), refresh.getTraceId());
+            Assert.assertEquals(request.getSpanContext(), refresh.getLinks().get(0).getSpanContext());
+            Assert.assertEquals(refresh.getSpanId(), find(spansOf(cacheName), "cache.load").getParentSpanId());
+        } finally {
+            cache.evict(cacheKey);
+        }
+    }
+
+    @Test
+    public void testSpanEndedOnError() {
+        String cacheName = "cache:name:trace:error";
+        String cacheKey = "cache:key:trace:error";
+        ICache cache = getCache(cacheName, new SecondaryCacheSetting(100, 10, TimeUnit.SECONDS, true, true, false, 1));
+        cache.evict(cacheKey);
+        try {
+            Span request = otelTesting.getOpenTelemetry().getTracer("test").spanBuilder("request").startSpan();
+            try (Scope ignored = request.makeCurrent()) {
+                try {
+                    cache.get(cacheKey, () -> {
+                        throw new StackOverflowError();
+                    });
+                    Assert.fail();
+                } catch (StackOverflowError e) {
+                    // 查询缓存的span结束后当前span恢复成请求的span
+                    Assert.assertEquals(request.getSpanContext(), Span.current().getSpanContext());
+                }
+            } finally {
+                request.end();
+            }
+            Assert.assertEquals("error", find(spansOf(cacheName), "cache.get").getAttributes()
+                    .get(AttributeKey.stringKey(CacheTracing.OUTCOME)));
+        } finally {
+            cache.evict(cacheKey);
+        }
+    }
+
+    @Test
+    public void testNotSampled() {
+        String cacheName = "cache:name:trace:unsampled";
+        String cacheKey = "cache:key:trace:unsampled";
+        ICache cache = getCache(cacheName, new SecondaryCacheSetting(100, 10, TimeUnit.SECONDS, true, true, false, 1));
+        cache.evict(cacheKey);
+        try {
+            SpanContext unsampled = SpanContext.create("0af7651916cd43dd8448eb211c80319c", "b7ad6b7169203331",
+                    TraceFlags.getDefault(), TraceState.getDefault());
+            try (Scope ignored = Span.wrap(unsampled).makeCurrent()) {
+                Assert.assertEquals("trace", cache.get(cacheKey, () -> "trace"));
+            }
+            // 没有当前span
+            Assert.assertEquals("trace", cache.get(cacheKey, () -> "other"));
+            Assert.assertTrue(otelTesting.getSpans().isEmpty());
+        } finally {
+            cache.evict(cacheKey);
+        }
+    }
+
+    private ICache getCache(String cacheName, SecondaryCacheSetting secondaryCacheSetting) {
+        FirstCacheSetting firstCacheSetting = new FirstCacheSetting(10, 1000, 10, TimeUnit.SECONDS, ExpireMode.WRITE);
+        return cacheManager.getCache(cacheName, new MultiLayeringCacheSetting(firstCacheSetting, secondaryCacheSetting));
+    }
+
+    private List<SpanData> spansOf(String cacheName) {
+        return otelTesting.getSpans().stream()
+                .filter(span -> cacheName.equals(span.getAttributes().get(AttributeKey.stringKey(CacheTracing.CACHE_NAME))))
+                .collect(Collectors.toList());
+    }
+
+    private SpanData find(List<SpanData> spans, String name) {
+        return spans.stream().filter(span -> name.equals(span.getName())).findFirst()
+                .orElseThrow(() -> new AssertionError("没有span：" + name));
+    }
+}
@@ -1,6 +1,10 @@
 package org.github.roger.utils;
 
+import com.alibaba.fastjson.JSON;
 import org.junit.Test;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+
+import java.nio.charset.StandardCharsets;
 
 import static org.junit.Assert.*;
 
@@ -9,4 +13,59 @@ public class RedisCacheKeyTest {
     @Test
     public void testGetKey() {
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testGenerationPrefix() {
+        RedisCacheKey redisCacheKey = new RedisCacheKey("key", new StringRedisSerializer()).cacheName("name");
+        assertEquals("name:key", redisCacheKey.getKey());
+        assertEquals("name:3:key", redisCacheKey.generation(3).getKey());
+        assertEquals("key", redisCacheKey.usePrefix(false).getKey());
+    }
+
+    @Test
+    public void testPrefixAndMemoizedKey() {
+        org.github.roger.serializer.StringRedisSerializer serializer = new org.github.roger.serializer.StringRedisSerializer();
+        RedisCacheKey redisCacheKey = new RedisCacheKey(123L, serializer).cacheName("name")
+                .prefix(RedisCacheKey.prefixBytes("name", 2));
+        assertEquals("name:2:123", redisCacheKey.getKey());
+        assertSame(redisCacheKey.getKey(), redisCacheKey.getKey());
+        assertSame(redisCacheKey.getKeyBytes(), redisCacheKey.getKeyBytes());
+        // 参数变化后重新计算
+        assertEquals("123", redisCacheKey.usePrefix(false).getKey());
+    }
+
+    @Test
+    public void testStringSerializerFastPath() {
+        org.github.roger.serializer.StringRedisSerializer serializer = new org.github.roger.serializer.StringRedisSerializer();
+        for (Object key : new Object[]{"key", "中文", "a\"b", "a\\b", "a\nb", 1, -2L, Long.MAX_VALUE}) {
+            String expected = JSON.toJSONString(key).replace("\"", "");
+            assertEquals(expected, new String(serializer.serialize(key), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void testDigestLongKey() {
+        org.github.roger.serializer.StringRedisSerializer serializer = new org.github.roger.serializer.StringRedisSerializer();
+        RedisCacheKey shortKey = new RedisCacheKey("short", serializer).cacheName("name").digestThreshold(16);
+        assertFalse(shortKey.isDigested());
+        assertNull(shortKey.getFullKey());
+        assertEquals("name:short", shortKey.getKey());
+
+        String key = "user:10086:order:2019-01-01:detail";
+        RedisCacheKey longKey = new RedisCacheKey(key, serializer).cacheName("name").digestThreshold(16);
+        assertTrue(longKey.isDigested());
+        assertEquals(key, longKey.getFullKey());
+        assertEquals("name:".length() + 28, longKey.getKey().length());
+        assertTrue(longKey.getKey().startsWith("name:#"));
+        // 相同的key摘要相同，不同的key摘要不同
+        assertEquals(longKey.getKey(), new RedisCacheKey(key, serializer).cacheName("name").digestThreshold(16).getKey());
+        assertNotEquals(longKey.getKey(), new RedisCacheKey(key + "1", serializer).cacheName("name").digestThreshold(16).getKey());
+        assertEquals("name:" + key, longKey.digestThreshold(0).getKey());
+
+        // 以"#"开头的普通key转义后不会和摘要key相同
+        RedisCacheKey flagKey = new RedisCacheKey("#" + key, serializer).cacheName("name").digestThreshold(64);
+        assertFalse(flagKey.isDigested());
+        assertEquals("name:##" + key, flagKey.getKey());
+        assertEquals("name:#" + key, flagKey.digestThreshold(0).getKey());
+    }
+}
@@ -0,0 +1,43 @@
+package org.github.roger.utils;
+
+import org.github.roger.serializer.KryoRedisSerializer;
+import org.github.roger.serializer.StringRedisSerializer;
+import org.junit.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.Assert.*;
+
+public class RedisTemplateUtilsTest {
+
+    @Test
+    public void testCopyProperties() {
+        RedisTemplate<String, Object> source = new RedisTemplate<>();
+        source.setConnectionFactory(new LettuceConnectionFactory());
+        source.setEnableTransactionSupport(true);
+        source.setExposeConnection(true);
+        source.setEnableDefaultSerializer(false);
+        source.setKeySerializer(new StringRedisSerializer());
+        source.setValueSerializer(new KryoRedisSerializer<>(Object.class));
+        source.setHashKeySerializer(new StringRedisSerializer());
+        source.setHashValueSerializer(new KryoRedisSerializer<>(Object.class));
+        source.afterPropertiesSet();
+
+        RedisTemplate<String, Object> target = new RedisTemplate<>();
+        RedisTemplateUtils.copyProperties(source, target);
+        target.afterPropertiesSet();
+
+        assertSame(source.getConnectionFactory(), target.getConnectionFactory());
+        assertTrue(target.isExposeConnection());
+        assertFalse(target.isEnableDefaultSerializer());
+        assertSame(source.getKeySerializer(), target.getKeySerializer());
+        assertSame(source.getValueSerializer(), target.getValueSerializer());
+        assertSame(source.getHashKeySerializer(), target.getHashKeySerializer());
+        assertSame(source.getHashValueSerializer(), target.getHashValueSerializer());
+        assertSame(source.getStringSerializer(), target.getStringSerializer());
+        assertEquals(true, ReflectionTestUtils.getField(target, "enableTransactionSupport"));
+        // 脚本执行器绑定在各自的RedisTemplate上
+        assertNotSame(ReflectionTestUtils.getField(source, "scriptExecutor"), ReflectionTestUtils.getField(target, "scriptExecutor"));
+    }
+}
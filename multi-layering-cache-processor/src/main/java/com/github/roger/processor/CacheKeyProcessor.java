@@ -0,0 +1,437 @@
+package com.github.roger.processor;
+
+import org.springframework.expression.ParseException;
+import org.springframework.expression.spel.SpelNode;
+import org.springframework.expression.spel.ast.CompoundExpression;
+import org.springframework.expression.spel.ast.IntLiteral;
+import org.springframework.expression.spel.ast.LongLiteral;
+import org.springframework.expression.spel.ast.OpPlus;
+import org.springframework.expression.spel.ast.PropertyOrFieldReference;
+import org.springframework.expression.spel.ast.StringLiteral;
+import org.springframework.expression.spel.ast.VariableReference;
+import org.springframework.expression.spel.standard.SpelExpression;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+
+/**
+ * 缓存key的注解处理器，编译时把 {@code @Cacheable}、{@code @CachePut}、{@code @CacheEvict} 上简单形式的key表达式生成为Java代码
+ * <p>
+ * 支持的表达式：
+ * <ul>
+ * <li>引用参数："#id"、"#p0"、"#a0"</li>
+ * <li>读取参数的属性："#user.id"、"#order.user.id"（public的getter或者public字段）</li>
+ * <li>字符串拼接："#type + ':' + #id"，拼接的参数只能是字符串、基本类型和它们的包装类型</li>
+ * </ul>
+ * 每个类生成一个"类名_CacheKeyGenerators"的索引类，切面运行时通过 {@code GeneratedKeyGenerators} 找到并优先使用。
+ * 其他表达式（引用#root、调用方法、运算等）不生成代码，运行时仍然使用SpEL计算；
+ * 语法错误或者引用了不存在的参数的表达式直接编译失败，不会等到运行时才发现。
+ * </p>
+ */
+@SupportedAnnotationTypes({CacheKeyProcessor.CACHEABLE, CacheKeyProcessor.CACHE_PUT, CacheKeyProcessor.CACHE_EVICT})
+public class CacheKeyProcessor extends AbstractProcessor {
+
+    static final String CACHEABLE = "com.github.roger.annotation.Cacheable";
+
+    static final String CACHE_PUT = "com.github.roger.annotation.CachePut";
+
+    static final String CACHE_EVICT = "com.github.roger.annotation.CacheEvict";
+
+    private static final String INDEX_INTERFACE = "com.github.roger.key.CacheKeyGeneratorIndex";
+
+    private static final String KEY_GENERATOR = "com.github.roger.key.KeyGenerator";
+
+    private static final String CLASS_SUFFIX = "_CacheKeyGenerators";
+
+    private static final String KEY_ATTRIBUTE = "key";
+
+    private static final String STRING_TYPE = "java.lang.String";
+
+    private final SpelExpressionParser parser = new SpelExpressionParser();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        // 按声明方法的类分组，一个类生成一个索引类
+        Map<TypeElement, Map<String, String>> generators = new LinkedHashMap<>();
+        for (TypeElement annotation : annotations) {
+            for (ExecutableElement method : ElementFilter.methodsIn(roundEnv.getElementsAnnotatedWith(annotation))) {
+                String key = keyOf(method, annotation);
+                if (key == null || key.trim().isEmpty()) {
+                    continue;
+                }
+                String code = generate(method, annotation, key);
+                if (code != null) {
+                    generators.computeIfAbsent((TypeElement) method.getEnclosingElement(), type -> new LinkedHashMap<>())
+                            .put(methodKey(annotation, method), code);
+                }
+            }
+        }
+        generators.forEach(this::writeIndex);
+        // 不独占这些注解，其他处理器仍然可以处理
+        return false;
+    }
+
+    /**
+     * 读取缓存注解上的key
+     */
+    private String keyOf(ExecutableElement method, TypeElement annotation) {
+        for (AnnotationMirror mirror : method.getAnnotationMirrors()) {
+            if (!mirror.getAnnotationType().asElement().equals(annotation)) {
+                continue;
+            }
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : mirror.getElementValues().entrySet()) {
+                if (KEY_ATTRIBUTE.contentEquals(entry.getKey().getSimpleName())) {
+                    return (String) entry.getValue().getValue();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 把key表达式翻译成Java表达式
+     *
+     * @return Java表达式，不支持的表达式返回null
+     */
+    private String generate(ExecutableElement method, TypeElement annotation, String key) {
+        SpelNode ast;
+        try {
+            ast = ((SpelExpression) parser.parseRaw(key)).getAST();
+        } catch (ParseException e) {
+            error(method, annotation, "缓存key表达式 \"%s\" 语法错误：%s", key, e.getMessage());
+            return null;
+        }
+        try {
+            Expr expr = translate(ast, method);
+            if (expr == null) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                        String.format("缓存key表达式 \"%s\" 不是简单形式，运行时使用SpEL计算", key), method);
+                return null;
+            }
+            return expr.code;
+        } catch (KeyException e) {
+            error(method, annotation, "缓存key表达式 \"%s\" 错误：%s", key, e.getMessage());
+            return null;
+        }
+    }
+
+    private Expr translate(SpelNode node, ExecutableElement method) {
+        if (node instanceof VariableReference) {
+            return variable(node, method);
+        }
+        if (node instanceof CompoundExpression) {
+            return propertyChain(node, method);
+        }
+        if (node instanceof StringLiteral) {
+            return new Expr(javaString((String) ((StringLiteral) node).getLiteralValue().getValue()), type(STRING_TYPE));
+        }
+        if (node instanceof IntLiteral) {
+            return new Expr(node.toStringAST(), processingEnv.getTypeUtils().getPrimitiveType(TypeKind.INT));
+        }
+        if (node instanceof LongLiteral) {
+            return new Expr(node.toStringAST() + "L", processingEnv.getTypeUtils().getPrimitiveType(TypeKind.LONG));
+        }
+        if (node instanceof OpPlus && node.getChildCount() == 2) {
+            return concat(node, method);
+        }
+        return null;
+    }
+
+    /**
+     * 引用参数，和运行时一样支持参数名称和"p0"、"a0"两种形式
+     */
+    private Expr variable(SpelNode node, ExecutableElement method) {
+        String name = node.toStringAST().substring(1);
+        if ("root".equals(name) || "this".equals(name)) {
+            return null;
+        }
+        List<? extends VariableElement> parameters = method.getParameters();
+        int index = -1;
+        for (int i = 0; i < parameters.size(); i++) {
+            if (parameters.get(i).getSimpleName().contentEquals(name)) {
+                index = i;
+                break;
+            }
+        }
+        if (index < 0 && name.length() > 1 && (name.charAt(0) == 'p' || name.charAt(0) == 'a')) {
+            try {
+                index = Integer.parseInt(name.substring(1));
+            } catch (NumberFormatException e) {
+                index = -1;
+            }
+        }
+        if (index < 0 || index >= parameters.size()) {
+            throw new KeyException("方法 " + method.getSimpleName() + " 没有参数 #" + name);
+        }
+        TypeMirror type = parameters.get(index).asType();
+        String code = "params[" + index + "]";
+        if (type.getKind().isPrimitive()) {
+            type = processingEnv.getTypeUtils().boxedClass((PrimitiveType) type).asType();
+        } else {
+            type = processingEnv.getTypeUtils().erasure(type);
+        }
+        if (type.getKind() == TypeKind.DECLARED && accessible(type, method)) {
+            code = "((" + type + ") " + code + ")";
+        } else {
+            type = type(Object.class.getName());
+        }
+        return new Expr(code, type);
+    }
+
+    /**
+     * 读取参数的属性，如"#user.id"，使用public的getter或者public字段
+     */
+    private Expr propertyChain(SpelNode node, ExecutableElement method) {
+        if (!(node.getChild(0) instanceof VariableReference)) {
+            return null;
+        }
+        Expr expr = variable(node.getChild(0), method);
+        for (int i = 1; expr != null && i < node.getChildCount(); i++) {
+            SpelNode child = node.getChild(i);
+            if (!(child instanceof PropertyOrFieldReference) || ((PropertyOrFieldReference) child).isNullSafe()) {
+                return null;
+            }
+            expr = property(expr, ((PropertyOrFieldReference) child).getName(), method);
+        }
+        return expr;
+    }
+
+    private Expr property(Expr target, String name, ExecutableElement method) {
+        if (target.type.getKind() != TypeKind.DECLARED || isType(target.type, Object.class.getName())) {
+            return null;
+        }
+        DeclaredType declaredType = (DeclaredType) target.type;
+        TypeElement typeElement = (TypeElement) declaredType.asElement();
+        String suffix = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        List<? extends Element> members = processingEnv.getElementUtils().getAllMembers(typeElement);
+        for (ExecutableElement getter : ElementFilter.methodsIn(members)) {
+            if (!getter.getParameters().isEmpty() || !getter.getModifiers().contains(Modifier.PUBLIC)
+                    || getter.getModifiers().contains(Modifier.STATIC)) {
+                continue;
+            }
+            TypeMirror returnType = ((ExecutableType) processingEnv.getTypeUtils().asMemberOf(declaredType, getter)).getReturnType();
+            String getterName = getter.getSimpleName().toString();
+            boolean matched = getterName.equals("get" + suffix)
+                    || getterName.equals("is" + suffix) && (returnType.getKind() == TypeKind.BOOLEAN || isType(returnType, Boolean.class.getName()));
+            if (matched) {
+                return member(target.code + "." + getterName + "()", returnType, method);
+            }
+        }
+        for (VariableElement field : ElementFilter.fieldsIn(members)) {
+            if (field.getSimpleName().contentEquals(name) && field.getModifiers().contains(Modifier.PUBLIC)
+                    && !field.getModifiers().contains(Modifier.STATIC)) {
+                return member(target.code + "." + name, processingEnv.getTypeUtils().asMemberOf(declaredType, field), method);
+            }
+        }
+        // 可能是其他注解处理器（如lombok）生成的getter，交给运行时处理
+        return null;
+    }
+
+    private Expr member(String code, TypeMirror type, ExecutableElement method) {
+        TypeMirror erased = processingEnv.getTypeUtils().erasure(type);
+        if (erased.getKind() == TypeKind.DECLARED && !accessible(erased, method)) {
+            return null;
+        }
+        return new Expr(code, erased);
+    }
+
+    /**
+     * 字符串拼接，只在和SpEL结果一致时生成：至少一边是字符串，另一边是字符串、基本类型或者包装类型
+     */
+    private Expr concat(SpelNode node, ExecutableElement method) {
+        Expr left = translate(node.getChild(0), method);
+        Expr right = translate(node.getChild(1), method);
+        if (left == null || right == null || !concatenable(left.type) || !concatenable(right.type)) {
+            return null;
+        }
+        if (!isType(left.type, STRING_TYPE) && !isType(right.type, STRING_TYPE)) {
+            return null;
+        }
+        return new Expr("(" + left.code + " + " + right.code + ")", type(STRING_TYPE));
+    }
+
+    private boolean concatenable(TypeMirror type) {
+        if (type.getKind().isPrimitive() || isType(type, STRING_TYPE)) {
+            return true;
+        }
+        try {
+            return processingEnv.getTypeUtils().unboxedType(type) != null;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 生成的类和被注解的类在同一个包下，类型是public或者同一个包下的非private类型时才能在生成的代码中使用
+     */
+    private boolean accessible(TypeMirror type, ExecutableElement method) {
+        Element element = ((DeclaredType) type).asElement();
+        boolean samePackage = processingEnv.getElementUtils().getPackageOf(element)
+                .equals(processingEnv.getElementUtils().getPackageOf(method));
+        for (Element e = element; e instanceof TypeElement; e = e.getEnclosingElement()) {
+            if (e.getModifiers().contains(Modifier.PRIVATE) || !e.getModifiers().contains(Modifier.PUBLIC) && !samePackage) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 缓存方法的标识，格式和运行时的 {@code GeneratedKeyGenerators#methodKey} 一致
+     */
+    private String methodKey(TypeElement annotation, ExecutableElement method) {
+        StringJoiner parameterTypes = new StringJoiner(",", method.getSimpleName() + "(", ")");
+        for (VariableElement parameter : method.getParameters()) {
+            parameterTypes.add(typeName(processingEnv.getTypeUtils().erasure(parameter.asType())));
+        }
+        return annotation.getSimpleName() + ":" + parameterTypes;
+    }
+
+    /**
+     * 和 {@link Class#getTypeName()} 一致的类型名称
+     */
+    private String typeName(TypeMirror type) {
+        if (type.getKind() == TypeKind.ARRAY) {
+            return typeName(((ArrayType) type).getComponentType()) + "[]";
+        }
+        if (type.getKind() == TypeKind.DECLARED) {
+            return processingEnv.getElementUtils().getBinaryName((TypeElement) ((DeclaredType) type).asElement()).toString();
+        }
+        return type.toString();
+    }
+
+    private void writeIndex(TypeElement type, Map<String, String> generators) {
+        String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+        String simpleName = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1)).replace('$', '_') + CLASS_SUFFIX;
+        String className = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+        try {
+            JavaFileObject file = processingEnv.getFiler().createSourceFile(className, type);
+            try (Writer writer = file.openWriter()) {
+                if (!packageName.isEmpty()) {
+                    writer.write("package " + packageName + ";\n\n");
+                }
+                writer.write("/**\n * " + type.getQualifiedName() + " 上缓存方法的key生成器，由 " + getClass().getName() + " 生成\n */\n");
+                writer.write("public final class " + simpleName + " implements " + INDEX_INTERFACE + " {\n\n");
+                writer.write("    private static final java.util.Map<String, " + KEY_GENERATOR + "> GENERATORS = new java.util.HashMap<>();\n\n");
+                writer.write("    static {\n");
+                for (Map.Entry<String, String> entry : generators.entrySet()) {
+                    writer.write("        GENERATORS.put(" + javaString(entry.getKey()) + ", (target, method, params) -> " + entry.getValue() + ");\n");
+                }
+                writer.write("    }\n\n");
+                writer.write("    @Override\n");
+                writer.write("    public " + KEY_GENERATOR + " get(String methodKey) {\n");
+                writer.write("        return GENERATORS.get(methodKey);\n");
+                writer.write("    }\n");
+                writer.write("}\n");
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "生成缓存key生成器 " + className + " 失败：" + e.getMessage(), type);
+        }
+    }
+
+    private void error(ExecutableElement method, TypeElement annotation, String format, Object... args) {
+        String message = String.format(format, args);
+        for (AnnotationMirror mirror : method.getAnnotationMirrors()) {
+            if (mirror.getAnnotationType().asElement().equals(annotation)) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, method, mirror);
+                return;
+            }
+        }
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, method);
+    }
+
+    private TypeMirror type(String className) {
+        return processingEnv.getElementUtils().getTypeElement(className).asType();
+    }
+
+    private boolean isType(TypeMirror type, String className) {
+        return processingEnv.getTypeUtils().isSameType(processingEnv.getTypeUtils().erasure(type), type(className));
+    }
+
+    private static String javaString(String value) {
+        StringBuilder builder = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"':
+                    builder.append("\\\"");
+                    break;
+                case '\\':
+                    builder.append("\\\\");
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                case '\r':
+                    builder.append("\\r");
+                    break;
+                case '\t':
+                    builder.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        builder.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        builder.append(c);
+                    }
+            }
+        }
+        return builder.append('"').toString();
+    }
+
+    /**
+     * 翻译好的Java表达式和它的静态类型
+     */
+    private static class Expr {
+
+        private final String code;
+
+        private final TypeMirror type;
+
+        Expr(String code, TypeMirror type) {
+            this.code = code;
+            this.type = type;
+        }
+    }
+
+    /**
+     * key表达式引用了不存在的参数等错误
+     */
+    private static class KeyException extends RuntimeException {
+
+        KeyException(String message) {
+            super(message);
+        }
+    }
+}
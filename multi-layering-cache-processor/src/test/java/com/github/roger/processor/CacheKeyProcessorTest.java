@@ -0,0 +1,180 @@
+package com.github.roger.processor;
+
+import com.github.roger.annotation.CacheEvict;
+import com.github.roger.annotation.Cacheable;
+import com.github.roger.key.CacheKeyGeneratorIndex;
+import com.github.roger.key.GeneratedKeyGenerators;
+import com.github.roger.key.KeyGenerator;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.util.FileSystemUtils;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+public class CacheKeyProcessorTest {
+
+    private static final String SERVICE_SOURCE = "package sample;\n"
+            + "import com.github.roger.annotation.CacheEvict;\n"
+            + "import com.github.roger.annotation.Cacheable;\n"
+            + "public class SampleService {\n"
+            + "    public static class User {\n"
+            + "        private final long userId;\n"
+            + "        public final Address address;\n"
+            + "        public User(long userId, String city) { this.userId = userId; this.address = new Address(city); }\n"
+            + "        public long getUserId() { return userId; }\n"
+            + "    }\n"
+            + "    public static class Address {\n"
+            + "        private final String city;\n"
+            + "        Address(String city) { this.city = city; }\n"
+            + "        public String getCity() { return city; }\n"
+            + "    }\n"
+            + "    @Cacheable(cacheNames = \"people\", key = \"#id\")\n"
+            + "    public String get(long id) { return null; }\n"
+            + "    @Cacheable(cacheNames = \"people\", key = \"#user.address.city\")\n"
+            + "    public String get(User user) { return null; }\n"
+            + "    @Cacheable(cacheNames = \"people\", key = \"#type + ':' + #p1 + ':' + #user.userId\")\n"
+            + "    public String get(String type, Long id, User user) { return null; }\n"
+            + "    @Cacheable(cacheNames = \"people\", key = \"#root.methodName\")\n"
+            + "    public String list(int[] ids) { return null; }\n"
+            + "    @CacheEvict(cacheNames = \"people\", key = \"#id\")\n"
+            + "    public void evict(Long id) { }\n"
+            + "}\n";
+
+    private Path workDir;
+
+    @Before
+    public void setUp() throws IOException {
+        workDir = Files.createTempDirectory("cache-key-processor");
+    }
+
+    @After
+    public void tearDown() {
+        FileSystemUtils.deleteRecursively(workDir.toFile());
+    }
+
+    @Test
+    public void testGenerateKeyGenerators() throws Exception {
+        DiagnosticCollector<JavaFileObject> diagnostics = compile(SERVICE_SOURCE);
+        Assert.assertTrue(diagnostics.getDiagnostics().toString(), errors(diagnostics).isEmpty());
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{workDir.toUri().toURL()}, getClass().getClassLoader())) {
+            Class<?> serviceClass = classLoader.loadClass("sample.SampleService");
+            Class<?> userClass = classLoader.loadClass("sample.SampleService$User");
+            Object user = userClass.getConstructor(long.class, String.class).newInstance(10086L, "Shanghai");
+            Object index = classLoader.loadClass(GeneratedKeyGenerators.indexClassName(serviceClass.getName())).newInstance();
+            Assert.assertTrue(index instanceof CacheKeyGeneratorIndex);
+
+            Method get = serviceClass.getMethod("get", long.class);
+            Assert.assertEquals(1L, generate(get, Cacheable.class, 1L));
+            Assert.assertNull(generate(get, CacheEvict.class, 1L));
+
+            Method getByUser = serviceClass.getMethod("get", userClass);
+            Assert.assertEquals("Shanghai", generate(getByUser, Cacheable.class, user));
+
+            Method getByType = serviceClass.getMethod("get", String.class, Long.class, userClass);
+            Assert.assertEquals("vip:2:10086", generate(getByType, Cacheable.class, "vip", 2L, user));
+            Assert.assertEquals("null:null:10086", generate(getByType, Cacheable.class, null, null, user));
+
+            Method evict = serviceClass.getMethod("evict", Long.class);
+            Assert.assertEquals(3L, generate(evict, CacheEvict.class, 3L));
+
+            // 引用#root的表达式不生成，运行时使用SpEL计算
+            Assert.assertNull(GeneratedKeyGenerators.find(Cacheable.class, serviceClass.getMethod("list", int[].class)));
+        }
+    }
+
+    @Test
+    public void testAnnotationOnInterface() throws Exception {
+        DiagnosticCollector<JavaFileObject> diagnostics = compile("package sample;\n"
+                + "import com.github.roger.annotation.Cacheable;\n"
+                + "public interface SampleService {\n"
+                + "    @Cacheable(cacheNames = \"people\", key = \"#id\")\n"
+                + "    String get(long id);\n"
+                + "}\n"
+                + "class SampleServiceImpl implements SampleService {\n"
+                + "    public String get(long id) { return null; }\n"
+                + "}\n");
+        Assert.assertTrue(diagnostics.getDiagnostics().toString(), errors(diagnostics).isEmpty());
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{workDir.toUri().toURL()}, getClass().getClassLoader())) {
+            // 切面拿到的是实现类上的方法，到声明了注解的接口的索引类中查找
+            Method get = classLoader.loadClass("sample.SampleServiceImpl").getMethod("get", long.class);
+            Assert.assertEquals(1L, generate(get, Cacheable.class, 1L));
+            Assert.assertNull(generate(get, CacheEvict.class, 1L));
+        }
+    }
+
+    @Test
+    public void testMalformedKey() throws Exception {
+        DiagnosticCollector<JavaFileObject> diagnostics = compile(sourceWithKey("#user."));
+        Assert.assertEquals(1, errors(diagnostics).size());
+        Assert.assertTrue(errors(diagnostics).get(0).getMessage(Locale.ROOT).contains("#user."));
+
+        diagnostics = compile(sourceWithKey("#name + ':' + #id"));
+        Assert.assertEquals(1, errors(diagnostics).size());
+        Assert.assertTrue(errors(diagnostics).get(0).getMessage(Locale.ROOT).contains("#name"));
+    }
+
+    private static Object generate(Method method, Class<? extends Annotation> operation, Object... params) {
+        KeyGenerator keyGenerator = GeneratedKeyGenerators.find(operation, method);
+        return keyGenerator == null ? null : keyGenerator.generate(null, method, params);
+    }
+
+    private static String sourceWithKey(String key) {
+        return "package sample;\n"
+                + "public class SampleService {\n"
+                + "    @com.github.roger.annotation.Cacheable(cacheNames = \"people\", key = \"" + key + "\")\n"
+                + "    public String get(Long id) { return null; }\n"
+                + "}\n";
+    }
+
+    private DiagnosticCollector<JavaFileObject> compile(String source) throws IOException {
+        Path sourceFile = workDir.resolve("sample/SampleService.java");
+        Files.createDirectories(sourceFile.getParent());
+        Files.write(sourceFile, source.getBytes(StandardCharsets.UTF_8));
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, Locale.ROOT, StandardCharsets.UTF_8)) {
+            // surefire运行时java.class.path可能只有启动jar
+            String classPath = System.getProperty("surefire.test.class.path", System.getProperty("java.class.path"));
+            List<String> options = Arrays.asList("-classpath", classPath, "-d", workDir.toString(),
+                    "-s", workDir.toString(), "-implicit:class");
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics, options, null,
+                    fileManager.getJavaFileObjectsFromFiles(Collections.singletonList(sourceFile.toFile())));
+            task.setProcessors(Collections.singletonList(new CacheKeyProcessor()));
+            task.call();
+        }
+        return diagnostics;
+    }
+
+    private static List<Diagnostic<? extends JavaFileObject>> errors(DiagnosticCollector<JavaFileObject> diagnostics) {
+        List<Diagnostic<? extends JavaFileObject>> errors = new ArrayList<>();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                errors.add(diagnostic);
+            }
+        }
+        return errors;
+    }
+}
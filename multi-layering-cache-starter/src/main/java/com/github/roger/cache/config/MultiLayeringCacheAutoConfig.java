@@ -1,11 +1,18 @@
 package com.github.roger.cache.config;
 
 import com.github.roger.aspect.MultiLayeringCacheAspect;
+import com.github.roger.cache.metrics.MultiLayeringCacheMetrics;
 import com.github.roger.cache.properties.MultiLayeringCacheProperties;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.github.roger.MultiLayeringCacheManager;
+import org.github.roger.concurrent.RefreshScheduler;
 import org.github.roger.manager.ICacheManager;
+import org.github.roger.serializer.KryoPoolRedisSerializer;
+import org.github.roger.support.DiagnosticLog;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.AutoConfigureAfter;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
@@ -27,14 +34,43 @@ public class MultiLayeringCacheAutoConfig {
     //如果项目中自己定义了ICacheManager实例，则这个实例不必创建
     @ConditionalOnMissingBean(ICacheManager.class)
     public ICacheManager cacheManager(RedisTemplate<String, Object> redisTemplate ,MultiLayeringCacheProperties properties) {
-        MultiLayeringCacheManager layeringCacheManager = new MultiLayeringCacheManager(redisTemplate);
+        MultiLayeringCacheManager layeringCacheManager = properties.getCircuitBreaker() == null
+                ? new MultiLayeringCacheManager(redisTemplate)
+                : new MultiLayeringCacheManager(redisTemplate, properties.getCircuitBreaker());
+        layeringCacheManager.setRefreshScheduler(new RefreshScheduler(properties.getRefreshThreads(),
+                properties.getRefreshQueueCapacity(), properties.getRefreshConcurrencyPerCache()));
+        DiagnosticLog.configure(properties.getDiagnosticLog());
 
         return layeringCacheManager;
     }
 
+    /**
+     * 按配置的类注册表创建的Kryo序列化器，可以在定义RedisTemplate时注入使用
+     */
+    @Bean
+    @ConditionalOnMissingBean(KryoPoolRedisSerializer.class)
+    public KryoPoolRedisSerializer<Object> kryoPoolRedisSerializer(MultiLayeringCacheProperties properties) {
+        return new KryoPoolRedisSerializer<>(Object.class, properties.getKryo());
+    }
+
     @Bean//把切面交给Spring 容器管理
     public MultiLayeringCacheAspect layeringCacheAspect(){
         return new MultiLayeringCacheAspect();
     }
 
+    /**
+     * 引入了Micrometer并且存在MeterRegistry时，注册各个缓存名称的统计指标
+     */
+    @Configuration
+    @ConditionalOnClass(MeterRegistry.class)
+    static class MultiLayeringCacheMetricsConfig {
+
+        @Bean
+        @ConditionalOnBean(MeterRegistry.class)
+        @ConditionalOnMissingBean(MultiLayeringCacheMetrics.class)
+        public MultiLayeringCacheMetrics multiLayeringCacheMetrics(ObjectProvider<ICacheManager> cacheManager) {
+            return new MultiLayeringCacheMetrics(cacheManager.getIfAvailable());
+        }
+    }
+
 }
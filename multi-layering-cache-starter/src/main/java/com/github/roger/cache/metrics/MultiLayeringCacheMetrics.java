@@ -0,0 +1,155 @@
+package com.github.roger.cache.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.github.roger.MultiLayeringCacheManager;
+import org.github.roger.enumeration.CircuitState;
+import org.github.roger.manager.AbstractCacheManager;
+import org.github.roger.manager.ICacheManager;
+import org.github.roger.support.CacheStats;
+import org.github.roger.support.LatencyHistogram;
+import org.github.roger.support.RedisCircuitBreaker;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * 把 {@link CacheStats} 注册到Micrometer，每个缓存名称一组指标，通过cache标签区分
+ * <p>
+ * 指标只是读取 {@link CacheStats} 中的累加值，不会在读写缓存时调用Micrometer。
+ * 缓存是按需创建的，后来出现的缓存名称在创建统计信息时注册，容器关闭时删除注册的监听器，不再持有MeterRegistry。
+ * </p>
+ * <p>
+ * 指定了CacheManager时，还会注册CacheManager级别的指标，如强制刷新缓存调度器排队和正在执行的任务数；
+ * 开启了redis熔断时，该CacheManager的每个缓存名称都注册熔断器的状态、状态变化次数和被拒绝的命令数。
+ * </p>
+ */
+public class MultiLayeringCacheMetrics implements MeterBinder, DisposableBean {
+
+    private static final String PREFIX = "multilayering.cache";
+
+    private final List<CacheStats.Registration> registrations = new CopyOnWriteArrayList<>();
+
+    /**
+     * 注册CacheManager级别指标的CacheManager，可以为null
+     */
+    private final ICacheManager cacheManager;
+
+    public MultiLayeringCacheMetrics() {
+        this(null);
+    }
+
+    /**
+     * @param cacheManager 注册CacheManager级别指标的CacheManager，为null时只注册各个缓存名称的指标
+     */
+    public MultiLayeringCacheMetrics(ICacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        registrations.add(CacheStats.addListener(stats -> bindTo(registry, stats)));
+        for (CacheStats stats : CacheStats.getAllStats().values()) {
+            bindTo(registry, stats);
+        }
+        if (cacheManager instanceof AbstractCacheManager) {
+            // 每次读取时获取调度器，替换调度器后读取的是新的调度器
+            AbstractCacheManager manager = (AbstractCacheManager) cacheManager;
+            Gauge.builder(PREFIX + ".refresh.tasks", manager, m -> m.getRefreshScheduler().getQueuedCount())
+                    .tags("state", "queued").description("强制刷新缓存的任务数").register(registry);
+            Gauge.builder(PREFIX + ".refresh.tasks", manager, m -> m.getRefreshScheduler().getRunningCount())
+                    .tags("state", "running").description("强制刷新缓存的任务数").register(registry);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        for (CacheStats.Registration registration : registrations) {
+            registration.remove();
+        }
+        registrations.clear();
+    }
+
+    private void bindTo(MeterRegistry registry, CacheStats stats) {
+        Tags tags = Tags.of("cache", stats.getCacheName());
+
+        counter(registry, "gets", "缓存查询次数", tags.and("layer", "first", "result", "hit"), stats, CacheStats::getFirstCacheHits);
+        counter(registry, "gets", "缓存查询次数", tags.and("layer", "first", "result", "miss"), stats, CacheStats::getFirstCacheMisses);
+        counter(registry, "gets", "缓存查询次数", tags.and("layer", "second", "result", "hit"), stats, CacheStats::getSecondCacheHits);
+        counter(registry, "gets", "缓存查询次数", tags.and("layer", "second", "result", "miss"), stats, CacheStats::getSecondCacheMisses);
+        counter(registry, "evictions", "一级缓存淘汰次数", tags.and("layer", "first"), stats, CacheStats::getFirstCacheEvictions);
+
+        counter(registry, "load.failures", "执行被缓存方法失败的次数", tags, stats, CacheStats::getLoadFailures);
+        timer(registry, "load", "执行被缓存方法的耗时", tags, stats.getLoadLatency());
+        timer(registry, "lock.wait", "二级缓存未命中时等待分布式锁或加载结果的耗时", tags, stats.getLockWait());
+
+        counter(registry, "refreshes", "缓存刷新次数", tags.and("type", "soft"), stats, CacheStats::getSoftRefreshes);
+        counter(registry, "refreshes", "缓存刷新次数", tags.and("type", "force"), stats, CacheStats::getForceRefreshes);
+        counter(registry, "refreshes", "缓存刷新次数", tags.and("type", "dropped"), stats, CacheStats::getDroppedRefreshes);
+
+        timer(registry, "serialization", "序列化耗时", tags.and("operation", "serialize"), stats.getSerializeLatency());
+        timer(registry, "serialization", "序列化耗时", tags.and("operation", "deserialize"), stats.getDeserializeLatency());
+        FunctionCounter.builder(PREFIX + ".serialization.bytes", stats, CacheStats::getSerializedBytes)
+                .tags(tags.and("operation", "serialize")).description("序列化的数据大小").baseUnit("bytes").register(registry);
+        FunctionCounter.builder(PREFIX + ".serialization.bytes", stats, CacheStats::getDeserializedBytes)
+                .tags(tags.and("operation", "deserialize")).description("序列化的数据大小").baseUnit("bytes").register(registry);
+
+        counter(registry, "messages", "Pub/Sub消息数", tags.and("direction", "published"), stats, CacheStats::getPublishedMessages);
+        counter(registry, "messages", "Pub/Sub消息数", tags.and("direction", "received"), stats, CacheStats::getReceivedMessages);
+
+        RedisCircuitBreaker circuitBreaker = circuitBreaker(stats.getCacheName());
+        if (circuitBreaker != null) {
+            for (CircuitState state : CircuitState.values()) {
+                Tags stateTags = tags.and("state", state.name().toLowerCase(Locale.ROOT));
+                Gauge.builder(PREFIX + ".circuit.state", circuitBreaker, b -> b.getState() == state ? 1 : 0)
+                        .tags(stateTags).description("redis熔断器当前状态，当前状态为1，其他状态为0").register(registry);
+                FunctionCounter.builder(PREFIX + ".circuit.transitions", circuitBreaker, b -> b.getTransitionCount(state))
+                        .tags(stateTags).description("redis熔断器进入该状态的次数").register(registry);
+            }
+            FunctionCounter.builder(PREFIX + ".circuit.rejections", circuitBreaker, RedisCircuitBreaker::getRejectedCount)
+                    .tags(tags).description("redis熔断器拒绝执行的redis命令数").register(registry);
+        }
+    }
+
+    /**
+     * 缓存名称所属CacheManager的redis熔断器，没有开启熔断或者缓存名称不属于该CacheManager时返回null
+     */
+    private RedisCircuitBreaker circuitBreaker(String cacheName) {
+        if (!(cacheManager instanceof MultiLayeringCacheManager) || !cacheManager.getCacheNames().contains(cacheName)) {
+            return null;
+        }
+        return ((MultiLayeringCacheManager) cacheManager).getCircuitBreaker();
+    }
+
+    private static void counter(MeterRegistry registry, String name, String description, Tags tags,
+                                CacheStats stats, ToDoubleFunction<CacheStats> count) {
+        FunctionCounter.builder(PREFIX + "." + name, stats, count).tags(tags).description(description).register(registry);
+    }
+
+    /**
+     * 注册耗时的次数、总耗时、最大耗时，以及每个桶的累计次数（le标签，单位秒），可以在监控系统中计算百分位。
+     * 最大耗时按 {@link LatencyHistogram} 的时间窗口衰减，不是启动以来的最大值
+     */
+    private static void timer(MeterRegistry registry, String name, String description, Tags tags, LatencyHistogram histogram) {
+        FunctionTimer.builder(PREFIX + "." + name, histogram, LatencyHistogram::getCount, h -> h.getTotalTime(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS)
+                .tags(tags).description(description).register(registry);
+        TimeGauge.builder(PREFIX + "." + name + ".max", histogram, TimeUnit.NANOSECONDS, h -> h.getMax(TimeUnit.NANOSECONDS))
+                .tags(tags).description(description).register(registry);
+        long[] bounds = LatencyHistogram.getBucketBounds();
+        for (int i = 0; i <= bounds.length; i++) {
+            int index = i;
+            String le = i < bounds.length ? Double.toString((double) bounds[i] / TimeUnit.SECONDS.toNanos(1)) : "+Inf";
+            FunctionCounter.builder(PREFIX + "." + name + ".histogram", histogram, h -> h.getCumulativeCount(index))
+                    .tags(tags.and("le", le)).description(description).register(registry);
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package com.github.roger.cache.properties;
 
 import lombok.Data;
+import org.github.roger.settings.CircuitBreakerSetting;
+import org.github.roger.settings.DiagnosticLogSetting;
+import org.github.roger.settings.KryoSetting;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
 @ConfigurationProperties( prefix = "spring.multi-layering-cache")
@@ -11,4 +14,35 @@ public class MultiLayeringCacheProperties {
      * 命名空间，必须唯一般使用服务名
      */
     private String namespace;
+
+    /**
+     * 强制刷新缓存的线程数
+     */
+    private int refreshThreads = 8;
+
+    /**
+     * 排队等待刷新的缓存key数量上限，超过时丢弃刷新任务
+     */
+    private int refreshQueueCapacity = 1000;
+
+    /**
+     * 每个缓存同时执行的刷新任务数上限
+     */
+    private int refreshConcurrencyPerCache = 2;
+
+    /**
+     * redis熔断器配置，配置后开启熔断，redis异常或者变慢时缓存降级为只使用一级缓存，
+     * 配置前缀是 spring.multi-layering-cache.circuit-breaker，比如 spring.multi-layering-cache.circuit-breaker.failure-rate-threshold=0.5
+     */
+    private CircuitBreakerSetting circuitBreaker;
+
+    /**
+     * Kryo序列化器配置，包括类注册表
+     */
+    private KryoSetting kryo = new KryoSetting();
+
+    /**
+     * 诊断日志配置，包括日志中缓存值的截断长度和查询事件的采样率
+     */
+    private DiagnosticLogSetting diagnosticLog = new DiagnosticLogSetting();
 }